@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.core.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.ibm.wala.classLoader.IClass;
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.ipa.callgraph.impl.Everywhere;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+import com.ibm.wala.ssa.DefaultIRFactory;
+import com.ibm.wala.ssa.IRFactory;
+import com.ibm.wala.ssa.SSAOptions;
+import com.ibm.wala.types.ClassLoaderReference;
+
+/**
+ * Time to build the IR, by way of {@link com.ibm.wala.ssa.SSABuilder}, of every concrete method of the application classes. A
+ * fresh {@link IRFactory} is used for each run, so that nothing is cached between runs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class IRBenchmark {
+
+  @Param({ Programs.JLEX, Programs.JAVA_CUP, Programs.BCEL })
+  public String program;
+
+  private final List<IMethod> methods = new ArrayList<IMethod>();
+
+  private final SSAOptions options = SSAOptions.defaultOptions();
+
+  @Setup
+  public void setup() throws IOException, ClassHierarchyException {
+    ClassHierarchy cha = ClassHierarchy.make(Programs.makeScope(program));
+    for (IClass klass : cha) {
+      if (klass.getClassLoader().getReference().equals(ClassLoaderReference.Application)) {
+        for (IMethod m : klass.getDeclaredMethods()) {
+          if (!m.isAbstract() && !m.isNative()) {
+            methods.add(m);
+          }
+        }
+      }
+    }
+  }
+
+  @Benchmark
+  public void makeIR(Blackhole bh) {
+    IRFactory<IMethod> factory = new DefaultIRFactory();
+    for (IMethod m : methods) {
+      bh.consume(factory.makeIR(m, Everywhere.EVERYWHERE, options));
+    }
+  }
+}
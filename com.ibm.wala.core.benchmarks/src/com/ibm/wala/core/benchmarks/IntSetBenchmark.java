@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.core.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ibm.wala.util.intset.BimodalMutableIntSetFactory;
+import com.ibm.wala.util.intset.BitVectorIntSetFactory;
+import com.ibm.wala.util.intset.IntIterator;
+import com.ibm.wala.util.intset.IntSetAction;
+import com.ibm.wala.util.intset.MutableIntSet;
+import com.ibm.wala.util.intset.MutableIntSetFactory;
+import com.ibm.wala.util.intset.MutableSharedBitVectorIntSetFactory;
+import com.ibm.wala.util.intset.MutableSparseIntSetFactory;
+import com.ibm.wala.util.intset.RoaringMutableIntSetFactory;
+import com.ibm.wala.util.intset.SemiSparseMutableIntSetFactory;
+
+/**
+ * Union, intersection, overlap tests and iteration for each {@link MutableIntSet} implementation, on two random sets of the same
+ * size drawn from a range {@code density} times that size. The random seed is fixed, so every implementation sees the same sets.
+ *
+ * The elements are drawn either uniformly or in runs of consecutive integers. Runs are what points-to sets look like, since the
+ * instance keys of one class or method tend to be numbered together; {@link PointsToIntSetBenchmark} runs the same operations on
+ * the points-to sets of a real program.
+ *
+ * Union and intersection update a copy of the first set, so their times include that of {@link #copy()}.
+ *
+ * {@link com.ibm.wala.util.intset.DebuggingMutableIntSetFactory} is left out, since it only runs two other implementations side by
+ * side.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class IntSetBenchmark {
+
+  public static final String UNIFORM = "uniform";
+
+  public static final String CLUSTERED = "clustered";
+
+  /**
+   * the longest run of consecutive integers in a clustered set
+   */
+  private static final int MAX_RUN = 64;
+
+  @Param({ "BitVector", "MutableSparse", "MutableSharedBitVector", "SemiSparse", "Bimodal", "Roaring" })
+  public String implementation;
+
+  @Param({ "100", "10000" })
+  public int size;
+
+  @Param({ "2", "64" })
+  public int density;
+
+  @Param({ UNIFORM, CLUSTERED })
+  public String distribution;
+
+  private MutableIntSetFactory<?> factory;
+
+  private MutableIntSet a;
+
+  private MutableIntSet b;
+
+  /**
+   * b moved past the range of a, so that nothing is shared
+   */
+  private MutableIntSet disjoint;
+
+  @Setup
+  public void setup() {
+    factory = makeFactory(implementation);
+    Random r = new Random(12345);
+    a = makeRandomSet(r);
+    b = makeRandomSet(r);
+    disjoint = factory.make();
+    for (IntIterator it = b.intIterator(); it.hasNext();) {
+      disjoint.add(it.next() + size * density);
+    }
+  }
+
+  private MutableIntSet makeRandomSet(Random r) {
+    MutableIntSet s = factory.make();
+    while (s.size() < size) {
+      if (CLUSTERED.equals(distribution)) {
+        int start = r.nextInt(size * density);
+        int end = Math.min(start + 1 + r.nextInt(MAX_RUN), size * density);
+        for (int i = start; i < end && s.size() < size; i++) {
+          s.add(i);
+        }
+      } else if (UNIFORM.equals(distribution)) {
+        s.add(r.nextInt(size * density));
+      } else {
+        throw new IllegalArgumentException("unknown distribution " + distribution);
+      }
+    }
+    return s;
+  }
+
+  static MutableIntSetFactory<?> makeFactory(String implementation) {
+    if ("BitVector".equals(implementation)) {
+      return new BitVectorIntSetFactory();
+    } else if ("MutableSparse".equals(implementation)) {
+      return new MutableSparseIntSetFactory();
+    } else if ("MutableSharedBitVector".equals(implementation)) {
+      return new MutableSharedBitVectorIntSetFactory();
+    } else if ("SemiSparse".equals(implementation)) {
+      return new SemiSparseMutableIntSetFactory();
+    } else if ("Bimodal".equals(implementation)) {
+      return new BimodalMutableIntSetFactory();
+    } else if ("Roaring".equals(implementation)) {
+      return new RoaringMutableIntSetFactory();
+    } else {
+      throw new IllegalArgumentException("unknown implementation " + implementation);
+    }
+  }
+
+  @Benchmark
+  public MutableIntSet copy() {
+    return factory.makeCopy(a);
+  }
+
+  @Benchmark
+  public MutableIntSet union() {
+    MutableIntSet s = factory.makeCopy(a);
+    s.addAll(b);
+    return s;
+  }
+
+  @Benchmark
+  public MutableIntSet intersection() {
+    MutableIntSet s = factory.makeCopy(a);
+    s.intersectWith(b);
+    return s;
+  }
+
+  @Benchmark
+  public boolean containsAny() {
+    return a.containsAny(b);
+  }
+
+  /**
+   * the case where containsAny has to look at every element
+   */
+  @Benchmark
+  public boolean containsAnyDisjoint() {
+    return a.containsAny(disjoint);
+  }
+
+  @Benchmark
+  public int foreach() {
+    final int[] sum = new int[1];
+    a.foreach(new IntSetAction() {
+      @Override
+      public void act(int x) {
+        sum[0] += x;
+      }
+    });
+    return sum[0];
+  }
+
+  @Benchmark
+  public int intIterator() {
+    int sum = 0;
+    for (IntIterator it = a.intIterator(); it.hasNext();) {
+      sum += it.next();
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.core.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ibm.wala.core.tests.callGraph.CallGraphTestUtil;
+import com.ibm.wala.ipa.callgraph.AnalysisCache;
+import com.ibm.wala.ipa.callgraph.AnalysisOptions;
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.ipa.callgraph.CallGraph;
+import com.ibm.wala.ipa.callgraph.Entrypoint;
+import com.ibm.wala.ipa.callgraph.impl.Util;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+import com.ibm.wala.util.CancelException;
+
+/**
+ * Time to build a 0-1-CFA call graph with the pointer analysis solver on a given number of threads, to see how the parallel solver
+ * scales. A parallelism of 1 is the sequential solver.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParallelSolverBenchmark {
+
+  @Param({ Programs.JLEX, Programs.JAVA_CUP, Programs.BCEL })
+  public String program;
+
+  @Param({ "1", "2", "4", "8" })
+  public int parallelism;
+
+  private AnalysisScope scope;
+
+  private ClassHierarchy cha;
+
+  private Iterable<Entrypoint> entrypoints;
+
+  @Setup
+  public void setup() throws IOException, ClassHierarchyException {
+    scope = Programs.makeScope(program);
+    cha = ClassHierarchy.make(scope);
+    entrypoints = Util.makeMainEntrypoints(scope, cha, Programs.mainClass(program));
+  }
+
+  @Benchmark
+  public CallGraph makeCallGraph() throws IllegalArgumentException, CancelException {
+    AnalysisOptions options = CallGraphTestUtil.makeAnalysisOptions(scope, entrypoints);
+    options.setSolverParallelism(parallelism);
+    return Util.makeZeroOneCFABuilder(options, new AnalysisCache(), cha, scope).makeCallGraph(options, null);
+  }
+}
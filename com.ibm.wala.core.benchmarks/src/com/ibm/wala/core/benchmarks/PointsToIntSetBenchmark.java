@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.core.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ibm.wala.core.tests.callGraph.CallGraphTestUtil;
+import com.ibm.wala.ipa.callgraph.AnalysisCache;
+import com.ibm.wala.ipa.callgraph.AnalysisOptions;
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.ipa.callgraph.impl.Util;
+import com.ibm.wala.ipa.callgraph.propagation.InstanceKey;
+import com.ibm.wala.ipa.callgraph.propagation.PointerAnalysis;
+import com.ibm.wala.ipa.callgraph.propagation.PointerKey;
+import com.ibm.wala.ipa.callgraph.propagation.PropagationCallGraphBuilder;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.intset.IntSet;
+import com.ibm.wala.util.intset.MutableIntSet;
+import com.ibm.wala.util.intset.MutableIntSetFactory;
+
+/**
+ * Union, intersection and overlap tests for each {@link MutableIntSet} implementation, on the non-empty points-to sets that a
+ * 0-1-CFA pointer analysis computes for a program. Each operation is applied to every pair of consecutive sets, in the order of the
+ * pointer keys, so the times are for the whole population.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class PointsToIntSetBenchmark {
+
+  @Param({ Programs.JLEX, Programs.JAVA_CUP, Programs.BCEL })
+  public String program;
+
+  @Param({ "BitVector", "MutableSparse", "MutableSharedBitVector", "SemiSparse", "Bimodal", "Roaring" })
+  public String implementation;
+
+  private MutableIntSetFactory<?> factory;
+
+  private MutableIntSet[] sets;
+
+  @Setup
+  public void setup() throws IOException, ClassHierarchyException, IllegalArgumentException, CancelException {
+    AnalysisScope scope = Programs.makeScope(program);
+    ClassHierarchy cha = ClassHierarchy.make(scope);
+    AnalysisOptions options = CallGraphTestUtil.makeAnalysisOptions(scope,
+        Util.makeMainEntrypoints(scope, cha, Programs.mainClass(program)));
+    PropagationCallGraphBuilder builder = Util.makeZeroOneCFABuilder(options, new AnalysisCache(), cha, scope);
+    builder.makeCallGraph(options, null);
+
+    factory = IntSetBenchmark.makeFactory(implementation);
+    List<MutableIntSet> result = new ArrayList<MutableIntSet>();
+    PointerAnalysis<InstanceKey> pa = builder.getPointerAnalysis();
+    for (PointerKey k : pa.getPointerKeys()) {
+      IntSet s = pa.getPointsToSet(k).getBackingSet();
+      if (s != null && !s.isEmpty()) {
+        result.add(factory.makeCopy(s));
+      }
+    }
+    sets = result.toArray(new MutableIntSet[result.size()]);
+  }
+
+  @Benchmark
+  public int union() {
+    int result = 0;
+    for (int i = 1; i < sets.length; i++) {
+      MutableIntSet s = factory.makeCopy(sets[i - 1]);
+      s.addAll(sets[i]);
+      result += s.size();
+    }
+    return result;
+  }
+
+  @Benchmark
+  public int intersection() {
+    int result = 0;
+    for (int i = 1; i < sets.length; i++) {
+      MutableIntSet s = factory.makeCopy(sets[i - 1]);
+      s.intersectWith(sets[i]);
+      result += s.size();
+    }
+    return result;
+  }
+
+  @Benchmark
+  public int containsAny() {
+    int result = 0;
+    for (int i = 1; i < sets.length; i++) {
+      if (sets[i - 1].containsAny(sets[i])) {
+        result++;
+      }
+    }
+    return result;
+  }
+}
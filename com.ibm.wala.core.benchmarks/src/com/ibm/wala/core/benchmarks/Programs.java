@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.core.benchmarks;
+
+import java.io.IOException;
+
+import com.ibm.wala.core.tests.callGraph.CallGraphTestUtil;
+import com.ibm.wala.core.tests.util.TestConstants;
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+
+/**
+ * The programs from the test data that the benchmarks analyze, named as in their {@code @Param} annotations.
+ */
+final class Programs {
+
+  static final String JLEX = "JLex";
+
+  static final String JAVA_CUP = "java_cup";
+
+  static final String BCEL = "bcel";
+
+  private Programs() {
+  }
+
+  /**
+   * @return the scope of the named program, with the exclusions of the regression tests
+   */
+  static AnalysisScope makeScope(String program) throws IOException {
+    return CallGraphTestUtil.makeJ2SEAnalysisScope(scopeFile(program), CallGraphTestUtil.REGRESSION_EXCLUSIONS);
+  }
+
+  private static String scopeFile(String program) {
+    if (JLEX.equals(program)) {
+      return TestConstants.JLEX;
+    } else if (JAVA_CUP.equals(program)) {
+      return TestConstants.JAVA_CUP;
+    } else if (BCEL.equals(program)) {
+      return TestConstants.BCEL;
+    } else {
+      throw new IllegalArgumentException("unknown program " + program);
+    }
+  }
+
+  /**
+   * @return the name of the class whose main method is the entrypoint of the named program
+   */
+  static String mainClass(String program) {
+    if (JLEX.equals(program)) {
+      return TestConstants.JLEX_MAIN;
+    } else if (JAVA_CUP.equals(program)) {
+      return TestConstants.JAVA_CUP_MAIN;
+    } else if (BCEL.equals(program)) {
+      return TestConstants.BCEL_VERIFIER_MAIN;
+    } else {
+      throw new IllegalArgumentException("unknown program " + program);
+    }
+  }
+}
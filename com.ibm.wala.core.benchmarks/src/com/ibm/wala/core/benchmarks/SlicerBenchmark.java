@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.core.benchmarks;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ibm.wala.core.tests.callGraph.CallGraphTestUtil;
+import com.ibm.wala.core.tests.slicer.SlicerTest;
+import com.ibm.wala.core.tests.util.TestConstants;
+import com.ibm.wala.ipa.callgraph.AnalysisCache;
+import com.ibm.wala.ipa.callgraph.AnalysisOptions;
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.ipa.callgraph.CallGraph;
+import com.ibm.wala.ipa.callgraph.CallGraphBuilder;
+import com.ibm.wala.ipa.callgraph.Entrypoint;
+import com.ibm.wala.ipa.callgraph.impl.Util;
+import com.ibm.wala.ipa.callgraph.propagation.InstanceKey;
+import com.ibm.wala.ipa.callgraph.propagation.PointerAnalysis;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+import com.ibm.wala.ipa.slicer.Slicer;
+import com.ibm.wala.ipa.slicer.Slicer.ControlDependenceOptions;
+import com.ibm.wala.ipa.slicer.Slicer.DataDependenceOptions;
+import com.ibm.wala.ipa.slicer.Statement;
+import com.ibm.wala.util.CancelException;
+
+/**
+ * Time for backward slices from the call to println in the main method of the slicing test programs, over a 0-1-CFA call graph
+ * built by setup. Each slice builds its own SDG, as {@link Slicer#computeBackwardSlice} does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SlicerBenchmark {
+
+  @Param({ TestConstants.SLICE1_MAIN, TestConstants.SLICE2_MAIN })
+  public String mainClass;
+
+  private CallGraph cg;
+
+  private PointerAnalysis<InstanceKey> pa;
+
+  private Statement seed;
+
+  @Setup
+  public void setup() throws IOException, ClassHierarchyException, IllegalArgumentException, CancelException {
+    AnalysisScope scope = CallGraphTestUtil.makeJ2SEAnalysisScope(TestConstants.WALA_TESTDATA, "Java60RegressionExclusions.txt");
+    ClassHierarchy cha = ClassHierarchy.make(scope);
+    Iterable<Entrypoint> entrypoints = Util.makeMainEntrypoints(scope, cha, mainClass);
+    AnalysisOptions options = CallGraphTestUtil.makeAnalysisOptions(scope, entrypoints);
+    CallGraphBuilder builder = Util.makeZeroOneCFABuilder(options, new AnalysisCache(), cha, scope);
+    cg = builder.makeCallGraph(options, null);
+    pa = builder.getPointerAnalysis();
+    seed = SlicerTest.findCallTo(SlicerTest.findMainMethod(cg), "println");
+  }
+
+  /**
+   * a slice following data dependences only
+   */
+  @Benchmark
+  public Collection<Statement> dataSlice() throws IllegalArgumentException, CancelException {
+    return Slicer.computeBackwardSlice(seed, cg, pa, DataDependenceOptions.FULL, ControlDependenceOptions.NONE);
+  }
+
+  /**
+   * a thin slice: data dependences without base pointers
+   */
+  @Benchmark
+  public Collection<Statement> thinSlice() throws IllegalArgumentException, CancelException {
+    return Slicer.computeBackwardSlice(seed, cg, pa, DataDependenceOptions.NO_BASE_PTRS, ControlDependenceOptions.NONE);
+  }
+
+  /**
+   * a slice following both data and control dependences
+   */
+  @Benchmark
+  public Collection<Statement> fullSlice() throws IllegalArgumentException, CancelException {
+    return Slicer.computeBackwardSlice(seed, cg, pa, DataDependenceOptions.FULL, ControlDependenceOptions.FULL);
+  }
+}
@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.core.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ibm.wala.classLoader.IClass;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+
+/**
+ * Time to answer subclass queries between every class of a hierarchy and a sample of candidate superclasses, with the subtype
+ * index of {@link ClassHierarchy#isSubclassOf} and by walking up the superclass chain.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SubtypeIndexBenchmark {
+
+  @Param({ Programs.JLEX, Programs.JAVA_CUP, Programs.BCEL })
+  public String program;
+
+  private ClassHierarchy cha;
+
+  private List<IClass> classes;
+
+  private IClass[] supers;
+
+  @Setup
+  public void setup() throws IOException, ClassHierarchyException {
+    cha = ClassHierarchy.make(Programs.makeScope(program));
+    classes = new ArrayList<IClass>();
+    for (IClass klass : cha) {
+      classes.add(klass);
+    }
+    supers = new IClass[Math.min(200, classes.size())];
+    for (int i = 0; i < supers.length; i++) {
+      supers[i] = classes.get(i * classes.size() / supers.length);
+    }
+  }
+
+  @Benchmark
+  public int isSubclassOf() {
+    int result = 0;
+    for (IClass t : supers) {
+      for (IClass c : classes) {
+        if (cha.isSubclassOf(c, t)) {
+          result++;
+        }
+      }
+    }
+    return result;
+  }
+
+  @Benchmark
+  public int walkUp() {
+    int result = 0;
+    for (IClass t : supers) {
+      for (IClass c : classes) {
+        for (IClass s = c; s != null; s = s.getSuperclass()) {
+          if (s.equals(t)) {
+            result++;
+            break;
+          }
+        }
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package incremental;
+
+/**
+ * A program whose code a test changes after building its call graph: the call of {@link #first()} in {@link #main(String[])} is
+ * rewritten to call {@link #second()}, which has the same signature. The object passes through a static field of another class,
+ * whose code does not change, before it is dispatched on.
+ */
+public class Main {
+
+  static class Holder {
+    static Object value;
+
+    static void set(Object o) {
+      value = o;
+    }
+
+    static Object get() {
+      return value;
+    }
+  }
+
+  static class First {
+    @Override
+    public String toString() {
+      return "first";
+    }
+  }
+
+  static class Second {
+    @Override
+    public String toString() {
+      return "second";
+    }
+  }
+
+  static Object first() {
+    return new First();
+  }
+
+  static Object second() {
+    return new Second();
+  }
+
+  public static void main(String[] args) {
+    Holder.set(first());
+    Holder.get().toString();
+  }
+}
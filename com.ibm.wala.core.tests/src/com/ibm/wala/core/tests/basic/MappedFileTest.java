@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.core.tests.basic;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.wala.core.tests.util.WalaTestCase;
+import com.ibm.wala.util.io.MappedFile;
+
+/**
+ * JUnit tests for {@link MappedFile}, with segments small enough that reads cross them.
+ */
+public class MappedFileTest extends WalaTestCase {
+
+  private final static int N = 1000;
+
+  private static File write() throws IOException {
+    File f = File.createTempFile("mapped", ".bin");
+    f.deleteOnExit();
+    DataOutputStream out = new DataOutputStream(new FileOutputStream(f));
+    try {
+      for (int i = 0; i < N; i++) {
+        out.writeInt(i * 7919);
+      }
+      out.writeLong(Long.MIN_VALUE + 12345);
+      // a trailing odd byte
+      out.writeByte(42);
+    } finally {
+      out.close();
+    }
+    return f;
+  }
+
+  @Test
+  public void testSegments() throws IOException {
+    File f = write();
+    try {
+      for (int segmentSize : new int[] { 4, 16, 64, 1 << 12, MappedFile.DEFAULT_SEGMENT_SIZE }) {
+        MappedFile m = MappedFile.map(f, segmentSize);
+        Assert.assertEquals(4 * N + 9, m.length());
+        Assert.assertEquals(N + 2, m.intCount());
+        for (int i = 0; i < N; i++) {
+          Assert.assertEquals(i * 7919, m.getInt(i));
+        }
+        Assert.assertEquals(Long.MIN_VALUE + 12345, m.getLong(N));
+
+        // bytes 2..10 span the first three ints, and so several of the smaller segments
+        byte[] b = m.getBytes(2, 8);
+        Assert.assertEquals(0, b[0]);
+        Assert.assertEquals(0, b[1]);
+        Assert.assertEquals(7919 >>> 24, b[2]);
+        Assert.assertEquals((byte) 7919, b[5]);
+        Assert.assertEquals(42, m.getBytes(m.length() - 1, 1)[0]);
+      }
+    } finally {
+      f.delete();
+    }
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testOutOfBounds() throws IOException {
+    File f = write();
+    try {
+      MappedFile.map(f, 16).getInt(N + 2);
+    } finally {
+      f.delete();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSegmentSize() throws IOException {
+    File f = write();
+    try {
+      MappedFile.map(f, 12);
+    } finally {
+      f.delete();
+    }
+  }
+}
@@ -50,6 +50,7 @@ import com.ibm.wala.util.intset.MutableSharedBitVectorIntSetFactory;
 import com.ibm.wala.util.intset.MutableSparseIntSetFactory;
 import com.ibm.wala.util.intset.MutableSparseLongSetFactory;
 import com.ibm.wala.util.intset.OffsetBitVector;
+import com.ibm.wala.util.intset.RoaringMutableIntSetFactory;
 import com.ibm.wala.util.intset.SemiSparseMutableIntSet;
 import com.ibm.wala.util.intset.SemiSparseMutableIntSetFactory;
 import com.ibm.wala.util.intset.SparseIntSet;
@@ -348,6 +349,13 @@ public class PrimitivesTest extends WalaTestCase {
     doMutableIntSet(new SemiSparseMutableIntSetFactory());
   }
 
+  /**
+   * Test the RoaringMutableIntSet implementation
+   */
+  @Test public void testRoaringMutableIntSet() {
+    doMutableIntSet(new RoaringMutableIntSetFactory());
+  }
+
   /**
    * Test the MutableSparseIntSet implementation
    */
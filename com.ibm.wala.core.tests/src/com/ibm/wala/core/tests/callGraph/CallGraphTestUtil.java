@@ -11,18 +11,30 @@
 package com.ibm.wala.core.tests.callGraph;
 
 import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
 
 import com.ibm.wala.ipa.callgraph.AnalysisCache;
 import com.ibm.wala.ipa.callgraph.AnalysisOptions;
 import com.ibm.wala.ipa.callgraph.AnalysisScope;
 import com.ibm.wala.ipa.callgraph.CallGraph;
 import com.ibm.wala.ipa.callgraph.CallGraphBuilder;
+import com.ibm.wala.ipa.callgraph.CallGraphStats;
 import com.ibm.wala.ipa.callgraph.Entrypoint;
 import com.ibm.wala.ipa.callgraph.impl.Util;
+import com.ibm.wala.ipa.callgraph.propagation.InstanceKey;
+import com.ibm.wala.ipa.callgraph.propagation.PointerAnalysis;
+import com.ibm.wala.ipa.callgraph.propagation.PointerKey;
+import com.ibm.wala.ipa.callgraph.propagation.PropagationCallGraphBuilder;
 import com.ibm.wala.ipa.callgraph.propagation.SSAPropagationCallGraphBuilder;
 import com.ibm.wala.ipa.cha.IClassHierarchy;
 import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.collections.HashMapFactory;
+import com.ibm.wala.util.collections.HashSetFactory;
 import com.ibm.wala.util.config.AnalysisScopeReader;
+import com.ibm.wala.util.functions.VoidFunction;
 import com.ibm.wala.util.io.FileProvider;
 import com.ibm.wala.util.perf.StopwatchGC;
 
@@ -164,4 +176,44 @@ public class CallGraphTestUtil {
     return cg;
   }
 
+  /**
+   * Build a 0-1-CFA call graph with the default options, as adjusted by configure, and return the builder so that its pointer
+   * analysis and solver can be inspected.
+   * 
+   * @param configure sets the options under test; may be null
+   */
+  public static PropagationCallGraphBuilder buildZeroOneCFA(AnalysisScope scope, IClassHierarchy cha,
+      Iterable<Entrypoint> entrypoints, VoidFunction<AnalysisOptions> configure) throws IllegalArgumentException, CancelException {
+    AnalysisOptions options = makeAnalysisOptions(scope, entrypoints);
+    if (configure != null) {
+      configure.apply(options);
+    }
+    PropagationCallGraphBuilder builder = Util.makeZeroOneCFABuilder(options, new AnalysisCache(), cha, scope);
+    builder.makeCallGraph(options, null);
+    return builder;
+  }
+
+  /**
+   * Assert that two builds computed the same call graph and points-to sets
+   */
+  public static void assertSameResult(PropagationCallGraphBuilder expected, PropagationCallGraphBuilder actual) {
+    Assert.assertEquals(CallGraphStats.getCGStats(expected.getCallGraph()), CallGraphStats.getCGStats(actual.getCallGraph()));
+    Assert.assertEquals(pointsTo(expected.getPointerAnalysis()), pointsTo(actual.getPointerAnalysis()));
+  }
+
+  /**
+   * the points-to solution, by printed representation, so that results of distinct builds can be compared
+   */
+  public static Map<String, Set<String>> pointsTo(PointerAnalysis<InstanceKey> pa) {
+    Map<String, Set<String>> result = HashMapFactory.make();
+    for (PointerKey k : pa.getPointerKeys()) {
+      Set<String> s = HashSetFactory.make();
+      for (InstanceKey ik : pa.getPointsToSet(k)) {
+        s.add(ik.toString());
+      }
+      result.put(k.toString(), s);
+    }
+    return result;
+  }
+
 }
@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.core.tests.callGraph;
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.wala.core.tests.util.TestConstants;
+import com.ibm.wala.core.tests.util.WalaTestCase;
+import com.ibm.wala.ipa.callgraph.AnalysisOptions;
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.ipa.callgraph.Entrypoint;
+import com.ibm.wala.ipa.callgraph.impl.Util;
+import com.ibm.wala.ipa.callgraph.propagation.PropagationCallGraphBuilder;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.functions.VoidFunction;
+
+/**
+ * Check that propagating only the new elements of points-to sets does not change the result of the pointer analysis.
+ */
+public class DifferencePropagationTest extends WalaTestCase {
+
+  public static void main(String[] args) {
+    justThisTest(DifferencePropagationTest.class);
+  }
+
+  @Test
+  public void testJLex() throws ClassHierarchyException, IllegalArgumentException, CancelException, IOException {
+    AnalysisScope scope = CallGraphTestUtil.makeJ2SEAnalysisScope(TestConstants.JLEX, CallGraphTestUtil.REGRESSION_EXCLUSIONS);
+    ClassHierarchy cha = ClassHierarchy.make(scope);
+    Iterable<Entrypoint> entrypoints = Util.makeMainEntrypoints(scope, cha, TestConstants.JLEX_MAIN);
+
+    PropagationCallGraphBuilder expected = CallGraphTestUtil.buildZeroOneCFA(scope, cha, entrypoints, null);
+    PropagationCallGraphBuilder actual = CallGraphTestUtil.buildZeroOneCFA(scope, cha, entrypoints,
+        new VoidFunction<AnalysisOptions>() {
+          @Override
+          public void apply(AnalysisOptions options) {
+            options.setDifferencePropagation(true);
+          }
+        });
+    Assert.assertTrue(actual.getPropagationSystem().getDifferencePropagation());
+    CallGraphTestUtil.assertSameResult(expected, actual);
+  }
+}
@@ -0,0 +1,298 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.core.tests.callGraph;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.wala.classLoader.IClass;
+import com.ibm.wala.classLoader.Module;
+import com.ibm.wala.classLoader.ModuleEntry;
+import com.ibm.wala.classLoader.ShrikeClass;
+import com.ibm.wala.core.tests.util.TestConstants;
+import com.ibm.wala.core.tests.util.WalaTestCase;
+import com.ibm.wala.ipa.callgraph.AnalysisCache;
+import com.ibm.wala.ipa.callgraph.AnalysisOptions;
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.callgraph.CallGraph;
+import com.ibm.wala.ipa.callgraph.Entrypoint;
+import com.ibm.wala.ipa.callgraph.impl.Util;
+import com.ibm.wala.ipa.callgraph.propagation.AbstractLocalPointerKey;
+import com.ibm.wala.ipa.callgraph.propagation.InstanceKey;
+import com.ibm.wala.ipa.callgraph.propagation.PointerAnalysis;
+import com.ibm.wala.ipa.callgraph.propagation.PointerKey;
+import com.ibm.wala.ipa.callgraph.propagation.PropagationCallGraphBuilder;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+import com.ibm.wala.shrikeBT.IInvokeInstruction;
+import com.ibm.wala.shrikeBT.InvokeInstruction;
+import com.ibm.wala.shrikeBT.MethodData;
+import com.ibm.wala.shrikeBT.MethodEditor;
+import com.ibm.wala.shrikeBT.shrikeCT.ClassInstrumenter;
+import com.ibm.wala.shrikeCT.InvalidClassFileException;
+import com.ibm.wala.types.ClassLoaderReference;
+import com.ibm.wala.types.MethodReference;
+import com.ibm.wala.types.TypeReference;
+import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.collections.HashMapFactory;
+import com.ibm.wala.util.collections.HashSetFactory;
+import com.ibm.wala.util.collections.Iterator2Collection;
+import com.ibm.wala.util.config.AnalysisScopeReader;
+import com.ibm.wala.util.graph.traverse.DFS;
+import com.ibm.wala.util.io.FileProvider;
+import com.ibm.wala.util.io.FileUtil;
+import com.ibm.wala.util.io.Streams;
+
+/**
+ * Check that updating a call graph after classes changed gives the same result as building it anew, both when the code did not in
+ * fact change and when a call in it was redirected.
+ */
+public class IncrementalUpdateTest extends WalaTestCase {
+
+  public static void main(String[] args) {
+    justThisTest(IncrementalUpdateTest.class);
+  }
+
+  @Test
+  public void testMainClass() throws ClassHierarchyException, IllegalArgumentException, CancelException, IOException {
+    PropagationCallGraphBuilder builder = makeBuilder();
+    IClass main = builder.getClassHierarchy().lookupClass(
+        TypeReference.findOrCreate(ClassLoaderReference.Application, TestConstants.JLEX_MAIN));
+    checkUpdate(builder, Collections.singleton(main));
+  }
+
+  @Test
+  public void testAllApplicationClasses() throws ClassHierarchyException, IllegalArgumentException, CancelException, IOException {
+    PropagationCallGraphBuilder builder = makeBuilder();
+    Collection<IClass> classes = HashSetFactory.make();
+    for (IClass klass : builder.getClassHierarchy()) {
+      if (klass.getClassLoader().getReference().equals(ClassLoaderReference.Application)) {
+        classes.add(klass);
+      }
+    }
+    checkUpdate(builder, classes);
+  }
+
+  /**
+   * Rewrite incremental.Main so that it calls second() where it called first(), which removes the call of first() and adds one of
+   * second(), and check that the update gives what a new build over the rewritten class gives. The update keeps the nodes that
+   * the change made unreachable, so only what is still reachable from the fake root is compared.
+   */
+  @Test
+  public void testChangedCall() throws ClassHierarchyException, IllegalArgumentException, CancelException, IOException,
+      InvalidClassFileException {
+    File dir = Files.createTempDirectory("wala-incremental").toFile();
+    try {
+      Map<String, byte[]> classes = readClasses(
+          CallGraphTestUtil.makeJ2SEAnalysisScope(TestConstants.WALA_TESTDATA, CallGraphTestUtil.REGRESSION_EXCLUSIONS),
+          "incremental/");
+      for (Map.Entry<String, byte[]> e : classes.entrySet()) {
+        write(new File(dir, e.getKey()), e.getValue());
+      }
+      PropagationCallGraphBuilder builder = makeBuilder(makeScope(dir), TestConstants.INCREMENTAL_MAIN, true);
+      Map<String, Set<String>> before = reachableEdges(builder.getCallGraph());
+
+      String main = TestConstants.INCREMENTAL_MAIN.substring(1) + ".class";
+      write(new File(dir, main), redirectCalls(classes.get(main), "first", "second"));
+      TypeReference mainType = TypeReference.findOrCreate(ClassLoaderReference.Application, TestConstants.INCREMENTAL_MAIN);
+      IClass changed = builder.getClassHierarchy().lookupClass(mainType);
+      ((ShrikeClass) changed).clearSoftCaches();
+      CallGraph cg = builder.updateCallGraph(Collections.singleton(changed), null);
+
+      Assert.assertFalse(before.equals(reachableEdges(cg)));
+      Assert.assertFalse(cg.getNodes(MethodReference.findOrCreate(mainType, "second", "()Ljava/lang/Object;")).isEmpty());
+      PropagationCallGraphBuilder fresh = makeBuilder(makeScope(dir), TestConstants.INCREMENTAL_MAIN, false);
+      Assert.assertEquals(reachableEdges(fresh.getCallGraph()), reachableEdges(cg));
+      Assert.assertEquals(reachablePointsToSets(fresh.getCallGraph(), fresh.getPointerAnalysis()),
+          reachablePointsToSets(cg, builder.getPointerAnalysis()));
+    } finally {
+      FileUtil.deleteContents(dir.getPath());
+      dir.delete();
+    }
+  }
+
+  private static PropagationCallGraphBuilder makeBuilder() throws ClassHierarchyException, IllegalArgumentException,
+      CancelException, IOException {
+    AnalysisScope scope = CallGraphTestUtil.makeJ2SEAnalysisScope(TestConstants.JLEX, CallGraphTestUtil.REGRESSION_EXCLUSIONS);
+    return makeBuilder(scope, TestConstants.JLEX_MAIN, true);
+  }
+
+  private static PropagationCallGraphBuilder makeBuilder(AnalysisScope scope, String mainClass, boolean incremental)
+      throws ClassHierarchyException, IllegalArgumentException, CancelException {
+    ClassHierarchy cha = ClassHierarchy.make(scope);
+    Iterable<Entrypoint> entrypoints = Util.makeMainEntrypoints(scope, cha, mainClass);
+    AnalysisOptions options = CallGraphTestUtil.makeAnalysisOptions(scope, entrypoints);
+    options.setIncrementalUpdates(incremental);
+    PropagationCallGraphBuilder builder = Util.makeZeroOneCFABuilder(options, new AnalysisCache(), cha, scope);
+    builder.makeCallGraph(options, null);
+    return builder;
+  }
+
+  private static void checkUpdate(PropagationCallGraphBuilder builder, Collection<IClass> changed) throws CancelException {
+    Map<CGNode, Set<CGNode>> expectedEdges = edges(builder.getCallGraph());
+    Map<PointerKey, Set<InstanceKey>> expectedSets = pointsToSets(builder.getPointerAnalysis());
+
+    CallGraph cg = builder.updateCallGraph(changed, null);
+
+    Assert.assertEquals(expectedEdges, edges(cg));
+    Assert.assertEquals(expectedSets, pointsToSets(builder.getPointerAnalysis()));
+  }
+
+  /**
+   * @return the standard libraries, and the classes under dir as the application
+   */
+  private static AnalysisScope makeScope(File dir) throws IOException {
+    return AnalysisScopeReader.makeJavaBinaryAnalysisScope(dir.getPath(),
+        (new FileProvider()).getFile(CallGraphTestUtil.REGRESSION_EXCLUSIONS));
+  }
+
+  /**
+   * @return the bytes of the class files of the application of scope whose names start with prefix, by name
+   */
+  private static Map<String, byte[]> readClasses(AnalysisScope scope, String prefix) throws IOException {
+    Map<String, byte[]> result = HashMapFactory.make();
+    for (Module m : scope.getModules(scope.getApplicationLoader())) {
+      for (Iterator<? extends ModuleEntry> it = m.getEntries(); it.hasNext();) {
+        ModuleEntry e = it.next();
+        if (e.isClassFile() && e.getName().startsWith(prefix)) {
+          InputStream in = e.getInputStream();
+          try {
+            result.put(e.getName(), Streams.inputStream2ByteArray(in));
+          } finally {
+            in.close();
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  private static void write(File file, byte[] bytes) throws IOException {
+    file.getParentFile().mkdirs();
+    OutputStream out = new FileOutputStream(file);
+    try {
+      out.write(bytes);
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * @return the class file with each call of the method named from replaced by a call of the method named to, which must have the
+   *         same declaring class and signature
+   */
+  private static byte[] redirectCalls(byte[] bytes, final String from, final String to) throws InvalidClassFileException {
+    ClassInstrumenter ci = new ClassInstrumenter(null, bytes, null, true);
+    for (int i = 0; i < ci.getReader().getMethodCount(); i++) {
+      MethodData d = ci.visitMethod(i);
+      if (d != null) {
+        MethodEditor me = new MethodEditor(d);
+        me.beginPass();
+        me.visitInstructions(new MethodEditor.Visitor() {
+          @Override
+          public void visitInvoke(final IInvokeInstruction instruction) {
+            if (instruction.getMethodName().equals(from)) {
+              replaceWith(new MethodEditor.Patch() {
+                @Override
+                public void emitTo(MethodEditor.Output w) {
+                  w.emit(InvokeInstruction.make(instruction.getMethodSignature(), instruction.getClassType(), to,
+                      (IInvokeInstruction.Dispatch) instruction.getInvocationCode()));
+                }
+              });
+            }
+          }
+        });
+        me.applyPatches();
+        me.endPass();
+      }
+    }
+    return ci.emitClass().makeBytes();
+  }
+
+  private static String key(CGNode n) {
+    return n.getMethod().getSignature() + " " + n.getContext();
+  }
+
+  private static Set<CGNode> reachable(CallGraph cg) {
+    return DFS.getReachableNodes(cg, Collections.singleton(cg.getFakeRootNode()));
+  }
+
+  /**
+   * @return the successors of each node reachable from the fake root, by their method signatures and contexts, so that graphs of
+   *         different builds can be compared
+   */
+  private static Map<String, Set<String>> reachableEdges(CallGraph cg) {
+    Map<String, Set<String>> result = HashMapFactory.make();
+    for (CGNode n : reachable(cg)) {
+      Set<String> succs = HashSetFactory.make();
+      for (Iterator<CGNode> it = cg.getSuccNodes(n); it.hasNext();) {
+        succs.add(key(it.next()));
+      }
+      result.put(key(n), succs);
+    }
+    return result;
+  }
+
+  /**
+   * @return the non-empty points-to sets of the keys which are not of nodes unreachable from the fake root, printed so that
+   *         analyses of different builds can be compared
+   */
+  private static Map<String, Set<String>> reachablePointsToSets(CallGraph cg, PointerAnalysis<InstanceKey> pa) {
+    Set<CGNode> reachable = reachable(cg);
+    Map<String, Set<String>> result = HashMapFactory.make();
+    for (PointerKey pk : pa.getPointerKeys()) {
+      if (pk instanceof AbstractLocalPointerKey && !reachable.contains(((AbstractLocalPointerKey) pk).getNode())) {
+        continue;
+      }
+      Set<String> s = HashSetFactory.make();
+      for (InstanceKey ik : pa.getPointsToSet(pk)) {
+        s.add(ik.toString());
+      }
+      if (!s.isEmpty()) {
+        result.put(pk.toString(), s);
+      }
+    }
+    return result;
+  }
+
+  private static Map<CGNode, Set<CGNode>> edges(CallGraph cg) {
+    Map<CGNode, Set<CGNode>> result = HashMapFactory.make();
+    for (CGNode n : cg) {
+      result.put(n, Iterator2Collection.toSet(cg.getSuccNodes(n)));
+    }
+    return result;
+  }
+
+  private static Map<PointerKey, Set<InstanceKey>> pointsToSets(PointerAnalysis<InstanceKey> pa) {
+    Map<PointerKey, Set<InstanceKey>> result = HashMapFactory.make();
+    for (PointerKey pk : pa.getPointerKeys()) {
+      Set<InstanceKey> s = HashSetFactory.make();
+      for (InstanceKey ik : pa.getPointsToSet(pk)) {
+        s.add(ik);
+      }
+      result.put(pk, s);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.core.tests.callGraph;
+
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.wala.core.tests.util.TestConstants;
+import com.ibm.wala.core.tests.util.WalaTestCase;
+import com.ibm.wala.ipa.callgraph.AnalysisOptions;
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.ipa.callgraph.Entrypoint;
+import com.ibm.wala.ipa.callgraph.impl.Util;
+import com.ibm.wala.ipa.callgraph.propagation.InstanceKey;
+import com.ibm.wala.ipa.callgraph.propagation.PointerAnalysis;
+import com.ibm.wala.ipa.callgraph.propagation.PointerKey;
+import com.ibm.wala.ipa.callgraph.propagation.PropagationCallGraphBuilder;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.functions.VoidFunction;
+
+/**
+ * Check that making equal points-to sets share one representation does not change the result of the pointer analysis, and that it
+ * does share sets.
+ */
+public class InternPointsToSetsTest extends WalaTestCase {
+
+  public static void main(String[] args) {
+    justThisTest(InternPointsToSetsTest.class);
+  }
+
+  @Test
+  public void testJLex() throws ClassHierarchyException, IllegalArgumentException, CancelException, IOException {
+    AnalysisScope scope = CallGraphTestUtil.makeJ2SEAnalysisScope(TestConstants.JLEX, CallGraphTestUtil.REGRESSION_EXCLUSIONS);
+    ClassHierarchy cha = ClassHierarchy.make(scope);
+    Iterable<Entrypoint> entrypoints = Util.makeMainEntrypoints(scope, cha, TestConstants.JLEX_MAIN);
+
+    PropagationCallGraphBuilder expected = CallGraphTestUtil.buildZeroOneCFA(scope, cha, entrypoints, null);
+    PropagationCallGraphBuilder actual = CallGraphTestUtil.buildZeroOneCFA(scope, cha, entrypoints,
+        new VoidFunction<AnalysisOptions>() {
+          @Override
+          public void apply(AnalysisOptions options) {
+            options.setInternPointsToSets(true);
+          }
+        });
+    Assert.assertTrue(actual.getPropagationSystem().getInternPointsToSets());
+    CallGraphTestUtil.assertSameResult(expected, actual);
+    Assert.assertTrue(countSets(actual.getPointerAnalysis()) < countSets(expected.getPointerAnalysis()));
+  }
+
+  /**
+   * @return the number of distinct objects representing the points-to sets of pa
+   */
+  private static int countSets(PointerAnalysis<InstanceKey> pa) {
+    Map<Object, Boolean> sets = new IdentityHashMap<Object, Boolean>();
+    for (PointerKey k : pa.getPointerKeys()) {
+      Object s = pa.getPointsToSet(k).getBackingSet();
+      if (s != null) {
+        sets.put(s, Boolean.TRUE);
+      }
+    }
+    return sets.size();
+  }
+}
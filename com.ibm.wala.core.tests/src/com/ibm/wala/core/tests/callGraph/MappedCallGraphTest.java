@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.core.tests.callGraph;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.wala.classLoader.CallSiteReference;
+import com.ibm.wala.core.tests.util.TestConstants;
+import com.ibm.wala.core.tests.util.WalaTestCase;
+import com.ibm.wala.ipa.callgraph.AnalysisCache;
+import com.ibm.wala.ipa.callgraph.AnalysisOptions;
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.callgraph.CallGraph;
+import com.ibm.wala.ipa.callgraph.Entrypoint;
+import com.ibm.wala.ipa.callgraph.impl.MappedCallGraph;
+import com.ibm.wala.ipa.callgraph.impl.Util;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.collections.HashMapFactory;
+import com.ibm.wala.util.collections.HashSetFactory;
+
+/**
+ * Check that a call graph written and mapped back by {@link MappedCallGraph} has the same nodes, call sites and edges.
+ */
+public class MappedCallGraphTest extends WalaTestCase {
+
+  public static void main(String[] args) {
+    justThisTest(MappedCallGraphTest.class);
+  }
+
+  @Test
+  public void testJLex() throws ClassHierarchyException, IllegalArgumentException, CancelException, IOException {
+    AnalysisScope scope = CallGraphTestUtil.makeJ2SEAnalysisScope(TestConstants.JLEX, CallGraphTestUtil.REGRESSION_EXCLUSIONS);
+    ClassHierarchy cha = ClassHierarchy.make(scope);
+    Iterable<Entrypoint> entrypoints = Util.makeMainEntrypoints(scope, cha, TestConstants.JLEX_MAIN);
+    AnalysisOptions options = CallGraphTestUtil.makeAnalysisOptions(scope, entrypoints);
+    CallGraph expected = Util.makeZeroOneCFABuilder(options, new AnalysisCache(), cha, scope).makeCallGraph(options, null);
+
+    File file = File.createTempFile("wala-cg", ".bin");
+    try {
+      MappedCallGraph.write(expected, file);
+      MappedCallGraph actual = MappedCallGraph.load(file, cha, new AnalysisCache());
+
+      Assert.assertEquals(expected.getNumberOfNodes(), actual.getNumberOfNodes());
+      Assert.assertEquals(key(expected.getFakeRootNode()), key(actual.getFakeRootNode()));
+      Assert.assertEquals(keys(expected.getEntrypointNodes().iterator()), keys(actual.getEntrypointNodes().iterator()));
+      Map<String, CGNode> byKey = HashMapFactory.make();
+      for (CGNode n : expected) {
+        byKey.put(key(n), n);
+      }
+      for (CGNode n : actual) {
+        CGNode e = byKey.get(key(n));
+        Assert.assertNotNull("missing " + n, e);
+        Assert.assertEquals(keys(expected.getSuccNodes(e)), keys(actual.getSuccNodes(n)));
+        Assert.assertEquals(keys(expected.getPredNodes(e)), keys(actual.getPredNodes(n)));
+        for (Iterator<CallSiteReference> it = e.iterateCallSites(); it.hasNext();) {
+          CallSiteReference site = it.next();
+          Assert.assertEquals(keys(expected.getPossibleTargets(e, site).iterator()),
+              keys(actual.getPossibleTargets(n, site).iterator()));
+        }
+        Assert.assertSame(n, actual.getNode(n.getMethod(), n.getContext()));
+      }
+    } finally {
+      file.delete();
+    }
+  }
+
+  private static String key(CGNode n) {
+    return n.getMethod().getSignature() + " " + n.getContext();
+  }
+
+  private static Set<String> keys(Iterator<? extends CGNode> nodes) {
+    Set<String> result = HashSetFactory.make();
+    while (nodes.hasNext()) {
+      result.add(key(nodes.next()));
+    }
+    return result;
+  }
+}
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.core.tests.callGraph;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.wala.core.tests.util.TestConstants;
+import com.ibm.wala.core.tests.util.WalaTestCase;
+import com.ibm.wala.ipa.callgraph.AnalysisCache;
+import com.ibm.wala.ipa.callgraph.AnalysisOptions;
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.ipa.callgraph.CallGraph;
+import com.ibm.wala.ipa.callgraph.Entrypoint;
+import com.ibm.wala.ipa.callgraph.impl.Util;
+import com.ibm.wala.ipa.callgraph.propagation.InstanceKey;
+import com.ibm.wala.ipa.callgraph.propagation.MappedPointerAnalysis;
+import com.ibm.wala.ipa.callgraph.propagation.NormalAllocationInNode;
+import com.ibm.wala.ipa.callgraph.propagation.PointerAnalysis;
+import com.ibm.wala.ipa.callgraph.propagation.PointerKey;
+import com.ibm.wala.ipa.callgraph.propagation.PropagationCallGraphBuilder;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.collections.HashSetFactory;
+import com.ibm.wala.util.intset.OrdinalSet;
+
+/**
+ * Check that a pointer analysis written and mapped back by {@link MappedPointerAnalysis} has the same points-to sets.
+ */
+public class MappedPointerAnalysisTest extends WalaTestCase {
+
+  public static void main(String[] args) {
+    justThisTest(MappedPointerAnalysisTest.class);
+  }
+
+  @Test
+  public void testJLex() throws ClassHierarchyException, IllegalArgumentException, CancelException, IOException {
+    AnalysisScope scope = CallGraphTestUtil.makeJ2SEAnalysisScope(TestConstants.JLEX, CallGraphTestUtil.REGRESSION_EXCLUSIONS);
+    ClassHierarchy cha = ClassHierarchy.make(scope);
+    Iterable<Entrypoint> entrypoints = Util.makeMainEntrypoints(scope, cha, TestConstants.JLEX_MAIN);
+    AnalysisOptions options = CallGraphTestUtil.makeAnalysisOptions(scope, entrypoints);
+    PropagationCallGraphBuilder builder = Util.makeZeroOneCFABuilder(options, new AnalysisCache(), cha, scope);
+    CallGraph cg = builder.makeCallGraph(options, null);
+    PointerAnalysis<InstanceKey> expected = builder.getPointerAnalysis();
+
+    File file = File.createTempFile("wala-pa", ".bin");
+    try {
+      int skipped = MappedPointerAnalysis.write(expected, cg, file);
+      MappedPointerAnalysis actual = MappedPointerAnalysis.load(file, cg);
+
+      int all = 0, stored = 0;
+      for (PointerKey pk : expected.getPointerKeys()) {
+        all++;
+        Set<InstanceKey> e = toSet(expected.getPointsToSet(pk));
+        Set<InstanceKey> a = toSet(actual.getPointsToSet(pk));
+        if (pk instanceof PropagationCallGraphBuilder.TypedPointerKey) {
+          Assert.assertTrue(a.isEmpty());
+        } else {
+          Assert.assertEquals(pk.toString(), e, a);
+          Assert.assertEquals(expected.isFiltered(pk), actual.isFiltered(pk));
+          stored++;
+        }
+      }
+      Assert.assertEquals(stored, actual.getNumberOfPointerKeys());
+      Assert.assertEquals(all, stored + skipped);
+
+      for (InstanceKey ik : expected.getInstanceKeys()) {
+        Assert.assertEquals(expected.getInstanceKeyMapping().getMappedIndex(ik), actual.getInstanceKeyMapping().getMappedIndex(ik));
+        if (ik instanceof NormalAllocationInNode) {
+          NormalAllocationInNode a = (NormalAllocationInNode) ik;
+          Assert.assertEquals(ik, actual.getHeapModel().getInstanceKeyForAllocation(a.getNode(), a.getSite()));
+        }
+      }
+    } finally {
+      file.delete();
+    }
+  }
+
+  private static Set<InstanceKey> toSet(OrdinalSet<InstanceKey> s) {
+    Set<InstanceKey> result = HashSetFactory.make();
+    for (InstanceKey ik : s) {
+      result.add(ik);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.core.tests.callGraph;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.wala.core.tests.util.TestConstants;
+import com.ibm.wala.core.tests.util.WalaTestCase;
+import com.ibm.wala.ipa.callgraph.AnalysisCache;
+import com.ibm.wala.ipa.callgraph.AnalysisOptions;
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.callgraph.CallGraph;
+import com.ibm.wala.ipa.callgraph.CallGraphBuilder;
+import com.ibm.wala.ipa.callgraph.Entrypoint;
+import com.ibm.wala.ipa.callgraph.impl.Util;
+import com.ibm.wala.ipa.callgraph.propagation.InstanceKey;
+import com.ibm.wala.ipa.callgraph.propagation.PointerAnalysis;
+import com.ibm.wala.ipa.callgraph.propagation.PointerKey;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+import com.ibm.wala.ipa.modref.ModRef;
+import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.collections.HashMapFactory;
+import com.ibm.wala.util.collections.HashSetFactory;
+import com.ibm.wala.util.intset.OrdinalSet;
+
+/**
+ * Check that mod-ref computed in parallel, with the closure over strongly connected components, is the same as computed
+ * sequentially.
+ */
+public class ParallelModRefTest extends WalaTestCase {
+
+  public static void main(String[] args) {
+    justThisTest(ParallelModRefTest.class);
+  }
+
+  @Test
+  public void testJLex() throws ClassHierarchyException, IllegalArgumentException, CancelException, IOException {
+    AnalysisScope scope = CallGraphTestUtil.makeJ2SEAnalysisScope(TestConstants.JLEX, CallGraphTestUtil.REGRESSION_EXCLUSIONS);
+    ClassHierarchy cha = ClassHierarchy.make(scope);
+    Iterable<Entrypoint> entrypoints = Util.makeMainEntrypoints(scope, cha, TestConstants.JLEX_MAIN);
+    AnalysisOptions options = CallGraphTestUtil.makeAnalysisOptions(scope, entrypoints);
+    CallGraphBuilder builder = Util.makeZeroOneCFABuilder(options, new AnalysisCache(), cha, scope);
+    CallGraph cg = builder.makeCallGraph(options, null);
+    PointerAnalysis<InstanceKey> pa = builder.getPointerAnalysis();
+
+    ModRef sequential = ModRef.make();
+    ModRef parallel = ModRef.make();
+    parallel.setParallelism(4);
+    // parallel first, so that its threads find the IRs and pointer keys uncached, as they would on their own
+    Map<CGNode, Set<PointerKey>> parallelMod = toSets(parallel.computeMod(cg, pa));
+    Map<CGNode, Set<PointerKey>> parallelRef = toSets(parallel.computeRef(cg, pa));
+    Assert.assertEquals(toSets(sequential.computeMod(cg, pa)), parallelMod);
+    Assert.assertEquals(toSets(sequential.computeRef(cg, pa)), parallelRef);
+  }
+
+  private static Map<CGNode, Set<PointerKey>> toSets(Map<CGNode, OrdinalSet<PointerKey>> m) {
+    Map<CGNode, Set<PointerKey>> result = HashMapFactory.make();
+    for (Map.Entry<CGNode, OrdinalSet<PointerKey>> e : m.entrySet()) {
+      Set<PointerKey> s = HashSetFactory.make();
+      for (PointerKey k : e.getValue()) {
+        s.add(k);
+      }
+      result.put(e.getKey(), s);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.core.tests.callGraph;
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.wala.core.tests.util.TestConstants;
+import com.ibm.wala.core.tests.util.WalaTestCase;
+import com.ibm.wala.ipa.callgraph.AnalysisCache;
+import com.ibm.wala.ipa.callgraph.AnalysisOptions;
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.ipa.callgraph.CallGraphStats;
+import com.ibm.wala.ipa.callgraph.Entrypoint;
+import com.ibm.wala.ipa.callgraph.impl.AllApplicationEntrypoints;
+import com.ibm.wala.ipa.callgraph.impl.Util;
+import com.ibm.wala.ipa.callgraph.propagation.PropagationCallGraphBuilder;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+import com.ibm.wala.util.CancelException;
+
+/**
+ * Check that the parallel pointer analysis solver computes the same result as the sequential one.
+ */
+public class ParallelSolverTest extends WalaTestCase {
+
+  public static void main(String[] args) {
+    justThisTest(ParallelSolverTest.class);
+  }
+
+  private static final int[] PARALLELISM = { 2, 4, Runtime.getRuntime().availableProcessors() };
+
+  @Test
+  public void testJLex() throws ClassHierarchyException, IllegalArgumentException, CancelException, IOException {
+    AnalysisScope scope = CallGraphTestUtil.makeJ2SEAnalysisScope(TestConstants.JLEX, CallGraphTestUtil.REGRESSION_EXCLUSIONS);
+    ClassHierarchy cha = ClassHierarchy.make(scope);
+    Iterable<Entrypoint> entrypoints = Util.makeMainEntrypoints(scope, cha, TestConstants.JLEX_MAIN);
+    compareSolvers(scope, cha, entrypoints);
+  }
+
+  @Test
+  public void testJava_cup() throws ClassHierarchyException, IllegalArgumentException, CancelException, IOException {
+    AnalysisScope scope = CallGraphTestUtil.makeJ2SEAnalysisScope(TestConstants.JAVA_CUP, CallGraphTestUtil.REGRESSION_EXCLUSIONS);
+    ClassHierarchy cha = ClassHierarchy.make(scope);
+    Iterable<Entrypoint> entrypoints = Util.makeMainEntrypoints(scope, cha, TestConstants.JAVA_CUP_MAIN);
+    compareSolvers(scope, cha, entrypoints);
+  }
+
+  @Test
+  public void testTestData() throws ClassHierarchyException, IllegalArgumentException, CancelException, IOException {
+    AnalysisScope scope = CallGraphTestUtil.makeJ2SEAnalysisScope(TestConstants.WALA_TESTDATA,
+        CallGraphTestUtil.REGRESSION_EXCLUSIONS);
+    ClassHierarchy cha = ClassHierarchy.make(scope);
+    Iterable<Entrypoint> entrypoints = new AllApplicationEntrypoints(scope, cha);
+    compareSolvers(scope, cha, entrypoints);
+  }
+
+  private static void compareSolvers(AnalysisScope scope, ClassHierarchy cha, Iterable<Entrypoint> entrypoints)
+      throws IllegalArgumentException, CancelException {
+    PropagationCallGraphBuilder expected = build(scope, cha, entrypoints, 1);
+    for (int n : PARALLELISM) {
+      PropagationCallGraphBuilder actual = build(scope, cha, entrypoints, n);
+      Assert.assertEquals("call graph differs with " + n + " threads", CallGraphStats.getCGStats(expected.getCallGraph()),
+          CallGraphStats.getCGStats(actual.getCallGraph()));
+      Assert.assertEquals("points-to sets differ with " + n + " threads",
+          CallGraphTestUtil.pointsTo(expected.getPointerAnalysis()), CallGraphTestUtil.pointsTo(actual.getPointerAnalysis()));
+    }
+  }
+
+  private static PropagationCallGraphBuilder build(AnalysisScope scope, ClassHierarchy cha, Iterable<Entrypoint> entrypoints,
+      int parallelism) throws IllegalArgumentException, CancelException {
+    AnalysisOptions options = CallGraphTestUtil.makeAnalysisOptions(scope, entrypoints);
+    options.setSolverParallelism(parallelism);
+    PropagationCallGraphBuilder builder = Util.makeZeroOneCFABuilder(options, new AnalysisCache(), cha, scope);
+    builder.makeCallGraph(options, null);
+    return builder;
+  }
+}
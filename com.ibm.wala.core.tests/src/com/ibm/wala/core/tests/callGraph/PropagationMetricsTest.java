@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.core.tests.callGraph;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.wala.core.tests.util.TestConstants;
+import com.ibm.wala.core.tests.util.WalaTestCase;
+import com.ibm.wala.fixedpoint.impl.SolverMetrics.OperatorMetrics;
+import com.ibm.wala.ipa.callgraph.AnalysisCache;
+import com.ibm.wala.ipa.callgraph.AnalysisOptions;
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.ipa.callgraph.CallGraph;
+import com.ibm.wala.ipa.callgraph.Entrypoint;
+import com.ibm.wala.ipa.callgraph.impl.Util;
+import com.ibm.wala.ipa.callgraph.propagation.PropagationCallGraphBuilder;
+import com.ibm.wala.ipa.callgraph.propagation.PropagationMetrics;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+import com.ibm.wala.util.CancelException;
+
+/**
+ * Check that the metrics collected while building a call graph agree with the solver.
+ */
+public class PropagationMetricsTest extends WalaTestCase {
+
+  public static void main(String[] args) {
+    justThisTest(PropagationMetricsTest.class);
+  }
+
+  @Test
+  public void testMetrics() throws ClassHierarchyException, IllegalArgumentException, CancelException, IOException {
+    AnalysisScope scope = CallGraphTestUtil.makeJ2SEAnalysisScope(TestConstants.JLEX, CallGraphTestUtil.REGRESSION_EXCLUSIONS);
+    ClassHierarchy cha = ClassHierarchy.make(scope);
+    Iterable<Entrypoint> entrypoints = Util.makeMainEntrypoints(scope, cha, TestConstants.JLEX_MAIN);
+    AnalysisOptions options = CallGraphTestUtil.makeAnalysisOptions(scope, entrypoints);
+    PropagationCallGraphBuilder builder = Util.makeZeroCFABuilder(options, new AnalysisCache(), cha, scope);
+    PropagationMetrics metrics = new PropagationMetrics();
+    builder.setMetrics(metrics);
+    CallGraph cg = builder.makeCallGraph(options, null);
+
+    Assert.assertEquals(builder.getSystem().getEvaluationCount(), metrics.getEvaluations());
+    Assert.assertEquals(builder.getSystem().getNumberOfStatementsCreated(), metrics.getStatementsAdded());
+    long evaluations = 0;
+    for (OperatorMetrics m : metrics.getOperatorMetrics()) {
+      evaluations += m.getEvaluations();
+      Assert.assertTrue(m.getChanges() <= m.getEvaluations());
+    }
+    Assert.assertEquals(metrics.getEvaluations(), evaluations);
+    Assert.assertEquals(5, metrics.getHottestStatements(5).size());
+    Assert.assertTrue(metrics.getNodesWithMostStatements(cg.getNumberOfNodes() + 1).size() <= cg.getNumberOfNodes());
+    Assert.assertTrue(metrics.getPointsToSetSizeHistogram().length > 1);
+
+    StringWriter json = new StringWriter();
+    metrics.writeJSON(json, 10);
+    Assert.assertTrue(json.toString().startsWith("{"));
+    Assert.assertTrue(json.toString().contains("\"pointsToSetSizes\""));
+  }
+}
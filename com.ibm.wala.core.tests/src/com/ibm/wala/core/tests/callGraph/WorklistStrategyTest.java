@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.core.tests.callGraph;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.wala.core.tests.util.TestConstants;
+import com.ibm.wala.core.tests.util.WalaTestCase;
+import com.ibm.wala.fixedpoint.impl.WorklistStrategy;
+import com.ibm.wala.ipa.callgraph.AnalysisCache;
+import com.ibm.wala.ipa.callgraph.AnalysisOptions;
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.ipa.callgraph.CallGraph;
+import com.ibm.wala.ipa.callgraph.CallGraphStats;
+import com.ibm.wala.ipa.callgraph.Entrypoint;
+import com.ibm.wala.ipa.callgraph.impl.AllApplicationEntrypoints;
+import com.ibm.wala.ipa.callgraph.impl.Util;
+import com.ibm.wala.ipa.callgraph.propagation.PropagationCallGraphBuilder;
+import com.ibm.wala.ipa.callgraph.propagation.PropagationSystem;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+import com.ibm.wala.util.CancelException;
+
+/**
+ * Check that the pointer analysis solver computes the same result under every {@link WorklistStrategy}.
+ */
+public class WorklistStrategyTest extends WalaTestCase {
+
+  public static void main(String[] args) {
+    justThisTest(WorklistStrategyTest.class);
+  }
+
+  @Test
+  public void testJLex() throws ClassHierarchyException, IllegalArgumentException, CancelException, IOException {
+    AnalysisScope scope = CallGraphTestUtil.makeJ2SEAnalysisScope(TestConstants.JLEX, CallGraphTestUtil.REGRESSION_EXCLUSIONS);
+    ClassHierarchy cha = ClassHierarchy.make(scope);
+    Iterable<Entrypoint> entrypoints = Util.makeMainEntrypoints(scope, cha, TestConstants.JLEX_MAIN);
+    compareStrategies(scope, cha, entrypoints);
+  }
+
+  @Test
+  public void testTestData() throws ClassHierarchyException, IllegalArgumentException, CancelException, IOException {
+    AnalysisScope scope = CallGraphTestUtil.makeJ2SEAnalysisScope(TestConstants.WALA_TESTDATA,
+        CallGraphTestUtil.REGRESSION_EXCLUSIONS);
+    ClassHierarchy cha = ClassHierarchy.make(scope);
+    Iterable<Entrypoint> entrypoints = new AllApplicationEntrypoints(scope, cha);
+    compareStrategies(scope, cha, entrypoints);
+  }
+
+  private static void compareStrategies(AnalysisScope scope, ClassHierarchy cha, Iterable<Entrypoint> entrypoints)
+      throws IllegalArgumentException, CancelException {
+    CallGraphStats.CGStats expectedStats = null;
+    Map<String, Set<String>> expected = null;
+    for (WorklistStrategy strategy : WorklistStrategy.values()) {
+      AnalysisOptions options = CallGraphTestUtil.makeAnalysisOptions(scope, entrypoints);
+      options.setSolverWorklist(strategy);
+      PropagationCallGraphBuilder builder = Util.makeZeroOneCFABuilder(options, new AnalysisCache(), cha, scope);
+      CallGraph cg = builder.makeCallGraph(options, null);
+      PropagationSystem system = builder.getPropagationSystem();
+      Assert.assertTrue(system.getEvaluationCount() > 0);
+      Assert.assertTrue(system.getReEvaluationCount() < system.getEvaluationCount());
+      if (expected == null) {
+        expectedStats = CallGraphStats.getCGStats(cg);
+        expected = CallGraphTestUtil.pointsTo(builder.getPointerAnalysis());
+      } else {
+        Assert.assertEquals("call graph differs with " + strategy, expectedStats, CallGraphStats.getCGStats(cg));
+        Assert.assertEquals("points-to sets differ with " + strategy, expected,
+            CallGraphTestUtil.pointsTo(builder.getPointerAnalysis()));
+      }
+    }
+  }
+}
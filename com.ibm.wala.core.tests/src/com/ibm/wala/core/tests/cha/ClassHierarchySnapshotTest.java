@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.core.tests.cha;
+
+import java.io.File;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.wala.classLoader.IClass;
+import com.ibm.wala.core.tests.util.TestConstants;
+import com.ibm.wala.core.tests.util.WalaTestCase;
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ipa.cha.ClassHierarchySnapshot;
+import com.ibm.wala.util.config.AnalysisScopeReader;
+import com.ibm.wala.util.io.FileProvider;
+
+/**
+ * Check that a class hierarchy read from a {@link ClassHierarchySnapshot} is the same as one built from the class files.
+ */
+public class ClassHierarchySnapshotTest extends WalaTestCase {
+
+  public static void main(String[] args) {
+    justThisTest(ClassHierarchySnapshotTest.class);
+  }
+
+  private static AnalysisScope makeScope() throws Exception {
+    return AnalysisScopeReader.readJavaScope(TestConstants.WALA_TESTDATA,
+        (new FileProvider()).getFile("J2SEClassHierarchyExclusions.txt"), ClassHierarchySnapshotTest.class.getClassLoader());
+  }
+
+  @Test
+  public void testSnapshot() throws Exception {
+    File file = File.createTempFile("wala-cha", ".snapshot");
+    try {
+      file.delete();
+      ClassHierarchy expected = ClassHierarchySnapshot.make(makeScope(), file);
+      Assert.assertFalse(ClassHierarchySnapshot.isFromSnapshot(expected));
+      Assert.assertTrue(file.exists());
+
+      ClassHierarchy actual = ClassHierarchySnapshot.make(makeScope(), file);
+      Assert.assertTrue(ClassHierarchySnapshot.isFromSnapshot(actual));
+      Assert.assertEquals(expected.getNumberOfClasses(), actual.getNumberOfClasses());
+      for (IClass klass : expected) {
+        IClass other = actual.lookupClass(klass.getReference());
+        Assert.assertNotNull("missing " + klass, other);
+        Assert.assertEquals(klass.getModifiers(), other.getModifiers());
+        Assert.assertEquals(String.valueOf(klass.getSuperclass()), String.valueOf(other.getSuperclass()));
+        Assert.assertEquals(klass.getAllImplementedInterfaces().toString(), other.getAllImplementedInterfaces().toString());
+        Assert.assertEquals(klass.getDeclaredInstanceFields().toString(), other.getDeclaredInstanceFields().toString());
+        Assert.assertEquals(klass.getDeclaredStaticFields().toString(), other.getDeclaredStaticFields().toString());
+        Assert.assertEquals(klass.getDeclaredMethods().size(), other.getDeclaredMethods().size());
+        Assert.assertEquals(expected.getImplementors(klass.getReference()).size(),
+            actual.getImplementors(other.getReference()).size());
+      }
+    } finally {
+      file.delete();
+    }
+  }
+}
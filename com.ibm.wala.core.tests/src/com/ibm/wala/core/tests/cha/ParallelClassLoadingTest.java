@@ -0,0 +1,57 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.core.tests.cha;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.wala.classLoader.ClassLoaderFactoryImpl;
+import com.ibm.wala.classLoader.IClass;
+import com.ibm.wala.core.tests.util.TestConstants;
+import com.ibm.wala.core.tests.util.WalaTestCase;
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.util.config.AnalysisScopeReader;
+import com.ibm.wala.util.io.FileProvider;
+
+/**
+ * Check that class loaders parsing class files in parallel load the same classes as sequential ones.
+ */
+public class ParallelClassLoadingTest extends WalaTestCase {
+
+  public static void main(String[] args) {
+    justThisTest(ParallelClassLoadingTest.class);
+  }
+
+  private static ClassHierarchy make(int parallelism) throws Exception {
+    AnalysisScope scope = AnalysisScopeReader.readJavaScope(TestConstants.WALA_TESTDATA,
+        (new FileProvider()).getFile("J2SEClassHierarchyExclusions.txt"), ParallelClassLoadingTest.class.getClassLoader());
+    ClassLoaderFactoryImpl factory = new ClassLoaderFactoryImpl(scope.getExclusions());
+    factory.setParallelism(parallelism);
+    return ClassHierarchy.make(scope, factory);
+  }
+
+  @Test
+  public void testParallelLoading() throws Exception {
+    ClassHierarchy expected = make(1);
+    for (int n = 2; n <= 4; n *= 2) {
+      ClassHierarchy actual = make(n);
+      Assert.assertEquals(expected.getNumberOfClasses(), actual.getNumberOfClasses());
+      for (IClass klass : expected) {
+        IClass other = actual.lookupClass(klass.getReference());
+        Assert.assertNotNull("missing " + klass, other);
+        Assert.assertEquals(String.valueOf(klass.getSuperclass()), String.valueOf(other.getSuperclass()));
+        Assert.assertEquals(klass.getDeclaredInstanceFields().toString(), other.getDeclaredInstanceFields().toString());
+        Assert.assertEquals(klass.getDeclaredStaticFields().toString(), other.getDeclaredStaticFields().toString());
+      }
+    }
+  }
+}
@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.core.tests.cha;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.ibm.wala.classLoader.IClass;
+import com.ibm.wala.core.tests.util.TestConstants;
+import com.ibm.wala.core.tests.util.WalaTestCase;
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.util.config.AnalysisScopeReader;
+import com.ibm.wala.util.io.FileProvider;
+
+/**
+ * Check the subclass tests of {@link ClassHierarchy} against walks up and down the tree.
+ */
+public class SubtypeIndexTest extends WalaTestCase {
+
+  private static ClassHierarchy cha;
+
+  private static List<IClass> classes;
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    AnalysisScope scope = AnalysisScopeReader.readJavaScope(TestConstants.WALA_TESTDATA,
+        (new FileProvider()).getFile("J2SEClassHierarchyExclusions.txt"), SubtypeIndexTest.class.getClassLoader());
+    cha = ClassHierarchy.make(scope);
+    classes = new ArrayList<IClass>();
+    for (IClass klass : cha) {
+      classes.add(klass);
+    }
+  }
+
+  @AfterClass
+  public static void afterClass() throws Exception {
+    cha = null;
+    classes = null;
+  }
+
+  public static void main(String[] args) {
+    justThisTest(SubtypeIndexTest.class);
+  }
+
+  private static boolean walkUp(IClass c, IClass t) {
+    for (IClass s = c; s != null; s = s.getSuperclass()) {
+      if (s.equals(t)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void walkDown(IClass t, Set<IClass> result) {
+    result.add(t);
+    for (IClass s : cha.getImmediateSubclasses(t)) {
+      walkDown(s, result);
+    }
+  }
+
+  @Test
+  public void testIsSubclassOf() {
+    // every 7th class as a candidate superclass keeps the number of pairs reasonable
+    for (int i = 0; i < classes.size(); i += 7) {
+      IClass t = classes.get(i);
+      for (IClass c : classes) {
+        Assert.assertEquals(c + " <: " + t, walkUp(c, t), cha.isSubclassOf(c, t));
+      }
+    }
+  }
+
+  @Test
+  public void testComputeSubClasses() {
+    for (IClass t : classes) {
+      if (!t.isInterface()) {
+        Set<IClass> expected = new HashSet<IClass>();
+        walkDown(t, expected);
+        Collection<IClass> actual = cha.computeSubClasses(t.getReference());
+        Assert.assertEquals("subclasses of " + t, expected, new HashSet<IClass>(actual));
+      }
+    }
+  }
+}
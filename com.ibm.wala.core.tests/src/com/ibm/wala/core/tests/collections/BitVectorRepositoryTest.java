@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.core.tests.collections;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.wala.core.tests.util.WalaTestCase;
+import com.ibm.wala.util.intset.BitVectorIntSet;
+import com.ibm.wala.util.intset.BitVectorRepository;
+
+/**
+ * Check that {@link BitVectorRepository} hands out shared subsets which are close to the query, also under concurrent use.
+ */
+public class BitVectorRepositoryTest extends WalaTestCase {
+
+  public static void main(String[] args) {
+    justThisTest(BitVectorRepositoryTest.class);
+  }
+
+  private static BitVectorIntSet make(Random r) {
+    BitVectorIntSet v = new BitVectorIntSet();
+    int base = r.nextInt(200);
+    int n = 20 + r.nextInt(40);
+    for (int j = 0; j < n; j++) {
+      v.add(base + r.nextInt(400));
+    }
+    return v;
+  }
+
+  private static void query(Random r, int count, List<BitVectorIntSet> keep) {
+    for (int k = 0; k < count; k++) {
+      BitVectorIntSet v = make(r);
+      BitVectorIntSet s = BitVectorRepository.findOrCreateSharedSubset(v);
+      Assert.assertTrue(s.isSubset(v));
+      Assert.assertTrue(s.size() > v.size() - 5);
+      keep.add(s);
+    }
+  }
+
+  @Test public void testSubsets() {
+    List<BitVectorIntSet> keep = new ArrayList<BitVectorIntSet>();
+    query(new Random(7), 2000, keep);
+
+    // a superset of a representative, made by adding a few bits, must find a representative at least as large
+    Random r = new Random(11);
+    for (BitVectorIntSet s : keep) {
+      BitVectorIntSet v = new BitVectorIntSet(s);
+      v.add(1000 + r.nextInt(100));
+      v.add(1000 + r.nextInt(100));
+      BitVectorIntSet t = BitVectorRepository.findOrCreateSharedSubset(v);
+      Assert.assertTrue(t.isSubset(v));
+      Assert.assertTrue(t.size() >= s.size());
+    }
+  }
+
+  @Test public void testConcurrent() throws InterruptedException {
+    final List<Throwable> failures = new ArrayList<Throwable>();
+    Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; i++) {
+      final int seed = i % 2;
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            query(new Random(seed), 2000, new ArrayList<BitVectorIntSet>());
+          } catch (Throwable e) {
+            synchronized (failures) {
+              failures.add(e);
+            }
+          }
+        }
+      };
+      threads[i].start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+    Assert.assertTrue(failures.toString(), failures.isEmpty());
+  }
+}
@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.core.tests.collections;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.wala.core.tests.util.WalaTestCase;
+import com.ibm.wala.dataflow.IFDS.CompactLocalPathEdges;
+import com.ibm.wala.dataflow.IFDS.LocalPathEdges;
+import com.ibm.wala.util.intset.IntSet;
+
+/**
+ * Check that {@link CompactLocalPathEdges} answers queries the same way as {@link LocalPathEdges}.
+ */
+public class CompactLocalPathEdgesTest extends WalaTestCase {
+
+  public static void main(String[] args) {
+    justThisTest(CompactLocalPathEdgesTest.class);
+  }
+
+  private static void assertSame(String message, IntSet expected, IntSet actual) {
+    boolean expectedEmpty = expected == null || expected.isEmpty();
+    boolean actualEmpty = actual == null || actual.isEmpty();
+    Assert.assertEquals(message, expectedEmpty, actualEmpty);
+    if (!expectedEmpty) {
+      Assert.assertTrue(message + ": " + expected + " vs " + actual, expected.sameValue(actual));
+    }
+  }
+
+  private static void check(int nodes, int facts, int edges, long seed) {
+    LocalPathEdges expected = new LocalPathEdges(true);
+    CompactLocalPathEdges actual = new CompactLocalPathEdges();
+    Random r = new Random(seed);
+    for (int k = 0; k < edges; k++) {
+      // favor the edges from 0 and the identity edges, which are kept separately
+      int i = r.nextInt(4) == 0 ? 0 : r.nextInt(facts);
+      int n = r.nextInt(nodes);
+      int j = r.nextInt(4) == 0 ? i : r.nextInt(facts);
+      Assert.assertEquals(!expected.contains(i, n, j), actual.addPathEdgeIfAbsent(i, n, j));
+      expected.addPathEdge(i, n, j);
+    }
+    assertSame("reached nodes", expected.getReachedNodeNumbers(), actual.getReachedNodeNumbers());
+    for (int n = 0; n < nodes; n++) {
+      assertSame("reachable at " + n, expected.getReachable(n), actual.getReachable(n));
+      for (int d = 0; d < facts; d++) {
+        assertSame("reachable from " + d + " at " + n, expected.getReachable(n, d), actual.getReachable(n, d));
+        assertSame("inverse of " + d + " at " + n, expected.getInverse(n, d), actual.getInverse(n, d));
+        for (int e = 0; e < facts; e++) {
+          Assert.assertEquals(expected.contains(d, n, e), actual.contains(d, n, e));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testSparse() {
+    check(2000, 20, 500, 17);
+  }
+
+  @Test
+  public void testDense() {
+    check(200, 10, 20000, 42);
+  }
+}
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.core.tests.collections;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.wala.core.tests.util.WalaTestCase;
+import com.ibm.wala.util.intset.IntSet;
+import com.ibm.wala.util.intset.IntSetUtil;
+import com.ibm.wala.util.intset.MutableIntSet;
+import com.ibm.wala.util.intset.MutableSparseIntSet;
+import com.ibm.wala.util.intset.RoaringMutableIntSet;
+import com.ibm.wala.util.intset.RoaringMutableIntSetFactory;
+
+/**
+ * Check {@link RoaringMutableIntSet} against {@link MutableSparseIntSet} on sets which exercise each kind of container.
+ */
+public class RoaringMutableIntSetTest extends WalaTestCase {
+
+  public static void main(String[] args) {
+    justThisTest(RoaringMutableIntSetTest.class);
+  }
+
+  private static final RoaringMutableIntSetFactory factory = new RoaringMutableIntSetFactory();
+
+  /**
+   * @return a set of random integers which is sparse, clustered, made of runs, or dense, as given by kind
+   */
+  private static int[] make(Random r, int kind) {
+    int n = r.nextInt(kind == 3 ? 20000 : 300);
+    int[] result = new int[n];
+    int base = r.nextInt(4) << 16;
+    for (int i = 0; i < n; i++) {
+      switch (kind) {
+      case 0:
+        result[i] = r.nextInt(300000);
+        break;
+      case 1:
+        result[i] = base + r.nextInt(600);
+        break;
+      case 2:
+        result[i] = base + (i / 50) * 200 + (i % 50);
+        break;
+      default:
+        // spills over into the next chunk
+        result[i] = base + r.nextInt(70000);
+        break;
+      }
+    }
+    return result;
+  }
+
+  private static void assertSame(String message, IntSet expected, IntSet actual) {
+    Assert.assertEquals(message, expected.size(), actual.size());
+    Assert.assertTrue(message, expected.isSubset(actual));
+    if (!expected.isEmpty()) {
+      Assert.assertEquals(message, expected.max(), actual.max());
+    }
+    Assert.assertTrue(message, actual.sameValue(expected));
+  }
+
+  @Test
+  public void testRandom() {
+    int[] containers = new int[3];
+    for (int k = 0; k < 500; k++) {
+      Random r = new Random(k);
+      int[] a = make(r, r.nextInt(4));
+      int[] b = make(r, r.nextInt(4));
+      MutableIntSet sa = MutableSparseIntSet.createMutableSparseIntSet(2);
+      MutableIntSet sb = MutableSparseIntSet.createMutableSparseIntSet(2);
+      RoaringMutableIntSet ra = new RoaringMutableIntSet();
+      for (int x : a) {
+        Assert.assertEquals(sa.add(x), ra.add(x));
+      }
+      for (int x : b) {
+        sb.add(x);
+      }
+      RoaringMutableIntSet rb = factory.make(b);
+      assertSame("add", sa, ra);
+      assertSame("make", sb, rb);
+      Assert.assertEquals("containsAny", sa.containsAny(sb), ra.containsAny(rb));
+      Assert.assertEquals("isSubset", sa.isSubset(sb), ra.isSubset(rb));
+      assertSame("intersection", sa.intersection(sb), ra.intersection(rb));
+      assertSame("diff", IntSetUtil.diff(sa, sb), IntSetUtil.diff(ra, rb, factory));
+
+      MutableIntSet su = IntSetUtil.makeMutableCopy(sa);
+      RoaringMutableIntSet ru = new RoaringMutableIntSet(ra);
+      Assert.assertEquals("addAll", su.addAll(sb), ru.addAll(rb));
+      assertSame("addAll", su, ru);
+      Assert.assertTrue(ra.isSubset(ru) && rb.isSubset(ru));
+      int[] c = ru.getContainerCounts();
+      for (int i = 0; i < 3; i++) {
+        containers[i] += c[i];
+      }
+
+      for (int i = 0; i < 1000; i++) {
+        int x = r.nextBoolean() ? r.nextInt(300000) : (a.length == 0 ? 0 : a[r.nextInt(a.length)]);
+        Assert.assertEquals("remove " + x, su.remove(x), ru.remove(x));
+      }
+      assertSame("remove", su, ru);
+    }
+    // make sure every kind of container was tried
+    for (int i = 0; i < 3; i++) {
+      Assert.assertTrue(containers[i] > 0);
+    }
+  }
+}
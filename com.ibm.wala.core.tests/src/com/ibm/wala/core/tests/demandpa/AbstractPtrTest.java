@@ -38,8 +38,10 @@
 package com.ibm.wala.core.tests.demandpa;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.Map;
 
 import org.junit.AfterClass;
 import org.junit.Assert;
@@ -48,6 +50,7 @@ import com.ibm.wala.classLoader.IClass;
 import com.ibm.wala.classLoader.NewSiteReference;
 import com.ibm.wala.core.tests.callGraph.CallGraphTestUtil;
 import com.ibm.wala.demandpa.alg.DemandRefinementPointsTo;
+import com.ibm.wala.demandpa.alg.DemandRefinementPointsTo.PointsToResult;
 import com.ibm.wala.demandpa.alg.refinepolicy.NeverRefineCGPolicy;
 import com.ibm.wala.demandpa.alg.refinepolicy.OnlyArraysPolicy;
 import com.ibm.wala.demandpa.alg.refinepolicy.SinglePassRefinementPolicy;
@@ -74,11 +77,16 @@ import com.ibm.wala.ipa.cha.IClassHierarchy;
 import com.ibm.wala.ssa.IR;
 import com.ibm.wala.ssa.SSAInstruction;
 import com.ibm.wala.ssa.SSAInvokeInstruction;
+import com.ibm.wala.ssa.SymbolTable;
 import com.ibm.wala.types.ClassLoaderReference;
 import com.ibm.wala.types.Descriptor;
 import com.ibm.wala.types.TypeReference;
 import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.Predicate;
+import com.ibm.wala.util.collections.HashMapFactory;
+import com.ibm.wala.util.collections.HashSetFactory;
 import com.ibm.wala.util.collections.Iterator2Iterable;
+import com.ibm.wala.util.collections.Pair;
 import com.ibm.wala.util.debug.Assertions;
 import com.ibm.wala.util.intset.IntSet;
 import com.ibm.wala.util.strings.Atom;
@@ -223,6 +231,38 @@ public abstract class AbstractPtrTest {
     return pointsTo;
   }
 
+  /**
+   * check that answering queries for all the locals of the application methods in a batch, sharing points-to sets between the
+   * queries, gives the same results as answering each query on its own
+   */
+  protected void doBatchPointsToTest(String mainClass, int parallelism) throws ClassHierarchyException, IllegalArgumentException,
+      CancelException, IOException {
+    final DemandRefinementPointsTo dmp = makeDemandPointerAnalysis(mainClass);
+    Collection<PointerKey> keysToQuery = new ArrayList<PointerKey>();
+    for (CGNode n : dmp.getBaseCallGraph()) {
+      if (n.getMethod().getDeclaringClass().getClassLoader().getReference().equals(ClassLoaderReference.Application)) {
+        SymbolTable symbolTable = n.getIR().getSymbolTable();
+        for (int vn = 1; vn <= symbolTable.getMaxValueNumber(); vn++) {
+          if (!symbolTable.isConstant(vn)) {
+            keysToQuery.add(dmp.getHeapModel().getPointerKeyForLocal(n, vn));
+          }
+        }
+      }
+    }
+    Map<PointerKey, Pair<PointsToResult, Collection<InstanceKey>>> expected = HashMapFactory.make();
+    for (PointerKey pk : keysToQuery) {
+      expected.put(pk, dmp.getPointsTo(pk, Predicate.<InstanceKey> falsePred()));
+    }
+    dmp.setShareQueryResults(true);
+    Map<PointerKey, Pair<PointsToResult, Collection<InstanceKey>>> batch = dmp.getPointsTo(keysToQuery,
+        Predicate.<InstanceKey> falsePred(), parallelism);
+    Assert.assertEquals(expected.keySet(), batch.keySet());
+    for (PointerKey pk : keysToQuery) {
+      Assert.assertEquals(expected.get(pk).fst, batch.get(pk).fst);
+      Assert.assertEquals(HashSetFactory.make(expected.get(pk).snd), HashSetFactory.make(batch.get(pk).snd));
+    }
+  }
+
   protected DemandRefinementPointsTo makeDemandPointerAnalysis(String mainClass) throws ClassHierarchyException,
       IllegalArgumentException, CancelException, IOException {
     AnalysisScope scope = findOrCreateAnalysisScope();
@@ -124,6 +124,16 @@ public class NoRefinePtrTest extends AbstractPtrTest {
     doPointsToSizeTest(TestInfo.TEST_GLOBAL, 1);
   }
   
+  @Test
+  public void testBatchHashSet() throws ClassHierarchyException, IllegalArgumentException, CancelException, IOException {
+    doBatchPointsToTest(TestInfo.TEST_HASH_SET, 1);
+  }
+
+  @Test
+  public void testBatchArraySetIter() throws ClassHierarchyException, IllegalArgumentException, CancelException, IOException {
+    doBatchPointsToTest(TestInfo.TEST_ARRAY_SET_ITER, 4);
+  }
+
   @Test
   public void testFlowsToLocals() throws ClassHierarchyException, IllegalArgumentException, CancelException, IOException {
     // local var, init of FlowsToType, init of Object, and param of TestUtil.makeVarUsed()
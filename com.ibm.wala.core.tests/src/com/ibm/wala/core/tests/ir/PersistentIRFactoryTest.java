@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.core.tests.ir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.ibm.wala.classLoader.IClass;
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.core.tests.util.TestConstants;
+import com.ibm.wala.core.tests.util.WalaTestCase;
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.ipa.callgraph.impl.Everywhere;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ssa.DefaultIRFactory;
+import com.ibm.wala.ssa.IR;
+import com.ibm.wala.ssa.PersistentIRFactory;
+import com.ibm.wala.ssa.SSAInstruction;
+import com.ibm.wala.ssa.SSAOptions;
+import com.ibm.wala.util.config.AnalysisScopeReader;
+import com.ibm.wala.util.io.FileProvider;
+import com.ibm.wala.util.warnings.Warnings;
+
+/**
+ * Check that IRs read back by a {@link PersistentIRFactory} are the same as freshly built ones.
+ */
+public class PersistentIRFactoryTest extends WalaTestCase {
+
+  private static AnalysisScope scope;
+
+  private static ClassHierarchy cha;
+
+  private static File directory;
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    scope = AnalysisScopeReader.readJavaScope(TestConstants.WALA_TESTDATA,
+        (new FileProvider()).getFile("J2SEClassHierarchyExclusions.txt"), PersistentIRFactoryTest.class.getClassLoader());
+    cha = ClassHierarchy.make(scope);
+    directory = File.createTempFile("wala-ir", "");
+    directory.delete();
+  }
+
+  @AfterClass
+  public static void afterClass() throws Exception {
+    Warnings.clear();
+    scope = null;
+    cha = null;
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File f : files) {
+        f.delete();
+      }
+    }
+    directory.delete();
+  }
+
+  public static void main(String[] args) {
+    justThisTest(PersistentIRFactoryTest.class);
+  }
+
+  private static List<IMethod> applicationMethods() {
+    List<IMethod> result = new ArrayList<IMethod>();
+    for (IClass klass : cha) {
+      if (klass.getClassLoader().getReference().equals(scope.getApplicationLoader())) {
+        for (IMethod m : klass.getDeclaredMethods()) {
+          if (!m.isAbstract() && !m.isNative()) {
+            result.add(m);
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    List<IMethod> methods = applicationMethods();
+    SSAOptions options = SSAOptions.defaultOptions();
+
+    PersistentIRFactory writer = new PersistentIRFactory(new DefaultIRFactory(), directory);
+    for (IMethod m : methods) {
+      writer.makeIR(m, Everywhere.EVERYWHERE, options);
+    }
+    Assert.assertEquals(0, writer.getHits());
+    Assert.assertTrue(writer.getMisses() > 0);
+
+    // a fresh factory, as in a later run, finds what the first one wrote
+    PersistentIRFactory reader = new PersistentIRFactory(new DefaultIRFactory(), directory);
+    DefaultIRFactory fresh = new DefaultIRFactory();
+    for (IMethod m : methods) {
+      IR expected = fresh.makeIR(m, Everywhere.EVERYWHERE, options);
+      IR actual = reader.makeIR(m, Everywhere.EVERYWHERE, options);
+      Assert.assertEquals("IR differs for " + m, expected.toString(), actual.toString());
+      SSAInstruction[] instructions = expected.getInstructions();
+      for (int i = 0; i < instructions.length; i++) {
+        if (instructions[i] != null && instructions[i].hasDef()) {
+          int vn = instructions[i].getDef();
+          Assert.assertArrayEquals("local names differ for " + m, expected.getLocalNames(i, vn), actual.getLocalNames(i, vn));
+        }
+      }
+    }
+    Assert.assertEquals(writer.getMisses(), reader.getHits() + reader.getMisses());
+    Assert.assertTrue(reader.getHits() > 0);
+  }
+}
@@ -0,0 +1,188 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.core.tests.ir;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.ibm.wala.classLoader.IClass;
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.core.tests.util.TestConstants;
+import com.ibm.wala.core.tests.util.WalaTestCase;
+import com.ibm.wala.ipa.callgraph.AnalysisCache;
+import com.ibm.wala.ipa.callgraph.AnalysisOptions;
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.ipa.callgraph.impl.Everywhere;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ssa.CacheStatistics;
+import com.ibm.wala.ssa.DefUse;
+import com.ibm.wala.ssa.DefaultIRFactory;
+import com.ibm.wala.ssa.IR;
+import com.ibm.wala.ssa.SSACache;
+import com.ibm.wala.ssa.SSACachePolicy;
+import com.ibm.wala.ssa.SSAOptions;
+import com.ibm.wala.util.config.AnalysisScopeReader;
+import com.ibm.wala.util.io.FileProvider;
+import com.ibm.wala.util.warnings.Warnings;
+
+/**
+ * Tests for the {@link SSACache}: each IR is built exactly once when queried from several threads, and bounded policies respect
+ * their bounds
+ */
+public class SSACacheTest extends WalaTestCase {
+
+  private static final int N_THREADS = 4;
+
+  private static AnalysisScope scope;
+
+  private static ClassHierarchy cha;
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    scope = AnalysisScopeReader.readJavaScope(TestConstants.WALA_TESTDATA,
+        (new FileProvider()).getFile("J2SEClassHierarchyExclusions.txt"), SSACacheTest.class.getClassLoader());
+    cha = ClassHierarchy.make(scope);
+  }
+
+  @AfterClass
+  public static void afterClass() throws Exception {
+    Warnings.clear();
+    scope = null;
+    cha = null;
+  }
+
+  public static void main(String[] args) {
+    justThisTest(SSACacheTest.class);
+  }
+
+  private static List<IMethod> applicationMethods() {
+    List<IMethod> result = new ArrayList<IMethod>();
+    for (IClass klass : cha) {
+      if (klass.getClassLoader().getReference().equals(scope.getApplicationLoader())) {
+        for (IMethod m : klass.getDeclaredMethods()) {
+          if (!m.isAbstract() && !m.isNative()) {
+            result.add(m);
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  @Test
+  public void testConcurrentIRConstruction() throws InterruptedException {
+    final List<IMethod> methods = applicationMethods();
+    final SSACache cache = new AnalysisCache().getSSACache();
+    final SSAOptions options = new AnalysisOptions().getSSAOptions();
+    final IR[][] irs = new IR[N_THREADS][methods.size()];
+    final DefUse[][] dus = new DefUse[N_THREADS][methods.size()];
+    final CountDownLatch start = new CountDownLatch(1);
+
+    Thread[] threads = new Thread[N_THREADS];
+    for (int t = 0; t < N_THREADS; t++) {
+      final int thread = t;
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            return;
+          }
+          for (int i = 0; i < methods.size(); i++) {
+            irs[thread][i] = cache.findOrCreateIR(methods.get(i), Everywhere.EVERYWHERE, options);
+            dus[thread][i] = cache.findOrCreateDU(methods.get(i), Everywhere.EVERYWHERE, options);
+          }
+        }
+      };
+      threads[t].start();
+    }
+    start.countDown();
+    for (Thread t : threads) {
+      t.join();
+    }
+
+    for (int i = 0; i < methods.size(); i++) {
+      Assert.assertNotNull("no IR for " + methods.get(i), irs[0][i]);
+      for (int t = 1; t < N_THREADS; t++) {
+        Assert.assertSame("IR built twice for " + methods.get(i), irs[0][i], irs[t][i]);
+        Assert.assertSame("DefUse built twice for " + methods.get(i), dus[0][i], dus[t][i]);
+      }
+    }
+
+    // every IR is strongly reachable from irs, so none can have been evicted
+    CacheStatistics stats = cache.getIRStatistics();
+    Assert.assertEquals(methods.size(), stats.getMisses());
+    Assert.assertTrue(stats.getHits() >= (N_THREADS - 1) * methods.size());
+    Assert.assertEquals(0, stats.getEvictions());
+    Assert.assertEquals(methods.size(), stats.getSize());
+    Assert.assertEquals(methods.size(), cache.getDUStatistics().getMisses());
+  }
+
+  @Test
+  public void testWipeCountsEvictions() {
+    List<IMethod> methods = applicationMethods();
+    SSACache cache = new AnalysisCache().getSSACache();
+    SSAOptions options = new AnalysisOptions().getSSAOptions();
+    List<IR> irs = new ArrayList<IR>();
+    for (IMethod m : methods) {
+      irs.add(cache.findOrCreateIR(m, Everywhere.EVERYWHERE, options));
+    }
+    cache.wipe();
+    CacheStatistics stats = cache.getIRStatistics();
+    Assert.assertEquals(methods.size(), stats.getEvictions());
+    Assert.assertEquals(0, stats.getSize());
+    Assert.assertEquals(methods.size(), irs.size());
+  }
+
+  private static void checkBounded(SSACachePolicy policy) {
+    List<IMethod> methods = applicationMethods();
+    SSACache cache = new AnalysisCache(new DefaultIRFactory(), policy).getSSACache();
+    SSAOptions options = new AnalysisOptions().getSSAOptions();
+    for (int round = 0; round < 2; round++) {
+      for (IMethod m : methods) {
+        Assert.assertNotNull(cache.findOrCreateIR(m, Everywhere.EVERYWHERE, options));
+        CacheStatistics stats = cache.getIRStatistics();
+        Assert.assertTrue(policy + " exceeded: " + stats, stats.getWeight() <= policy.getMaximum());
+      }
+    }
+    CacheStatistics stats = cache.getIRStatistics();
+    // the application methods do not all fit, so the bound must have been enforced
+    Assert.assertTrue(policy + " never evicted: " + stats, stats.getEvictions() > 0);
+    Assert.assertEquals(stats.getMisses() - stats.getEvictions(), stats.getSize());
+  }
+
+  @Test
+  public void testLRUByEntries() {
+    checkBounded(SSACachePolicy.maxEntries(SSACachePolicy.Eviction.LRU, 10));
+  }
+
+  @Test
+  public void testTinyLFUByEntries() {
+    checkBounded(SSACachePolicy.maxEntries(SSACachePolicy.Eviction.W_TINY_LFU, 10));
+  }
+
+  @Test
+  public void testLRUByBytes() {
+    checkBounded(SSACachePolicy.maxBytes(SSACachePolicy.Eviction.LRU, 64 * 1024));
+  }
+
+  @Test
+  public void testTinyLFUByBytes() {
+    checkBounded(SSACachePolicy.maxBytes(SSACachePolicy.Eviction.W_TINY_LFU, 64 * 1024));
+  }
+}
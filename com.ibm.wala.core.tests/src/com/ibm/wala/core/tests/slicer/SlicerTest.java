@@ -15,9 +15,12 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 import org.junit.AfterClass;
 import org.junit.Assert;
@@ -35,12 +38,15 @@ import com.ibm.wala.ipa.callgraph.CallGraphBuilder;
 import com.ibm.wala.ipa.callgraph.Entrypoint;
 import com.ibm.wala.ipa.callgraph.impl.PartialCallGraph;
 import com.ibm.wala.ipa.callgraph.impl.Util;
+import com.ibm.wala.ipa.callgraph.propagation.SSAPropagationCallGraphBuilder;
 import com.ibm.wala.ipa.cha.ClassHierarchy;
 import com.ibm.wala.ipa.cha.ClassHierarchyException;
 import com.ibm.wala.ipa.cha.IClassHierarchy;
 import com.ibm.wala.ipa.slicer.MethodEntryStatement;
+import com.ibm.wala.ipa.slicer.NormalReturnCaller;
 import com.ibm.wala.ipa.slicer.NormalStatement;
 import com.ibm.wala.ipa.slicer.SDG;
+import com.ibm.wala.ipa.slicer.SliceSession;
 import com.ibm.wala.ipa.slicer.Slicer;
 import com.ibm.wala.ipa.slicer.Slicer.ControlDependenceOptions;
 import com.ibm.wala.ipa.slicer.Slicer.DataDependenceOptions;
@@ -59,6 +65,7 @@ import com.ibm.wala.ssa.SSAPutInstruction;
 import com.ibm.wala.types.ClassLoaderReference;
 import com.ibm.wala.types.Descriptor;
 import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.collections.HashSetFactory;
 import com.ibm.wala.util.debug.Assertions;
 import com.ibm.wala.util.graph.GraphIntegrity;
 import com.ibm.wala.util.graph.GraphIntegrity.UnsoundGraphException;
@@ -121,6 +128,109 @@ public class SlicerTest {
     Assert.assertEquals(16, i);
   }
 
+  /**
+   * testSlice1, with the PDGs of the SDG built up front on several threads
+   */
+  @Test
+  public void testSlice1Parallel() throws ClassHierarchyException, IllegalArgumentException, CancelException, IOException {
+    AnalysisScope scope = findOrCreateAnalysisScope();
+    IClassHierarchy cha = findOrCreateCHA(scope);
+    Iterable<Entrypoint> entrypoints = com.ibm.wala.ipa.callgraph.impl.Util.makeMainEntrypoints(scope, cha,
+        TestConstants.SLICE1_MAIN);
+    AnalysisOptions options = CallGraphTestUtil.makeAnalysisOptions(scope, entrypoints);
+
+    CallGraphBuilder builder = Util.makeZeroOneCFABuilder(options, new AnalysisCache(), cha, scope);
+    CallGraph cg = builder.makeCallGraph(options, null);
+
+    CGNode main = findMainMethod(cg);
+
+    Statement s = findCallTo(main, "println");
+    SDG sdg = new SDG(cg, builder.getPointerAnalysis(), DataDependenceOptions.FULL, ControlDependenceOptions.NONE);
+    sdg.setParallelism(4);
+    sdg.computeAllPDGs();
+    Collection<Statement> slice = Slicer.computeBackwardSlice(sdg, s);
+
+    int i = 0;
+    for (Statement st : slice) {
+      if (st.getNode().getMethod().getDeclaringClass().getClassLoader().getReference().equals(ClassLoaderReference.Application)) {
+        i++;
+      }
+    }
+    Assert.assertEquals(16, i);
+  }
+
+  /**
+   * slices of the calls in main computed in a {@link SliceSession}, several at a time, should be those computed one by one
+   */
+  @Test
+  public void testSliceSession() throws ClassHierarchyException, IllegalArgumentException, CancelException, IOException {
+    SSAPropagationCallGraphBuilder builder = makeSlice1Builder();
+    CallGraph cg = builder.makeCallGraph(builder.getOptions(), null);
+    List<Statement> calls = findMainCalls(cg);
+
+    SDG sdg = new SDG(cg, builder.getPointerAnalysis(), DataDependenceOptions.FULL, ControlDependenceOptions.FULL);
+    SliceSession session = new SliceSession(new SDG(cg, builder.getPointerAnalysis(), DataDependenceOptions.FULL,
+        ControlDependenceOptions.FULL), true, 2);
+    Map<Statement, Collection<Statement>> slices = session.slice(calls);
+    for (Statement s : calls) {
+      Assert.assertEquals(HashSetFactory.make(Slicer.computeBackwardSlice(sdg, s)), HashSetFactory.make(slices.get(s)));
+      Assert.assertSame(slices.get(s), session.slice(s));
+    }
+  }
+
+  /**
+   * slices computed one at a time in a {@link SliceSession} should be those computed by {@link Slicer}, also when they take the
+   * callee entries kept from earlier slices: the slice of the last call in main reaches the entries of the methods called before,
+   * and the slices of the values those return reach them again
+   */
+  @Test
+  public void testSliceSessionSequential() throws ClassHierarchyException, IllegalArgumentException, CancelException,
+      IOException {
+    SSAPropagationCallGraphBuilder builder = makeSlice1Builder();
+    CallGraph cg = builder.makeCallGraph(builder.getOptions(), null);
+    List<Statement> calls = findMainCalls(cg);
+    List<Statement> ss = new ArrayList<Statement>();
+    ss.add(calls.get(calls.size() - 1));
+    for (Statement call : calls.subList(0, calls.size() - 1)) {
+      ss.add(new NormalReturnCaller(call.getNode(), ((NormalStatement) call).getInstructionIndex()));
+    }
+
+    SDG sdg = new SDG(cg, builder.getPointerAnalysis(), DataDependenceOptions.FULL, ControlDependenceOptions.FULL);
+    SliceSession session = new SliceSession(new SDG(cg, builder.getPointerAnalysis(), DataDependenceOptions.FULL,
+        ControlDependenceOptions.FULL), true);
+    Assert.assertEquals(1, session.getParallelism());
+    for (Statement s : ss) {
+      Collection<Statement> slice = session.slice(s);
+      Assert.assertTrue(session.getNumberOfEntrySummaries() > 0);
+      Assert.assertEquals(HashSetFactory.make(Slicer.computeBackwardSlice(sdg, s)), HashSetFactory.make(slice));
+    }
+  }
+
+  private SSAPropagationCallGraphBuilder makeSlice1Builder() throws ClassHierarchyException, IOException {
+    AnalysisScope scope = findOrCreateAnalysisScope();
+    IClassHierarchy cha = findOrCreateCHA(scope);
+    Iterable<Entrypoint> entrypoints = com.ibm.wala.ipa.callgraph.impl.Util.makeMainEntrypoints(scope, cha,
+        TestConstants.SLICE1_MAIN);
+    AnalysisOptions options = CallGraphTestUtil.makeAnalysisOptions(scope, entrypoints);
+    return Util.makeZeroOneCFABuilder(options, new AnalysisCache(), cha, scope);
+  }
+
+  /**
+   * @return statements for the calls in main, in the order of the instructions
+   */
+  private static List<Statement> findMainCalls(CallGraph cg) {
+    CGNode main = findMainMethod(cg);
+    List<Statement> calls = new ArrayList<Statement>();
+    SSAInstruction[] instructions = main.getIR().getInstructions();
+    for (int i = 0; i < instructions.length; i++) {
+      if (instructions[i] instanceof SSAAbstractInvokeInstruction) {
+        calls.add(new NormalStatement(main, i));
+      }
+    }
+    Assert.assertTrue(calls.size() > 1);
+    return calls;
+  }
+
   @Test
   public void testSlice2() throws ClassHierarchyException, IllegalArgumentException, CancelException, IOException {
     AnalysisScope scope = findOrCreateAnalysisScope();
@@ -551,6 +661,38 @@ public class SlicerTest {
     Assert.assertEquals(slice.toString(), 2, countGetstatics(slice));
   }
 
+  /**
+   * testTestGlobal, with heap data dependences computed in SSA form; the slice should be the one computed with reaching
+   * definitions
+   */
+  @Test
+  public void testTestGlobalSparse() throws ClassHierarchyException, IllegalArgumentException, CancelException, IOException {
+    AnalysisScope scope = findOrCreateAnalysisScope();
+
+    IClassHierarchy cha = findOrCreateCHA(scope);
+    Iterable<Entrypoint> entrypoints = com.ibm.wala.ipa.callgraph.impl.Util.makeMainEntrypoints(scope, cha,
+        TestConstants.SLICE_TESTGLOBAL);
+    AnalysisOptions options = CallGraphTestUtil.makeAnalysisOptions(scope, entrypoints);
+
+    CallGraphBuilder builder = Util.makeZeroOneCFABuilder(options, new AnalysisCache(), cha, scope);
+    CallGraph cg = builder.makeCallGraph(options, null);
+
+    CGNode main = findMainMethod(cg);
+
+    Statement s = findCallToDoNothing(main);
+    SDG sdg = new SDG(cg, builder.getPointerAnalysis(), DataDependenceOptions.FULL, ControlDependenceOptions.NONE);
+    sdg.setSparseHeapDependences(true);
+    Collection<Statement> slice = Slicer.computeBackwardSlice(sdg, s);
+    dumpSlice(slice);
+    Assert.assertEquals(slice.toString(), 1, countAllocations(slice));
+    Assert.assertEquals(slice.toString(), 2, countPutstatics(slice));
+    Assert.assertEquals(slice.toString(), 2, countGetstatics(slice));
+
+    Collection<Statement> dense = Slicer.computeBackwardSlice(s, cg, builder.getPointerAnalysis(), DataDependenceOptions.FULL,
+        ControlDependenceOptions.NONE);
+    Assert.assertEquals(HashSetFactory.make(dense), HashSetFactory.make(slice));
+  }
+
   @Test
   public void testTestMultiTarget() throws ClassHierarchyException, IllegalArgumentException, CancelException, IOException {
     AnalysisScope scope = findOrCreateAnalysisScope();
@@ -38,6 +38,8 @@ public interface TestConstants {
 
   public final static String MULTI_DIM_MAIN = "LmultiDim/TestMultiDim";
 
+  public final static String INCREMENTAL_MAIN = "Lincremental/Main";
+
   public final static String ARRAY_ALIAS_MAIN = "LarrayAlias/TestArrayAlias";
 
   public final static String ZERO_LENGTH_ARRAY_MAIN = "LarrayAlias/TestZeroLengthArray";
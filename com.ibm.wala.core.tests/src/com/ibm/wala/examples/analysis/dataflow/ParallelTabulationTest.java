@@ -0,0 +1,251 @@
+/*******************************************************************************
+ * Copyright (c) 2008 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.examples.analysis.dataflow;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.ibm.wala.core.tests.callGraph.CallGraphTestUtil;
+import com.ibm.wala.core.tests.util.TestConstants;
+import com.ibm.wala.core.tests.util.WalaTestCase;
+import com.ibm.wala.dataflow.IFDS.ICFGSupergraph;
+import com.ibm.wala.dataflow.IFDS.IFlowFunction;
+import com.ibm.wala.dataflow.IFDS.IFlowFunctionMap;
+import com.ibm.wala.dataflow.IFDS.IMergeFunction;
+import com.ibm.wala.dataflow.IFDS.ISupergraph;
+import com.ibm.wala.dataflow.IFDS.IUnaryFlowFunction;
+import com.ibm.wala.dataflow.IFDS.IdentityFlowFunction;
+import com.ibm.wala.dataflow.IFDS.KillEverything;
+import com.ibm.wala.dataflow.IFDS.PathEdge;
+import com.ibm.wala.dataflow.IFDS.TabulationDomain;
+import com.ibm.wala.dataflow.IFDS.TabulationProblem;
+import com.ibm.wala.dataflow.IFDS.TabulationResult;
+import com.ibm.wala.dataflow.IFDS.TabulationSolver;
+import com.ibm.wala.ipa.callgraph.AnalysisCache;
+import com.ibm.wala.ipa.callgraph.AnalysisOptions;
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.callgraph.CallGraph;
+import com.ibm.wala.ipa.callgraph.CallGraphBuilder;
+import com.ibm.wala.ipa.callgraph.impl.AllApplicationEntrypoints;
+import com.ibm.wala.ipa.callgraph.impl.Util;
+import com.ibm.wala.ipa.cfg.BasicBlockInContext;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ipa.cha.IClassHierarchy;
+import com.ibm.wala.ssa.SSAInstruction;
+import com.ibm.wala.ssa.SSAPutInstruction;
+import com.ibm.wala.ssa.analysis.IExplodedBasicBlock;
+import com.ibm.wala.types.FieldReference;
+import com.ibm.wala.util.collections.Pair;
+import com.ibm.wala.util.config.AnalysisScopeReader;
+import com.ibm.wala.util.config.FileOfClasses;
+import com.ibm.wala.util.intset.IntSet;
+import com.ibm.wala.util.intset.MutableMapping;
+import com.ibm.wala.util.intset.MutableSparseIntSet;
+
+/**
+ * Check that parallel tabulation computes the same result as sequential tabulation, and report how long each takes.
+ */
+public class ParallelTabulationTest extends WalaTestCase {
+
+  private static AnalysisScope scope;
+
+  private static IClassHierarchy cha;
+
+  // more aggressive exclusions to avoid library blowup
+  private static final String EXCLUSIONS = "java\\/awt\\/.*\n" + "javax\\/swing\\/.*\n" + "sun\\/awt\\/.*\n" + "sun\\/swing\\/.*\n"
+      + "com\\/sun\\/.*\n" + "sun\\/.*\n" + "java\\/security\\/.*\n";
+
+  private static final int[] PARALLELISM = { 2, 4, Runtime.getRuntime().availableProcessors() };
+
+  public static void main(String[] args) {
+    justThisTest(ParallelTabulationTest.class);
+  }
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    scope = AnalysisScopeReader.readJavaScope(TestConstants.WALA_TESTDATA, null, ParallelTabulationTest.class.getClassLoader());
+    scope.setExclusions(new FileOfClasses(new ByteArrayInputStream(EXCLUSIONS.getBytes("UTF-8"))));
+    cha = ClassHierarchy.make(scope);
+  }
+
+  @AfterClass
+  public static void afterClass() throws Exception {
+    scope = null;
+    cha = null;
+  }
+
+  @Test
+  public void testReachingStaticDefs() throws Exception {
+    AnalysisOptions options = CallGraphTestUtil.makeAnalysisOptions(scope, new AllApplicationEntrypoints(scope, cha));
+    AnalysisCache cache = new AnalysisCache();
+    CallGraphBuilder builder = Util.makeZeroOneCFABuilder(options, cache, cha, scope);
+    CallGraph cg = builder.makeCallGraph(options, null);
+    ICFGSupergraph supergraph = ICFGSupergraph.make(cg, cache);
+    ReachingStaticDefs problem = new ReachingStaticDefs(supergraph, supergraph.getEntriesForProcedure(cg.getFakeRootNode())[0]);
+
+    TabulationResult<BasicBlockInContext<IExplodedBasicBlock>, CGNode, Object> expected = TabulationSolver.make(problem).solve();
+    for (int n : PARALLELISM) {
+      TabulationSolver<BasicBlockInContext<IExplodedBasicBlock>, CGNode, Object> solver = TabulationSolver.make(problem);
+      solver.setParallelism(n);
+      TabulationResult<BasicBlockInContext<IExplodedBasicBlock>, CGNode, Object> actual = solver.solve();
+      Assert.assertEquals(new HashSet<BasicBlockInContext<IExplodedBasicBlock>>(expected.getSupergraphNodesReached()),
+          new HashSet<BasicBlockInContext<IExplodedBasicBlock>>(actual.getSupergraphNodesReached()));
+      for (BasicBlockInContext<IExplodedBasicBlock> bb : supergraph) {
+        Assert.assertTrue("results differ at " + bb + " with " + n + " threads",
+            expected.getResult(bb).sameValue(actual.getResult(bb)));
+      }
+      for (CGNode node : cg) {
+        if (node.getIR() == null) {
+          continue;
+        }
+        BasicBlockInContext<IExplodedBasicBlock> entry = supergraph.getEntriesForProcedure(node)[0];
+        BasicBlockInContext<IExplodedBasicBlock> exit = supergraph.getExitsForProcedure(node)[0];
+        for (int d = 0; d < problem.getDomain().getSize(); d++) {
+          IntSet e = expected.getSummaryTargets(entry, d, exit);
+          IntSet a = actual.getSummaryTargets(entry, d, exit);
+          Assert.assertTrue("summaries differ for " + node, e == null ? a == null || a.isEmpty() : e.sameValue(a));
+        }
+      }
+    }
+  }
+
+  /**
+   * Definitions of static fields that reach each statement, with a 0 fact that holds wherever control reaches, so that a single
+   * seed at the fake root suffices. The domain is complete before tabulation starts, and the flow functions only read it, so the
+   * problem may be tabulated in parallel.
+   */
+  private static class ReachingStaticDefs implements TabulationProblem<BasicBlockInContext<IExplodedBasicBlock>, CGNode, Object> {
+
+    private static final Object ZERO = "0";
+
+    private final ISupergraph<BasicBlockInContext<IExplodedBasicBlock>, CGNode> supergraph;
+
+    private final PathEdge<BasicBlockInContext<IExplodedBasicBlock>> seed;
+
+    private final Domain domain = new Domain();
+
+    /**
+     * the field defined by each fact, by fact number
+     */
+    private final List<FieldReference> fields = new ArrayList<FieldReference>();
+
+    ReachingStaticDefs(ISupergraph<BasicBlockInContext<IExplodedBasicBlock>, CGNode> supergraph,
+        BasicBlockInContext<IExplodedBasicBlock> root) {
+      this.supergraph = supergraph;
+      this.seed = PathEdge.createPathEdge(root, 0, root, 0);
+      domain.add(ZERO);
+      fields.add(null);
+      for (BasicBlockInContext<IExplodedBasicBlock> bb : supergraph) {
+        SSAInstruction instruction = bb.getDelegate().getInstruction();
+        if (instruction instanceof SSAPutInstruction && ((SSAPutInstruction) instruction).isStatic()) {
+          domain.add(Pair.make(bb.getNode(), bb.getDelegate().getFirstInstructionIndex()));
+          fields.add(((SSAPutInstruction) instruction).getDeclaredField());
+        }
+      }
+    }
+
+    private class Domain extends MutableMapping<Object> implements
+        TabulationDomain<Object, BasicBlockInContext<IExplodedBasicBlock>> {
+      @Override
+      public boolean hasPriorityOver(PathEdge<BasicBlockInContext<IExplodedBasicBlock>> p1,
+          PathEdge<BasicBlockInContext<IExplodedBasicBlock>> p2) {
+        return false;
+      }
+    }
+
+    private final IFlowFunctionMap<BasicBlockInContext<IExplodedBasicBlock>> functions =
+        new IFlowFunctionMap<BasicBlockInContext<IExplodedBasicBlock>>() {
+
+      @Override
+      public IUnaryFlowFunction getNormalFlowFunction(BasicBlockInContext<IExplodedBasicBlock> src,
+          BasicBlockInContext<IExplodedBasicBlock> dest) {
+        SSAInstruction instruction = src.getDelegate().getInstruction();
+        if (instruction instanceof SSAPutInstruction && ((SSAPutInstruction) instruction).isStatic()) {
+          final int fact = domain.getMappedIndex(Pair.make(src.getNode(), src.getDelegate().getFirstInstructionIndex()));
+          final FieldReference field = ((SSAPutInstruction) instruction).getDeclaredField();
+          return new IUnaryFlowFunction() {
+            @Override
+            public IntSet getTargets(int d1) {
+              MutableSparseIntSet result = MutableSparseIntSet.makeEmpty();
+              if (d1 == 0) {
+                result.add(0);
+                result.add(fact);
+              } else if (!fields.get(d1).equals(field)) {
+                result.add(d1);
+              }
+              return result;
+            }
+          };
+        }
+        return IdentityFlowFunction.identity();
+      }
+
+      @Override
+      public IUnaryFlowFunction getCallFlowFunction(BasicBlockInContext<IExplodedBasicBlock> src,
+          BasicBlockInContext<IExplodedBasicBlock> dest, BasicBlockInContext<IExplodedBasicBlock> ret) {
+        return IdentityFlowFunction.identity();
+      }
+
+      @Override
+      public IFlowFunction getReturnFlowFunction(BasicBlockInContext<IExplodedBasicBlock> call,
+          BasicBlockInContext<IExplodedBasicBlock> src, BasicBlockInContext<IExplodedBasicBlock> dest) {
+        return IdentityFlowFunction.identity();
+      }
+
+      @Override
+      public IUnaryFlowFunction getCallToReturnFlowFunction(BasicBlockInContext<IExplodedBasicBlock> src,
+          BasicBlockInContext<IExplodedBasicBlock> dest) {
+        return KillEverything.singleton();
+      }
+
+      @Override
+      public IUnaryFlowFunction getCallNoneToReturnFlowFunction(BasicBlockInContext<IExplodedBasicBlock> src,
+          BasicBlockInContext<IExplodedBasicBlock> dest) {
+        return IdentityFlowFunction.identity();
+      }
+    };
+
+    @Override
+    public ISupergraph<BasicBlockInContext<IExplodedBasicBlock>, CGNode> getSupergraph() {
+      return supergraph;
+    }
+
+    @Override
+    public TabulationDomain<Object, BasicBlockInContext<IExplodedBasicBlock>> getDomain() {
+      return domain;
+    }
+
+    @Override
+    public IFlowFunctionMap<BasicBlockInContext<IExplodedBasicBlock>> getFunctionMap() {
+      return functions;
+    }
+
+    @Override
+    public Collection<PathEdge<BasicBlockInContext<IExplodedBasicBlock>>> initialSeeds() {
+      return Collections.singleton(seed);
+    }
+
+    @Override
+    public IMergeFunction getMergeFunction() {
+      return null;
+    }
+  }
+}
@@ -113,7 +113,7 @@ public abstract class BytecodeClass<T extends IClassLoader> implements IClass {
   /**
    * The static fields declared in this class.
    */
-  protected IField[] staticFields;
+  protected volatile IField[] staticFields;
 
   /**
    * hash code; cached here for efficiency
@@ -329,6 +329,7 @@ public abstract class BytecodeClass<T extends IClassLoader> implements IClass {
    */
   @Override
   public Collection<IField> getDeclaredInstanceFields() {
+    computeFieldsIfNeeded();
     if (instanceFields == null) {
       return Collections.emptySet();
     } else {
@@ -341,6 +342,7 @@ public abstract class BytecodeClass<T extends IClassLoader> implements IClass {
    */
   @Override
   public Collection<IField> getDeclaredStaticFields() {
+    computeFieldsIfNeeded();
     return Collections.unmodifiableList(Arrays.asList(staticFields));
   }
 
@@ -544,7 +546,8 @@ public abstract class BytecodeClass<T extends IClassLoader> implements IClass {
   }
 
   protected List<IField> findDeclaredField(Atom name) {
-    
+    computeFieldsIfNeeded();
+
     List<IField> result = new ArrayList<IField>(1);
     
     if (instanceFields != null) {
@@ -566,6 +569,12 @@ public abstract class BytecodeClass<T extends IClassLoader> implements IClass {
     return result;
   }
 
+  /**
+   * set up instanceFields and staticFields, for subclasses that do not do so eagerly
+   */
+  protected void computeFieldsIfNeeded() {
+  }
+
   protected void addFieldToList(List<FieldImpl> L, Atom name, ImmutableByteArray fieldType, int accessFlags,
       Collection<Annotation> annotations) {
     TypeName T = null;
@@ -38,6 +38,11 @@ public class ClassLoaderFactoryImpl implements ClassLoaderFactory {
    */
   final private HashMap<ClassLoaderReference, IClassLoader> map = HashMapFactory.make(3);
 
+  /**
+   * number of threads each {@link ClassLoaderImpl} made here parses class files on
+   */
+  private int parallelism = 1;
+
   /**
    * @param exclusions
    *          A set of classes that class loaders should pretend don't exist.
@@ -46,6 +51,22 @@ public class ClassLoaderFactoryImpl implements ClassLoaderFactory {
     this.exclusions = exclusions;
   }
 
+  /**
+   * Have the {@link ClassLoaderImpl}s made from now on parse class files on n threads.
+   * 
+   * @see ClassLoaderImpl#setParallelism(int)
+   */
+  public void setParallelism(int n) {
+    if (n < 1) {
+      throw new IllegalArgumentException("illegal parallelism " + n);
+    }
+    parallelism = n;
+  }
+
+  public int getParallelism() {
+    return parallelism;
+  }
+
   /**
    * Return a class loader corresponding to a given class loader identifier.
    * Create one if necessary.
@@ -112,6 +133,9 @@ public class ClassLoaderFactoryImpl implements ClassLoaderFactory {
           cl = new ClassLoaderImpl(classLoaderReference, scope.getArrayClassLoader(), parent, exclusions, cha);
         }
       }
+    if (cl instanceof ClassLoaderImpl) {
+      ((ClassLoaderImpl) cl).setParallelism(parallelism);
+    }
     cl.init(scope.getModules(classLoaderReference));
     return cl;
   }
@@ -19,6 +19,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -26,6 +27,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.jar.JarEntry;
 import java.util.jar.JarInputStream;
 
@@ -91,6 +94,16 @@ public class ClassLoaderImpl implements IClassLoader {
    */
   private final ArrayClassLoader arrayClassLoader;
 
+  /**
+   * number of threads parsing class files in {@link #init(List)}; 1 means parse sequentially
+   */
+  private int parallelism = 1;
+
+  /**
+   * module entry name -> previously recorded header of the class it holds; null if none were recorded
+   */
+  private Map<String, ShrikeClass.Header> headers;
+
   /**
    * @param loader class loader reference identifying this loader
    * @param parent parent loader for delegation
@@ -114,6 +127,29 @@ public class ClassLoaderImpl implements IClassLoader {
     }
   }
 
+  /**
+   * Parse class files on this many threads in {@link #init(List)}. The classes loaded do not depend on the parallelism. Must be
+   * called before {@link #init(List)}.
+   */
+  public void setParallelism(int n) {
+    if (n < 1) {
+      throw new IllegalArgumentException("illegal parallelism " + n);
+    }
+    parallelism = n;
+  }
+
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Use previously recorded class headers, keyed by module entry name, instead of parsing the corresponding class files when
+   * loading. The headers must describe the current class files. Must be called before {@link #init(List)}.
+   */
+  public void setClassHeaders(Map<String, ShrikeClass.Header> headers) {
+    this.headers = headers;
+  }
+
   /**
    * Return the Set of (ModuleEntry) source files found in a module.
    * 
@@ -247,6 +283,8 @@ public class ClassLoaderImpl implements IClassLoader {
    * Set up the set of classes loaded by this object.
    */
   private void loadAllClasses(Collection<ModuleEntry> moduleEntries, Map<String, Object> fileContents) {
+    List<ModuleEntry> entries = new ArrayList<ModuleEntry>(moduleEntries.size());
+    List<String> classNames = new ArrayList<String>(moduleEntries.size());
     for (Iterator<ModuleEntry> it = moduleEntries.iterator(); it.hasNext();) {
       ModuleEntry entry = it.next();
       if (!entry.isClassFile()) {
@@ -265,10 +303,28 @@ public class ClassLoaderImpl implements IClassLoader {
         }
         continue;
       }
+      entries.add(entry);
+      classNames.add("L" + className);
+    }
 
-      ShrikeClassReaderHandle entryReader = new ShrikeClassReaderHandle(entry);
+    // in parallel mode, parse all the class files up front; result i is a ShrikeClass, null for a class file that does not
+    // define the class its name says, or the InvalidClassFileException thrown when parsing it
+    Object[] parsed = null;
+    if (parallelism > 1 && entries.size() > 1) {
+      Object[] result = new Object[entries.size()];
+      ForkJoinPool pool = new ForkJoinPool(parallelism);
+      try {
+        pool.invoke(new ParseTask(entries, classNames, fileContents, result, 0, result.length));
+      } finally {
+        pool.shutdown();
+      }
+      parsed = result;
+    }
 
-      className = "L" + className;
+    // publish in entry order, so that the outcome does not depend on the schedule
+    for (int i = 0; i < entries.size(); i++) {
+      ModuleEntry entry = entries.get(i);
+      String className = classNames.get(i);
       if (DEBUG_LEVEL > 0) {
         System.err.println("Load class " + className);
       }
@@ -279,20 +335,16 @@ public class ClassLoaderImpl implements IClassLoader {
         } else if (parent != null && parent.lookupClass(T) != null) {
           Warnings.add(MultipleImplementationsWarning.create(className));
         } else {
-          // try to read from memory
-          ShrikeClassReaderHandle reader = entryReader;
-          if (fileContents != null) {
-            final Object contents = fileContents.get(entry.getName());
-            if (contents != null) {
-              // reader that uses the in-memory bytes
-              reader = new ByteArrayReaderHandle(entry, (byte[]) contents);
-            }
+          ShrikeClass klass;
+          if (parsed == null) {
+            klass = makeClass(entry, className, fileContents);
+          } else if (parsed[i] instanceof InvalidClassFileException) {
+            throw (InvalidClassFileException) parsed[i];
+          } else {
+            klass = (ShrikeClass) parsed[i];
           }
-          ShrikeClass tmpKlass = new ShrikeClass(reader, this, cha);
-          if (tmpKlass.getReference().getName().equals(T)) {
-            // always used the reader based on the entry after this point,
-            // so we can null out and re-read class file contents
-            loadedClasses.put(T, new ShrikeClass(entryReader, this, cha));
+          if (klass != null) {
+            loadedClasses.put(T, klass);
             if (DEBUG_LEVEL > 1) {
               System.err.println("put " + T + " ");
             }
@@ -309,6 +361,93 @@ public class ClassLoaderImpl implements IClassLoader {
     }
   }
 
+  /**
+   * Make the class defined by a class file. Touches no state of this loader, and so may run concurrently with itself.
+   * 
+   * @param className the name of the class, as given by the entry
+   * @return the class, or null if the class file defines some other class
+   */
+  private ShrikeClass makeClass(ModuleEntry entry, String className, Map<String, Object> fileContents)
+      throws InvalidClassFileException {
+    ShrikeClassReaderHandle entryReader = new ShrikeClassReaderHandle(entry);
+    ShrikeClass.Header header = headers == null ? null : headers.get(entry.getName());
+    if (header != null && className.equals("L" + header.getName())) {
+      // recorded earlier; the class file is only read if its members are asked for
+      return new ShrikeClass(entryReader, this, cha, header);
+    }
+    // try to read from memory
+    ShrikeClassReaderHandle reader = entryReader;
+    if (fileContents != null) {
+      final Object contents = fileContents.get(entry.getName());
+      if (contents != null) {
+        // reader that uses the in-memory bytes
+        reader = new ByteArrayReaderHandle(entry, (byte[]) contents);
+      }
+    }
+    ShrikeClass klass = new ShrikeClass(reader, this, cha);
+    if (!klass.getReference().getName().equals(TypeName.string2TypeName(className))) {
+      return null;
+    }
+    if (reader != entryReader) {
+      // always used the reader based on the entry after this point,
+      // so we can null out and re-read class file contents
+      klass = new ShrikeClass(entryReader, this, cha);
+    }
+    return klass;
+  }
+
+  /**
+   * Parses the class files in a range of entries, splitting the range while it is large
+   */
+  private class ParseTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * a task parses at most this many class files itself
+     */
+    private static final int CHUNK = 32;
+
+    private final List<ModuleEntry> entries;
+
+    private final List<String> classNames;
+
+    private final Map<String, Object> fileContents;
+
+    private final Object[] result;
+
+    private final int from;
+
+    private final int to;
+
+    ParseTask(List<ModuleEntry> entries, List<String> classNames, Map<String, Object> fileContents, Object[] result, int from,
+        int to) {
+      this.entries = entries;
+      this.classNames = classNames;
+      this.fileContents = fileContents;
+      this.result = result;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > CHUNK) {
+        int mid = (from + to) >>> 1;
+        invokeAll(new ParseTask(entries, classNames, fileContents, result, from, mid), new ParseTask(entries, classNames,
+            fileContents, result, mid, to));
+        return;
+      }
+      for (int i = from; i < to; i++) {
+        try {
+          result[i] = makeClass(entries.get(i), classNames.get(i), fileContents);
+        } catch (InvalidClassFileException e) {
+          result[i] = e;
+        }
+      }
+    }
+  }
+
   @SuppressWarnings("unused")
   private Map<String, Object> getAllClassAndSourceFileContents(byte[] jarFileContents, String fileName,
       Map<String, Map<String, Long>> entrySizes) {
@@ -498,7 +637,9 @@ public class ClassLoaderImpl implements IClassLoader {
         System.err.println("add archive: " + archive);
       }
       // byte[] jarFileContents = null;
-      if (OPTIMIZE_JAR_FILE_IO && archive instanceof JarFileModule) {
+      // with recorded headers, class files are mostly not read at all, and when parsing in parallel, the reads themselves warm up
+      // the cache; either way there is no point in reading the jar file first
+      if (OPTIMIZE_JAR_FILE_IO && headers == null && parallelism == 1 && archive instanceof JarFileModule) {
         // if we have a jar file, we read the whole thing into memory and operate on that; enables more
         // efficient sequential I/O
         // this is work in progress; for now, we read the file into memory and throw away the contents, which
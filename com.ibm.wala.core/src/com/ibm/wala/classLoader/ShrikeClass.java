@@ -34,6 +34,7 @@ import com.ibm.wala.util.debug.Assertions;
 import com.ibm.wala.util.shrike.ShrikeClassReaderHandle;
 import com.ibm.wala.util.strings.Atom;
 import com.ibm.wala.util.strings.ImmutableByteArray;
+import com.ibm.wala.util.strings.UTF8Convert;
 
 /**
  * A class read from Shrike
@@ -67,6 +68,110 @@ public final class ShrikeClass extends JVMClass<IClassLoader> {
     computeFields();
   }
 
+  /**
+   * Create a class from a previously recorded {@link Header}, without reading the class file. Fields and methods are read from the
+   * class file when first asked for.
+   * 
+   * @throws IllegalArgumentException
+   *           if reader or header is null
+   */
+  public ShrikeClass(ShrikeClassReaderHandle reader, IClassLoader loader, IClassHierarchy cha, Header header) {
+    super(loader, cha);
+    if (reader == null) {
+      throw new IllegalArgumentException("reader is null");
+    }
+    if (header == null) {
+      throw new IllegalArgumentException("header is null");
+    }
+    this.reader = reader;
+    this.typeReference = TypeReference.findOrCreate(loader.getReference(), TypeName.findOrCreate(ImmutableByteArray.make("L"
+        + header.name)));
+    this.hashCode = 2161 * getReference().hashCode();
+    this.modifiers = header.modifiers;
+    if (header.superName != null) {
+      superName = ImmutableByteArray.make("L" + header.superName);
+    }
+    interfaceNames = new ImmutableByteArray[header.interfaceNames.length];
+    for (int i = 0; i < interfaceNames.length; i++) {
+      interfaceNames[i] = ImmutableByteArray.make("L" + header.interfaceNames[i]);
+    }
+  }
+
+  /**
+   * The parts of a class file that a class hierarchy needs, in the JVM internal form (e.g. java/lang/Object)
+   */
+  public final static class Header {
+    private final String name;
+
+    private final int modifiers;
+
+    private final String superName;
+
+    private final String[] interfaceNames;
+
+    /**
+     * @param superName null for java.lang.Object
+     */
+    public Header(String name, int modifiers, String superName, String[] interfaceNames) {
+      if (name == null) {
+        throw new IllegalArgumentException("name is null");
+      }
+      if (interfaceNames == null) {
+        throw new IllegalArgumentException("interfaceNames is null");
+      }
+      this.name = name;
+      this.modifiers = modifiers;
+      this.superName = superName;
+      this.interfaceNames = interfaceNames;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public int getModifiers() {
+      return modifiers;
+    }
+
+    public String getSuperName() {
+      return superName;
+    }
+
+    public String[] getInterfaceNames() {
+      return interfaceNames;
+    }
+  }
+
+  /**
+   * @return the header of this class, from which an equivalent class can be made with
+   *         {@link #ShrikeClass(ShrikeClassReaderHandle, IClassLoader, IClassHierarchy, Header)}
+   */
+  public Header getHeader() {
+    String name = getName().toUnicodeString().substring(1);
+    String s = superName == null ? null : UTF8Convert.fromUTF8(superName).substring(1);
+    String[] interfaces = new String[interfaceNames.length];
+    for (int i = 0; i < interfaces.length; i++) {
+      interfaces[i] = UTF8Convert.fromUTF8(interfaceNames[i]).substring(1);
+    }
+    return new Header(name, modifiers, s, interfaces);
+  }
+
+  @Override
+  protected void computeFieldsIfNeeded() {
+    if (staticFields == null) {
+      synchronized (this) {
+        if (staticFields == null) {
+          try {
+            computeFields();
+          } catch (InvalidClassFileException e) {
+            e.printStackTrace();
+            Assertions.UNREACHABLE();
+          }
+        }
+      }
+    }
+  }
+
   /**
    * Compute the fields declared by this class
    * 
@@ -94,10 +199,12 @@ public final class ShrikeClass extends JVMClass<IClassLoader> {
           addFieldToList(staticList, name, b, accessFlags, annotations);
         }
       }
-      instanceFields = new IField[instanceList.size()];
-      populateFieldArrayFromList(instanceList, instanceFields);
-      staticFields = new IField[staticList.size()];
-      populateFieldArrayFromList(staticList, staticFields);
+      IField[] instances = new IField[instanceList.size()];
+      populateFieldArrayFromList(instanceList, instances);
+      IField[] statics = new IField[staticList.size()];
+      populateFieldArrayFromList(staticList, statics);
+      instanceFields = instances;
+      staticFields = statics;
 
     } catch (InvalidClassFileException e) {
       e.printStackTrace();
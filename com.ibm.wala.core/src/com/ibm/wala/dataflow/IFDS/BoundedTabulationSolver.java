@@ -55,4 +55,17 @@ public class BoundedTabulationSolver<T, P, F> extends TabulationSolver<T, P, F>
     numSteps = 0;
   }
 
+  /**
+   * Bounded tabulation is always sequential, since which path edges fall within the bound depends on the order in which they are
+   * processed.
+   * 
+   * @throws UnsupportedOperationException if n > 1
+   */
+  @Override
+  public void setParallelism(int n) {
+    if (n > 1) {
+      throw new UnsupportedOperationException("parallel tabulation is not supported by " + getClass().getSimpleName());
+    }
+    super.setParallelism(n);
+  }
 }
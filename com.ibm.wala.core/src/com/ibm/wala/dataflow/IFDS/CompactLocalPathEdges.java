@@ -0,0 +1,318 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.dataflow.IFDS;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import com.ibm.wala.util.collections.SparseVector;
+import com.ibm.wala.util.intset.BitVectorIntSet;
+import com.ibm.wala.util.intset.IntIterator;
+import com.ibm.wala.util.intset.IntSet;
+import com.ibm.wala.util.intset.MutableIntSet;
+import com.ibm.wala.util.intset.MutableSparseIntSet;
+
+/**
+ * A representation of {@link LocalPathEdges} that trades some speed for space.
+ * 
+ * {@link LocalPathEdges} keeps, for each fact d2, a relation from nodes to facts d1, and for each fact a bit vector of nodes for
+ * the path edges from 0 and the identity path edges. The relations hold a slot for every node up to the largest one seen, and the
+ * bit vectors a bit, so their fixed overhead dominates when there are many facts, each reaching few nodes.
+ * 
+ * Here, the path edges from 0 and the identity path edges are kept, for each fact, in a single int array that holds the nodes
+ * either sorted or as a bitmap, whichever is smaller. For each node n, the other path edges (s_p,d1) -> (n,d2) are kept as one
+ * sorted array of longs d2 << 32 | d1, about 8 bytes per path edge. Since that array is sorted by d2,
+ * {@link #getInverse(int, int)} and {@link #contains(int, int, int)} are binary searches; {@link #getReachable(int, int)} scans
+ * all path edges to n.
+ * 
+ * Select this representation with {@link TabulationSolver#setCompactPathEdges(boolean)}.
+ */
+public class CompactLocalPathEdges extends LocalPathEdges {
+
+  /**
+   * edges[n] holds the path edges (s_p,d1) -> (n,d2) with d1 != 0 and d1 != d2, sorted; the first sizes[n] elements are in use
+   */
+  private long[][] edges = new long[0][];
+
+  private int[] sizes = new int[0];
+
+  /**
+   * marks a node set held as a bitmap
+   */
+  private static final int BITMAP = -1;
+
+  /**
+   * for fact d1, identityPaths[d1] gives the set of block numbers N s.t. for n \in N, <s_p, d1> -> <n, d1> is a path edge.
+   * 
+   * Each set is a node set as described at {@link #add(int[], int)}.
+   */
+  private final SparseVector<int[]> identityPaths = new SparseVector<int[]>(1, 1.1f);
+
+  /**
+   * for fact d2, zeroPaths[d2] gives the set of block numbers N s.t. for n \in N, <s_p, 0> -> <n, d2> is a path edge.
+   * 
+   * Each set is a node set as described at {@link #add(int[], int)}.
+   */
+  private final SparseVector<int[]> zeroPaths = new SparseVector<int[]>(1, 1.1f);
+
+  public CompactLocalPathEdges() {
+    super(false);
+  }
+
+  private static long pack(int d1, int d2) {
+    return ((long) d2 << 32) | (d1 & 0xffffffffL);
+  }
+
+  private static int d1(long edge) {
+    return (int) edge;
+  }
+
+  private static int d2(long edge) {
+    return (int) (edge >>> 32);
+  }
+
+  /**
+   * Add n to a node set. A node set is a single int array, to avoid the overhead of a {@link MutableIntSet} object per fact. If
+   * s[0] is {@link #BITMAP}, node n is in the set iff bit n of s[1..] is set; otherwise, the set holds the s[0] nodes s[1..s[0]],
+   * in ascending order. A set is changed from the sorted form to a bitmap when that is smaller.
+   * 
+   * @param s a node set, or null for the empty set
+   * @return s, or a copy if s had to grow, with n added; or null if n was already in s
+   */
+  private static int[] add(int[] s, int n) {
+    if (s == null) {
+      return new int[] { 1, n };
+    }
+    if (s[0] == BITMAP) {
+      int w = 1 + (n >> 5);
+      if (w >= s.length) {
+        s = Arrays.copyOf(s, Math.max(w + 1, s.length + (s.length >> 2)));
+      } else if ((s[w] & (1 << n)) != 0) {
+        return null;
+      }
+      s[w] |= 1 << n;
+      return s;
+    }
+    int size = s[0];
+    int pos = Arrays.binarySearch(s, 1, size + 1, n);
+    if (pos >= 0) {
+      return null;
+    }
+    pos = -pos - 1;
+    int words = 1 + (Math.max(n, s[size]) >> 5);
+    if (size + 1 > words) {
+      int[] bitmap = new int[words + 1];
+      bitmap[0] = BITMAP;
+      for (int k = 1; k <= size; k++) {
+        bitmap[1 + (s[k] >> 5)] |= 1 << s[k];
+      }
+      bitmap[1 + (n >> 5)] |= 1 << n;
+      return bitmap;
+    }
+    if (size + 1 == s.length) {
+      s = Arrays.copyOf(s, s.length + (s.length >> 1) + 1);
+    }
+    System.arraycopy(s, pos, s, pos + 1, size + 1 - pos);
+    s[pos] = n;
+    s[0] = size + 1;
+    return s;
+  }
+
+  private static boolean add(SparseVector<int[]> sets, int d, int n) {
+    int[] s = sets.get(d);
+    int[] t = add(s, n);
+    if (t == null) {
+      return false;
+    }
+    if (t != s) {
+      sets.set(d, t);
+    }
+    return true;
+  }
+
+  private static boolean contains(int[] s, int n) {
+    if (s == null) {
+      return false;
+    } else if (s[0] == BITMAP) {
+      int w = 1 + (n >> 5);
+      return w < s.length && (s[w] & (1 << n)) != 0;
+    } else {
+      return Arrays.binarySearch(s, 1, s[0] + 1, n) >= 0;
+    }
+  }
+
+  private static boolean contains(SparseVector<int[]> sets, int d, int n) {
+    return contains(sets.get(d), n);
+  }
+
+  /**
+   * add to result each fact d s.t. sets[d] contains n
+   */
+  private static void addFactsReaching(SparseVector<int[]> sets, int n, MutableIntSet result) {
+    Iterator<int[]> contents = sets.iterator();
+    for (IntIterator it = sets.iterateIndices(); it.hasNext();) {
+      int d = it.next();
+      if (contains(contents.next(), n)) {
+        result.add(d);
+      }
+    }
+  }
+
+  /**
+   * add the nodes in node set s to result
+   */
+  private static void addNodes(int[] s, MutableIntSet result) {
+    if (s[0] == BITMAP) {
+      for (int w = 1; w < s.length; w++) {
+        for (int bits = s[w]; bits != 0; bits &= bits - 1) {
+          result.add(((w - 1) << 5) + Integer.numberOfTrailingZeros(bits));
+        }
+      }
+    } else {
+      for (int k = 1; k <= s[0]; k++) {
+        result.add(s[k]);
+      }
+    }
+  }
+
+  @Override
+  public void addPathEdge(int i, int n, int j) {
+    addPathEdgeIfAbsent(i, n, j);
+  }
+
+  @Override
+  public boolean addPathEdgeIfAbsent(int i, int n, int j) {
+    if (n < 0) {
+      throw new IllegalArgumentException("invalid n: " + n);
+    }
+    if (i == 0) {
+      return add(zeroPaths, j, n);
+    } else if (i == j) {
+      return add(identityPaths, i, n);
+    }
+    if (n >= edges.length) {
+      int capacity = Math.max(n + 1, edges.length + (edges.length >> 1));
+      edges = Arrays.copyOf(edges, capacity);
+      sizes = Arrays.copyOf(sizes, capacity);
+    }
+    long edge = pack(i, j);
+    long[] a = edges[n];
+    int size = sizes[n];
+    if (a == null) {
+      a = new long[1];
+      edges[n] = a;
+    }
+    int pos = Arrays.binarySearch(a, 0, size, edge);
+    if (pos >= 0) {
+      return false;
+    }
+    pos = -pos - 1;
+    if (size == a.length) {
+      a = Arrays.copyOf(a, size + (size >> 1) + 1);
+      edges[n] = a;
+    }
+    System.arraycopy(a, pos, a, pos + 1, size - pos);
+    a[pos] = edge;
+    sizes[n] = size + 1;
+    return true;
+  }
+
+  @Override
+  public boolean contains(int i, int n, int j) {
+    if (n < 0) {
+      throw new IllegalArgumentException("invalid n: " + n);
+    }
+    if (i == 0) {
+      return contains(zeroPaths, j, n);
+    } else if (i == j) {
+      return contains(identityPaths, i, n);
+    }
+    return n < edges.length && edges[n] != null && Arrays.binarySearch(edges[n], 0, sizes[n], pack(i, j)) >= 0;
+  }
+
+  /**
+   * @return the sparse int set of d1 s.t. <s_p, d1> -> <n, d2> are recorded as path edges. null if none found
+   */
+  @Override
+  public IntSet getInverse(int n, int d2) {
+    MutableSparseIntSet result = MutableSparseIntSet.makeEmpty();
+    if (contains(zeroPaths, d2, n)) {
+      result.add(0);
+    }
+    if (contains(identityPaths, d2, n)) {
+      result.add(d2);
+    }
+    if (n < edges.length && edges[n] != null) {
+      long[] a = edges[n];
+      int size = sizes[n];
+      int pos = Arrays.binarySearch(a, 0, size, pack(0, d2));
+      for (int k = pos < 0 ? -pos - 1 : pos; k < size && d2(a[k]) == d2; k++) {
+        result.add(d1(a[k]));
+      }
+    }
+    return result.isEmpty() ? null : result;
+  }
+
+  /**
+   * @return set of d2 s.t. d1->d2 is a path edge for node n
+   */
+  @Override
+  public IntSet getReachable(int n, int d1) {
+    MutableSparseIntSet result = MutableSparseIntSet.makeEmpty();
+    if (d1 == 0) {
+      addFactsReaching(zeroPaths, n, result);
+    } else if (contains(identityPaths, d1, n)) {
+      result.add(d1);
+    }
+    if (d1 != 0 && n < edges.length && edges[n] != null) {
+      long[] a = edges[n];
+      for (int k = 0; k < sizes[n]; k++) {
+        if (d1(a[k]) == d1) {
+          result.add(d2(a[k]));
+        }
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public IntSet getReachable(int n) {
+    MutableSparseIntSet result = MutableSparseIntSet.makeEmpty();
+    addFactsReaching(identityPaths, n, result);
+    addFactsReaching(zeroPaths, n, result);
+    if (n < edges.length && edges[n] != null) {
+      long[] a = edges[n];
+      for (int k = 0; k < sizes[n]; k++) {
+        if (k == 0 || d2(a[k]) != d2(a[k - 1])) {
+          result.add(d2(a[k]));
+        }
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public IntSet getReachedNodeNumbers() {
+    BitVectorIntSet result = new BitVectorIntSet();
+    for (int n = 0; n < edges.length; n++) {
+      if (sizes[n] > 0) {
+        result.add(n);
+      }
+    }
+    for (int[] s : identityPaths) {
+      addNodes(s, result);
+    }
+    for (int[] s : zeroPaths) {
+      addNodes(s, result);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.dataflow.IFDS;
+
+import com.ibm.wala.util.intset.IntSet;
+import com.ibm.wala.util.intset.MutableSparseIntSet;
+
+/**
+ * {@link LocalPathEdges} that may be shared by the threads of a parallel {@link TabulationSolver}. Every operation holds the lock
+ * of this object while it calls the underlying path edges, and sets are returned as private copies, since the underlying
+ * relations keep changing.
+ */
+final class ConcurrentLocalPathEdges extends LocalPathEdges {
+
+  private final LocalPathEdges delegate;
+
+  ConcurrentLocalPathEdges(LocalPathEdges delegate) {
+    super(false);
+    this.delegate = delegate;
+  }
+
+  /**
+   * @return a copy of s that is not changed by later updates, or null if s is null
+   */
+  static IntSet copy(IntSet s) {
+    return s == null ? null : MutableSparseIntSet.make(s);
+  }
+
+  @Override
+  public synchronized void addPathEdge(int i, int n, int j) {
+    delegate.addPathEdge(i, n, j);
+  }
+
+  @Override
+  public synchronized boolean addPathEdgeIfAbsent(int i, int n, int j) {
+    return delegate.addPathEdgeIfAbsent(i, n, j);
+  }
+
+  @Override
+  public synchronized IntSet getInverse(int n, int d2) {
+    return copy(delegate.getInverse(n, d2));
+  }
+
+  @Override
+  public synchronized boolean contains(int i, int n, int j) {
+    return delegate.contains(i, n, j);
+  }
+
+  @Override
+  public synchronized IntSet getReachable(int n, int d1) {
+    return copy(delegate.getReachable(n, d1));
+  }
+
+  @Override
+  public synchronized IntSet getReachable(int n) {
+    return delegate.getReachable(n);
+  }
+
+  @Override
+  public synchronized IntSet getReachedNodeNumbers() {
+    return delegate.getReachedNodeNumbers();
+  }
+}
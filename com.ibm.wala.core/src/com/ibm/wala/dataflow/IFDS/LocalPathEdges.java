@@ -132,6 +132,20 @@ public class LocalPathEdges {
     }
   }
 
+  /**
+   * Record a path edge (s_p,d_i) -> (n,d_j), unless it is already recorded.
+   * 
+   * @param n local block number of the basic block n
+   * @return true iff the path edge is new
+   */
+  public boolean addPathEdgeIfAbsent(int i, int n, int j) {
+    if (contains(i, n, j)) {
+      return false;
+    }
+    addPathEdge(i, n, j);
+    return true;
+  }
+
   /**
    * Record that in this procedure we've discovered a same-level realizable path from (s_p,i) to (n,i)
    * 
@@ -88,4 +88,18 @@ public class PartiallyBalancedTabulationSolver<T, P, F> extends TabulationSolver
   private boolean wasUsedAsUnbalancedSeed(T s_p, int i) {
    return unbalancedSeeds.contains(Pair.make(s_p, i));
   }
+
+  /**
+   * Partially balanced problems are always tabulated sequentially, since the unbalanced seeds they add depend on the order in
+   * which path edges are processed.
+   * 
+   * @throws UnsupportedOperationException if n > 1
+   */
+  @Override
+  public void setParallelism(int n) {
+    if (n > 1) {
+      throw new UnsupportedOperationException("parallel tabulation is not supported by " + getClass().getSimpleName());
+    }
+    super.setParallelism(n);
+  }
 }
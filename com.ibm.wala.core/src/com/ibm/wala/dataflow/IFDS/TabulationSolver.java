@@ -10,6 +10,7 @@
  *******************************************************************************/
 package com.ibm.wala.dataflow.IFDS;
 
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -20,6 +21,13 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.ibm.wala.cfg.IBasicBlock;
 import com.ibm.wala.util.CancelException;
@@ -50,6 +58,7 @@ import com.ibm.wala.util.ref.ReferenceCleanser;
  * <li>to support exceptional control flow ... there may be several return sites for each call site.
  * <li>it supports an optional merge operator, useful for non-IFDS problems and widening.
  * <li>it stores summary edges at each callee instead of at each call site.
+ * <li>it can process path edges on several threads; see {@link #setParallelism(int)}.
  * </ul>
  * <p>
  * 
@@ -94,6 +103,17 @@ public class TabulationSolver<T, P, F> {
    */
   private static int wipeCount = WIPE_SOFT_CACHE_INTERVAL;
 
+  /**
+   * In parallel mode, a task holding at least this many path edges gives half of them to a new task when the pool runs short of
+   * work
+   */
+  static final int PARALLEL_SPLIT_SIZE = 32;
+
+  /**
+   * In parallel mode, how many path edges a task processes between checks of the progress monitor
+   */
+  private static final int PARALLEL_CANCEL_CHECK_INTERVAL = 1024;
+
   /**
    * The supergraph which induces this dataflow problem
    */
@@ -115,7 +135,7 @@ public class TabulationSolver<T, P, F> {
    * Logically, this represents a set of edges (s_p,d_i) -> (n, d_j). The data structure is chosen to attempt to save space over
    * representing each edge explicitly.
    */
-  final private Map<T, LocalPathEdges> pathEdges = HashMapFactory.make();
+  private Map<T, LocalPathEdges> pathEdges = HashMapFactory.make();
 
   /**
    * A map from Object (entry node in supergraph) -> CallFlowEdges.
@@ -123,13 +143,13 @@ public class TabulationSolver<T, P, F> {
    * Logically, this represents a set of edges (c,d_i) -> (s_p, d_j). The data structure is chosen to attempt to save space over
    * representing each edge explicitly.
    */
-  final private Map<T, CallFlowEdges> callFlowEdges = HashMapFactory.make();
+  private Map<T, CallFlowEdges> callFlowEdges = HashMapFactory.make();
 
   /**
    * A map from Object (procedure) -> LocalSummaryEdges.
    * 
    */
-  final protected Map<P, LocalSummaryEdges> summaryEdges = HashMapFactory.make();
+  protected Map<P, LocalSummaryEdges> summaryEdges = HashMapFactory.make();
 
   /**
    * the set of all {@link PathEdge}s that were used as seeds during the tabulation, grouped by procedure.
@@ -165,6 +185,31 @@ public class TabulationSolver<T, P, F> {
    */
   private PathEdge<T> curSummaryEdge;
 
+  /**
+   * How many threads may process path edges concurrently? 1 means sequential tabulation.
+   */
+  private int parallelism = 1;
+
+  /**
+   * Are the tables of path, call flow and summary edges safe for use by several threads? Once set, this stays true.
+   */
+  private boolean concurrentTables = false;
+
+  /**
+   * Are path edges stored as {@link CompactLocalPathEdges}?
+   */
+  private boolean compactPathEdges = false;
+
+  /**
+   * true while path edges are being processed by a thread pool
+   */
+  private boolean inParallel = false;
+
+  /**
+   * In parallel mode, the task processing path edges on the current thread
+   */
+  private final ThreadLocal<TabulationTask> currentTask = new ThreadLocal<TabulationTask>();
+
   /**
    * @param p a description of the dataflow problem to solve
    * @throws IllegalArgumentException if p is null
@@ -203,7 +248,11 @@ public class TabulationSolver<T, P, F> {
 
     try {
       initialize();
-      forwardTabulateSLRPs();
+      if (parallelism > 1 && problem.getMergeFunction() == null) {
+        forwardTabulateSLRPsInParallel();
+      } else {
+        forwardTabulateSLRPs();
+      }
       Result r = new Result();
       return r;
     } catch (CancelException e) {
@@ -290,6 +339,197 @@ public class TabulationSolver<T, P, F> {
     curPathEdge = null;
   }
 
+  /**
+   * Process the path edges on the worklist, and all path edges they give rise to, with a pool of {@link #getParallelism()} threads.
+   * Each thread processes the path edges it discovers itself, most recent first, which mostly keeps it within one procedure, and
+   * idle threads steal work from busy ones.
+   * 
+   * @throws CancelException
+   */
+  private void forwardTabulateSLRPsInParallel() throws CancelException {
+    if (worklist == null || worklist.size() == 0) {
+      return;
+    }
+    ArrayDeque<PathEdge<T>> edges = new ArrayDeque<PathEdge<T>>();
+    while (worklist.size() > 0) {
+      edges.add(worklist.take());
+    }
+    // supergraphs may be built on demand; an ICFGSupergraph, for instance, completes itself when asked for its size. Do this here,
+    // so that the threads only read the supergraph.
+    supergraph.getNumberOfNodes();
+
+    TaskGroup group = new TaskGroup();
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    inParallel = true;
+    try {
+      group.pending.set(1);
+      pool.execute(new TabulationTask(group, edges));
+      group.done.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CancelException(e);
+    } finally {
+      inParallel = false;
+      pool.shutdownNow();
+    }
+    Throwable failure = group.failure.get();
+    if (failure instanceof CancelException) {
+      throw (CancelException) failure;
+    } else if (failure instanceof RuntimeException) {
+      throw (RuntimeException) failure;
+    } else if (failure instanceof Error) {
+      throw (Error) failure;
+    } else if (failure != null) {
+      throw new RuntimeException(failure);
+    }
+  }
+
+  /**
+   * The tasks of one call to {@link TabulationSolver#forwardTabulateSLRPsInParallel()}
+   */
+  private static final class TaskGroup {
+    /**
+     * the number of tasks not yet finished
+     */
+    final AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * released when the last task finishes
+     */
+    final CountDownLatch done = new CountDownLatch(1);
+
+    /**
+     * the first exception thrown by a task; once set, the remaining tasks stop
+     */
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+  }
+
+  /**
+   * In parallel mode, processes a stack of path edges, including those discovered while doing so.
+   */
+  @SuppressWarnings("serial")
+  private final class TabulationTask extends RecursiveAction {
+
+    private final TaskGroup group;
+
+    private final ArrayDeque<PathEdge<T>> edges;
+
+    TabulationTask(TaskGroup group, ArrayDeque<PathEdge<T>> edges) {
+      this.group = group;
+      this.edges = edges;
+    }
+
+    void push(PathEdge<T> edge) {
+      edges.addLast(edge);
+    }
+
+    @Override
+    protected void compute() {
+      currentTask.set(this);
+      try {
+        int count = 0;
+        while (!edges.isEmpty() && group.failure.get() == null) {
+          if (++count % PARALLEL_CANCEL_CHECK_INTERVAL == 0) {
+            MonitorUtil.throwExceptionIfCanceled(progressMonitor);
+          }
+          processPathEdge(edges.removeLast());
+          if (edges.size() >= PARALLEL_SPLIT_SIZE && getSurplusQueuedTaskCount() == 0) {
+            split();
+          }
+        }
+      } catch (Throwable e) {
+        group.failure.compareAndSet(null, e);
+      } finally {
+        currentTask.remove();
+        if (group.pending.decrementAndGet() == 0) {
+          group.done.countDown();
+        }
+      }
+    }
+
+    /**
+     * give the oldest half of our path edges to a new task, which other threads may steal
+     */
+    private void split() {
+      ArrayDeque<PathEdge<T>> half = new ArrayDeque<PathEdge<T>>();
+      for (int i = edges.size() / 2; i > 0; i--) {
+        half.addLast(edges.removeFirst());
+      }
+      group.pending.incrementAndGet();
+      new TabulationTask(group, half).fork();
+    }
+  }
+
+  /**
+   * In parallel mode, handle a path edge taken from a task. There is no merge function in parallel mode, so this is the part of
+   * the loop in {@link #forwardTabulateSLRPs()} that dispatches on the kind of node reached.
+   */
+  private void processPathEdge(PathEdge<T> edge) {
+    if (DEBUG_LEVEL > 0) {
+      System.err.println("TABULATE " + edge);
+    }
+    if (supergraph.isCall(edge.target)) {
+      processCall(edge);
+    } else if (supergraph.isExit(edge.target)) {
+      processExit(edge);
+    } else {
+      processNormal(edge);
+    }
+  }
+
+  /**
+   * @return the number of threads that may process path edges concurrently
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Process path edges with n threads. The result is the same as that of sequential tabulation, but the supergraph, the flow
+   * functions and the domain must then be safe for concurrent use, and {@link #getCurPathEdge()} and {@link #getCurSummaryEdge()}
+   * are not maintained. Problems with a merge function are always tabulated sequentially, since merging depends on the order in
+   * which path edges are processed.
+   * 
+   * @param n the number of threads that may process path edges concurrently; 1 means sequential tabulation
+   * @throws IllegalArgumentException if n < 1
+   * @throws IllegalStateException if tabulation has started and n > 1
+   */
+  public void setParallelism(int n) {
+    if (n < 1) {
+      throw new IllegalArgumentException("illegal parallelism " + n);
+    }
+    if (n > 1 && !concurrentTables) {
+      if (!pathEdges.isEmpty()) {
+        throw new IllegalStateException("parallelism must be set before tabulation starts");
+      }
+      pathEdges = new ConcurrentHashMap<T, LocalPathEdges>();
+      callFlowEdges = new ConcurrentHashMap<T, CallFlowEdges>();
+      summaryEdges = new ConcurrentHashMap<P, LocalSummaryEdges>();
+      concurrentTables = true;
+    }
+    parallelism = n;
+  }
+
+  /**
+   * @return true iff path edges are stored as {@link CompactLocalPathEdges}
+   */
+  public boolean getCompactPathEdges() {
+    return compactPathEdges;
+  }
+
+  /**
+   * Store path edges as {@link CompactLocalPathEdges}, which need much less space than the default representation when many facts
+   * each reach few nodes, but are slower, in particular for problems with a merge function.
+   * 
+   * @throws IllegalStateException if tabulation has started
+   */
+  public void setCompactPathEdges(boolean b) {
+    if (!pathEdges.isEmpty()) {
+      throw new IllegalStateException("the path edge representation must be chosen before tabulation starts");
+    }
+    compactPathEdges = b;
+  }
+
   /**
    * For some reason (either a bug in our code that defeats soft references, or a bad policy in the GC), leaving soft reference
    * caches to clear themselves out doesn't work. Help it out.
@@ -368,8 +608,10 @@ public class TabulationSolver<T, P, F> {
     if (!summaries.contains(s_p_n, x, edge.d1, edge.d2)) {
       summaries.insertSummaryEdge(s_p_n, x, edge.d1, edge.d2);
     }
-    assert curSummaryEdge == null : "curSummaryEdge should be null here";
-    curSummaryEdge = edge;
+    if (!inParallel) {
+      assert curSummaryEdge == null : "curSummaryEdge should be null here";
+      curSummaryEdge = edge;
+    }
 
     final CallFlowEdges callFlow = findOrCreateCallFlowEdges(edge.entry);
 
@@ -385,7 +627,9 @@ public class TabulationSolver<T, P, F> {
         propagateToReturnSites(edge, supergraph.getNode(globalC), D4);
       }
     }
-    curSummaryEdge = null;
+    if (!inParallel) {
+      curSummaryEdge = null;
+    }
   }
 
   /**
@@ -504,7 +748,9 @@ public class TabulationSolver<T, P, F> {
                 @Override
                 public void act(int d3) {
                   // set curPathEdge to be consistent with its setting in processCall() when applying a summary edge
-                  curPathEdge = PathEdge.createPathEdge(s_p, d3, c, d4);
+                  if (!inParallel) {
+                    curPathEdge = PathEdge.createPathEdge(s_p, d3, c, d4);
+                  }
                   propagate(s_p, d3, retSite, d5);
                 }
               });
@@ -641,7 +887,7 @@ public class TabulationSolver<T, P, F> {
       System.err.println(" reached: " + reached);
     }
     if (reached != null) {
-      final LocalSummaryEdges summaries = summaryEdges.get(supergraph.getProcOf(calleeEntry));
+      final P callee = supergraph.getProcOf(calleeEntry);
       final CallFlowEdges callFlow = findOrCreateCallFlowEdges(calleeEntry);
       final int s_p_num = supergraph.getLocalBlockNumber(calleeEntry);
 
@@ -656,10 +902,12 @@ public class TabulationSolver<T, P, F> {
           callFlow.addCallEdge(callNodeNum, edge.d2, d1);
           // handle summary edges now as well. this is different from the PoPL
           // 95 paper.
+          // in parallel mode, look up the summaries only after recording the call edge: then a concurrent processExit()
+          // either finds the call edge, or its summary edge is found here.
+          LocalSummaryEdges summaries = summaryEdges.get(callee);
           if (summaries != null) {
             // for each exit from the callee
-            P p = supergraph.getProcOf(calleeEntry);
-            T[] exits = supergraph.getExitsForProcedure(p);
+            T[] exits = supergraph.getExitsForProcedure(callee);
             for (int e = 0; e < exits.length; e++) {
               final T exit = exits[e];
               if (DEBUG_LEVEL > 0) {
@@ -678,8 +926,10 @@ public class TabulationSolver<T, P, F> {
                     reachedBySummary.foreach(new IntSetAction() {
                       @Override
                       public void act(int d2) {
-                        assert curSummaryEdge == null : "curSummaryEdge should be null here";
-                        curSummaryEdge = PathEdge.createPathEdge(calleeEntry, d1, exit, d2);
+                        if (!inParallel) {
+                          assert curSummaryEdge == null : "curSummaryEdge should be null here";
+                          curSummaryEdge = PathEdge.createPathEdge(calleeEntry, d1, exit, d2);
+                        }
                         if (retf instanceof IBinaryReturnFlowFunction) {
                           final IntSet D5 = computeBinaryFlow(edge.d2, d2, (IBinaryReturnFlowFunction) retf);
                           if (D5 != null) {
@@ -701,7 +951,9 @@ public class TabulationSolver<T, P, F> {
                             });
                           }
                         }
-                        curSummaryEdge = null;
+                        if (!inParallel) {
+                          curSummaryEdge = null;
+                        }
                       }
                     });
                   }
@@ -795,11 +1047,10 @@ public class TabulationSolver<T, P, F> {
 
     assert j >= 0;
 
-    if (!pLocal.contains(i, number, j)) {
+    if (pLocal.addPathEdgeIfAbsent(i, number, j)) {
       if (DEBUG_LEVEL > 0) {
         System.err.println("propagate " + s_p + "  " + i + " " + number + " " + j);
       }
-      pLocal.addPathEdge(i, number, j);
       addToWorkList(s_p, i, n, j);
       return true;
     }
@@ -810,6 +1061,13 @@ public class TabulationSolver<T, P, F> {
     return pathEdges.get(s_p);
   }
 
+  /**
+   * @return the nodes s_p for which some path edge <s_p, d1> -> <n, d2> has been found
+   */
+  protected Set<T> getPathEdgeEntries() {
+    return Collections.unmodifiableSet(pathEdges.keySet());
+  }
+
   /**
    * Merging: suppose we're doing propagate <s_p,i> -> <n,j> but we already have path edges <s_p,i> -> <n, x>, <s_p,i> -> <n,y>, and
    * <s_p,i> -><n, z>.
@@ -841,6 +1099,11 @@ public class TabulationSolver<T, P, F> {
   }
 
   protected void addToWorkList(T s_p, int i, T n, int j) {
+    TabulationTask task = inParallel ? currentTask.get() : null;
+    if (task != null) {
+      task.push(PathEdge.createPathEdge(s_p, i, n, j));
+      return;
+    }
     if (worklist == null) {
       worklist = makeWorklist();
     }
@@ -853,21 +1116,34 @@ public class TabulationSolver<T, P, F> {
   protected LocalPathEdges findOrCreateLocalPathEdges(T s_p) {
     LocalPathEdges result = pathEdges.get(s_p);
     if (result == null) {
-      result = makeLocalPathEdges();
-      pathEdges.put(s_p, result);
+      result = putIfAbsent(pathEdges, s_p, makeLocalPathEdges());
     }
     return result;
   }
 
   private LocalPathEdges makeLocalPathEdges() {
-    return problem.getMergeFunction() == null ? new LocalPathEdges(false) : new LocalPathEdges(true);
+    LocalPathEdges result = compactPathEdges ? new CompactLocalPathEdges() : new LocalPathEdges(problem.getMergeFunction() != null);
+    return concurrentTables ? new ConcurrentLocalPathEdges(result) : result;
+  }
+
+  /**
+   * Map k to v, unless k is mapped already. In parallel mode, the maps are {@link ConcurrentMap}s, and this is atomic.
+   * 
+   * @return the value k is mapped to
+   */
+  private static <K, V> V putIfAbsent(Map<K, V> map, K k, V v) {
+    if (map instanceof ConcurrentMap) {
+      V old = ((ConcurrentMap<K, V>) map).putIfAbsent(k, v);
+      return old == null ? v : old;
+    }
+    map.put(k, v);
+    return v;
   }
 
   protected LocalSummaryEdges findOrCreateLocalSummaryEdges(P proc) {
     LocalSummaryEdges result = summaryEdges.get(proc);
     if (result == null) {
-      result = new LocalSummaryEdges();
-      summaryEdges.put(proc, result);
+      result = putIfAbsent(summaryEdges, proc, concurrentTables ? new ConcurrentLocalSummaryEdges() : new LocalSummaryEdges());
     }
     return result;
   }
@@ -875,8 +1151,7 @@ public class TabulationSolver<T, P, F> {
   protected CallFlowEdges findOrCreateCallFlowEdges(T s_p) {
     CallFlowEdges result = callFlowEdges.get(s_p);
     if (result == null) {
-      result = new CallFlowEdges();
-      callFlowEdges.put(s_p, result);
+      result = putIfAbsent(callFlowEdges, s_p, concurrentTables ? new ConcurrentCallFlowEdges() : new CallFlowEdges());
     }
     return result;
   }
@@ -37,14 +37,20 @@
  */
 package com.ibm.wala.demandpa.alg;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import com.ibm.wala.analysis.reflection.InstanceKeyWithNode;
 import com.ibm.wala.classLoader.CallSiteReference;
@@ -163,6 +169,18 @@ public class DemandRefinementPointsTo extends AbstractDemandPointsTo {
 
   private RefinementPolicyFactory refinementPolicyFactory;
 
+  /**
+   * points-to sets computed by earlier queries, for each refinement pass, or <code>null</code> if queries do not share results
+   * 
+   * @see #setShareQueryResults(boolean)
+   */
+  private ConcurrentMap<Pair<Integer, PointerKeyAndState>, Collection<InstanceKeyAndState>> sharedP2Sets;
+
+  /**
+   * the refinement pass of the current query
+   */
+  private int curPass;
+
   public RefinementPolicy getRefinementPolicy() {
     return refinementPolicy;
   }
@@ -176,6 +194,18 @@ public class DemandRefinementPointsTo extends AbstractDemandPointsTo {
     sanityCheckCG();
   }
 
+  /**
+   * make an analysis sharing the flow graph, factories and shared points-to sets of <code>other</code>, but with its own
+   * per-query state, so that it can answer queries concurrently with <code>other</code>
+   */
+  private DemandRefinementPointsTo(DemandRefinementPointsTo other) {
+    super(other.cg, other.heapModel, other.mam, other.cha, other.options);
+    this.stateMachineFactory = other.stateMachineFactory;
+    this.refinementPolicyFactory = other.refinementPolicyFactory;
+    this.sharedP2Sets = other.sharedP2Sets;
+    g = other.g;
+  }
+
   private void sanityCheckCG() {
     if (PARANOID) {
       for (CGNode callee : cg) {
@@ -278,6 +308,138 @@ public class DemandRefinementPointsTo extends AbstractDemandPointsTo {
     return p;
   }
 
+  /**
+   * compute points-to sets for a batch of pointer keys, as if by {@link #getPointsTo(PointerKey, Predicate)} for each key.
+   * 
+   * With a parallelism greater than 1, the subgraphs of all call graph nodes are first added to the flow graph, so that queries no
+   * longer modify it, and the queries are then answered on a pool of threads, each with its own refinement policy and state
+   * machine. The IRs of the call graph nodes and the heap model must then be safe to query concurrently, as they are for the
+   * builders of {@link com.ibm.wala.ipa.callgraph.impl.Util}. Combine this with {@link #setShareQueryResults(boolean)} to let the
+   * queries reuse each other's points-to sets.
+   * 
+   * @param pks the pointer keys; all must be {@link LocalPointerKey}s
+   * @param ikeyPred the desired predicate that each instance key in a points-to set should ideally satisfy
+   * @param parallelism the number of threads that may answer queries concurrently; 1 means the queries are answered in turn
+   * @return a map from each pointer key to the result of its query
+   * @throws IllegalArgumentException if some key in <code>pks</code> is not a {@link LocalPointerKey}
+   */
+  public Map<PointerKey, Pair<PointsToResult, Collection<InstanceKey>>> getPointsTo(Collection<? extends PointerKey> pks,
+      Predicate<InstanceKey> ikeyPred, int parallelism) throws IllegalArgumentException {
+    if (pks == null) {
+      throw new IllegalArgumentException("pks cannot be null");
+    }
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("illegal parallelism " + parallelism);
+    }
+    List<PointerKey> todo = new ArrayList<PointerKey>(new LinkedHashSet<PointerKey>(pks));
+    for (PointerKey pk : todo) {
+      if (!(pk instanceof com.ibm.wala.ipa.callgraph.propagation.LocalPointerKey)) {
+        throw new IllegalArgumentException("only locals for now");
+      }
+    }
+    Map<PointerKey, Pair<PointsToResult, Collection<InstanceKey>>> result = HashMapFactory.make();
+    if (parallelism > 1 && todo.size() > 1) {
+      addSubgraphsForAllNodes();
+      Map<PointerKey, Pair<PointsToResult, Collection<InstanceKey>>> results =
+          new ConcurrentHashMap<PointerKey, Pair<PointsToResult, Collection<InstanceKey>>>();
+      ForkJoinPool pool = new ForkJoinPool(parallelism);
+      try {
+        pool.invoke(new PointsToTask(todo, 0, todo.size(), ikeyPred, results));
+      } finally {
+        pool.shutdown();
+      }
+      result.putAll(results);
+    } else {
+      for (PointerKey pk : todo) {
+        result.put(pk, getPointsTo(pk, ikeyPred));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * add the subgraph of every call graph node with an IR to the flow graph
+   */
+  private void addSubgraphsForAllNodes() {
+    for (CGNode node : cg) {
+      if (!hasNullIR(node)) {
+        g.addSubgraphForNode(node);
+      }
+    }
+  }
+
+  /**
+   * Answers the queries for a range of pointer keys, splitting it in halves until the ranges are single keys.
+   */
+  @SuppressWarnings("serial")
+  private class PointsToTask extends RecursiveAction {
+    private final List<PointerKey> pks;
+
+    private final int from;
+
+    private final int to;
+
+    private final Predicate<InstanceKey> ikeyPred;
+
+    private final Map<PointerKey, Pair<PointsToResult, Collection<InstanceKey>>> results;
+
+    PointsToTask(List<PointerKey> pks, int from, int to, Predicate<InstanceKey> ikeyPred,
+        Map<PointerKey, Pair<PointsToResult, Collection<InstanceKey>>> results) {
+      this.pks = pks;
+      this.from = from;
+      this.to = to;
+      this.ikeyPred = ikeyPred;
+      this.results = results;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from == 1) {
+        PointerKey pk = pks.get(from);
+        results.put(pk, new DemandRefinementPointsTo(DemandRefinementPointsTo.this).getPointsTo(pk, ikeyPred));
+      } else {
+        int mid = (from + to) >>> 1;
+        invokeAll(new PointsToTask(pks, from, mid, ikeyPred, results), new PointsToTask(pks, mid, to, ikeyPred, results));
+      }
+    }
+  }
+
+  /**
+   * @return true iff queries share the points-to sets they compute
+   */
+  public boolean isShareQueryResults() {
+    return sharedP2Sets != null;
+  }
+
+  /**
+   * Let queries share the points-to sets they compute. After a query completes a refinement pass within its budget, the points-to
+   * set of every pointer key the pass computed is recorded for that pass. When a later pass with the same number reaches one of
+   * these pointer keys, it takes the recorded set instead of traversing the flow graph again. This also holds for queries answered
+   * concurrently by {@link #getPointsTo(Collection, Predicate, int)}.
+   * 
+   * A recorded set is always sound. It is the set the later pass would compute itself when the decisions of the refinement policy
+   * and state machine in a pass do not depend on the query, as for {@link SinglePassRefinementPolicy} and
+   * {@link com.ibm.wala.demandpa.alg.statemachine.DummyStateMachine}. A query may succeed within a budget it would otherwise
+   * exceed, since taking a recorded set costs no traversal.
+   */
+  public void setShareQueryResults(boolean shareQueryResults) {
+    if (!shareQueryResults) {
+      sharedP2Sets = null;
+    } else if (sharedP2Sets == null) {
+      sharedP2Sets = new ConcurrentHashMap<Pair<Integer, PointerKeyAndState>, Collection<InstanceKeyAndState>>();
+    }
+  }
+
+  /**
+   * forget the points-to sets shared by earlier queries; done automatically when the refinement policy or state machine factory
+   * changes
+   */
+  public void clearSharedQueryResults() {
+    if (sharedP2Sets != null) {
+      sharedP2Sets.clear();
+    }
+  }
+
   /**
    * Unwrap a Collection of WithState<T> objects, returning a Collection containing the wrapped objects
    */
@@ -320,6 +482,7 @@ public class DemandRefinementPointsTo extends AbstractDemandPointsTo {
     int numPasses = refinementPolicy.getNumPasses();
     int passNum = 0;
     for (; passNum < numPasses; passNum++) {
+      curPass = passNum;
       setNumNodesTraversed(0);
       setTraversalBudget(refinementPolicy.getBudgetForPass(passNum));
       Collection<InstanceKeyAndState> curP2Set = null;
@@ -331,6 +494,7 @@ public class DemandRefinementPointsTo extends AbstractDemandPointsTo {
             computer = new PointsToComputer(queried);
             computer.compute();
             curP2Set = computer.getComputedP2Set(queried);
+            computer.shareComputedP2Sets();
             // System.err.println("completed pass");
             if (DEBUG) {
               System.err.println("traversed " + getNumNodesTraversed() + " nodes");
@@ -426,6 +590,7 @@ public class DemandRefinementPointsTo extends AbstractDemandPointsTo {
       lastQueryMemoryUse = -1;
     }
     for (; passNum < numPasses; passNum++) {
+      curPass = passNum;
       setNumNodesTraversed(0);
       setTraversalBudget(refinementPolicy.getBudgetForPass(passNum));
       boolean completedPassInBudget = false;
@@ -569,6 +734,7 @@ public class DemandRefinementPointsTo extends AbstractDemandPointsTo {
     int numPasses = refinementPolicy.getNumPasses();
     int passNum = 0;
     for (; passNum < numPasses; passNum++) {
+      curPass = passNum;
       setNumNodesTraversed(0);
       setTraversalBudget(refinementPolicy.getBudgetForPass(passNum));
       Collection<PointerKeyAndState> curFlowsToSet = null;
@@ -876,6 +1042,22 @@ public class DemandRefinementPointsTo extends AbstractDemandPointsTo {
       // }));
     }
 
+    /**
+     * record the points-to sets of all queried pointer keys for the current pass, if queries share results; only call this after
+     * {@link #compute()} has completed
+     */
+    void shareComputedP2Sets() {
+      if (sharedP2Sets == null) {
+        return;
+      }
+      for (PointerKey pk : pointsToQueried.keySet()) {
+        for (State state : pointsToQueried.get(pk)) {
+          PointerKeyAndState pkAndState = new PointerKeyAndState(pk, state);
+          sharedP2Sets.putIfAbsent(Pair.make(curPass, pkAndState), getComputedP2Set(pkAndState));
+        }
+      }
+    }
+
     protected boolean addAllToP2Set(Map<PointerKeyAndState, MutableIntSet> p2setMap, PointerKeyAndState pkAndState, IntSet vals,
         IFlowLabel label) {
       final PointerKey pk = pkAndState.getPointerKey();
@@ -1083,6 +1265,16 @@ public class DemandRefinementPointsTo extends AbstractDemandPointsTo {
         if (DEBUG) {
           // System.err.println("adding to init_ " + pkAndState);
         }
+        Collection<InstanceKeyAndState> shared = sharedP2Sets != null ? sharedP2Sets.get(Pair.make(curPass, pkAndState)) : null;
+        if (shared != null) {
+          // an earlier query computed the whole points-to set, so just propagate it
+          MutableIntSet p2set = findOrCreate(pkToP2Set, pkAndState);
+          for (InstanceKeyAndState ikAndState : shared) {
+            p2set.add(ikAndStates.add(ikAndState));
+          }
+          addToPToWorklist(pkAndState);
+          return true;
+        }
         initWorklist.add(pkAndState);
         // if (pkAndStates.getMappedIndex(pkAndState) == -1) {
         // pkAndStates.add(pkAndState);
@@ -2026,6 +2218,7 @@ public class DemandRefinementPointsTo extends AbstractDemandPointsTo {
 
   public void setStateMachineFactory(StateMachineFactory<IFlowLabel> stateMachineFactory) {
     this.stateMachineFactory = stateMachineFactory;
+    clearSharedQueryResults();
   }
 
   public RefinementPolicyFactory getRefinementPolicyFactory() {
@@ -2034,6 +2227,7 @@ public class DemandRefinementPointsTo extends AbstractDemandPointsTo {
 
   public void setRefinementPolicyFactory(RefinementPolicyFactory refinementPolicyFactory) {
     this.refinementPolicyFactory = refinementPolicyFactory;
+    clearSharedQueryResults();
   }
 
   /**
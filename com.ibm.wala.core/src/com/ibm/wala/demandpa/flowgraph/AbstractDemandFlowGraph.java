@@ -42,6 +42,7 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.ibm.wala.cfg.ControlFlowGraph;
 import com.ibm.wala.cfg.IBasicBlock;
@@ -64,7 +65,6 @@ import com.ibm.wala.ssa.SSAInstruction;
 import com.ibm.wala.ssa.SSAInvokeInstruction;
 import com.ibm.wala.ssa.SSAPhiInstruction;
 import com.ibm.wala.util.collections.EmptyIterator;
-import com.ibm.wala.util.collections.HashMapFactory;
 import com.ibm.wala.util.collections.HashSetFactory;
 import com.ibm.wala.util.intset.BitVectorIntSet;
 import com.ibm.wala.util.ref.ReferenceCleanser;
@@ -352,7 +352,10 @@ public abstract class AbstractDemandFlowGraph extends AbstractFlowGraph {
     }
   }
 
-  final Map<CGNode, Set<CallerSiteContext>> callerCache = HashMapFactory.make();
+  /**
+   * Concurrent, since once all subgraphs have been added, several queries may traverse this graph at once
+   */
+  final Map<CGNode, Set<CallerSiteContext>> callerCache = new ConcurrentHashMap<CGNode, Set<CallerSiteContext>>();
 
   @Override
   public Set<CallerSiteContext> getPotentialCallers(PointerKey formalPk) {
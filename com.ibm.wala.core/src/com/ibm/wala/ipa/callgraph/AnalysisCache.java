@@ -17,6 +17,7 @@ import com.ibm.wala.ssa.DefaultIRFactory;
 import com.ibm.wala.ssa.IR;
 import com.ibm.wala.ssa.IRFactory;
 import com.ibm.wala.ssa.SSACache;
+import com.ibm.wala.ssa.SSACachePolicy;
 import com.ibm.wala.ssa.SSAOptions;
 import com.ibm.wala.util.ref.ReferenceCleanser;
 
@@ -30,13 +31,20 @@ public class AnalysisCache {
 
   private final SSACache ssaCache;
 
-  public AnalysisCache(IRFactory<IMethod> irFactory) {
+  /**
+   * @param policy governs how many IRs and {@link DefUse}s are retained
+   */
+  public AnalysisCache(IRFactory<IMethod> irFactory, SSACachePolicy policy) {
     super();
     this.irFactory = irFactory;
-    this.ssaCache = new SSACache(irFactory);
+    this.ssaCache = new SSACache(irFactory, policy);
     ReferenceCleanser.registerCache(this);
   }
 
+  public AnalysisCache(IRFactory<IMethod> irFactory) {
+    this(irFactory, SSACachePolicy.SOFT_REFERENCES);
+  }
+
   public AnalysisCache() {
     this(new DefaultIRFactory());
   }
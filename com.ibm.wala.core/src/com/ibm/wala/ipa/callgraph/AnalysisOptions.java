@@ -12,9 +12,12 @@ package com.ibm.wala.ipa.callgraph;
 
 import com.ibm.wala.analysis.reflection.ReflectionContextInterpreter;
 import com.ibm.wala.analysis.reflection.ReflectionContextSelector;
+import com.ibm.wala.fixedpoint.impl.IFixedPointWorklist;
+import com.ibm.wala.fixedpoint.impl.WorklistStrategy;
 import com.ibm.wala.ipa.callgraph.impl.ExplicitCallGraph;
 import com.ibm.wala.ipa.callgraph.propagation.ReflectionHandler;
 import com.ibm.wala.ssa.SSAOptions;
+import com.ibm.wala.util.collections.Factory;
 
 /**
  * Basic interface for options that control call graph generation.
@@ -60,6 +63,37 @@ public class AnalysisOptions {
    */
   private int maxEvalBetweenTopo = 1000000000;
 
+  /**
+   * How many threads may the pointer analysis solver use to evaluate independent constraints? A value of 1 (the default) gives the
+   * purely sequential solver.
+   */
+  private int solverParallelism = 1;
+
+  /**
+   * Makes the worklist of the pointer analysis solver, which decides in which order pending constraints are evaluated.
+   */
+  private Factory<IFixedPointWorklist> solverWorklist = WorklistStrategy.TOPOLOGICAL;
+
+  /**
+   * Should the pointer analysis solver merge the points-to sets on cycles of assignments?
+   */
+  private boolean collapseCycles = false;
+
+  /**
+   * Should assignments and filters in the pointer analysis solver propagate only the new elements of their right-hand sides?
+   */
+  private boolean differencePropagation = false;
+
+  /**
+   * Should the pointer analysis solver make equal points-to sets share one representation?
+   */
+  private boolean internPointsToSets = false;
+
+  /**
+   * Should the call graph builder keep what it needs to update its results after code changes?
+   */
+  private boolean incrementalUpdates = false;
+
   /**
    * options for handling reflection during call graph construction
    */
@@ -308,6 +342,105 @@ public class AnalysisOptions {
     topologicalGrowthFactor = d;
   }
 
+  /**
+   * @return the number of threads the pointer analysis solver may use to evaluate independent constraints
+   */
+  public int getSolverParallelism() {
+    return solverParallelism;
+  }
+
+  /**
+   * @param n the number of threads the pointer analysis solver may use to evaluate independent constraints; 1 means sequential
+   *          solving
+   */
+  public void setSolverParallelism(int n) {
+    if (n < 1) {
+      throw new IllegalArgumentException("illegal parallelism " + n);
+    }
+    solverParallelism = n;
+  }
+
+  /**
+   * @return the factory for the worklist of the pointer analysis solver
+   */
+  public Factory<IFixedPointWorklist> getSolverWorklist() {
+    return solverWorklist;
+  }
+
+  /**
+   * @param factory makes the worklist of the pointer analysis solver, e.g. one of the {@link WorklistStrategy}s
+   */
+  public void setSolverWorklist(Factory<IFixedPointWorklist> factory) {
+    if (factory == null) {
+      throw new IllegalArgumentException("factory is null");
+    }
+    solverWorklist = factory;
+  }
+
+  /**
+   * @return true iff the pointer analysis solver merges the points-to sets on cycles of assignments
+   */
+  public boolean getCollapseCycles() {
+    return collapseCycles;
+  }
+
+  /**
+   * Should the pointer analysis solver merge the points-to sets on cycles of assignments? This gives the same result with fewer
+   * evaluations when there are many such cycles, at the cost of looking for them each time the constraints are reordered.
+   */
+  public void setCollapseCycles(boolean b) {
+    collapseCycles = b;
+  }
+
+  /**
+   * @return true iff assignments and filters in the pointer analysis solver propagate only the new elements of their right-hand
+   *         sides
+   */
+  public boolean getDifferencePropagation() {
+    return differencePropagation;
+  }
+
+  /**
+   * Should assignments and filters in the pointer analysis solver propagate only the elements added to their right-hand sides
+   * since they were last evaluated? This makes an evaluation cost proportional to what is new rather than to the size of the set,
+   * at the cost of logging the additions to big points-to sets.
+   */
+  public void setDifferencePropagation(boolean b) {
+    differencePropagation = b;
+  }
+
+  /**
+   * @return true iff equal points-to sets share one representation once they are stable
+   */
+  public boolean getInternPointsToSets() {
+    return internPointsToSets;
+  }
+
+  /**
+   * Should equal points-to sets share one representation? Many variables end up with the same points-to set, e.g. all the locals
+   * a value is copied to; sharing their sets reduces the memory retained by the pointer analysis result. Sets are shared after
+   * solving, and periodically during solving for those sets which did not change since the last time.
+   */
+  public void setInternPointsToSets(boolean b) {
+    internPointsToSets = b;
+  }
+
+  /**
+   * @return true iff the call graph builder can update its results after code changes
+   */
+  public boolean getIncrementalUpdates() {
+    return incrementalUpdates;
+  }
+
+  /**
+   * Should the call graph builder keep what it needs to update its results after code changes? This costs a record of the instance
+   * keys added directly to each points-to set; see
+   * {@link com.ibm.wala.ipa.callgraph.propagation.PropagationCallGraphBuilder#updateCallGraph}.
+   */
+  public void setIncrementalUpdates(boolean b) {
+    incrementalUpdates = b;
+  }
+
 
   /**
    * @return options governing SSA construction
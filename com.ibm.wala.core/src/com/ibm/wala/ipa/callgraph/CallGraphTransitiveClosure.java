@@ -10,9 +10,15 @@
  *******************************************************************************/
 package com.ibm.wala.ipa.callgraph;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import com.ibm.wala.dataflow.graph.BitVectorSolver;
 import com.ibm.wala.fixpoint.BitVectorVariable;
@@ -22,6 +28,9 @@ import com.ibm.wala.util.CancelRuntimeException;
 import com.ibm.wala.util.collections.HashMapFactory;
 import com.ibm.wala.util.functions.Function;
 import com.ibm.wala.util.graph.impl.GraphInverter;
+import com.ibm.wala.util.graph.traverse.SCCIterator;
+import com.ibm.wala.util.intset.BitVectorIntSet;
+import com.ibm.wala.util.intset.MutableMapping;
 import com.ibm.wala.util.intset.OrdinalSet;
 
 /**
@@ -56,7 +65,95 @@ public class CallGraphTransitiveClosure {
       throw new CancelRuntimeException(e);
     }
   }
-  
+
+  /**
+   * Compute the transitive closure of an analysis result over all callees, as {@link #transitiveClosure(CallGraph, Map)} does, but
+   * in one pass over the strongly connected components of the call graph, callees first, with bit vector unions. All nodes of a
+   * component share one result, as does a component that adds nothing to the result of its only callee component.
+   * 
+   * @param cg the call graph
+   * @param nodeResults analysis result for each individual node
+   * @return a map from each node to the analysis result for the node and its transitive callees
+   */
+  public static <T> Map<CGNode, OrdinalSet<T>> transitiveClosureOverSCCs(CallGraph cg, Map<CGNode, Collection<T>> nodeResults) {
+    if (cg == null) {
+      throw new IllegalArgumentException("cg is null");
+    }
+    List<Set<CGNode>> sccs = new ArrayList<Set<CGNode>>();
+    for (SCCIterator<CGNode> it = new SCCIterator<CGNode>(cg); it.hasNext();) {
+      sccs.add(it.next());
+    }
+
+    MutableMapping<T> values = MutableMapping.make();
+    Map<CGNode, BitVectorIntSet> closure = HashMapFactory.make();
+    Map<BitVectorIntSet, OrdinalSet<T>> sets = new IdentityHashMap<BitVectorIntSet, OrdinalSet<T>>();
+    BitVectorIntSet empty = new BitVectorIntSet();
+    // the components come callers first, so go through them backwards
+    for (int i = sccs.size() - 1; i >= 0; i--) {
+      Set<CGNode> scc = sccs.get(i);
+      BitVectorIntSet gen = null;
+      List<BitVectorIntSet> callees = new ArrayList<BitVectorIntSet>();
+      for (CGNode n : scc) {
+        Collection<T> c = nodeResults.get(n);
+        if (c != null && !c.isEmpty()) {
+          if (gen == null) {
+            gen = new BitVectorIntSet();
+          }
+          for (T x : c) {
+            gen.add(values.add(x));
+          }
+        }
+        for (Iterator<CGNode> succ = cg.getSuccNodes(n); succ.hasNext();) {
+          CGNode s = succ.next();
+          if (!scc.contains(s)) {
+            BitVectorIntSet b = closure.get(s);
+            assert b != null : "callee component not done before " + n;
+            if (!containsIdentical(callees, b)) {
+              callees.add(b);
+            }
+          }
+        }
+      }
+
+      BitVectorIntSet result;
+      if (gen == null && callees.isEmpty()) {
+        result = empty;
+      } else if (gen == null && callees.size() == 1) {
+        result = callees.get(0);
+      } else {
+        result = gen == null ? new BitVectorIntSet() : gen;
+        for (BitVectorIntSet b : callees) {
+          result.addAllOblivious(b);
+        }
+      }
+      for (CGNode n : scc) {
+        closure.put(n, result);
+      }
+    }
+
+    Map<CGNode, OrdinalSet<T>> result = HashMapFactory.make();
+    for (Iterator<? extends CGNode> it = cg.iterator(); it.hasNext();) {
+      CGNode n = it.next();
+      BitVectorIntSet b = closure.get(n);
+      OrdinalSet<T> set = sets.get(b);
+      if (set == null) {
+        set = new OrdinalSet<T>(b, values);
+        sets.put(b, set);
+      }
+      result.put(n, set);
+    }
+    return result;
+  }
+
+  private static boolean containsIdentical(List<BitVectorIntSet> l, BitVectorIntSet b) {
+    for (BitVectorIntSet x : l) {
+      if (x == b) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   /**
    * Collect analysis result for each {@link CGNode} in a {@link Map}.
    */
@@ -69,4 +166,77 @@ public class CallGraphTransitiveClosure {
     return result;
     
   }
+
+  /**
+   * Collect analysis result for each {@link CGNode} in a {@link Map}, computing the results of different nodes concurrently on a
+   * pool of the given number of threads. The result computer must be safe to call concurrently.
+   */
+  public static <T> Map<CGNode, Collection<T>> collectNodeResults(CallGraph cg, Function<CGNode, Collection<T>> nodeResultComputer,
+      int parallelism) {
+    if (cg == null) {
+      throw new IllegalArgumentException("cg is null");
+    }
+    if (parallelism <= 1) {
+      return collectNodeResults(cg, nodeResultComputer);
+    }
+    List<CGNode> nodes = new ArrayList<CGNode>(cg.getNumberOfNodes());
+    for (Iterator<? extends CGNode> it = cg.iterator(); it.hasNext();) {
+      nodes.add(it.next());
+    }
+    List<Collection<T>> results = new ArrayList<Collection<T>>(nodes.size());
+    for (int i = 0; i < nodes.size(); i++) {
+      results.add(null);
+    }
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      pool.invoke(new CollectNodeResults<T>(nodes, results, nodeResultComputer, 0, nodes.size()));
+    } finally {
+      pool.shutdown();
+    }
+    Map<CGNode, Collection<T>> result = HashMapFactory.make();
+    for (int i = 0; i < nodes.size(); i++) {
+      result.put(nodes.get(i), results.get(i));
+    }
+    return result;
+  }
+
+  /**
+   * Computes the results of a range of nodes, splitting it in halves until the ranges are small.
+   */
+  @SuppressWarnings("serial")
+  private static class CollectNodeResults<T> extends RecursiveAction {
+    private static final int CHUNK_SIZE = 16;
+
+    private final List<CGNode> nodes;
+
+    private final List<Collection<T>> results;
+
+    private final Function<CGNode, Collection<T>> nodeResultComputer;
+
+    private final int from;
+
+    private final int to;
+
+    CollectNodeResults(List<CGNode> nodes, List<Collection<T>> results, Function<CGNode, Collection<T>> nodeResultComputer, int from,
+        int to) {
+      this.nodes = nodes;
+      this.results = results;
+      this.nodeResultComputer = nodeResultComputer;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= CHUNK_SIZE) {
+        for (int i = from; i < to; i++) {
+          results.set(i, nodeResultComputer.apply(nodes.get(i)));
+        }
+      } else {
+        int mid = (from + to) >>> 1;
+        invokeAll(new CollectNodeResults<T>(nodes, results, nodeResultComputer, from, mid), new CollectNodeResults<T>(nodes,
+            results, nodeResultComputer, mid, to));
+      }
+    }
+  }
 }
@@ -297,6 +297,14 @@ public class ExplicitCallGraph extends BasicCallGraph<SSAContextInterpreter> imp
       allTargets.clear();
     }
 
+    /**
+     * Forget the IR and {@link DefUse} held for this node, e.g. because the code of its method changed.
+     */
+    public void clearCachedIR() {
+      ir = new WeakReference<IR>(null);
+      du = new WeakReference<DefUse>(null);
+    }
+
     @Override
     public IR getIR() {
       if (getMethod().isSynthetic()) {
@@ -449,8 +457,12 @@ public class ExplicitCallGraph extends BasicCallGraph<SSAContextInterpreter> imp
 
     @Override
     public void removeOutgoingEdges(CGNode node) {
-      Assertions.UNREACHABLE();
-
+      ExplicitNode n = (ExplicitNode) node;
+      int x = getNumber(n);
+      for (IntIterator it = n.getAllTargetNumbers().intIterator(); it.hasNext();) {
+        predecessors.remove(it.next(), x);
+      }
+      n.clearAllTargets();
     }
 
     @Override
@@ -0,0 +1,920 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.ipa.callgraph.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.ibm.wala.classLoader.CallSiteReference;
+import com.ibm.wala.classLoader.IClassLoader;
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.classLoader.Language;
+import com.ibm.wala.classLoader.NewSiteReference;
+import com.ibm.wala.ipa.callgraph.AnalysisCache;
+import com.ibm.wala.ipa.callgraph.AnalysisOptions;
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.callgraph.CallGraph;
+import com.ibm.wala.ipa.callgraph.Context;
+import com.ibm.wala.ipa.callgraph.ContextItem;
+import com.ibm.wala.ipa.callgraph.ContextKey;
+import com.ibm.wala.ipa.cha.IClassHierarchy;
+import com.ibm.wala.shrikeBT.IInvokeInstruction;
+import com.ibm.wala.ssa.DefUse;
+import com.ibm.wala.ssa.IR;
+import com.ibm.wala.types.ClassLoaderReference;
+import com.ibm.wala.types.MethodReference;
+import com.ibm.wala.types.Selector;
+import com.ibm.wala.types.TypeReference;
+import com.ibm.wala.util.WalaRuntimeException;
+import com.ibm.wala.util.collections.HashMapFactory;
+import com.ibm.wala.util.collections.HashSetFactory;
+import com.ibm.wala.util.graph.impl.NumberedNodeIterator;
+import com.ibm.wala.util.intset.IntSet;
+import com.ibm.wala.util.intset.MutableSparseIntSet;
+import com.ibm.wala.util.io.MappedFile;
+import com.ibm.wala.util.strings.UTF8Convert;
+
+/**
+ * A read-only {@link CallGraph} backed by a memory-mapped file, so that a call graph built once can be used by other processes
+ * without rebuilding it.
+ *
+ * {@link #write(CallGraph, File)} stores the graph in a compact binary format: a table of nodes, each a method reference and a
+ * context, followed by compressed sparse rows of the call sites of each node, the targets of each call site, the allocation sites
+ * of each node, and the successors and predecessors of each node. {@link #load(File, IClassHierarchy, AnalysisCache)} maps the file
+ * and decodes entries only when they are asked for, so loading takes time proportional to the number of nodes, not of edges, and
+ * the pages of the file are shared between processes that map it.
+ *
+ * Nodes are numbered in the iteration order of the original graph. Contexts other than {@link Everywhere} are stored by their
+ * printed representation and come back as opaque contexts that answer no {@link ContextKey}. Methods are resolved in the given
+ * class hierarchy when first asked for, so a node for a synthetic model of a method comes back with the method it models; the IR
+ * of a node, if a cache is given, is that of its method in {@link Everywhere}.
+ *
+ * The file is mapped in segments, so it may be larger than 2GB; but each of its tables, and the string pool, is limited to 2GB,
+ * and {@link #write(CallGraph, File)} throws an {@link IOException} for a graph that does not fit.
+ */
+public final class MappedCallGraph implements CallGraph {
+
+  /**
+   * identifies the file format; bump when it changes
+   */
+  private final static int MAGIC = 0x57434732;
+
+  private final static int HEADER_SIZE = 13;
+
+  private final static int NODE_SIZE = 4;
+
+  private final static int SITE_SIZE = 5;
+
+  private final static int NEW_SITE_SIZE = 3;
+
+  /**
+   * the index of a node's context in the string pool, for {@link Everywhere}
+   */
+  private final static int EVERYWHERE = -1;
+
+  private final static IInvokeInstruction.Dispatch[] DISPATCH = IInvokeInstruction.Dispatch.values();
+
+  private final IClassHierarchy cha;
+
+  private final AnalysisCache cache;
+
+  private final MappedFile data;
+
+  /**
+   * int indices of the sections of {@link #data}
+   */
+  private final long nodeTable, siteStart, sites, targetStart, targets, newSiteStart, newSites, succStart, succs, predStart, preds,
+      stringStart;
+
+  /**
+   * byte offset of the string pool's contents in {@link #data}
+   */
+  private final long stringBytes;
+
+  private final Node[] nodes;
+
+  private final Node fakeRoot;
+
+  private final Node fakeWorldClinit;
+
+  private final List<CGNode> entrypoints;
+
+  private final Map<String, ClassLoaderReference> loaders = HashMapFactory.make();
+
+  /**
+   * decoded strings of the pool, filled in lazily
+   */
+  private final String[] strings;
+
+  /**
+   * method reference -> nodes, built when first needed
+   */
+  private Map<MethodReference, Set<CGNode>> nodesByMethod;
+
+  private MappedCallGraph(MappedFile data, IClassHierarchy cha, AnalysisCache cache) throws IOException {
+    this.cha = cha;
+    this.cache = cache;
+    this.data = data;
+    if (data.intCount() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+      throw new IOException("not a call graph file");
+    }
+    int nNodes = data.getInt(1);
+    int nSites = data.getInt(2);
+    int nTargets = data.getInt(3);
+    int nNewSites = data.getInt(4);
+    int nSuccs = data.getInt(5);
+    int nPreds = data.getInt(6);
+    int nStrings = data.getInt(7);
+    int nEntrypoints = data.getInt(10);
+    long entrypointTable = HEADER_SIZE;
+    nodeTable = entrypointTable + nEntrypoints;
+    siteStart = nodeTable + NODE_SIZE * (long) nNodes;
+    sites = siteStart + nNodes + 1;
+    targetStart = sites + SITE_SIZE * (long) nSites;
+    targets = targetStart + nSites + 1;
+    newSiteStart = targets + nTargets;
+    newSites = newSiteStart + nNodes + 1;
+    succStart = newSites + NEW_SITE_SIZE * (long) nNewSites;
+    succs = succStart + nNodes + 1;
+    predStart = succs + nSuccs;
+    preds = predStart + nNodes + 1;
+    stringStart = preds + nPreds;
+    stringBytes = 4 * (stringStart + nStrings + 1);
+    if (stringBytes > data.length() || stringBytes + data.getInt(stringStart + nStrings) != data.length()
+        || data.getLong(11) != data.length()) {
+      throw new IOException("truncated call graph file");
+    }
+
+    strings = new String[nStrings];
+    nodes = new Node[nNodes];
+    for (int i = 0; i < nNodes; i++) {
+      nodes[i] = new Node(i);
+    }
+    fakeRoot = data.getInt(8) == -1 ? null : nodes[data.getInt(8)];
+    fakeWorldClinit = data.getInt(9) == -1 ? null : nodes[data.getInt(9)];
+    List<CGNode> e = new ArrayList<CGNode>(nEntrypoints);
+    for (int i = 0; i < nEntrypoints; i++) {
+      e.add(nodes[data.getInt(entrypointTable + i)]);
+    }
+    entrypoints = Collections.unmodifiableList(e);
+
+    for (ClassLoaderReference l : Arrays.asList(ClassLoaderReference.Primordial, ClassLoaderReference.Extension,
+        ClassLoaderReference.Application)) {
+      loaders.put(l.getName().toString(), l);
+    }
+    for (IClassLoader l : cha.getLoaders()) {
+      loaders.put(l.getName().toString(), l.getReference());
+    }
+  }
+
+  /**
+   * Map a call graph written by {@link #write(CallGraph, File)}.
+   *
+   * @param cha the class hierarchy in which to resolve the methods of the nodes; it should be built from the same analysis scope as
+   *          the original graph
+   * @param cache used to build the IRs of the nodes, or null if nodes should have no IR
+   * @throws IOException if file cannot be read or is not a call graph file
+   */
+  public static MappedCallGraph load(File file, IClassHierarchy cha, AnalysisCache cache) throws IOException {
+    if (file == null) {
+      throw new IllegalArgumentException("null file");
+    }
+    if (cha == null) {
+      throw new IllegalArgumentException("null cha");
+    }
+    return new MappedCallGraph(MappedFile.map(file), cha, cache);
+  }
+
+  /**
+   * File format, all big-endian ints: a header (MAGIC, number of nodes, call sites, targets, allocation sites, successors,
+   * predecessors and strings, fake root node, fake world clinit node, number of entrypoints, and the file length as a long); the
+   * entrypoint nodes; per node its declaring loader, type and selector, and its context; then for each of the call sites, targets,
+   * allocation sites, successors and predecessors a row start table followed by the rows; and the string pool as a table of byte
+   * offsets followed by the UTF-8 bytes of the strings. Call sites are a program counter, the loader, type and selector of the declared target and the
+   * dispatch; allocation sites a program counter, and loader and type.
+   *
+   * @throws IllegalArgumentException if the graph holds call sites with other than Java dispatch
+   * @throws IOException if file cannot be written, or the strings of the graph take more than 2GB
+   */
+  public static void write(CallGraph cg, File file) throws IOException {
+    if (cg == null) {
+      throw new IllegalArgumentException("null cg");
+    }
+    if (file == null) {
+      throw new IllegalArgumentException("null file");
+    }
+    // number the nodes densely
+    int[] index = new int[cg.getMaxNumber() + 1];
+    List<CGNode> order = new ArrayList<CGNode>(cg.getNumberOfNodes());
+    for (CGNode n : cg) {
+      index[cg.getNumber(n)] = order.size();
+      order.add(n);
+    }
+
+    Map<String, Integer> pool = HashMapFactory.make();
+    List<String> strings = new ArrayList<String>();
+    IntList nodeTable = new IntList();
+    IntList siteStart = new IntList(), sites = new IntList(), targetStart = new IntList(), targets = new IntList();
+    IntList newSiteStart = new IntList(), newSites = new IntList();
+    IntList succStart = new IntList(), succs = new IntList(), predStart = new IntList(), preds = new IntList();
+    for (CGNode n : order) {
+      addMethod(nodeTable, pool, strings, n.getMethod().getReference());
+      nodeTable.add(n.getContext().equals(Everywhere.EVERYWHERE) ? EVERYWHERE : intern(pool, strings, n.getContext().toString()));
+
+      // the targets of a site are keyed by its program counter, as in ExplicitCallGraph
+      Map<Integer, CallSiteReference> bySite = HashMapFactory.make();
+      for (Iterator<CallSiteReference> it = n.iterateCallSites(); it.hasNext();) {
+        CallSiteReference site = it.next();
+        if (!bySite.containsKey(site.getProgramCounter())) {
+          bySite.put(site.getProgramCounter(), site);
+        }
+      }
+      Integer[] pcs = bySite.keySet().toArray(new Integer[bySite.size()]);
+      Arrays.sort(pcs);
+      siteStart.add(sites.size() / SITE_SIZE);
+      for (Integer pc : pcs) {
+        CallSiteReference site = bySite.get(pc);
+        if (!(site.getInvocationCode() instanceof IInvokeInstruction.Dispatch)) {
+          throw new IllegalArgumentException("unsupported dispatch " + site.getInvocationCode() + " in " + n);
+        }
+        sites.add(pc);
+        addMethod(sites, pool, strings, site.getDeclaredTarget());
+        sites.add(((IInvokeInstruction.Dispatch) site.getInvocationCode()).ordinal());
+        targetStart.add(targets.size());
+        addSorted(targets, index, cg, cg.getPossibleTargets(n, site).iterator());
+      }
+
+      newSiteStart.add(newSites.size() / NEW_SITE_SIZE);
+      for (Iterator<NewSiteReference> it = n.iterateNewSites(); it.hasNext();) {
+        NewSiteReference site = it.next();
+        newSites.add(site.getProgramCounter());
+        newSites.add(intern(pool, strings, site.getDeclaredType().getClassLoader().getName().toString()));
+        newSites.add(intern(pool, strings, site.getDeclaredType().getName().toString()));
+      }
+
+      succStart.add(succs.size());
+      addSorted(succs, index, cg, cg.getSuccNodes(n));
+      predStart.add(preds.size());
+      addSorted(preds, index, cg, cg.getPredNodes(n));
+    }
+    siteStart.add(sites.size() / SITE_SIZE);
+    targetStart.add(targets.size());
+    newSiteStart.add(newSites.size() / NEW_SITE_SIZE);
+    succStart.add(succs.size());
+    predStart.add(preds.size());
+
+    List<byte[]> utf8 = new ArrayList<byte[]>(strings.size());
+    long stringLength = 0;
+    for (String s : strings) {
+      byte[] b = UTF8Convert.toUTF8(s);
+      utf8.add(b);
+      stringLength += b.length;
+    }
+    if (stringLength > Integer.MAX_VALUE) {
+      throw new IOException("string pool of " + stringLength + " bytes exceeds 2GB");
+    }
+    Collection<CGNode> entry = cg.getEntrypointNodes();
+    long length = 4L * (HEADER_SIZE + entry.size() + nodeTable.size() + siteStart.size() + sites.size() + targetStart.size()
+        + targets.size() + newSiteStart.size() + newSites.size() + succStart.size() + succs.size() + predStart.size() + preds.size()
+        + strings.size() + 1) + stringLength;
+
+    File tmp = new File(file.getPath() + ".tmp");
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(order.size());
+      out.writeInt(sites.size() / SITE_SIZE);
+      out.writeInt(targets.size());
+      out.writeInt(newSites.size() / NEW_SITE_SIZE);
+      out.writeInt(succs.size());
+      out.writeInt(preds.size());
+      out.writeInt(strings.size());
+      out.writeInt(cg.getFakeRootNode() == null ? -1 : index[cg.getNumber(cg.getFakeRootNode())]);
+      out.writeInt(cg.getFakeWorldClinitNode() == null ? -1 : index[cg.getNumber(cg.getFakeWorldClinitNode())]);
+      out.writeInt(entry.size());
+      out.writeLong(length);
+      for (CGNode n : entry) {
+        out.writeInt(index[cg.getNumber(n)]);
+      }
+      for (IntList l : new IntList[] { nodeTable, siteStart, sites, targetStart, targets, newSiteStart, newSites, succStart, succs,
+          predStart, preds }) {
+        l.write(out);
+      }
+      int offset = 0;
+      for (byte[] b : utf8) {
+        out.writeInt(offset);
+        offset += b.length;
+      }
+      out.writeInt(offset);
+      for (byte[] b : utf8) {
+        out.write(b);
+      }
+    } finally {
+      out.close();
+    }
+    if (file.exists() && !file.delete()) {
+      tmp.delete();
+      throw new IOException("cannot replace " + file);
+    }
+    if (!tmp.renameTo(file)) {
+      tmp.delete();
+      throw new IOException("cannot rename " + tmp + " to " + file);
+    }
+  }
+
+  private static void addMethod(IntList l, Map<String, Integer> pool, List<String> strings, MethodReference m) {
+    l.add(intern(pool, strings, m.getDeclaringClass().getClassLoader().getName().toString()));
+    l.add(intern(pool, strings, m.getDeclaringClass().getName().toString()));
+    l.add(intern(pool, strings, m.getSelector().toString()));
+  }
+
+  private static void addSorted(IntList l, int[] index, CallGraph cg, Iterator<? extends CGNode> it) {
+    int from = l.size();
+    while (it.hasNext()) {
+      l.add(index[cg.getNumber(it.next())]);
+    }
+    Arrays.sort(l.elements, from, l.size());
+  }
+
+  private static int intern(Map<String, Integer> pool, List<String> strings, String s) {
+    Integer i = pool.get(s);
+    if (i == null) {
+      i = strings.size();
+      pool.put(s, i);
+      strings.add(s);
+    }
+    return i;
+  }
+
+  /**
+   * a growable array of ints, used while writing
+   */
+  private final static class IntList {
+    private int[] elements = new int[16];
+
+    private int size;
+
+    void add(int x) {
+      if (size == elements.length) {
+        elements = Arrays.copyOf(elements, 2 * size);
+      }
+      elements[size++] = x;
+    }
+
+    int size() {
+      return size;
+    }
+
+    void write(DataOutputStream out) throws IOException {
+      for (int i = 0; i < size; i++) {
+        out.writeInt(elements[i]);
+      }
+    }
+  }
+
+  private String string(int i) {
+    String s = strings[i];
+    if (s == null) {
+      int from = data.getInt(stringStart + i);
+      byte[] b = data.getBytes(stringBytes + from, data.getInt(stringStart + i + 1) - from);
+      try {
+        s = UTF8Convert.fromUTF8(b);
+      } catch (UTFDataFormatException e) {
+        throw new WalaRuntimeException("corrupt string in call graph file", e);
+      }
+      strings[i] = s;
+    }
+    return s;
+  }
+
+  private ClassLoaderReference loader(int i) {
+    String name = string(i);
+    ClassLoaderReference result = loaders.get(name);
+    if (result == null) {
+      throw new IllegalStateException("unknown class loader " + name);
+    }
+    return result;
+  }
+
+  private TypeReference type(long offset) {
+    return TypeReference.findOrCreate(loader(data.getInt(offset)), string(data.getInt(offset + 1)));
+  }
+
+  private MethodReference method(long offset) {
+    TypeReference type = type(offset);
+    Language l = cha.getScope().getLanguage(type.getClassLoader().getLanguage());
+    String selector = string(data.getInt(offset + 2));
+    return MethodReference.findOrCreate(type, l == null ? Selector.make(selector) : Selector.make(l, selector));
+  }
+
+  private Node node(CGNode n) {
+    if (!containsNode(n)) {
+      throw new IllegalArgumentException("node not in callgraph " + n);
+    }
+    return (Node) n;
+  }
+
+  /**
+   * the context of a node, when it is not {@link Everywhere}: known only by its printed representation
+   */
+  private final static class MappedContext implements Context {
+    private final String name;
+
+    MappedContext(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public ContextItem get(ContextKey name) {
+      return null;
+    }
+
+    @Override
+    public int hashCode() {
+      return name.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof MappedContext && name.equals(((MappedContext) obj).name);
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+
+  /**
+   * the nodes whose numbers are in a row of the file
+   */
+  private final class NodeRow extends AbstractSet<CGNode> {
+    private final long from, to;
+
+    NodeRow(long from, long to) {
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    public Iterator<CGNode> iterator() {
+      return new Iterator<CGNode>() {
+        private long i = from;
+
+        @Override
+        public boolean hasNext() {
+          return i < to;
+        }
+
+        @Override
+        public CGNode next() {
+          if (i >= to) {
+            throw new NoSuchElementException();
+          }
+          return nodes[data.getInt(i++)];
+        }
+
+        @Override
+        public void remove() {
+          throw new UnsupportedOperationException();
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return (int) (to - from);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      if (!(o instanceof CGNode) || !containsNode((CGNode) o)) {
+        return false;
+      }
+      int x = ((Node) o).number;
+      long low = from;
+      long high = to - 1;
+      while (low <= high) {
+        long mid = (low + high) >>> 1;
+        int y = data.getInt(mid);
+        if (y < x) {
+          low = mid + 1;
+        } else if (y > x) {
+          high = mid - 1;
+        } else {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private IntSet sparse() {
+      MutableSparseIntSet s = MutableSparseIntSet.createMutableSparseIntSet(Math.max(1, size()));
+      for (long i = from; i < to; i++) {
+        s.add(data.getInt(i));
+      }
+      return s;
+    }
+  }
+
+  private final class Node implements CGNode {
+    private final int number;
+
+    /**
+     * resolved lazily
+     */
+    private IMethod method;
+
+    private Context context;
+
+    Node(int number) {
+      this.number = number;
+    }
+
+    @Override
+    public int getGraphNodeId() {
+      return number;
+    }
+
+    @Override
+    public void setGraphNodeId(int number) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public IClassHierarchy getClassHierarchy() {
+      return cha;
+    }
+
+    /**
+     * @return the method of this node as resolved in the class hierarchy, a stand-in for the fake root and fake world clinit
+     *         methods, or null if the method cannot be found
+     */
+    @Override
+    public IMethod getMethod() {
+      if (method == null) {
+        if (this == fakeRoot) {
+          method = new FakeRootMethod(cha, new AnalysisOptions(), cache == null ? new AnalysisCache() : cache);
+        } else if (this == fakeWorldClinit) {
+          method = new FakeWorldClinitMethod(cha, new AnalysisOptions(), cache == null ? new AnalysisCache() : cache);
+        } else {
+          method = cha.resolveMethod(getMethodReference());
+        }
+      }
+      return method;
+    }
+
+    MethodReference getMethodReference() {
+      return method(nodeTable + NODE_SIZE * (long) number);
+    }
+
+    @Override
+    public Context getContext() {
+      if (context == null) {
+        int c = data.getInt(nodeTable + NODE_SIZE * (long) number + 3);
+        context = c == EVERYWHERE ? Everywhere.EVERYWHERE : new MappedContext(string(c));
+      }
+      return context;
+    }
+
+    @Override
+    @Deprecated
+    public boolean addTarget(CallSiteReference site, CGNode target) {
+      throw new UnsupportedOperationException("read-only call graph");
+    }
+
+    @Override
+    public IR getIR() {
+      return cache == null || getMethod() == null ? null : cache.getIR(getMethod());
+    }
+
+    @Override
+    public DefUse getDU() {
+      IR ir = getIR();
+      return ir == null ? null : cache.getDefUse(ir);
+    }
+
+    @Override
+    public Iterator<NewSiteReference> iterateNewSites() {
+      final int from = data.getInt(newSiteStart + number);
+      final int to = data.getInt(newSiteStart + number + 1);
+      return new Iterator<NewSiteReference>() {
+        private int i = from;
+
+        @Override
+        public boolean hasNext() {
+          return i < to;
+        }
+
+        @Override
+        public NewSiteReference next() {
+          if (i >= to) {
+            throw new NoSuchElementException();
+          }
+          long offset = newSites + NEW_SITE_SIZE * (long) i++;
+          return NewSiteReference.make(data.getInt(offset), type(offset + 1));
+        }
+
+        @Override
+        public void remove() {
+          throw new UnsupportedOperationException();
+        }
+      };
+    }
+
+    @Override
+    public Iterator<CallSiteReference> iterateCallSites() {
+      final int from = data.getInt(siteStart + number);
+      final int to = data.getInt(siteStart + number + 1);
+      return new Iterator<CallSiteReference>() {
+        private int i = from;
+
+        @Override
+        public boolean hasNext() {
+          return i < to;
+        }
+
+        @Override
+        public CallSiteReference next() {
+          if (i >= to) {
+            throw new NoSuchElementException();
+          }
+          return site(i++);
+        }
+
+        @Override
+        public void remove() {
+          throw new UnsupportedOperationException();
+        }
+      };
+    }
+
+    /**
+     * @return the index of the call site of this node with the given program counter, or -1 if none
+     */
+    int findSite(int pc) {
+      int low = data.getInt(siteStart + number);
+      int high = data.getInt(siteStart + number + 1) - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        int p = data.getInt(sites + SITE_SIZE * (long) mid);
+        if (p < pc) {
+          low = mid + 1;
+        } else if (p > pc) {
+          high = mid - 1;
+        } else {
+          return mid;
+        }
+      }
+      return -1;
+    }
+
+    @Override
+    public String toString() {
+      return "Node: " + getMethodReference() + " Context: " + getContext();
+    }
+  }
+
+  private CallSiteReference site(int i) {
+    long offset = sites + SITE_SIZE * (long) i;
+    return CallSiteReference.make(data.getInt(offset), method(offset + 1), DISPATCH[data.getInt(offset + 4)]);
+  }
+
+  private NodeRow targets(CGNode node, CallSiteReference site) {
+    if (site == null) {
+      throw new IllegalArgumentException("null site");
+    }
+    int i = node(node).findSite(site.getProgramCounter());
+    if (i == -1) {
+      return null;
+    }
+    return new NodeRow(targets + data.getInt(targetStart + i), targets + data.getInt(targetStart + i + 1));
+  }
+
+  private NodeRow succs(CGNode n) {
+    int number = node(n).number;
+    return new NodeRow(succs + data.getInt(succStart + number), succs + data.getInt(succStart + number + 1));
+  }
+
+  private NodeRow preds(CGNode n) {
+    int number = node(n).number;
+    return new NodeRow(preds + data.getInt(predStart + number), preds + data.getInt(predStart + number + 1));
+  }
+
+  @Override
+  public CGNode getFakeRootNode() {
+    return fakeRoot;
+  }
+
+  @Override
+  public CGNode getFakeWorldClinitNode() {
+    return fakeWorldClinit;
+  }
+
+  @Override
+  public Collection<CGNode> getEntrypointNodes() {
+    return entrypoints;
+  }
+
+  @Override
+  public CGNode getNode(IMethod method, Context C) {
+    if (method == null) {
+      throw new IllegalArgumentException("null method");
+    }
+    for (CGNode n : getNodes(method.getReference())) {
+      if (n.getContext().equals(C) || n.getContext().toString().equals(String.valueOf(C))) {
+        return n;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public synchronized Set<CGNode> getNodes(MethodReference m) {
+    if (nodesByMethod == null) {
+      nodesByMethod = HashMapFactory.make(nodes.length);
+      for (Node n : nodes) {
+        MethodReference r = n.getMethodReference();
+        Set<CGNode> s = nodesByMethod.get(r);
+        if (s == null) {
+          s = HashSetFactory.make(1);
+          nodesByMethod.put(r, s);
+        }
+        s.add(n);
+      }
+    }
+    IMethod im = cha.resolveMethod(m);
+    Set<CGNode> result = nodesByMethod.get(im == null ? m : im.getReference());
+    return result == null ? Collections.<CGNode> emptySet() : Collections.unmodifiableSet(result);
+  }
+
+  @Override
+  public IClassHierarchy getClassHierarchy() {
+    return cha;
+  }
+
+  @Override
+  public Set<CGNode> getPossibleTargets(CGNode node, CallSiteReference site) {
+    NodeRow row = targets(node, site);
+    return row == null ? Collections.<CGNode> emptySet() : row;
+  }
+
+  @Override
+  public int getNumberOfTargets(CGNode node, CallSiteReference site) {
+    NodeRow row = targets(node, site);
+    return row == null ? 0 : row.size();
+  }
+
+  @Override
+  public Iterator<CallSiteReference> getPossibleSites(CGNode src, CGNode target) {
+    Node s = node(src);
+    int t = node(target).number;
+    List<CallSiteReference> result = new ArrayList<CallSiteReference>();
+    for (int i = data.getInt(siteStart + s.number); i < data.getInt(siteStart + s.number + 1); i++) {
+      for (long j = targets + data.getInt(targetStart + i); j < targets + data.getInt(targetStart + i + 1); j++) {
+        if (data.getInt(j) == t) {
+          result.add(site(i));
+          break;
+        }
+      }
+    }
+    return result.iterator();
+  }
+
+  @Override
+  public Iterator<CGNode> iterator() {
+    return Collections.<CGNode> unmodifiableList(Arrays.<CGNode> asList(nodes)).iterator();
+  }
+
+  @Override
+  public int getNumberOfNodes() {
+    return nodes.length;
+  }
+
+  @Override
+  public boolean containsNode(CGNode n) {
+    return n instanceof Node && nodes[((Node) n).number] == n;
+  }
+
+  @Override
+  public int getNumber(CGNode N) {
+    return containsNode(N) ? ((Node) N).number : -1;
+  }
+
+  @Override
+  public CGNode getNode(int number) {
+    return number >= 0 && number < nodes.length ? nodes[number] : null;
+  }
+
+  @Override
+  public int getMaxNumber() {
+    return nodes.length - 1;
+  }
+
+  @Override
+  public Iterator<CGNode> iterateNodes(IntSet s) {
+    return new NumberedNodeIterator<CGNode>(s, this);
+  }
+
+  @Override
+  public Iterator<CGNode> getPredNodes(CGNode n) {
+    return preds(n).iterator();
+  }
+
+  @Override
+  public int getPredNodeCount(CGNode n) {
+    return preds(n).size();
+  }
+
+  @Override
+  public IntSet getPredNodeNumbers(CGNode node) {
+    return preds(node).sparse();
+  }
+
+  @Override
+  public Iterator<CGNode> getSuccNodes(CGNode n) {
+    return succs(n).iterator();
+  }
+
+  @Override
+  public int getSuccNodeCount(CGNode N) {
+    return succs(N).size();
+  }
+
+  @Override
+  public IntSet getSuccNodeNumbers(CGNode node) {
+    return succs(node).sparse();
+  }
+
+  @Override
+  public boolean hasEdge(CGNode src, CGNode dst) {
+    return succs(src).contains(dst);
+  }
+
+  @Override
+  public void addNode(CGNode n) {
+    throw new UnsupportedOperationException("read-only call graph");
+  }
+
+  @Override
+  public void removeNode(CGNode n) {
+    throw new UnsupportedOperationException("read-only call graph");
+  }
+
+  @Override
+  public void removeNodeAndEdges(CGNode n) {
+    throw new UnsupportedOperationException("read-only call graph");
+  }
+
+  @Override
+  public void addEdge(CGNode src, CGNode dst) {
+    throw new UnsupportedOperationException("read-only call graph");
+  }
+
+  @Override
+  public void removeEdge(CGNode src, CGNode dst) {
+    throw new UnsupportedOperationException("read-only call graph");
+  }
+
+  @Override
+  public void removeAllIncidentEdges(CGNode node) {
+    throw new UnsupportedOperationException("read-only call graph");
+  }
+
+  @Override
+  public void removeIncomingEdges(CGNode node) {
+    throw new UnsupportedOperationException("read-only call graph");
+  }
+
+  @Override
+  public void removeOutgoingEdges(CGNode node) {
+    throw new UnsupportedOperationException("read-only call graph");
+  }
+
+  @Override
+  public String toString() {
+    return "MappedCallGraph: " + nodes.length + " nodes";
+  }
+}
@@ -36,7 +36,7 @@ class AssignOperator extends UnaryOperator<PointsToSetVariable> implements IPoin
       S = S + "\nEVAL " + lhs + " " + rhs;
       System.err.println(S);
     }
-    boolean changed = lhs.addAll(rhs);
+    boolean changed = lhs.addAllNew(rhs);
     if (PropagationCallGraphBuilder.DEBUG_ASSIGN) {
       System.err.println("RESULT " + lhs + (changed ? " (changed)" : ""));
     }
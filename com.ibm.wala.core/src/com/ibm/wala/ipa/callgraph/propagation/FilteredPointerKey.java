@@ -25,6 +25,11 @@ import com.ibm.wala.util.intset.MutableIntSet;
  */
 public interface FilteredPointerKey extends PointerKey {
 
+  /**
+   * A filter must decide whether to admit an instance key by the key alone, and the same way every time: with
+   * {@link PropagationSystem#setDifferencePropagation(boolean) difference propagation}, R holds only the elements that are new
+   * since the filter last ran.
+   */
   public interface TypeFilter extends ContextItem {
 
     boolean addFiltered(PropagationSystem system, PointsToSetVariable L, PointsToSetVariable R);
@@ -0,0 +1,1059 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.ipa.callgraph.propagation;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import com.ibm.wala.classLoader.ArrayClass;
+import com.ibm.wala.classLoader.IClass;
+import com.ibm.wala.classLoader.IClassLoader;
+import com.ibm.wala.classLoader.IField;
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.classLoader.Language;
+import com.ibm.wala.classLoader.NewSiteReference;
+import com.ibm.wala.classLoader.ProgramCounter;
+import com.ibm.wala.classLoader.SyntheticClass;
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.callgraph.CallGraph;
+import com.ibm.wala.ipa.callgraph.propagation.cfa.ExceptionReturnValueKey;
+import com.ibm.wala.ipa.cha.IClassHierarchy;
+import com.ibm.wala.types.ClassLoaderReference;
+import com.ibm.wala.types.FieldReference;
+import com.ibm.wala.types.MethodReference;
+import com.ibm.wala.types.Selector;
+import com.ibm.wala.types.TypeReference;
+import com.ibm.wala.util.WalaRuntimeException;
+import com.ibm.wala.util.collections.EmptyIterator;
+import com.ibm.wala.util.collections.HashMapFactory;
+import com.ibm.wala.util.collections.Pair;
+import com.ibm.wala.util.intset.IntIterator;
+import com.ibm.wala.util.intset.IntSet;
+import com.ibm.wala.util.intset.MutableMapping;
+import com.ibm.wala.util.intset.MutableSparseIntSet;
+import com.ibm.wala.util.intset.OrdinalSet;
+import com.ibm.wala.util.intset.OrdinalSetMapping;
+import com.ibm.wala.util.io.MappedFile;
+import com.ibm.wala.util.strings.Atom;
+import com.ibm.wala.util.strings.UTF8Convert;
+
+/**
+ * A read-only {@link PointerAnalysis} backed by a memory-mapped file, so that clients such as the heap graph, mod-ref or SDG
+ * construction can run against a large solution without holding all of its points-to sets on the heap.
+ *
+ * {@link #write(PointerAnalysis, CallGraph, File)} stores the instance keys in the order of their numbering, a table of pointer
+ * keys with an open-addressing hash index over it, and the distinct points-to sets as sorted rows of instance key numbers.
+ * {@link #load(File, CallGraph)} decodes the instance keys eagerly, since the points-to sets refer to them by number, but looks
+ * up a pointer key only when it is asked for and faults in its points-to set from the mapped file on each query.
+ *
+ * Nodes are stored by their position in the iteration order of the call graph, so the call graph given to {@link #load(File,
+ * CallGraph)} must iterate its nodes in the same order as the one given to {@link #write(PointerAnalysis, CallGraph, File)}: the
+ * same graph, or a {@link com.ibm.wala.ipa.callgraph.impl.MappedCallGraph} written from it. Pointer keys for locals, return
+ * values, static and instance fields and array contents are stored; others, such as the typed keys of a builder, are not, and
+ * have an empty points-to set in the loaded analysis. Instance keys other than types, constants and allocation sites come back as
+ * opaque keys that know only their concrete type, as do keys of synthetic classes that the class hierarchy of the call graph
+ * does not know.
+ *
+ * The file is mapped in segments, so it may be larger than 2GB; but each of its tables, and the string pool, is limited to 2GB,
+ * and {@link #write(PointerAnalysis, CallGraph, File)} throws an {@link IOException} for an analysis that does not fit.
+ */
+public final class MappedPointerAnalysis extends AbstractPointerAnalysis {
+
+  /**
+   * identifies the file format; bump when it changes
+   */
+  private final static int MAGIC = 0x57504132;
+
+  private final static int HEADER_SIZE = 11;
+
+  private final static int INSTANCE_KEY_SIZE = 9;
+
+  private final static int FIELD_SIZE = 5;
+
+  private final static int POINTER_KEY_SIZE = 4;
+
+  /*
+   * kinds of instance keys. A record holds the kind, the node, the program counter of the allocation site, an extra int (array
+   * dimension or string), the loader and name of a type (of the allocation site or the constant), the loader and name of the
+   * concrete type, and for a key of a synthetic class its printed representation.
+   */
+  private final static int NO_KEY = 0;
+
+  private final static int CONCRETE_TYPE = 1;
+
+  private final static int CONSTANT_STRING = 2;
+
+  private final static int CONSTANT_TYPE = 3;
+
+  private final static int CONSTANT_METHOD = 4;
+
+  private final static int NORMAL_ALLOCATION = 5;
+
+  private final static int ZERO_LENGTH_ARRAY = 6;
+
+  private final static int MULTI_NEW_ARRAY = 7;
+
+  private final static int SMUSHED_ALLOCATION = 8;
+
+  private final static int OPAQUE = 9;
+
+  /*
+   * kinds of pointer keys. A record holds the kind, two operands and the points-to set: a node and a value number for a local, a
+   * node for a return value, a field for a static field, an instance key and a field for an instance field, and an instance key
+   * for array contents.
+   */
+  private final static int LOCAL = 0;
+
+  private final static int RETURN_VALUE = 1;
+
+  private final static int EXCEPTIONAL_RETURN_VALUE = 2;
+
+  private final static int STATIC_FIELD = 3;
+
+  private final static int INSTANCE_FIELD = 4;
+
+  private final static int ARRAY_CONTENTS = 5;
+
+  /**
+   * or'ed into the kind of a pointer key for which {@link PointerAnalysis#isFiltered(PointerKey)} holds
+   */
+  private final static int FILTERED = 0x100;
+
+  private final IClassHierarchy cha;
+
+  private final MappedFile data;
+
+  private final int nPointerKeys;
+
+  /**
+   * int indices of the sections of {@link #data}
+   */
+  private final long fieldTable, pointerKeyTable, hashTable, setStart, setElements, stringStart;
+
+  private final int hashMask;
+
+  /**
+   * byte offset of the string pool's contents in {@link #data}
+   */
+  private final long stringBytes;
+
+  /**
+   * the nodes of the governing call graph in iteration order
+   */
+  private final CGNode[] nodes;
+
+  /**
+   * node number in the governing call graph -> position in {@link #nodes}
+   */
+  private final int[] nodeIndex;
+
+  private final Map<String, ClassLoaderReference> loaders = HashMapFactory.make();
+
+  /**
+   * decoded strings of the pool, filled in lazily
+   */
+  private final String[] strings;
+
+  /**
+   * resolved fields of the field table, filled in lazily
+   */
+  private final IField[] fields;
+
+  private final HeapModel heapModel = new Model();
+
+  /**
+   * instance keys by the questions a {@link HeapModel} asks about them, built when first needed
+   */
+  private Map<Object, InstanceKey> allocations, constants;
+
+  private Map<IClass, InstanceKey> concreteTypes;
+
+  private MappedPointerAnalysis(MappedFile data, CallGraph cg) throws IOException {
+    super(cg, MutableMapping.<InstanceKey> make());
+    this.cha = cg.getClassHierarchy();
+    this.data = data;
+    if (data.intCount() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+      throw new IOException("not a pointer analysis file");
+    }
+    int nNodes = data.getInt(1);
+    int nInstanceKeys = data.getInt(2);
+    int nFields = data.getInt(3);
+    nPointerKeys = data.getInt(4);
+    int tableSize = data.getInt(5);
+    int nSets = data.getInt(6);
+    int nSetElements = data.getInt(7);
+    int nStrings = data.getInt(8);
+    long instanceKeyTable = HEADER_SIZE;
+    fieldTable = instanceKeyTable + INSTANCE_KEY_SIZE * (long) nInstanceKeys;
+    pointerKeyTable = fieldTable + FIELD_SIZE * (long) nFields;
+    hashTable = pointerKeyTable + POINTER_KEY_SIZE * (long) nPointerKeys;
+    hashMask = tableSize - 1;
+    setStart = hashTable + tableSize;
+    setElements = setStart + nSets + 1;
+    stringStart = setElements + nSetElements;
+    stringBytes = 4 * (stringStart + nStrings + 1);
+    if (stringBytes > data.length() || stringBytes + data.getInt(stringStart + nStrings) != data.length()
+        || data.getLong(9) != data.length()) {
+      throw new IOException("truncated pointer analysis file");
+    }
+    if (nNodes != cg.getNumberOfNodes()) {
+      throw new IllegalArgumentException("call graph has " + cg.getNumberOfNodes() + " nodes, expected " + nNodes);
+    }
+
+    strings = new String[nStrings];
+    fields = new IField[nFields];
+    nodes = new CGNode[nNodes];
+    nodeIndex = new int[cg.getMaxNumber() + 1];
+    Arrays.fill(nodeIndex, -1);
+    int i = 0;
+    for (CGNode n : cg) {
+      nodeIndex[cg.getNumber(n)] = i;
+      nodes[i++] = n;
+    }
+
+    for (ClassLoaderReference l : Arrays.asList(ClassLoaderReference.Primordial, ClassLoaderReference.Extension,
+        ClassLoaderReference.Application)) {
+      loaders.put(l.getName().toString(), l);
+    }
+    for (IClassLoader l : cha.getLoaders()) {
+      loaders.put(l.getName().toString(), l.getReference());
+    }
+
+    // the points-to sets refer to instance keys by number, so all of them must be known up front
+    for (int k = 0; k < nInstanceKeys; k++) {
+      InstanceKey ik = instanceKey(instanceKeyTable + INSTANCE_KEY_SIZE * (long) k);
+      if (ik != null) {
+        instanceKeys.put(k, ik);
+      }
+    }
+  }
+
+  /**
+   * Map a pointer analysis written by {@link #write(PointerAnalysis, CallGraph, File)}.
+   *
+   * @param cg the call graph of the analysis, or one which iterates the same nodes in the same order; its class hierarchy is used
+   *          to resolve the types, methods and fields of the keys
+   * @throws IOException if file cannot be read or is not a pointer analysis file
+   * @throws IllegalArgumentException if cg does not have the number of nodes of the original call graph
+   */
+  public static MappedPointerAnalysis load(File file, CallGraph cg) throws IOException {
+    if (file == null) {
+      throw new IllegalArgumentException("null file");
+    }
+    if (cg == null) {
+      throw new IllegalArgumentException("null cg");
+    }
+    return new MappedPointerAnalysis(MappedFile.map(file), cg);
+  }
+
+  /**
+   * File format, all big-endian ints: a header (MAGIC, number of nodes, instance keys, fields, pointer keys, hash table slots,
+   * points-to sets, points-to set elements and strings, and the file length as a long); the instance keys; the fields, each the
+   * loader and name of the declaring type, the field name, and the loader and name of the field type; the pointer keys; the hash
+   * table, each slot 0 or one more than the number of a pointer key; a row start table for the points-to sets followed by the
+   * rows; and the string pool as a table of byte offsets followed by the UTF-8 bytes of the strings.
+   *
+   * @param cg the call graph of pa, whose iteration order numbers the nodes
+   * @return the number of pointer keys of pa which were not stored because their kind is not supported
+   * @throws IOException if file cannot be written, or the strings of the analysis take more than 2GB
+   */
+  public static int write(PointerAnalysis<InstanceKey> pa, CallGraph cg, File file) throws IOException {
+    if (pa == null) {
+      throw new IllegalArgumentException("null pa");
+    }
+    if (cg == null) {
+      throw new IllegalArgumentException("null cg");
+    }
+    if (file == null) {
+      throw new IllegalArgumentException("null file");
+    }
+    Writer w = new Writer(cg);
+    int nInstanceKeys = pa.getInstanceKeyMapping().getMaximumIndex() + 1;
+    for (int i = 0; i < nInstanceKeys; i++) {
+      w.addInstanceKey(pa.getInstanceKeyMapping().getMappedObject(i));
+    }
+
+    int skipped = 0;
+    IntList hashes = new IntList();
+    Map<Row, Integer> sets = HashMapFactory.make();
+    IntList setStart = new IntList(), setElements = new IntList();
+    for (PointerKey pk : pa.getPointerKeys()) {
+      int hash = w.addPointerKey(pk, pa.getInstanceKeyMapping(), pa.isFiltered(pk));
+      if (hash == -1) {
+        skipped++;
+        continue;
+      }
+      hashes.add(hash);
+      Row row = new Row(pa.getPointsToSet(pk).getBackingSet());
+      Integer set = sets.get(row);
+      if (set == null) {
+        set = setStart.size();
+        sets.put(row, set);
+        setStart.add(setElements.size());
+        for (int x : row.elements) {
+          setElements.add(x);
+        }
+      }
+      w.pointerKeys.add(set);
+    }
+    setStart.add(setElements.size());
+
+    int nPointerKeys = hashes.size();
+    int tableSize = Integer.highestOneBit(Math.max(1, nPointerKeys)) * 4;
+    int[] table = new int[tableSize];
+    for (int i = 0; i < nPointerKeys; i++) {
+      int slot = hashes.elements[i] & (tableSize - 1);
+      while (table[slot] != 0) {
+        slot = (slot + 1) & (tableSize - 1);
+      }
+      table[slot] = i + 1;
+    }
+
+    List<byte[]> utf8 = new ArrayList<byte[]>(w.strings.size());
+    long stringLength = 0;
+    for (String s : w.strings) {
+      byte[] b = UTF8Convert.toUTF8(s);
+      utf8.add(b);
+      stringLength += b.length;
+    }
+    if (stringLength > Integer.MAX_VALUE) {
+      throw new IOException("string pool of " + stringLength + " bytes exceeds 2GB");
+    }
+    long length = 4L * (HEADER_SIZE + w.instanceKeys.size() + w.fields.size() + w.pointerKeys.size() + tableSize + setStart.size()
+        + setElements.size() + w.strings.size() + 1) + stringLength;
+
+    File tmp = new File(file.getPath() + ".tmp");
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(cg.getNumberOfNodes());
+      out.writeInt(nInstanceKeys);
+      out.writeInt(w.fields.size() / FIELD_SIZE);
+      out.writeInt(nPointerKeys);
+      out.writeInt(tableSize);
+      out.writeInt(setStart.size() - 1);
+      out.writeInt(setElements.size());
+      out.writeInt(w.strings.size());
+      out.writeLong(length);
+      w.instanceKeys.write(out);
+      w.fields.write(out);
+      w.pointerKeys.write(out);
+      for (int x : table) {
+        out.writeInt(x);
+      }
+      setStart.write(out);
+      setElements.write(out);
+      int offset = 0;
+      for (byte[] b : utf8) {
+        out.writeInt(offset);
+        offset += b.length;
+      }
+      out.writeInt(offset);
+      for (byte[] b : utf8) {
+        out.write(b);
+      }
+    } finally {
+      out.close();
+    }
+    if (file.exists() && !file.delete()) {
+      tmp.delete();
+      throw new IOException("cannot replace " + file);
+    }
+    if (!tmp.renameTo(file)) {
+      tmp.delete();
+      throw new IOException("cannot rename " + tmp + " to " + file);
+    }
+    return skipped;
+  }
+
+  /**
+   * the hash of a pointer key record under which it is found in the hash table; fields contribute their names rather than their
+   * position in the field table, so that a query can compute the hash without finding the field first
+   */
+  private static int hash(int kind, int a, int b) {
+    int h = (kind * 31 + a) * 31 + b;
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    return h & 0x7fffffff;
+  }
+
+  private static int hash(FieldReference f) {
+    return (f.getDeclaringClass().getName().toString() + "." + f.getName()).hashCode();
+  }
+
+  /**
+   * accumulates the tables of the file
+   */
+  private final static class Writer {
+    private final CallGraph cg;
+
+    private final int[] index;
+
+    private final Map<String, Integer> pool = HashMapFactory.make();
+
+    private final List<String> strings = new ArrayList<String>();
+
+    private final Map<FieldReference, Integer> fieldNumbers = HashMapFactory.make();
+
+    private final IntList instanceKeys = new IntList(), fields = new IntList(), pointerKeys = new IntList();
+
+    Writer(CallGraph cg) {
+      this.cg = cg;
+      index = new int[cg.getMaxNumber() + 1];
+      Arrays.fill(index, -1);
+      int i = 0;
+      for (CGNode n : cg) {
+        index[cg.getNumber(n)] = i++;
+      }
+    }
+
+    private int node(CGNode n) {
+      return cg.containsNode(n) ? index[cg.getNumber(n)] : -1;
+    }
+
+    private int intern(String s) {
+      Integer i = pool.get(s);
+      if (i == null) {
+        i = strings.size();
+        pool.put(s, i);
+        strings.add(s);
+      }
+      return i;
+    }
+
+    private int field(IField f) {
+      FieldReference ref = f.getReference();
+      Integer i = fieldNumbers.get(ref);
+      if (i == null) {
+        i = fieldNumbers.size();
+        fieldNumbers.put(ref, i);
+        addType(fields, ref.getDeclaringClass());
+        fields.add(intern(ref.getName().toString()));
+        addType(fields, ref.getFieldType());
+      }
+      return i;
+    }
+
+    private void addType(IntList l, TypeReference t) {
+      l.add(intern(t.getClassLoader().getName().toString()));
+      l.add(intern(t.getName().toString()));
+    }
+
+    private void addInstanceKey(InstanceKey ik) {
+      int kind = OPAQUE, node = -1, pc = -1, extra = -1;
+      TypeReference type = null;
+      if (ik == null) {
+        kind = NO_KEY;
+      } else if (ik instanceof ConcreteTypeKey) {
+        kind = CONCRETE_TYPE;
+      } else if (ik instanceof ConstantKey) {
+        Object value = ((ConstantKey<?>) ik).getValue();
+        if (value instanceof String) {
+          kind = CONSTANT_STRING;
+          extra = intern((String) value);
+        } else if (value instanceof IClass) {
+          kind = CONSTANT_TYPE;
+          type = ((IClass) value).getReference();
+        } else if (value instanceof IMethod) {
+          kind = CONSTANT_METHOD;
+          type = ((IMethod) value).getReference().getDeclaringClass();
+          extra = intern(((IMethod) value).getReference().getSelector().toString());
+        }
+      } else if (ik instanceof AbstractTypeInNode && node(((AbstractTypeInNode) ik).getNode()) != -1) {
+        node = node(((AbstractTypeInNode) ik).getNode());
+        if (ik instanceof AllocationSiteInNode) {
+          NewSiteReference site = ((AllocationSiteInNode) ik).getSite();
+          pc = site.getProgramCounter();
+          type = site.getDeclaredType();
+          if (ik instanceof NormalAllocationInNode) {
+            kind = NORMAL_ALLOCATION;
+          } else if (ik instanceof ZeroLengthArrayInNode) {
+            kind = ZERO_LENGTH_ARRAY;
+          } else if (ik instanceof MultiNewArrayInNode) {
+            kind = MULTI_NEW_ARRAY;
+            extra = ((MultiNewArrayInNode) ik).getDim();
+          }
+        } else if (ik instanceof SmushedAllocationSiteInNode) {
+          kind = SMUSHED_ALLOCATION;
+        }
+      }
+      if (kind == OPAQUE) {
+        node = pc = -1;
+        type = null;
+        extra = intern(ik.toString());
+      }
+      instanceKeys.add(kind);
+      instanceKeys.add(node);
+      instanceKeys.add(pc);
+      instanceKeys.add(extra);
+      if (type == null) {
+        instanceKeys.add(-1);
+        instanceKeys.add(-1);
+      } else {
+        addType(instanceKeys, type);
+      }
+      if (ik == null || ik.getConcreteType() == null) {
+        instanceKeys.add(-1);
+        instanceKeys.add(-1);
+      } else {
+        addType(instanceKeys, ik.getConcreteType().getReference());
+      }
+      if (kind != OPAQUE && ik != null && (ik.getConcreteType() instanceof SyntheticClass || kind == CONSTANT_TYPE
+          && ((ConstantKey<?>) ik).getValue() instanceof SyntheticClass)) {
+        // a class made up during the analysis may not exist in the hierarchy the file is loaded with
+        instanceKeys.add(intern(ik.toString()));
+      } else {
+        instanceKeys.add(-1);
+      }
+    }
+
+    /**
+     * add the record of a pointer key, except for its points-to set
+     *
+     * @return the hash of the record, or -1 if the kind of pk is not supported
+     */
+    private int addPointerKey(PointerKey pk, OrdinalSetMapping<InstanceKey> mapping, boolean filtered) {
+      int kind, a, b = -1, h;
+      if (pk instanceof ExceptionReturnValueKey) {
+        kind = EXCEPTIONAL_RETURN_VALUE;
+        a = node(((ReturnValueKey) pk).getNode());
+        h = hash(kind, a, b);
+      } else if (pk instanceof ReturnValueKey) {
+        kind = RETURN_VALUE;
+        a = node(((ReturnValueKey) pk).getNode());
+        h = hash(kind, a, b);
+      } else if (pk instanceof LocalPointerKey) {
+        kind = LOCAL;
+        a = node(((LocalPointerKey) pk).getNode());
+        b = ((LocalPointerKey) pk).getValueNumber();
+        h = hash(kind, a, b);
+      } else if (pk instanceof StaticFieldKey) {
+        kind = STATIC_FIELD;
+        a = 0;
+        b = field(((StaticFieldKey) pk).getField());
+        h = hash(kind, a, hash(((StaticFieldKey) pk).getField().getReference()));
+      } else if (pk instanceof InstanceFieldKey) {
+        kind = INSTANCE_FIELD;
+        a = mapping.getMappedIndex(((InstanceFieldKey) pk).getInstanceKey());
+        b = field(((InstanceFieldKey) pk).getField());
+        h = hash(kind, a, hash(((InstanceFieldKey) pk).getField().getReference()));
+      } else if (pk instanceof ArrayContentsKey) {
+        kind = ARRAY_CONTENTS;
+        a = mapping.getMappedIndex(((ArrayContentsKey) pk).getInstanceKey());
+        h = hash(kind, a, b);
+      } else {
+        return -1;
+      }
+      if (a == -1) {
+        return -1;
+      }
+      pointerKeys.add(filtered ? kind | FILTERED : kind);
+      pointerKeys.add(a);
+      pointerKeys.add(b);
+      return h;
+    }
+  }
+
+  /**
+   * the sorted elements of a points-to set, as a key for sharing equal sets
+   */
+  private final static class Row {
+    private final int[] elements;
+
+    Row(IntSet s) {
+      if (s == null) {
+        elements = new int[0];
+      } else {
+        elements = new int[s.size()];
+        int i = 0;
+        for (IntIterator it = s.intIterator(); it.hasNext();) {
+          elements[i++] = it.next();
+        }
+        Arrays.sort(elements);
+      }
+    }
+
+    @Override
+    public int hashCode() {
+      return Arrays.hashCode(elements);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof Row && Arrays.equals(elements, ((Row) obj).elements);
+    }
+  }
+
+  /**
+   * a growable array of ints, used while writing
+   */
+  private final static class IntList {
+    private int[] elements = new int[16];
+
+    private int size;
+
+    void add(int x) {
+      if (size == elements.length) {
+        elements = Arrays.copyOf(elements, 2 * size);
+      }
+      elements[size++] = x;
+    }
+
+    int size() {
+      return size;
+    }
+
+    void write(DataOutputStream out) throws IOException {
+      for (int i = 0; i < size; i++) {
+        out.writeInt(elements[i]);
+      }
+    }
+  }
+
+  private String string(int i) {
+    String s = strings[i];
+    if (s == null) {
+      int from = data.getInt(stringStart + i);
+      byte[] b = data.getBytes(stringBytes + from, data.getInt(stringStart + i + 1) - from);
+      try {
+        s = UTF8Convert.fromUTF8(b);
+      } catch (UTFDataFormatException e) {
+        throw new WalaRuntimeException("corrupt string in pointer analysis file", e);
+      }
+      strings[i] = s;
+    }
+    return s;
+  }
+
+  private ClassLoaderReference loader(int i) {
+    String name = string(i);
+    ClassLoaderReference result = loaders.get(name);
+    if (result == null) {
+      throw new IllegalStateException("unknown class loader " + name);
+    }
+    return result;
+  }
+
+  /**
+   * @return the type stored at offset, or null if none is
+   */
+  private TypeReference type(long offset) {
+    if (data.getInt(offset) == -1) {
+      return null;
+    }
+    return TypeReference.findOrCreate(loader(data.getInt(offset)), string(data.getInt(offset + 1)));
+  }
+
+  /**
+   * @return the class stored at offset, or null if none is
+   */
+  private IClass klass(long offset) {
+    TypeReference t = type(offset);
+    if (t == null) {
+      return null;
+    }
+    IClass result = cha.lookupClass(t);
+    if (result == null) {
+      throw new IllegalStateException("cannot find class " + t);
+    }
+    return result;
+  }
+
+  private IField field(int i) {
+    IField f = fields[i];
+    if (f == null) {
+      FieldReference ref = fieldReference(i);
+      f = cha.resolveField(ref);
+      if (f == null) {
+        throw new IllegalStateException("cannot resolve field " + ref);
+      }
+      fields[i] = f;
+    }
+    return f;
+  }
+
+  private FieldReference fieldReference(int i) {
+    long offset = fieldTable + FIELD_SIZE * (long) i;
+    return FieldReference.findOrCreate(type(offset), Atom.findOrCreateUnicodeAtom(string(data.getInt(offset + 2))), type(offset + 3));
+  }
+
+  /**
+   * @return the instance key stored at offset; a key of a synthetic class which is not in the class hierarchy comes back opaque
+   */
+  private InstanceKey instanceKey(long offset) {
+    try {
+      return decodeInstanceKey(offset);
+    } catch (IllegalStateException e) {
+      int description = data.getInt(offset + 8);
+      if (description == -1) {
+        throw e;
+      }
+      return new OpaqueInstanceKey(string(description), null);
+    }
+  }
+
+  private InstanceKey decodeInstanceKey(long offset) {
+    int kind = data.getInt(offset);
+    CGNode node = data.getInt(offset + 1) == -1 ? null : nodes[data.getInt(offset + 1)];
+    int pc = data.getInt(offset + 2);
+    int extra = data.getInt(offset + 3);
+    if (kind == OPAQUE) {
+      TypeReference t = type(offset + 6);
+      return new OpaqueInstanceKey(string(extra), t == null ? null : cha.lookupClass(t));
+    }
+    IClass concreteType = klass(offset + 6);
+    switch (kind) {
+    case NO_KEY:
+      return null;
+    case CONCRETE_TYPE:
+      return new ConcreteTypeKey(concreteType);
+    case CONSTANT_STRING:
+      return new ConstantKey<String>(string(extra), concreteType);
+    case CONSTANT_TYPE:
+      return new ConstantKey<IClass>(klass(offset + 4), concreteType);
+    case CONSTANT_METHOD: {
+      TypeReference type = type(offset + 4);
+      Language l = cha.getScope().getLanguage(type.getClassLoader().getLanguage());
+      Selector selector = l == null ? Selector.make(string(extra)) : Selector.make(l, string(extra));
+      MethodReference ref = MethodReference.findOrCreate(type, selector);
+      IMethod m = cha.resolveMethod(ref);
+      if (m == null) {
+        throw new IllegalStateException("cannot resolve method " + ref);
+      }
+      return new ConstantKey<IMethod>(m, concreteType);
+    }
+    case NORMAL_ALLOCATION:
+      return new NormalAllocationInNode(node, NewSiteReference.make(pc, type(offset + 4)), concreteType);
+    case ZERO_LENGTH_ARRAY:
+      return new ZeroLengthArrayInNode(node, NewSiteReference.make(pc, type(offset + 4)), concreteType);
+    case MULTI_NEW_ARRAY:
+      // the key is built from the allocated array class, and its concrete type is the element class at depth extra
+      return new MultiNewArrayInNode(node, NewSiteReference.make(pc, type(offset + 4)), (ArrayClass) klass(offset + 4), extra);
+    case SMUSHED_ALLOCATION:
+      return new SmushedAllocationSiteInNode(node, concreteType);
+    default:
+      throw new IllegalStateException("corrupt instance key at " + offset);
+    }
+  }
+
+  /**
+   * an instance key of a kind which this format does not know, or of a synthetic class which cannot be found, known only by its
+   * printed representation and its concrete type, if that can be found
+   */
+  private final static class OpaqueInstanceKey implements InstanceKey {
+    private final String name;
+
+    private final IClass concreteType;
+
+    OpaqueInstanceKey(String name, IClass concreteType) {
+      this.name = name;
+      this.concreteType = concreteType;
+    }
+
+    @Override
+    public IClass getConcreteType() {
+      return concreteType;
+    }
+
+    @Override
+    public Iterator<Pair<CGNode, NewSiteReference>> getCreationSites(CallGraph CG) {
+      return EmptyIterator.instance();
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+
+  private int node(CGNode n) {
+    return getCallGraph().containsNode(n) ? nodeIndex[getCallGraph().getNumber(n)] : -1;
+  }
+
+  /**
+   * @return the number of the record of key, or -1 if key is not stored
+   */
+  private int find(PointerKey key) {
+    int kind, a, b = -1, h;
+    FieldReference f = null;
+    if (key instanceof ExceptionReturnValueKey) {
+      kind = EXCEPTIONAL_RETURN_VALUE;
+      a = node(((ReturnValueKey) key).getNode());
+      h = hash(kind, a, b);
+    } else if (key instanceof ReturnValueKey) {
+      kind = RETURN_VALUE;
+      a = node(((ReturnValueKey) key).getNode());
+      h = hash(kind, a, b);
+    } else if (key instanceof LocalPointerKey) {
+      kind = LOCAL;
+      a = node(((LocalPointerKey) key).getNode());
+      b = ((LocalPointerKey) key).getValueNumber();
+      h = hash(kind, a, b);
+    } else if (key instanceof StaticFieldKey) {
+      kind = STATIC_FIELD;
+      a = 0;
+      f = ((StaticFieldKey) key).getField().getReference();
+      h = hash(kind, a, hash(f));
+    } else if (key instanceof InstanceFieldKey) {
+      kind = INSTANCE_FIELD;
+      a = instanceKeys.getMappedIndex(((InstanceFieldKey) key).getInstanceKey());
+      f = ((InstanceFieldKey) key).getField().getReference();
+      h = hash(kind, a, hash(f));
+    } else if (key instanceof ArrayContentsKey) {
+      kind = ARRAY_CONTENTS;
+      a = instanceKeys.getMappedIndex(((ArrayContentsKey) key).getInstanceKey());
+      h = hash(kind, a, b);
+    } else {
+      return -1;
+    }
+    if (a == -1) {
+      return -1;
+    }
+    for (int slot = h & hashMask;; slot = (slot + 1) & hashMask) {
+      int r = data.getInt(hashTable + slot) - 1;
+      if (r == -1) {
+        return -1;
+      }
+      long offset = pointerKeyTable + POINTER_KEY_SIZE * (long) r;
+      if ((data.getInt(offset) & ~FILTERED) == kind && data.getInt(offset + 1) == a
+          && (f == null ? data.getInt(offset + 2) == b : fieldReference(data.getInt(offset + 2)).equals(f))) {
+        return r;
+      }
+    }
+  }
+
+  private PointerKey pointerKey(int r) {
+    long offset = pointerKeyTable + POINTER_KEY_SIZE * (long) r;
+    int a = data.getInt(offset + 1);
+    int b = data.getInt(offset + 2);
+    switch (data.getInt(offset) & ~FILTERED) {
+    case LOCAL:
+      return new LocalPointerKey(nodes[a], b);
+    case RETURN_VALUE:
+      return new ReturnValueKey(nodes[a]);
+    case EXCEPTIONAL_RETURN_VALUE:
+      return new ExceptionReturnValueKey(nodes[a]);
+    case STATIC_FIELD:
+      return new StaticFieldKey(field(b));
+    case INSTANCE_FIELD:
+      return new InstanceFieldKey(instanceKeys.getMappedObject(a), field(b));
+    case ARRAY_CONTENTS:
+      return new ArrayContentsKey(instanceKeys.getMappedObject(a));
+    default:
+      throw new IllegalStateException("corrupt pointer key " + r);
+    }
+  }
+
+  /**
+   * @return the points-to set of key, read from the file; empty if key is not stored
+   */
+  @Override
+  public OrdinalSet<InstanceKey> getPointsToSet(PointerKey key) {
+    int r = find(key);
+    if (r == -1) {
+      return OrdinalSet.empty();
+    }
+    int set = data.getInt(pointerKeyTable + POINTER_KEY_SIZE * (long) r + 3);
+    int from = data.getInt(setStart + set);
+    int to = data.getInt(setStart + set + 1);
+    if (from == to) {
+      return OrdinalSet.empty();
+    }
+    MutableSparseIntSet s = MutableSparseIntSet.createMutableSparseIntSet(to - from);
+    for (int i = from; i < to; i++) {
+      s.add(data.getInt(setElements + i));
+    }
+    return new OrdinalSet<InstanceKey>(s, instanceKeys);
+  }
+
+  /**
+   * @return the stored pointer keys, decoded as they are iterated; locals come back without their type filters
+   */
+  @Override
+  public Iterable<PointerKey> getPointerKeys() {
+    return new Iterable<PointerKey>() {
+      @Override
+      public Iterator<PointerKey> iterator() {
+        return new Iterator<PointerKey>() {
+          private int r = 0;
+
+          @Override
+          public boolean hasNext() {
+            return r < nPointerKeys;
+          }
+
+          @Override
+          public PointerKey next() {
+            if (!hasNext()) {
+              throw new NoSuchElementException();
+            }
+            return pointerKey(r++);
+          }
+
+          @Override
+          public void remove() {
+            throw new UnsupportedOperationException();
+          }
+        };
+      }
+    };
+  }
+
+  /**
+   * @return the number of pointer keys stored
+   */
+  public int getNumberOfPointerKeys() {
+    return nPointerKeys;
+  }
+
+  @Override
+  public boolean isFiltered(PointerKey key) {
+    int r = find(key);
+    return r != -1 && (data.getInt(pointerKeyTable + POINTER_KEY_SIZE * (long) r) & FILTERED) != 0;
+  }
+
+  @Override
+  public HeapModel getHeapModel() {
+    return heapModel;
+  }
+
+  @Override
+  public IClassHierarchy getClassHierarchy() {
+    return cha;
+  }
+
+  private synchronized void indexInstanceKeys() {
+    if (allocations != null) {
+      return;
+    }
+    Map<Object, InstanceKey> a = HashMapFactory.make();
+    Map<Object, InstanceKey> c = HashMapFactory.make();
+    Map<IClass, InstanceKey> t = HashMapFactory.make();
+    for (InstanceKey ik : instanceKeys) {
+      if (ik instanceof MultiNewArrayInNode) {
+        MultiNewArrayInNode m = (MultiNewArrayInNode) ik;
+        a.put(Pair.make(Pair.make(m.getNode(), m.getSite()), m.getDim()), ik);
+      } else if (ik instanceof AllocationSiteInNode) {
+        a.put(Pair.make(((AllocationSiteInNode) ik).getNode(), ((AllocationSiteInNode) ik).getSite()), ik);
+      } else if (ik instanceof SmushedAllocationSiteInNode) {
+        a.put(Pair.make(((SmushedAllocationSiteInNode) ik).getNode(), ik.getConcreteType()), ik);
+      } else if (ik instanceof ConstantKey) {
+        c.put(((ConstantKey<?>) ik).getValue(), ik);
+      } else if (ik instanceof ConcreteTypeKey) {
+        t.put(ik.getConcreteType(), ik);
+      }
+    }
+    constants = c;
+    concreteTypes = t;
+    allocations = a;
+  }
+
+  /**
+   * answers instance key queries with the stored keys, and builds pointer keys directly
+   */
+  private final class Model implements HeapModel {
+
+    /**
+     * @return the key for the allocation in node, or the smushed key for its type; null if neither is stored
+     */
+    @Override
+    public InstanceKey getInstanceKeyForAllocation(CGNode node, NewSiteReference allocation) {
+      indexInstanceKeys();
+      InstanceKey result = allocations.get(Pair.make(node, allocation));
+      if (result == null && allocation != null) {
+        IClass type = cha.lookupClass(allocation.getDeclaredType());
+        result = type == null ? null : allocations.get(Pair.make(node, type));
+      }
+      return result;
+    }
+
+    @Override
+    public InstanceKey getInstanceKeyForMultiNewArray(CGNode node, NewSiteReference allocation, int dim) {
+      indexInstanceKeys();
+      return allocations.get(Pair.make(Pair.make(node, allocation), dim));
+    }
+
+    @Override
+    public <T> InstanceKey getInstanceKeyForConstant(TypeReference type, T S) {
+      indexInstanceKeys();
+      return constants.get(S);
+    }
+
+    @Override
+    public InstanceKey getInstanceKeyForPEI(CGNode node, ProgramCounter instr, TypeReference type) {
+      indexInstanceKeys();
+      IClass klass = cha.lookupClass(type);
+      return klass == null ? null : concreteTypes.get(klass);
+    }
+
+    @Override
+    public InstanceKey getInstanceKeyForMetadataObject(Object obj, TypeReference objType) {
+      indexInstanceKeys();
+      return constants.get(obj);
+    }
+
+    @Override
+    public PointerKey getPointerKeyForLocal(CGNode node, int valueNumber) {
+      return new LocalPointerKey(node, valueNumber);
+    }
+
+    @Override
+    public FilteredPointerKey getFilteredPointerKeyForLocal(CGNode node, int valueNumber, FilteredPointerKey.TypeFilter filter) {
+      return new LocalPointerKeyWithFilter(node, valueNumber, filter);
+    }
+
+    @Override
+    public PointerKey getPointerKeyForReturnValue(CGNode node) {
+      return new ReturnValueKey(node);
+    }
+
+    @Override
+    public PointerKey getPointerKeyForExceptionalReturnValue(CGNode node) {
+      return new ExceptionReturnValueKey(node);
+    }
+
+    @Override
+    public PointerKey getPointerKeyForStaticField(IField f) {
+      return new StaticFieldKey(f);
+    }
+
+    @Override
+    public PointerKey getPointerKeyForInstanceField(InstanceKey I, IField field) {
+      return new InstanceFieldKey(I, field);
+    }
+
+    @Override
+    public PointerKey getPointerKeyForArrayContents(InstanceKey I) {
+      return new ArrayContentsKey(I);
+    }
+
+    @Override
+    public Iterator<PointerKey> iteratePointerKeys() {
+      return getPointerKeys().iterator();
+    }
+
+    @Override
+    public IClassHierarchy getClassHierarchy() {
+      return cha;
+    }
+  }
+}
@@ -10,7 +10,9 @@
  *******************************************************************************/
 package com.ibm.wala.ipa.callgraph.propagation;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import com.ibm.wala.util.Predicate;
 import com.ibm.wala.util.collections.FilterIterator;
@@ -80,6 +82,20 @@ public class PointsToMap {
     return pointerKeys.iterator();
   }
 
+  /**
+   * @return the {@link PointsToSetVariable}s recorded in this map, each once
+   */
+  public Iterator<PointsToSetVariable> iterateVariables() {
+    List<PointsToSetVariable> result = new ArrayList<PointsToSetVariable>();
+    for (int i = 0; i <= pointerKeys.getMaximumIndex(); i++) {
+      Object o = pointsToSets.get(i);
+      if (o instanceof PointsToSetVariable) {
+        result.add((PointsToSetVariable) o);
+      }
+    }
+    return result.iterator();
+  }
+
   /**
    * If p is unified, returns the representative for p.
    */
@@ -126,6 +142,22 @@ public class PointsToMap {
     pointsToSets.set(i, v);
   }
 
+  /**
+   * forget a pointer key and its points-to set, e.g. because the code that gave rise to it changed. The number of the key is not
+   * reused.
+   */
+  public void remove(PointerKey key) {
+    if (key == null) {
+      throw new IllegalArgumentException("null key");
+    }
+    int i = pointerKeys.getMappedIndex(key);
+    if (i != -1) {
+      pointerKeys.deleteMappedObject(key);
+      pointsToSets.set(i, null);
+      transitiveRoots.clear(i);
+    }
+  }
+
   private int findOrCreateIndex(PointerKey key) {
     int result = pointerKeys.getMappedIndex(key);
     if (result == -1) {
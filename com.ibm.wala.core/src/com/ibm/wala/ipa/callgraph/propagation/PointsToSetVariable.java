@@ -10,6 +10,8 @@
  *******************************************************************************/
 package com.ibm.wala.ipa.callgraph.propagation;
 
+import java.util.Arrays;
+
 import com.ibm.wala.analysis.typeInference.TypeInference;
 import com.ibm.wala.classLoader.IClass;
 import com.ibm.wala.fixpoint.IntSetVariable;
@@ -22,6 +24,7 @@ import com.ibm.wala.util.intset.IntSet;
 import com.ibm.wala.util.intset.IntSetAction;
 import com.ibm.wala.util.intset.MutableMapping;
 import com.ibm.wala.util.intset.MutableSparseIntSet;
+import com.ibm.wala.util.intset.SparseIntVector;
 
 /**
  * Representation of a points-to set during an andersen-style analysis.
@@ -43,8 +46,49 @@ public class PointsToSetVariable extends IntSetVariable<PointsToSetVariable> {
    */
   public static MutableMapping<InstanceKey> instanceKeys = null;
 
+  /**
+   * with difference propagation, a set starts logging its additions once it has this many elements; smaller sets are cheap enough
+   * to copy whole
+   */
+  public static final int LOG_THRESHOLD = 32;
+
+  /**
+   * the channels on which {@link #getNewElements(PointsToSetVariable, int)} tracks what has been consumed; each kind of operator
+   * from one variable to another must have its own, since they add different subsets
+   */
+  static final int ASSIGN_CHANNEL = 0;
+
+  static final int FILTER_CHANNEL = 1;
+
+  static final int INVERSE_FILTER_CHANNEL = 2;
+
+  private static final int CHANNELS = 4;
+
   private PointerKey pointerKey;
 
+  /**
+   * may this set log its additions, so that operators can consume only the elements added since they last ran?
+   */
+  private boolean differencePropagation;
+
+  /**
+   * once the set is big enough, the elements of the set in the order they were added; null otherwise
+   */
+  private int[] log;
+
+  private int logSize;
+
+  /**
+   * for each variable whose log has been consumed into this one, keyed by its graph node id and the channel, the number of
+   * elements of the log consumed so far
+   */
+  private SparseIntVector consumed;
+
+  /**
+   * the size of this set when points-to sets were last interned, or -1; see {@link PropagationSystem#internPointsToSets()}
+   */
+  private int internedSize = -1;
+
   public PointsToSetVariable(PointerKey key) {
     super();
     if (key == null) {
@@ -75,6 +119,163 @@ public class PointsToSetVariable extends IntSetVariable<PointsToSetVariable> {
     }
   }
   
+  int getInternedSize() {
+    return internedSize;
+  }
+
+  void setInternedSize(int internedSize) {
+    this.internedSize = internedSize;
+  }
+
+  boolean getDifferencePropagation() {
+    return differencePropagation;
+  }
+
+  /**
+   * Allow or forbid this set to log its additions; see {@link PropagationSystem#setDifferencePropagation(boolean)}
+   */
+  void setDifferencePropagation(boolean differencePropagation) {
+    this.differencePropagation = differencePropagation;
+    if (!differencePropagation) {
+      log = null;
+      logSize = 0;
+    } else {
+      startLogIfBig();
+    }
+  }
+
+  /**
+   * Once the set is big enough, start logging its additions with the elements it already has.
+   */
+  private void startLogIfBig() {
+    if (differencePropagation && log == null && size() >= LOG_THRESHOLD) {
+      final int[] l = new int[2 * size()];
+      getValue().foreach(new IntSetAction() {
+        @Override
+        public void act(int x) {
+          l[logSize++] = x;
+        }
+      });
+      log = l;
+    }
+  }
+
+  /**
+   * Add b to the set and to the log
+   * 
+   * @return true iff the set changes
+   */
+  private boolean addLogged(int b) {
+    if (contains(b)) {
+      return false;
+    }
+    super.add(b);
+    if (logSize == log.length) {
+      int[] old = log;
+      log = new int[2 * old.length];
+      System.arraycopy(old, 0, log, 0, logSize);
+    }
+    log[logSize++] = b;
+    return true;
+  }
+
+  /**
+   * Add those elements of B which pass the filter, logging them
+   * 
+   * @param filter the filter, or null for none
+   * @return true iff the set changes
+   */
+  private boolean addAllLogged(IntSet B, final IntSet filter) {
+    final boolean[] changed = new boolean[1];
+    B.foreach(new IntSetAction() {
+      @Override
+      public void act(int x) {
+        if ((filter == null || filter.contains(x)) && addLogged(x)) {
+          changed[0] = true;
+        }
+      }
+    });
+    return changed[0];
+  }
+
+  /**
+   * A set that shrinks or is overwritten can no longer tell which elements are new, so it stops logging for good.
+   */
+  private void stopLogging() {
+    setDifferencePropagation(false);
+  }
+
+  /**
+   * Get the elements of other that have not yet been consumed on the given channel into this variable, and mark them consumed.
+   * 
+   * This relies on sets only ever growing while they log, so that any element consumed earlier is still in this set.
+   * 
+   * @return the new elements of other, or null if other does not know which of its elements are new, in which case the caller must
+   *         use all of them
+   */
+  IntSet getNewElements(PointsToSetVariable other, int channel) {
+    int id = other.getGraphNodeId();
+    if (other.log == null || id < 0) {
+      return null;
+    }
+    if (consumed == null) {
+      consumed = new SparseIntVector(0);
+    }
+    int key = id * CHANNELS + channel;
+    int from = consumed.get(key);
+    int to = other.logSize;
+    consumed.set(key, to);
+    // sorted, the elements are appended to the sparse set rather than inserted
+    int[] elements = Arrays.copyOfRange(other.log, from, to);
+    Arrays.sort(elements);
+    MutableSparseIntSet result = MutableSparseIntSet.createMutableSparseIntSet(elements.length + 1);
+    for (int x : elements) {
+      result.add(x);
+    }
+    return result;
+  }
+
+  /**
+   * Add the elements of other which have been added to it since this method was last called with other, or all of them on the
+   * first call.
+   * 
+   * @return true iff the contents of this variable changes.
+   */
+  public boolean addAllNew(PointsToSetVariable other) {
+    int id = other.getGraphNodeId();
+    if (other.log == null || id < 0) {
+      return addAll(other);
+    }
+    if (PARANOID) {
+      checkTypes(other.getValue());
+    }
+    if (consumed == null) {
+      consumed = new SparseIntVector(0);
+    }
+    int key = id * CHANNELS + ASSIGN_CHANNEL;
+    int from = consumed.get(key);
+    int to = other.logSize;
+    boolean changed = false;
+    if (log != null) {
+      for (int i = from; i < to; i++) {
+        changed |= addLogged(other.log[i]);
+      }
+    } else {
+      for (int i = from; i < to; i++) {
+        if (!contains(other.log[i])) {
+          super.add(other.log[i]);
+          changed = true;
+        }
+      }
+      if (changed) {
+        startLogIfBig();
+      }
+    }
+    consumed.set(key, to);
+    cryIfTooBig();
+    return changed;
+  }
+
   @Override
   public void add(int b) {
     if (PARANOID) {
@@ -82,7 +283,12 @@ public class PointsToSetVariable extends IntSetVariable<PointsToSetVariable> {
       m.add(b);
       checkTypes(m);
     }
-    super.add(b);
+    if (log != null) {
+      addLogged(b);
+    } else {
+      super.add(b);
+      startLogIfBig();
+    }
     cryIfTooBig();
   }
 
@@ -91,11 +297,53 @@ public class PointsToSetVariable extends IntSetVariable<PointsToSetVariable> {
     if (PARANOID) {
       checkTypes(B);
     }
-    boolean v = super.addAll(B);
+    boolean v;
+    if (log != null) {
+      v = addAllLogged(B, null);
+    } else {
+      v = super.addAll(B);
+      if (v) {
+        startLogIfBig();
+      }
+    }
     cryIfTooBig();
     return v;
   }
 
+  @Override
+  public boolean addAllInIntersection(IntSet other, IntSet filter) {
+    if (log != null) {
+      return addAllLogged(other, filter);
+    } else {
+      boolean v = super.addAllInIntersection(other, filter);
+      if (v) {
+        startLogIfBig();
+      }
+      return v;
+    }
+  }
+
+  @Override
+  public void copyState(PointsToSetVariable other) {
+    stopLogging();
+    super.copyState(other);
+  }
+
+  @Override
+  public void remove(int i) {
+    stopLogging();
+    super.remove(i);
+  }
+
+  @Override
+  public void removeAll() {
+    stopLogging();
+    super.removeAll();
+    // an emptied set must consume everything anew
+    consumed = null;
+    internedSize = -1;
+  }
+
   /**
    * check that the types of all instance keys are assignable to declared type of pointer key
    */
@@ -143,10 +391,13 @@ public class PointsToSetVariable extends IntSetVariable<PointsToSetVariable> {
     if (PARANOID) {
       checkTypes(other.getValue());
     }
-    // TODO Auto-generated method stub
-    boolean v = super.addAll(other);
-    cryIfTooBig();
-    return v;
+    // not super.addAll(other), which would copy the state of other into an empty set, and so stop logging
+    return other.getValue() == null ? false : addAll(other.getValue());
+  }
+
+  @Override
+  public boolean addAllInIntersection(PointsToSetVariable other, IntSet filter) {
+    return other.getValue() == null ? false : addAllInIntersection(other.getValue(), filter);
   }
 
   /**
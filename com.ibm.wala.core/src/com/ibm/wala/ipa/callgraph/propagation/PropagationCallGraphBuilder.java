@@ -10,6 +10,8 @@
  *******************************************************************************/
 package com.ibm.wala.ipa.callgraph.propagation;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
@@ -33,6 +35,7 @@ import com.ibm.wala.ipa.callgraph.Context;
 import com.ibm.wala.ipa.callgraph.ContextSelector;
 import com.ibm.wala.ipa.callgraph.Entrypoint;
 import com.ibm.wala.ipa.callgraph.impl.AbstractRootMethod;
+import com.ibm.wala.ipa.callgraph.impl.Everywhere;
 import com.ibm.wala.ipa.callgraph.impl.ExplicitCallGraph;
 import com.ibm.wala.ipa.callgraph.propagation.rta.RTAContextInterpreter;
 import com.ibm.wala.ipa.cha.IClassHierarchy;
@@ -43,6 +46,8 @@ import com.ibm.wala.util.CancelRuntimeException;
 import com.ibm.wala.util.MonitorUtil.IProgressMonitor;
 import com.ibm.wala.util.collections.HashSetFactory;
 import com.ibm.wala.util.debug.Assertions;
+import com.ibm.wala.util.graph.traverse.DFS;
+import com.ibm.wala.util.graph.traverse.SCCIterator;
 import com.ibm.wala.util.intset.IntSet;
 import com.ibm.wala.util.intset.IntSetAction;
 import com.ibm.wala.util.intset.IntSetUtil;
@@ -130,6 +135,11 @@ public abstract class PropagationCallGraphBuilder implements CallGraphBuilder {
    */
   private IPointsToSolver solver;
 
+  /**
+   * Metrics on the work of the solver, or null if they are not collected
+   */
+  private PropagationMetrics metrics;
+
   /**
    * The call graph under construction
    */
@@ -239,6 +249,15 @@ public abstract class PropagationCallGraphBuilder implements CallGraphBuilder {
     system.setMinEquationsForTopSort(options.getMinEquationsForTopSort());
     system.setTopologicalGrowthFactor(options.getTopologicalGrowthFactor());
     system.setMaxEvalBetweenTopo(options.getMaxEvalBetweenTopo());
+    system.setParallelism(options.getSolverParallelism());
+    system.setWorklistFactory(options.getSolverWorklist());
+    system.setCollapseCycles(options.getCollapseCycles());
+    system.setDifferencePropagation(options.getDifferencePropagation());
+    system.setInternPointsToSets(options.getInternPointsToSets());
+    system.setIncrementalUpdates(options.getIncrementalUpdates());
+    if (metrics != null) {
+      metrics.attach(system);
+    }
 
     discoveredNodes = HashSetFactory.make();
     discoveredNodes.add(callGraph.getFakeRootNode());
@@ -266,6 +285,85 @@ public abstract class PropagationCallGraphBuilder implements CallGraphBuilder {
     customInit();
 
     solver = makeSolver();
+    solve(monitor);
+
+    return callGraph;
+  }
+
+  /**
+   * Update the call graph and pointer analysis after the code of some classes changed, recomputing only what the change may
+   * affect. The nodes of the methods of the changed classes are processed again, along with the nodes of their strongly connected
+   * components in the call graph, whose edges and points-to sets may only be due to the cycle; see
+   * {@link PropagationSystem#invalidateNodes(Set)} for how their constraints are withdrawn. The constraints of nodes which the change
+   * left unreachable from the fake root are withdrawn as well; such nodes stay in the graph without edges, and are processed again
+   * if the code reaches them again. Since edges which nodes that are still reachable added as a consequence of the old code are
+   * kept, the result includes a new solution, but may be larger.
+   * 
+   * The changed classes must already give the new code of their methods, e.g. by
+   * {@link com.ibm.wala.classLoader.ShrikeClass#clearSoftCaches()} after their class files changed; their superclasses, interfaces,
+   * fields and method signatures must stay the same. This needs {@link AnalysisOptions#setIncrementalUpdates(boolean)}, and is not
+   * supported with cycle collapsing or RTA.
+   * 
+   * @param changedClasses classes whose code changed
+   * @return the updated call graph
+   * @throws IllegalStateException if there is no call graph to update
+   */
+  public CallGraph updateCallGraph(Collection<IClass> changedClasses, IProgressMonitor monitor) throws IllegalArgumentException,
+      CallGraphBuilderCancelException {
+    if (changedClasses == null) {
+      throw new IllegalArgumentException("changedClasses is null");
+    }
+    if (solver == null) {
+      throw new IllegalStateException("no call graph to update");
+    }
+    Set<TypeReference> changed = HashSetFactory.make();
+    for (IClass klass : changedClasses) {
+      changed.add(klass.getReference());
+    }
+    Set<CGNode> nodes = HashSetFactory.make();
+    for (SCCIterator<CGNode> it = new SCCIterator<CGNode>(callGraph); it.hasNext();) {
+      Set<CGNode> scc = it.next();
+      for (CGNode n : scc) {
+        if (changed.contains(n.getMethod().getDeclaringClass().getReference())) {
+          nodes.addAll(scc);
+          break;
+        }
+      }
+    }
+
+    system.invalidateNodes(nodes);
+    for (CGNode n : nodes) {
+      getAnalysisCache().invalidate(n.getMethod(), n.getContext());
+      getAnalysisCache().invalidate(n.getMethod(), Everywhere.EVERYWHERE);
+      ((ExplicitCallGraph.ExplicitNode) n).clearCachedIR();
+      callGraph.removeOutgoingEdges(n);
+      markChanged(n);
+    }
+    solve(monitor);
+
+    Set<CGNode> reachable = DFS.getReachableNodes(callGraph, Collections.singleton(callGraph.getFakeRootNode()));
+    Set<CGNode> unreachable = HashSetFactory.make();
+    for (CGNode n : callGraph) {
+      if (!reachable.contains(n) && haveAlreadyVisited(n)) {
+        unreachable.add(n);
+      }
+    }
+    if (!unreachable.isEmpty()) {
+      system.invalidateNodes(unreachable);
+      for (CGNode n : unreachable) {
+        callGraph.removeOutgoingEdges(n);
+        alreadyVisited.remove(n);
+      }
+      solve(monitor);
+    }
+
+    return callGraph;
+  }
+
+  /**
+   * Run the solver until no new nodes are discovered
+   */
+  private void solve(IProgressMonitor monitor) throws CallGraphBuilderCancelException {
     try {
       solver.solve(monitor);
     } catch (CancelException e) {
@@ -277,8 +375,9 @@ public abstract class PropagationCallGraphBuilder implements CallGraphBuilder {
           system.extractPointerAnalysis(this));
       throw c;
     }
-
-    return callGraph;
+    if (system.getInternPointsToSets()) {
+      system.internPointsToSets();
+    }
   }
 
   protected PropagationSystem makeSystem(AnalysisOptions options) {
@@ -334,7 +433,13 @@ public abstract class PropagationCallGraphBuilder implements CallGraphBuilder {
       discoveredNodes = HashSetFactory.make();
       while (it.hasNext()) {
         CGNode n = it.next();
-        result |= addConstraintsFromNode(n, monitor);
+        if (metrics == null) {
+          result |= addConstraintsFromNode(n, monitor);
+        } else {
+          int before = system.getNumberOfStatementsCreated();
+          result |= addConstraintsFromNode(n, monitor);
+          metrics.constraintsAdded(n, system.getNumberOfStatementsCreated() - before);
+        }
       }
     }
     return result;
@@ -619,9 +724,14 @@ public abstract class PropagationCallGraphBuilder implements CallGraphBuilder {
         return NOT_CHANGED;
       }
 
+      PointsToSetVariable R = newElements(lhs, rhs, PointsToSetVariable.FILTER_CHANNEL);
+      if (R == null) {
+        return NOT_CHANGED;
+      }
+
       boolean changed = false;
       FilteredPointerKey.TypeFilter filter = pk.getTypeFilter();
-      changed = filter.addFiltered(system, lhs, rhs);
+      changed = filter.addFiltered(system, lhs, R);
 
       if (DEBUG_FILTER) {
         System.err.println("RESULT " + lhs + (changed ? " (changed)" : ""));
@@ -692,6 +802,18 @@ public abstract class PropagationCallGraphBuilder implements CallGraphBuilder {
     return system;
   }
 
+  public PropagationMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Collect metrics on the work of the solver from the next call to {@link #makeCallGraph(AnalysisOptions, IProgressMonitor)} on;
+   * null stops collecting them then. While metrics are collected, every evaluation is timed.
+   */
+  public void setMetrics(PropagationMetrics metrics) {
+    this.metrics = metrics;
+  }
+
   public PointerKeyFactory getPointerKeyFactory() {
     return pointerKeyFactory;
   }
@@ -1415,6 +1537,25 @@ public abstract class PropagationCallGraphBuilder implements CallGraphBuilder {
     return filter;
   }
 
+  /**
+   * With difference propagation, a filter need only look at the elements of its right-hand side it has not seen yet. This is sound
+   * since whether a filter admits an instance key does not change over time.
+   * 
+   * @return a variable holding the elements of rhs to filter into lhs, or null if there are none
+   */
+  private static PointsToSetVariable newElements(PointsToSetVariable lhs, PointsToSetVariable rhs, int channel) {
+    IntSet delta = lhs.getNewElements(rhs, channel);
+    if (delta == null) {
+      return rhs;
+    } else if (delta.isEmpty()) {
+      return null;
+    } else {
+      PointsToSetVariable result = new PointsToSetVariable(rhs.getPointerKey());
+      result.addAll(delta);
+      return result;
+    }
+  }
+
   protected class InverseFilterOperator extends FilterOperator {
     public InverseFilterOperator() {
       super();
@@ -1454,7 +1595,12 @@ public abstract class PropagationCallGraphBuilder implements CallGraphBuilder {
         return NOT_CHANGED;
       }
 
-      boolean changed = filter.addInverseFiltered(system, lhs, rhs);
+      PointsToSetVariable R = newElements(lhs, rhs, PointsToSetVariable.INVERSE_FILTER_CHANNEL);
+      if (R == null) {
+        return NOT_CHANGED;
+      }
+
+      boolean changed = filter.addInverseFiltered(system, lhs, R);
 
       if (DEBUG_FILTER) {
         if (debug) {
@@ -16,6 +16,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import com.ibm.wala.fixedpoint.impl.GeneralStatement;
 import com.ibm.wala.fixpoint.AbstractOperator;
@@ -854,6 +855,104 @@ public class PropagationGraph implements IFixedPointSystem<PointsToSetVariable>
     }
   }
 
+  /**
+   * Find the cycles of assignments in this system: the strongly connected components of the graph in which v1 -> v2 iff there is
+   * an assignment v2 := v1. Variables for which p does not hold are left out of the graph.
+   * 
+   * @return the components with more than one variable
+   */
+  public List<Set<PointsToSetVariable>> findAssignmentCycles(Predicate<PointsToSetVariable> p) {
+    List<Set<PointsToSetVariable>> result = new ArrayList<Set<PointsToSetVariable>>();
+    IBinaryNaturalRelation R = null;
+    for (int i = 0; i < implicitUnaryMap.size(); i++) {
+      if (implicitUnaryMap.getKey(i) instanceof AssignOperator) {
+        R = (IBinaryNaturalRelation) implicitUnaryMap.getValue(i);
+      }
+    }
+    if (R == null) {
+      return result;
+    }
+    // Tarjan's algorithm, without recursion. R relates lhs to rhs, so we search the graph backwards, which has the same
+    // components.
+    int n = delegateGraph.getMaxNumber() + 1;
+    byte[] candidate = new byte[n];
+    int[] number = new int[n];
+    int[] low = new int[n];
+    boolean[] onStack = new boolean[n];
+    int[] stack = new int[n];
+    int[] path = new int[n];
+    IntIterator[] pending = new IntIterator[n];
+    int count = 0;
+    for (int root = 0; root <= R.maxKeyValue() && root < n; root++) {
+      if (number[root] != 0 || !R.anyRelated(root) || !isCandidate(root, p, candidate)) {
+        continue;
+      }
+      int sp = 0;
+      int depth = 0;
+      path[0] = root;
+      pending[0] = R.getRelated(root).intIterator();
+      number[root] = low[root] = ++count;
+      stack[sp++] = root;
+      onStack[root] = true;
+      while (depth >= 0) {
+        int v = path[depth];
+        if (pending[depth] != null && pending[depth].hasNext()) {
+          int w = pending[depth].next();
+          if (number[w] == 0) {
+            if (isCandidate(w, p, candidate)) {
+              number[w] = low[w] = ++count;
+              stack[sp++] = w;
+              onStack[w] = true;
+              path[++depth] = w;
+              IntSet preds = R.getRelated(w);
+              pending[depth] = preds == null ? null : preds.intIterator();
+            }
+          } else if (onStack[w]) {
+            low[v] = Math.min(low[v], number[w]);
+          }
+        } else {
+          pending[depth] = null;
+          if (low[v] == number[v]) {
+            if (stack[sp - 1] == v) {
+              onStack[stack[--sp]] = false;
+            } else {
+              Set<PointsToSetVariable> component = HashSetFactory.make();
+              int w;
+              do {
+                w = stack[--sp];
+                onStack[w] = false;
+                component.add((PointsToSetVariable) delegateGraph.getNode(w));
+              } while (w != v);
+              result.add(component);
+            }
+          }
+          if (--depth >= 0) {
+            low[path[depth]] = Math.min(low[path[depth]], low[v]);
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  private boolean isCandidate(int number, Predicate<PointsToSetVariable> p, byte[] cache) {
+    if (cache[number] == 0) {
+      INodeWithNumber node = delegateGraph.getNode(number);
+      cache[number] = (byte) (node instanceof PointsToSetVariable && p.test((PointsToSetVariable) node) ? 1 : 2);
+    }
+    return cache[number] == 1;
+  }
+
+  /**
+   * Rebuild the set of explicit statements. Call this after changing the operator of some statement in a way that changes its hash
+   * code, e.g. with {@link UnarySideEffect#replaceFixedSet(PointsToSetVariable)}.
+   */
+  void rehashStatements() {
+    List<AbstractStatement> statements = new ArrayList<AbstractStatement>(delegateStatements);
+    delegateStatements.clear();
+    delegateStatements.addAll(statements);
+  }
+
   /**
    * A graph of just the variables in the system. v1 -> v2 iff there exists an assignment equation e s.t. e uses v1 and e defs v2.
    * 
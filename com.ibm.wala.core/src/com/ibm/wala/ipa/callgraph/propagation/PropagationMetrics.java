@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.ipa.callgraph.propagation;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.ibm.wala.fixedpoint.impl.SolverMetrics;
+import com.ibm.wala.fixpoint.IVariable;
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.util.collections.HashMapFactory;
+import com.ibm.wala.util.collections.Pair;
+
+/**
+ * {@link SolverMetrics} for the {@link PropagationSystem} of a {@link PropagationCallGraphBuilder}, which also count the
+ * statements added for each {@link CGNode} and give a histogram of the sizes of the points-to sets. Install it with
+ * {@link PropagationCallGraphBuilder#setMetrics(PropagationMetrics)} before building the call graph.
+ */
+public class PropagationMetrics extends SolverMetrics {
+
+  private final Map<CGNode, int[]> nodeStatements = HashMapFactory.make();
+
+  /**
+   * the system whose work is measured, once the builder has made it
+   */
+  private PropagationSystem system;
+
+  public PropagationMetrics() {
+    super();
+  }
+
+  /**
+   * @param sampleInterval the size of the work list is sampled once every this many evaluations
+   */
+  public PropagationMetrics(int sampleInterval) {
+    super(sampleInterval);
+  }
+
+  /**
+   * Start measuring the work of system.
+   */
+  void attach(PropagationSystem system) {
+    if (this.system != null) {
+      this.system.removeListener(this);
+    }
+    this.system = system;
+    system.addListener(this);
+  }
+
+  /**
+   * Called by the builder once it has added the constraints of node n.
+   *
+   * @param statements the number of statements added to the system for them. Statements added later on behalf of n, e.g. for
+   *          calls dispatched to new targets while solving, are not counted.
+   */
+  public void constraintsAdded(CGNode n, int statements) {
+    int[] count = nodeStatements.get(n);
+    if (count == null) {
+      nodeStatements.put(n, new int[] { statements });
+    } else {
+      // the node was processed again, e.g. after a change
+      count[0] += statements;
+    }
+  }
+
+  /**
+   * @return up to n nodes with the number of statements added for them, the most first
+   */
+  public List<Pair<CGNode, Integer>> getNodesWithMostStatements(int n) {
+    return top(nodeStatements, n);
+  }
+
+  /**
+   * @return the number of explicit points-to sets of each size: entry 0 counts the empty sets, and entry i > 0 those whose size is
+   *         at least 2^(i-1) and less than 2^i
+   */
+  public int[] getPointsToSetSizeHistogram() {
+    if (system == null) {
+      return new int[0];
+    }
+    int[] result = new int[33];
+    int max = 0;
+    for (Iterator<PointsToSetVariable> it = system.pointsToMap.iterateVariables(); it.hasNext();) {
+      int size = it.next().size();
+      int bucket = 32 - Integer.numberOfLeadingZeros(size);
+      result[bucket]++;
+      max = Math.max(max, bucket);
+    }
+    int[] trimmed = new int[max + 1];
+    System.arraycopy(result, 0, trimmed, 0, max + 1);
+    return trimmed;
+  }
+
+  @Override
+  protected void writeJSONFields(Writer out, int n) throws IOException {
+    super.writeJSONFields(out, n);
+    out.write(",\n");
+
+    out.write("  \"nodesWithMostStatements\": [");
+    String sep = "\n";
+    for (Pair<CGNode, Integer> p : getNodesWithMostStatements(n)) {
+      out.write(sep + "    {\"node\": " + quote(p.fst.toString()) + ", \"statements\": " + p.snd + "}");
+      sep = ",\n";
+    }
+    out.write("\n  ],\n");
+
+    out.write("  \"pointsToSetSizes\": [");
+    sep = "\n";
+    int[] histogram = getPointsToSetSizeHistogram();
+    for (int i = 0; i < histogram.length; i++) {
+      long lessThan = i == 0 ? 1 : 1L << i;
+      out.write(sep + "    {\"lessThan\": " + lessThan + ", \"count\": " + histogram[i] + "}");
+      sep = ",\n";
+    }
+    out.write("\n  ]");
+  }
+
+  /**
+   * Points-to sets are described by their pointer key and size, rather than their contents.
+   */
+  @Override
+  protected String describe(IVariable<?> v) {
+    if (v instanceof PointsToSetVariable) {
+      PointsToSetVariable p = (PointsToSetVariable) v;
+      return p.getPointerKey() + " (" + p.size() + ")";
+    } else {
+      return super.describe(v);
+    }
+  }
+}
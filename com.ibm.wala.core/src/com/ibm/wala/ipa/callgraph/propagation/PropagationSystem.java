@@ -10,6 +10,7 @@
  *******************************************************************************/
 package com.ibm.wala.ipa.callgraph.propagation;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -23,22 +24,26 @@ import java.util.Set;
 import com.ibm.wala.classLoader.ArrayClass;
 import com.ibm.wala.classLoader.IClass;
 import com.ibm.wala.fixedpoint.impl.DefaultFixedPointSolver;
-import com.ibm.wala.fixedpoint.impl.Worklist;
+import com.ibm.wala.fixedpoint.impl.IFixedPointWorklist;
 import com.ibm.wala.fixpoint.AbstractOperator;
 import com.ibm.wala.fixpoint.AbstractStatement;
+import com.ibm.wala.fixpoint.IFixedPointStatement;
 import com.ibm.wala.fixpoint.IFixedPointSystem;
 import com.ibm.wala.fixpoint.IVariable;
 import com.ibm.wala.fixpoint.UnaryOperator;
 import com.ibm.wala.fixpoint.UnaryStatement;
+import com.ibm.wala.ipa.callgraph.CGNode;
 import com.ibm.wala.ipa.callgraph.CallGraph;
 import com.ibm.wala.ipa.callgraph.propagation.PropagationCallGraphBuilder.FilterOperator;
 import com.ibm.wala.ipa.cha.ClassHierarchyException;
 import com.ibm.wala.ipa.cha.ClassHierarchyWarning;
 import com.ibm.wala.types.TypeReference;
+import com.ibm.wala.util.Predicate;
 import com.ibm.wala.util.collections.HashMapFactory;
 import com.ibm.wala.util.collections.HashSetFactory;
 import com.ibm.wala.util.collections.Iterator2Collection;
 import com.ibm.wala.util.collections.MapUtil;
+import com.ibm.wala.util.collections.SimpleVector;
 import com.ibm.wala.util.debug.Assertions;
 import com.ibm.wala.util.debug.VerboseAction;
 import com.ibm.wala.util.graph.Graph;
@@ -118,6 +123,32 @@ public class PropagationSystem extends DefaultFixedPointSolver<PointsToSetVariab
 
   private int periodicMaintainInterval = DEFAULT_PERIODIC_MAINTENANCE_INTERVAL;
 
+  /**
+   * Merge the variables on cycles of assignments whenever the statements are reordered?
+   */
+  private boolean collapseCycles = false;
+
+  /**
+   * number of variables merged into others by cycle collapsing
+   */
+  private int collapsedVariables = 0;
+
+  /**
+   * Do assignments and filters propagate only the elements added to their right-hand sides since they last ran?
+   */
+  private boolean differencePropagation = false;
+
+  /**
+   * Do equal points-to sets share one representation once they are stable?
+   */
+  private boolean internPointsToSets = false;
+
+  /**
+   * for each pointer key, by its number in the {@link #pointsToMap}, the instance keys added to its set directly rather than by
+   * flow; kept only if the system can be updated after code changes, see {@link #invalidateNodes(Set)}
+   */
+  private SimpleVector<MutableIntSet> seeds = null;
+
   public PropagationSystem(CallGraph cg, PointerKeyFactory pointerKeyFactory, InstanceKeyFactory instanceKeyFactory) {
     if (cg == null) {
       throw new IllegalArgumentException("null cg");
@@ -269,6 +300,7 @@ public class PropagationSystem extends DefaultFixedPointSolver<PointsToSetVariab
     PointsToSetVariable result = pointsToMap.getPointsToSet(key);
     if (result == null) {
       result = new PointsToSetVariable(key);
+      result.setDifferencePropagation(differencePropagation);
       pointsToMap.put(key, result);
     } else {
       // check that the filter for this variable remains unique
@@ -359,8 +391,6 @@ public class PropagationSystem extends DefaultFixedPointSolver<PointsToSetVariab
     if (DEBUG) {
       System.err.println("Add constraint A: " + lhs + " " + op + " " + rhs);
     }
-    assert !pointsToMap.isUnified(lhs);
-    assert !pointsToMap.isUnified(rhs);
     PointsToSetVariable L = findOrCreatePointsToSet(lhs);
     PointsToSetVariable R = findOrCreatePointsToSet(rhs);
     return newStatement(L, op, new PointsToSetVariable[] { R }, true, true);
@@ -382,9 +412,6 @@ public class PropagationSystem extends DefaultFixedPointSolver<PointsToSetVariab
     if (DEBUG) {
       System.err.println("Add constraint A: " + lhs + " " + op + " " + rhs1 + ", " + rhs2);
     }
-    assert !pointsToMap.isUnified(lhs);
-    assert !pointsToMap.isUnified(rhs1);
-    assert !pointsToMap.isUnified(rhs2);
     PointsToSetVariable L = findOrCreatePointsToSet(lhs);
     PointsToSetVariable R1 = findOrCreatePointsToSet(rhs1);
     PointsToSetVariable R2 = findOrCreatePointsToSet(rhs2);
@@ -419,6 +446,15 @@ public class PropagationSystem extends DefaultFixedPointSolver<PointsToSetVariab
     // This works since the solver is monotonic with TOP = {}
     PointsToSetVariable L = findOrCreatePointsToSet(lhs);
     int index = findOrCreateIndexForInstanceKey(value);
+    if (seeds != null) {
+      int k = pointsToMap.getIndex(L.getPointerKey());
+      MutableIntSet S = seeds.get(k);
+      if (S == null) {
+        S = IntSetUtil.make();
+        seeds.set(k, S);
+      }
+      S.add(index);
+    }
     if (L.contains(index)) {
       // a no-op
       return false;
@@ -569,7 +605,6 @@ public class PropagationSystem extends DefaultFixedPointSolver<PointsToSetVariab
     if (DEBUG) {
       System.err.println("add constraint D: " + op + " " + arg0);
     }
-    assert !pointsToMap.isUnified(arg0);
     PointsToSetVariable v1 = findOrCreatePointsToSet(arg0);
     newStatement(null, op, v1, true, true);
   }
@@ -583,7 +618,6 @@ public class PropagationSystem extends DefaultFixedPointSolver<PointsToSetVariab
     }
     PointsToSetVariable[] vs = new PointsToSetVariable[ arg0.length ];
     for(int i = 0; i < arg0.length; i++) {
-      assert !pointsToMap.isUnified(arg0[i]);
       vs[i] = findOrCreatePointsToSet(arg0[i]);
     }
     newStatement(null, op, vs, true, true);
@@ -593,8 +627,6 @@ public class PropagationSystem extends DefaultFixedPointSolver<PointsToSetVariab
     if (DEBUG) {
       System.err.println("add constraint D: " + op + " " + arg0);
     }
-    assert !pointsToMap.isUnified(arg0);
-    assert !pointsToMap.isUnified(arg1);
     PointsToSetVariable v1 = findOrCreatePointsToSet(arg0);
     PointsToSetVariable v2 = findOrCreatePointsToSet(arg1);
     newStatement(null, op, v1, v2, true, true);
@@ -694,7 +726,7 @@ public class PropagationSystem extends DefaultFixedPointSolver<PointsToSetVariab
   /**
    * Use with care.
    */
-  Worklist getWorklist() {
+  IFixedPointWorklist getWorklist() {
     return workList;
   }
 
@@ -743,6 +775,22 @@ public class PropagationSystem extends DefaultFixedPointSolver<PointsToSetVariab
     ReferenceCleanser.clearSoftCaches();
   }
 
+  @Override
+  protected void checkpoint() {
+    super.checkpoint();
+    if (internPointsToSets) {
+      intern(true);
+    }
+  }
+
+  /**
+   * Interning is the only work done at checkpoints, at the same interval as periodic maintenance.
+   */
+  @Override
+  protected int getCheckpointInterval() {
+    return internPointsToSets ? getPeriodicMaintainInterval() : 0;
+  }
+
   @Override
   public int getVerboseInterval() {
     return verboseInterval;
@@ -777,6 +825,17 @@ public class PropagationSystem extends DefaultFixedPointSolver<PointsToSetVariab
     if (s == null) {
       throw new IllegalArgumentException("s is null");
     }
+    unifyInternal(s);
+    flowGraph.rehashStatements();
+  }
+
+  /**
+   * Unify the points-to-sets for the variables identified by the set s, leaving the set of statements in the flow graph to be
+   * rehashed by the caller.
+   * 
+   * @return the representative of the unified variables
+   */
+  private PointsToSetVariable unifyInternal(IntSet s) {
     // cache the variables represented
     HashSet<PointsToSetVariable> cache = HashSetFactory.make(s.size());
     for (IntIterator it = s.intIterator(); it.hasNext();) {
@@ -793,6 +852,396 @@ public class PropagationSystem extends DefaultFixedPointSolver<PointsToSetVariab
 
     // special logic to clean up side effects
     updateSideEffectsForUnification(cache, rep);
+    return pointsToMap.getPointsToSet(rep);
+  }
+
+  /**
+   * @return true iff points-to sets on cycles of assignments are merged during solving
+   */
+  public boolean getCollapseCycles() {
+    return collapseCycles;
+  }
+
+  /**
+   * Merge the points-to sets on cycles of assignments during solving. Since every variable on such a cycle ends up with the same
+   * points-to set, it suffices to propagate to one of them. The cycles are found each time the statements are reordered.
+   */
+  public void setCollapseCycles(boolean b) {
+    collapseCycles = b;
+  }
+
+  /**
+   * @return true iff assignments and filters propagate only the new elements of their right-hand sides
+   */
+  public boolean getDifferencePropagation() {
+    return differencePropagation;
+  }
+
+  /**
+   * Let assignments and filters propagate only the elements added to their right-hand sides since they last ran, rather than the
+   * whole set. To this end, each big enough points-to set logs the order in which elements were added to it, and each variable
+   * remembers how much of the logs of its right-hand sides it has seen. This applies to variables created from now on, so it
+   * should be set before solving.
+   */
+  public void setDifferencePropagation(boolean b) {
+    differencePropagation = b;
+  }
+
+  /**
+   * @return true iff equal points-to sets share one representation once they are stable
+   */
+  public boolean getInternPointsToSets() {
+    return internPointsToSets;
+  }
+
+  /**
+   * Let equal points-to sets share one representation: every {@link #getPeriodicMaintainInterval()} evaluations during solving,
+   * those sets which did not change since the previous time, and all sets when the builder is done solving; see
+   * {@link #internPointsToSets()}.
+   */
+  public void setInternPointsToSets(boolean b) {
+    internPointsToSets = b;
+  }
+
+  /**
+   * Make all points-to set variables with equal values share one representation. A shared set is never modified; a variable which
+   * changes later first makes a private copy of it.
+   * 
+   * @return the number of variables which now use the representation of the value of another one
+   */
+  public int internPointsToSets() {
+    return intern(false);
+  }
+
+  /**
+   * Make points-to set variables with equal values share one representation.
+   * 
+   * @param stableOnly if set, only consider variables whose size did not change since the previous call, as others are likely to
+   *          change again and would have to be copied back
+   * @return the number of variables which now use the representation of the value of another one
+   */
+  private int intern(boolean stableOnly) {
+    Map<Integer, List<PointsToSetVariable>> canonical = HashMapFactory.make();
+    int shared = 0;
+    for (Iterator<PointsToSetVariable> it = pointsToMap.iterateVariables(); it.hasNext();) {
+      PointsToSetVariable v = it.next();
+      MutableIntSet value = v.getValue();
+      int size = v.size();
+      boolean stable = size == v.getInternedSize();
+      v.setInternedSize(size);
+      if (value == null || (stableOnly && !stable)) {
+        continue;
+      }
+      Integer hash = Integer.valueOf(hash(value));
+      List<PointsToSetVariable> candidates = canonical.get(hash);
+      if (candidates == null) {
+        candidates = new ArrayList<PointsToSetVariable>(1);
+        canonical.put(hash, candidates);
+      }
+      PointsToSetVariable c = find(candidates, value);
+      if (c == null) {
+        candidates.add(v);
+      } else {
+        if (!c.isValueShared()) {
+          // from now on, the owner of the representative must not modify it either
+          c.shareValue(c.getValue());
+        }
+        v.shareValue(c.getValue());
+        shared++;
+      }
+    }
+    return shared;
+  }
+
+  /**
+   * @return the variable in candidates whose value equals s, or null if none
+   */
+  private static PointsToSetVariable find(List<PointsToSetVariable> candidates, IntSet s) {
+    for (PointsToSetVariable c : candidates) {
+      IntSet value = c.getValue();
+      if (value == s || (value.size() == s.size() && value.sameValue(s))) {
+        return c;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return a hash of the value of s that does not depend on its representation or iteration order
+   */
+  private static int hash(IntSet s) {
+    int h = s.size();
+    for (IntIterator it = s.intIterator(); it.hasNext();) {
+      int x = it.next() * 0x9E3779B9;
+      h += x ^ (x >>> 16);
+    }
+    return h;
+  }
+
+  /**
+   * @return true iff this system can be updated after code changes
+   */
+  public boolean getIncrementalUpdates() {
+    return seeds != null;
+  }
+
+  /**
+   * Keep what is needed to update this system after code changes, namely the instance keys added directly to each points-to set.
+   * This must be set before any constraint is added.
+   */
+  public void setIncrementalUpdates(boolean b) {
+    seeds = b ? new SimpleVector<MutableIntSet>() : null;
+  }
+
+  /**
+   * Forget the constraints that the given nodes contributed, e.g. because the code of their methods changed, so that the builder
+   * can add them again; the next {@link #solve} then recomputes what may have depended on them.
+   * 
+   * A statement belongs to a node if it uses a local of the node that is not a parameter, or defines a key of the node that is not
+   * a parameter, or if it defines a parameter or nothing and its first argument from a node is from the node. Thus the edges the
+   * callers of a node added to its parameters and from its return values stay, while the edges it added go. The locals of the
+   * nodes are forgotten, and each variable that a forgotten statement defined, or into which a value of the nodes may have flowed,
+   * is emptied and recomputed from the statements that remain, and from the instance keys added to it directly.
+   * 
+   * Statements that the side effects of other nodes added for values which came from the nodes, such as those for call edges, are
+   * kept, as are instance keys the nodes added directly to variables which are not theirs, and every instance key. The result is
+   * therefore sound, but may be less precise than a new solution.
+   * 
+   * @throws IllegalStateException if the system does not keep what it needs for updates, or if it has collapsed cycles
+   */
+  public void invalidateNodes(Set<CGNode> nodes) {
+    if (nodes == null) {
+      throw new IllegalArgumentException("null nodes");
+    }
+    if (seeds == null) {
+      throw new IllegalStateException("updates have not been enabled; see setIncrementalUpdates()");
+    }
+    if (collapseCycles) {
+      throw new IllegalStateException("cannot update a system whose cycles have been collapsed");
+    }
+
+    // the keys of the nodes
+    List<PointerKey> locals = new ArrayList<PointerKey>();
+    List<PointsToSetVariable> interfaces = new ArrayList<PointsToSetVariable>();
+    for (Iterator<PointerKey> it = pointsToMap.iterateKeys(); it.hasNext();) {
+      PointerKey key = it.next();
+      CGNode n = getNode(key);
+      if (n != null && nodes.contains(n)) {
+        if (isLocal(key)) {
+          locals.add(key);
+        } else if (!pointsToMap.isImplicit(key)) {
+          interfaces.add(pointsToMap.getPointsToSet(key));
+        }
+      }
+    }
+
+    // the statements the nodes contributed
+    Set<AbstractStatement> owned = HashSetFactory.make();
+    for (PointerKey key : locals) {
+      if (!pointsToMap.isImplicit(key)) {
+        PointsToSetVariable v = pointsToMap.getPointsToSet(key);
+        owned.addAll(Iterator2Collection.toSet(flowGraph.getStatementsThatDef(v)));
+        owned.addAll(Iterator2Collection.toSet(flowGraph.getStatementsThatUse(v)));
+      }
+    }
+    for (PointsToSetVariable v : interfaces) {
+      for (Iterator<AbstractStatement> it = flowGraph.getStatementsThatDef(v); it.hasNext();) {
+        AbstractStatement s = it.next();
+        if (isOwned(s, nodes)) {
+          owned.add(s);
+        }
+      }
+      for (Iterator<AbstractStatement> it = flowGraph.getStatementsThatUse(v); it.hasNext();) {
+        AbstractStatement s = it.next();
+        if (isOwned(s, nodes)) {
+          owned.add(s);
+        }
+      }
+    }
+
+    Set<PointsToSetVariable> stale = HashSetFactory.make();
+    stale.addAll(interfaces);
+    for (AbstractStatement as : owned) {
+      // the flow graph only holds statements over points-to sets
+      @SuppressWarnings("unchecked")
+      IFixedPointStatement<PointsToSetVariable> s = as;
+      flowGraph.removeStatement(s);
+      if (s.getLHS() != null) {
+        stale.add(s.getLHS());
+      }
+    }
+
+    // forget the locals, which have no statements left
+    for (PointerKey key : locals) {
+      if (!pointsToMap.isImplicit(key)) {
+        PointsToSetVariable v = pointsToMap.getPointsToSet(key);
+        stale.remove(v);
+        if (flowGraph.containsVariable(v)) {
+          flowGraph.removeVariable(v);
+        }
+        fixedSetMap.remove(v);
+      }
+      seeds.set(pointsToMap.getIndex(key), null);
+      pointsToMap.remove(key);
+    }
+
+    // everything the stale variables flow to is stale too
+    List<PointsToSetVariable> worklist = new ArrayList<PointsToSetVariable>(stale);
+    while (!worklist.isEmpty()) {
+      PointsToSetVariable v = worklist.remove(worklist.size() - 1);
+      for (Iterator<AbstractStatement> it = flowGraph.getStatementsThatUse(v); it.hasNext();) {
+        PointsToSetVariable lhs = (PointsToSetVariable) it.next().getLHS();
+        if (lhs != null && stale.add(lhs)) {
+          worklist.add(lhs);
+        }
+      }
+    }
+
+    for (PointsToSetVariable v : stale) {
+      v.removeAll();
+    }
+    for (PointsToSetVariable v : stale) {
+      for (Iterator<AbstractStatement> it = flowGraph.getStatementsThatDef(v); it.hasNext();) {
+        addToWorkList(it.next());
+      }
+      IntSet S = seeds.get(pointsToMap.getIndex(v.getPointerKey()));
+      if (S != null) {
+        v.addAll(S);
+        if (v.getGraphNodeId() > -1) {
+          changedVariable(v);
+        }
+      }
+    }
+
+    // a pointer analysis extracted earlier may have cached views of the old solution
+    pointerAnalysis = null;
+  }
+
+  /**
+   * @return the node whose code a key stands for a value of, or null if none
+   */
+  private static CGNode getNode(PointerKey key) {
+    if (key instanceof PropagationCallGraphBuilder.TypedPointerKey) {
+      key = ((PropagationCallGraphBuilder.TypedPointerKey) key).getBase();
+    }
+    return key instanceof AbstractLocalPointerKey ? ((AbstractLocalPointerKey) key).getNode() : null;
+  }
+
+  /**
+   * @return true iff key stands for a local of a node which is not a parameter, and so which only the node defines and uses
+   */
+  private static boolean isLocal(PointerKey key) {
+    if (key instanceof PropagationCallGraphBuilder.TypedPointerKey) {
+      key = ((PropagationCallGraphBuilder.TypedPointerKey) key).getBase();
+    }
+    return key instanceof LocalPointerKey && !((LocalPointerKey) key).isParameter();
+  }
+
+  /**
+   * @return true iff key stands for a parameter of a node, which the callers of the node define
+   */
+  private static boolean isParameter(PointerKey key) {
+    if (key instanceof PropagationCallGraphBuilder.TypedPointerKey) {
+      key = ((PropagationCallGraphBuilder.TypedPointerKey) key).getBase();
+    }
+    return key instanceof LocalPointerKey && ((LocalPointerKey) key).isParameter();
+  }
+
+  /**
+   * @return true iff s was contributed by one of nodes; see {@link #invalidateNodes(Set)}
+   */
+  private static boolean isOwned(AbstractStatement s, Set<CGNode> nodes) {
+    PointsToSetVariable lhs = (PointsToSetVariable) s.getLHS();
+    if (lhs != null && getNode(lhs.getPointerKey()) != null && !isParameter(lhs.getPointerKey())) {
+      return nodes.contains(getNode(lhs.getPointerKey()));
+    }
+    IVariable[] rhs = s instanceof UnaryStatement ? new IVariable[] { ((UnaryStatement) s).getRightHandSide() } : s.getRHS();
+    for (IVariable v : rhs) {
+      CGNode n = v == null ? null : getNode(((PointsToSetVariable) v).getPointerKey());
+      if (n != null) {
+        return nodes.contains(n);
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return the number of variables that have been merged into others by cycle collapsing
+   */
+  public int getCollapsedVariableCount() {
+    return collapsedVariables;
+  }
+
+  /**
+   * Merge the variables on each cycle of assignments. Variables with a type filter are left alone, as are parameters, which may
+   * acquire a filter when a new call edge is added; merging a variable with a filter into one without, or with a different one,
+   * would change the result.
+   */
+  @Override
+  protected void simplifySystem(Collection<AbstractStatement> pending) {
+    if (!collapseCycles) {
+      return;
+    }
+    List<Set<PointsToSetVariable>> cycles = flowGraph.findAssignmentCycles(new Predicate<PointsToSetVariable>() {
+      @Override
+      public boolean test(PointsToSetVariable v) {
+        PointerKey key = v.getPointerKey();
+        return !(key instanceof FilteredPointerKey) && !(key instanceof LocalPointerKey && ((LocalPointerKey) key).isParameter());
+      }
+    });
+    if (cycles.isEmpty()) {
+      return;
+    }
+    List<PointsToSetVariable> reps = new ArrayList<PointsToSetVariable>();
+    for (Set<PointsToSetVariable> cycle : cycles) {
+      MutableIntSet s = IntSetUtil.make();
+      for (PointsToSetVariable v : cycle) {
+        s.add(pointsToMap.getIndex(v.getPointerKey()));
+      }
+      reps.add(unifyInternal(s));
+      collapsedVariables += cycle.size() - 1;
+    }
+    flowGraph.rehashStatements();
+
+    // statements on the work list that mention a merged variable have been replaced; schedule the replacements instead
+    for (Iterator<AbstractStatement> it = pending.iterator(); it.hasNext();) {
+      if (mentionsUnifiedVariable(it.next())) {
+        it.remove();
+      }
+    }
+    for (PointsToSetVariable rep : reps) {
+      for (Iterator<AbstractStatement> it = getStatementsThatDef(rep); it.hasNext();) {
+        pending.add(it.next());
+      }
+      for (Iterator<AbstractStatement> it = getStatementsThatUse(rep); it.hasNext();) {
+        pending.add(it.next());
+      }
+    }
+    if (verbose) {
+      System.err.println("Collapsed " + cycles.size() + " cycles, " + collapsedVariables + " variables merged so far");
+    }
+  }
+
+  private boolean mentionsUnifiedVariable(AbstractStatement s) {
+    if (s.getLHS() != null && isMerged((PointsToSetVariable) s.getLHS())) {
+      return true;
+    }
+    if (s instanceof UnaryStatement) {
+      return isMerged((PointsToSetVariable) ((UnaryStatement) s).getRightHandSide());
+    }
+    for (IVariable v : s.getRHS()) {
+      if (v != null && isMerged((PointsToSetVariable) v)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return true iff v has been merged into another variable
+   */
+  private boolean isMerged(PointsToSetVariable v) {
+    return pointsToMap.getPointsToSet(v.getPointerKey()) != v;
   }
 
   /**
@@ -913,6 +1362,15 @@ public class PropagationSystem extends DefaultFixedPointSolver<PointsToSetVariab
     return pointsToMap.getIndex(p);
   }
 
+  /**
+   * Only plain assignments are evaluated concurrently: evaluating an {@link AssignEquation} just unions the right-hand side into the
+   * left-hand side. Filters consult pluggable type filters and side effects add constraints, so those stay on the solver thread.
+   */
+  @Override
+  protected boolean isParallelizable(AbstractStatement s) {
+    return s instanceof AssignEquation;
+  }
+
   @Override
   protected PointsToSetVariable[] makeStmtRHS(int size) {
     return new PointsToSetVariable[size];
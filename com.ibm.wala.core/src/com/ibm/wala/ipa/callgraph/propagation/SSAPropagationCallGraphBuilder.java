@@ -684,8 +684,6 @@ public abstract class SSAPropagationCallGraphBuilder extends PropagationCallGrap
             }
           }
         } else {
-          assert !system.isUnified(result);
-          assert !system.isUnified(arrayRefPtrKey);
           system.newSideEffect(getBuilder().new ArrayLoadOperator(system.findOrCreatePointsToSet(result)), arrayRefPtrKey);
         }
       }
@@ -739,7 +737,6 @@ public abstract class SSAPropagationCallGraphBuilder extends PropagationCallGrap
           InstanceKey[] ik = getInvariantContents(value);
           for (int i = 0; i < ik.length; i++) {
             system.findOrCreateIndexForInstanceKey(ik[i]);
-            assert !system.isUnified(arrayRefPtrKey);
             system.newSideEffect(getBuilder().new InstanceArrayStoreOperator(ik[i]), arrayRefPtrKey);
           }
         } else {
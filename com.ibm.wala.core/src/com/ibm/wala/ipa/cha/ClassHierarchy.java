@@ -11,12 +11,14 @@
 package com.ibm.wala.ipa.cha;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.ConcurrentModificationException;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -322,6 +324,9 @@ public class ClassHierarchy implements IClassHierarchy {
       return false;
     }
     Node node = findOrCreateNode(klass);
+    if (subtypeIndex != null) {
+      addedSinceNumbering = true;
+    }
 
     if (klass.getReference().equals(this.rootTypeRef)) {
       // there is only one root
@@ -656,17 +661,41 @@ public class ClassHierarchy implements IClassHierarchy {
    */
   private int nextNumber = 1;
 
+  /**
+   * index over the tree as numbered at construction
+   */
+  private SubtypeIndex subtypeIndex;
+
+  /**
+   * has a class been added since the tree was numbered? If so, subtrees may hold classes that the index does not know.
+   */
+  private boolean addedSinceNumbering = false;
+
   private void numberTree() {
     assert root != null;
-    visitForNumbering(root);
+    List<IClass> classes = new ArrayList<IClass>(map.size());
+    List<Integer> ends = new ArrayList<Integer>(map.size());
+    visitForNumbering(root, classes, ends);
+    int[] end = new int[ends.size()];
+    for (int i = 0; i < end.length; i++) {
+      end[i] = ends.get(i);
+    }
+    subtypeIndex = new SubtypeIndex(classes.toArray(new IClass[classes.size()]), end);
   }
 
-  private void visitForNumbering(Node N) {
+  /**
+   * also lists the classes in preorder, with the preorder position after each subtree
+   */
+  private void visitForNumbering(Node N, List<IClass> classes, List<Integer> ends) {
     N.left = nextNumber++;
+    int n = classes.size();
+    classes.add(N.klass);
+    ends.add(null);
     for (Iterator<Node> it = N.children.iterator(); it.hasNext();) {
       Node C = it.next();
-      visitForNumbering(C);
+      visitForNumbering(C, classes, ends);
     }
+    ends.set(n, classes.size());
     N.right = nextNumber++;
   }
 
@@ -943,6 +972,16 @@ public class ClassHierarchy implements IClassHierarchy {
       if (c.getReference().equals(t.getReference())) {
         return true;
       }
+      SubtypeIndex index = subtypeIndex;
+      if (index != null) {
+        int nc = index.getNumber(c);
+        if (nc != -1) {
+          int nt = index.getNumber(t);
+          if (nt != -1) {
+            return index.isSubclass(nc, nt);
+          }
+        }
+      }
       Node n1 = map.get(c.getReference());
       if (n1 == null) {
         // some wacky case, like a FakeRootClass
@@ -1063,6 +1102,17 @@ public class ClassHierarchy implements IClassHierarchy {
     if (T.isArrayClass()) {
       return Collections.singleton(T);
     }
+    SubtypeIndex index = subtypeIndex;
+    if (index != null && !addedSinceNumbering) {
+      int n = index.getNumber(T);
+      if (n != -1) {
+        HashSet<IClass> result = HashSetFactory.make(index.getSubtreeEnd(n) - n);
+        for (int i = n; i < index.getSubtreeEnd(n); i++) {
+          result.add(index.getClass(i));
+        }
+        return result;
+      }
+    }
     Node node = findNode(T);
     assert node != null : "null node for class " + T;
     HashSet<IClass> result = HashSetFactory.make(3);
@@ -0,0 +1,368 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.ipa.cha;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.ibm.wala.classLoader.ClassLoaderFactoryImpl;
+import com.ibm.wala.classLoader.ClassLoaderImpl;
+import com.ibm.wala.classLoader.DirectoryTreeModule;
+import com.ibm.wala.classLoader.FileModule;
+import com.ibm.wala.classLoader.IClass;
+import com.ibm.wala.classLoader.IClassLoader;
+import com.ibm.wala.classLoader.JarFileModule;
+import com.ibm.wala.classLoader.Module;
+import com.ibm.wala.classLoader.ShrikeClass;
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.types.ClassLoaderReference;
+import com.ibm.wala.util.WalaRuntimeException;
+import com.ibm.wala.util.collections.HashMapFactory;
+import com.ibm.wala.util.config.SetOfClasses;
+import com.ibm.wala.util.strings.UTF8Convert;
+
+/**
+ * Saves the class headers of a {@link ClassHierarchy} to a file, so that a later run over the same {@link AnalysisScope} can build
+ * its hierarchy without parsing every class file.
+ *
+ * For each class the snapshot records the module entry it came from, its name, modifiers, superclass and interfaces; that is all
+ * that {@link ClassHierarchy} construction needs. The classes of a hierarchy built from a snapshot read their class files only
+ * when their fields or methods are first asked for. Exclusions are applied as usual.
+ *
+ * A snapshot is tied to a fingerprint of the scope: the loaders, and the path, size and modification time of each jar file, class
+ * file and directory tree. If the fingerprint no longer matches, or the scope holds other kinds of modules, the hierarchy is built
+ * in full, and for a supported scope the snapshot is rewritten.
+ */
+public final class ClassHierarchySnapshot {
+
+  /**
+   * identifies the file format; bump when it changes
+   */
+  private final static int MAGIC = 0x57434831;
+
+  private ClassHierarchySnapshot() {
+  }
+
+  /**
+   * Build a class hierarchy for the Java language, reading class headers from a snapshot file if it matches scope and writing it
+   * otherwise.
+   *
+   * @param file the snapshot; need not exist
+   */
+  public static ClassHierarchy make(AnalysisScope scope, File file) throws ClassHierarchyException {
+    if (scope == null) {
+      throw new IllegalArgumentException("null scope");
+    }
+    if (file == null) {
+      throw new IllegalArgumentException("null file");
+    }
+    String fingerprint = fingerprint(scope);
+    if (fingerprint == null) {
+      return ClassHierarchy.make(scope);
+    }
+    Map<String, Map<String, ShrikeClass.Header>> headers = read(file, fingerprint);
+    if (headers != null) {
+      return ClassHierarchy.make(scope, new SnapshotLoaderFactory(scope.getExclusions(), headers));
+    }
+    ClassHierarchy cha = ClassHierarchy.make(scope);
+    try {
+      write(cha, file, fingerprint);
+    } catch (IOException e) {
+      // the hierarchy is fine; we just won't be faster next time
+      file.delete();
+    }
+    return cha;
+  }
+
+  /**
+   * @return true iff cha was built by {@link #make(AnalysisScope, File)} from the class headers of an existing snapshot, rather than
+   *         from the class files
+   */
+  public static boolean isFromSnapshot(ClassHierarchy cha) {
+    if (cha == null) {
+      throw new IllegalArgumentException("null cha");
+    }
+    return cha.getFactory() instanceof SnapshotLoaderFactory;
+  }
+
+  /**
+   * Write a snapshot of cha, which was built for its {@link AnalysisScope}, to file.
+   *
+   * @throws IllegalArgumentException if the scope holds modules that snapshots do not support
+   */
+  public static void write(ClassHierarchy cha, File file) throws IOException {
+    if (cha == null) {
+      throw new IllegalArgumentException("null cha");
+    }
+    String fingerprint = fingerprint(cha.getScope());
+    if (fingerprint == null) {
+      throw new IllegalArgumentException("unsupported modules in " + cha.getScope());
+    }
+    write(cha, file, fingerprint);
+  }
+
+  /**
+   * File format: MAGIC, fingerprint, string pool (count, strings), loader count, and per loader: name, class count, and per class:
+   * entry name, class name, modifiers, superclass name or -1, interface count, interface names. Names are indices into the pool.
+   */
+  private static void write(ClassHierarchy cha, File file, String fingerprint) throws IOException {
+    Map<String, Integer> pool = HashMapFactory.make();
+    List<String> strings = new ArrayList<String>();
+    List<String> loaders = new ArrayList<String>();
+    List<List<String>> entries = new ArrayList<List<String>>();
+    List<List<ShrikeClass.Header>> headers = new ArrayList<List<ShrikeClass.Header>>();
+    for (IClassLoader loader : cha.getLoaders()) {
+      List<String> e = new ArrayList<String>();
+      List<ShrikeClass.Header> h = new ArrayList<ShrikeClass.Header>();
+      for (Iterator<IClass> it = loader.iterateAllClasses(); it.hasNext();) {
+        IClass klass = it.next();
+        if (klass instanceof ShrikeClass) {
+          ShrikeClass s = (ShrikeClass) klass;
+          e.add(s.getModuleEntry().getName());
+          h.add(s.getHeader());
+        }
+      }
+      if (!h.isEmpty()) {
+        loaders.add(loader.getName().toString());
+        entries.add(e);
+        headers.add(h);
+        for (int i = 0; i < h.size(); i++) {
+          intern(pool, strings, e.get(i));
+          intern(pool, strings, h.get(i).getName());
+          if (h.get(i).getSuperName() != null) {
+            intern(pool, strings, h.get(i).getSuperName());
+          }
+          for (String s : h.get(i).getInterfaceNames()) {
+            intern(pool, strings, s);
+          }
+        }
+      }
+    }
+
+    File tmp = new File(file.getPath() + ".tmp");
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+    try {
+      out.writeInt(MAGIC);
+      out.writeUTF(fingerprint);
+      out.writeInt(strings.size());
+      for (String s : strings) {
+        writeString(out, s);
+      }
+      out.writeInt(loaders.size());
+      for (int l = 0; l < loaders.size(); l++) {
+        out.writeUTF(loaders.get(l));
+        List<ShrikeClass.Header> h = headers.get(l);
+        out.writeInt(h.size());
+        for (int i = 0; i < h.size(); i++) {
+          ShrikeClass.Header header = h.get(i);
+          out.writeInt(pool.get(entries.get(l).get(i)));
+          out.writeInt(pool.get(header.getName()));
+          out.writeInt(header.getModifiers());
+          out.writeInt(header.getSuperName() == null ? -1 : pool.get(header.getSuperName()));
+          out.writeInt(header.getInterfaceNames().length);
+          for (String s : header.getInterfaceNames()) {
+            out.writeInt(pool.get(s));
+          }
+        }
+      }
+    } finally {
+      out.close();
+    }
+    if (file.exists() && !file.delete()) {
+      tmp.delete();
+      throw new IOException("cannot replace " + file);
+    }
+    if (!tmp.renameTo(file)) {
+      tmp.delete();
+      throw new IOException("cannot rename " + tmp + " to " + file);
+    }
+  }
+
+  private static void intern(Map<String, Integer> pool, List<String> strings, String s) {
+    if (!pool.containsKey(s)) {
+      pool.put(s, strings.size());
+      strings.add(s);
+    }
+  }
+
+  /**
+   * writeUTF is limited to 64K bytes, which path names in a deep tree might in principle exceed
+   */
+  private static void writeString(DataOutputStream out, String s) throws IOException {
+    byte[] b = UTF8Convert.toUTF8(s);
+    out.writeInt(b.length);
+    out.write(b);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    byte[] b = new byte[in.readInt()];
+    in.readFully(b);
+    return UTF8Convert.fromUTF8(b);
+  }
+
+  /**
+   * @return loader name -> entry name -> header, or null if file does not exist, cannot be read, or does not match fingerprint
+   */
+  private static Map<String, Map<String, ShrikeClass.Header>> read(File file, String fingerprint) {
+    if (!file.exists()) {
+      return null;
+    }
+    try {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      try {
+        if (in.readInt() != MAGIC || !in.readUTF().equals(fingerprint)) {
+          return null;
+        }
+        String[] strings = new String[in.readInt()];
+        for (int i = 0; i < strings.length; i++) {
+          strings[i] = readString(in);
+        }
+        Map<String, Map<String, ShrikeClass.Header>> result = HashMapFactory.make();
+        int nLoaders = in.readInt();
+        for (int l = 0; l < nLoaders; l++) {
+          String loader = in.readUTF();
+          int nClasses = in.readInt();
+          Map<String, ShrikeClass.Header> headers = HashMapFactory.make(nClasses);
+          for (int i = 0; i < nClasses; i++) {
+            String entry = strings[in.readInt()];
+            String name = strings[in.readInt()];
+            int modifiers = in.readInt();
+            int superName = in.readInt();
+            String[] interfaces = new String[in.readInt()];
+            for (int j = 0; j < interfaces.length; j++) {
+              interfaces[j] = strings[in.readInt()];
+            }
+            headers.put(entry, new ShrikeClass.Header(name, modifiers, superName == -1 ? null : strings[superName], interfaces));
+          }
+          result.put(loader, headers);
+        }
+        return result;
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      return null;
+    } catch (RuntimeException e) {
+      // garbage indices or lengths
+      return null;
+    }
+  }
+
+  /**
+   * @return a digest of everything in scope that a snapshot depends on, or null if scope holds modules that we cannot fingerprint
+   */
+  private static String fingerprint(AnalysisScope scope) {
+    StringBuilder s = new StringBuilder();
+    List<ClassLoaderReference> loaders = new ArrayList<ClassLoaderReference>(scope.getLoaders());
+    Collections.sort(loaders, new Comparator<ClassLoaderReference>() {
+      @Override
+      public int compare(ClassLoaderReference o1, ClassLoaderReference o2) {
+        return o1.getName().toString().compareTo(o2.getName().toString());
+      }
+    });
+    for (ClassLoaderReference loader : loaders) {
+      s.append("loader ").append(loader.getName()).append(' ').append(scope.getLoaderImpl(loader)).append('\n');
+      for (Module m : scope.getModules(loader)) {
+        if (!fingerprint(m, s)) {
+          return null;
+        }
+      }
+    }
+    return digest(s.toString());
+  }
+
+  private static boolean fingerprint(Module m, StringBuilder s) {
+    if (m instanceof JarFileModule) {
+      fingerprint(new File(((JarFileModule) m).getAbsolutePath()), s);
+    } else if (m instanceof FileModule) {
+      fingerprint(((FileModule) m).getFile(), s);
+    } else if (m instanceof DirectoryTreeModule) {
+      fingerprintTree(new File(((DirectoryTreeModule) m).getPath()), s);
+    } else {
+      return false;
+    }
+    return true;
+  }
+
+  private static void fingerprint(File f, StringBuilder s) {
+    s.append(f.getAbsolutePath()).append(' ').append(f.length()).append(' ').append(f.lastModified()).append('\n');
+  }
+
+  private static void fingerprintTree(File dir, StringBuilder s) {
+    fingerprint(dir, s);
+    File[] files = dir.listFiles();
+    if (files != null) {
+      Arrays.sort(files);
+      for (File f : files) {
+        if (f.isDirectory()) {
+          fingerprintTree(f, s);
+        } else {
+          fingerprint(f, s);
+        }
+      }
+    }
+  }
+
+  private static String digest(String s) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-1").digest(UTF8Convert.toUTF8(s));
+      StringBuilder result = new StringBuilder(2 * digest.length);
+      for (byte b : digest) {
+        result.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+      }
+      return result.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new WalaRuntimeException("no SHA-1", e);
+    }
+  }
+
+  /**
+   * Makes the standard class loaders, handing each the headers recorded for it
+   */
+  private static class SnapshotLoaderFactory extends ClassLoaderFactoryImpl {
+
+    private final Map<String, Map<String, ShrikeClass.Header>> headers;
+
+    SnapshotLoaderFactory(SetOfClasses exclusions, Map<String, Map<String, ShrikeClass.Header>> headers) {
+      super(exclusions);
+      this.headers = headers;
+    }
+
+    @Override
+    protected IClassLoader makeNewClassLoader(ClassLoaderReference classLoaderReference, IClassHierarchy cha, IClassLoader parent,
+        AnalysisScope scope) throws IOException {
+      Map<String, ShrikeClass.Header> h = headers.get(classLoaderReference.getName().toString());
+      if (h == null || scope.getLoaderImpl(classLoaderReference) != null) {
+        return super.makeNewClassLoader(classLoaderReference, cha, parent, scope);
+      }
+      ClassLoaderImpl cl = new ClassLoaderImpl(classLoaderReference, scope.getArrayClassLoader(), parent, getExclusions(), cha);
+      cl.setClassHeaders(h);
+      cl.setParallelism(getParallelism());
+      cl.init(scope.getModules(classLoaderReference));
+      return cl;
+    }
+  }
+}
@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.ipa.cha;
+
+import com.ibm.wala.classLoader.IClass;
+
+/**
+ * Answers subclass queries over a numbered class hierarchy tree with a few array accesses.
+ *
+ * Classes are numbered in preorder, so the subclasses of a class form an interval of numbers. The number of a class is found in an
+ * open addressing table keyed by the class itself, which is much cheaper than a lookup by
+ * {@link com.ibm.wala.types.TypeReference}.
+ *
+ * The index is immutable; classes added to the hierarchy later are not numbered, and queries about them must be answered some
+ * other way.
+ */
+final class SubtypeIndex {
+
+  /**
+   * the classes, in preorder
+   */
+  private final IClass[] classes;
+
+  /**
+   * end[n] is 1 + the number of the last class in the subtree of class n
+   */
+  private final int[] end;
+
+  /**
+   * open addressing table: class -> number
+   */
+  private final IClass[] keys;
+
+  private final int[] values;
+
+  private final int mask;
+
+  /**
+   * @param classes the classes of a tree in preorder
+   * @param end end[n] is 1 + the number of the last class in the subtree of class n
+   */
+  SubtypeIndex(IClass[] classes, int[] end) {
+    this.classes = classes;
+    this.end = end;
+    int capacity = Integer.highestOneBit(Math.max(2, classes.length) * 2) << 1;
+    this.keys = new IClass[capacity];
+    this.values = new int[capacity];
+    this.mask = capacity - 1;
+    for (int i = 0; i < classes.length; i++) {
+      int h = hash(classes[i]) & mask;
+      while (keys[h] != null) {
+        h = (h + 1) & mask;
+      }
+      keys[h] = classes[i];
+      values[h] = i;
+    }
+  }
+
+  private static int hash(IClass c) {
+    int h = c.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * @return the number of c, or -1 if c is not in the index
+   */
+  int getNumber(IClass c) {
+    for (int h = hash(c) & mask;; h = (h + 1) & mask) {
+      IClass k = keys[h];
+      if (k == c) {
+        return values[h];
+      } else if (k == null) {
+        return -1;
+      }
+    }
+  }
+
+  IClass getClass(int n) {
+    return classes[n];
+  }
+
+  /**
+   * @return 1 + the number of the last subclass of class n
+   */
+  int getSubtreeEnd(int n) {
+    return end[n];
+  }
+
+  /**
+   * @return true iff class c is t or a subclass of t
+   */
+  boolean isSubclass(int c, int t) {
+    return t <= c && c < end[t];
+  }
+}
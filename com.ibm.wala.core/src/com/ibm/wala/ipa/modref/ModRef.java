@@ -44,6 +44,11 @@ import com.ibm.wala.util.intset.OrdinalSet;
  */
 public class ModRef {
 
+  /**
+   * How many threads may scan call graph nodes concurrently? 1 means sequential scanning.
+   */
+  private int parallelism = 1;
+
   public static ModRef make() {
     return new ModRef();
   }
@@ -51,6 +56,38 @@ public class ModRef {
   protected ModRef() {
   }
 
+  /**
+   * @return the number of threads that may scan call graph nodes concurrently
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * With n > 1, {@link #computeMod(CallGraph, PointerAnalysis, HeapExclusions)} and
+   * {@link #computeRef(CallGraph, PointerAnalysis, HeapExclusions)} scan the nodes of the call graph on a pool of n threads, then
+   * close the results over the strongly connected components of the call graph; see
+   * {@link CallGraphTransitiveClosure#transitiveClosureOverSCCs(CallGraph, Map)}. The pointer analysis, its heap model and the
+   * IRs of the nodes must then be safe to query concurrently, as they are for the builders of
+   * {@link com.ibm.wala.ipa.callgraph.impl.Util}.
+   * 
+   * @param n the number of threads that may scan call graph nodes concurrently; 1 means sequential scanning
+   */
+  public void setParallelism(int n) {
+    if (n < 1) {
+      throw new IllegalArgumentException("illegal parallelism " + n);
+    }
+    parallelism = n;
+  }
+
+  private <T> Map<CGNode, OrdinalSet<T>> transitiveClosure(CallGraph cg, Map<CGNode, Collection<T>> scan) {
+    if (parallelism > 1) {
+      return CallGraphTransitiveClosure.transitiveClosureOverSCCs(cg, scan);
+    } else {
+      return CallGraphTransitiveClosure.transitiveClosure(cg, scan);
+    }
+  }
+
   /**
    * For each call graph node, what heap locations (as determined by a heap model) may it write, including its callees transitively
    * 
@@ -62,7 +99,7 @@ public class ModRef {
       throw new IllegalArgumentException("cg is null");
     }
     Map<CGNode, Collection<PointerKey>> scan = scanForMod(cg, pa, heapExclude);
-    return CallGraphTransitiveClosure.transitiveClosure(cg, scan);
+    return transitiveClosure(cg, scan);
   }
 
   /**
@@ -76,7 +113,7 @@ public class ModRef {
       throw new IllegalArgumentException("cg is null");
     }
     Map<CGNode, Collection<PointerKey>> scan = scanForRef(cg, pa, heapExclude);
-    return CallGraphTransitiveClosure.transitiveClosure(cg, scan);
+    return transitiveClosure(cg, scan);
   }
 
   /**
@@ -109,7 +146,7 @@ public class ModRef {
       public Collection<PointerKey> apply(CGNode n) {
         return scanNodeForMod(n, pa, heapExclude);
       }
-    });
+    }, parallelism);
   }
 
   /**
@@ -125,7 +162,7 @@ public class ModRef {
       public Collection<PointerKey> apply(CGNode n) {
         return scanNodeForRef(n, pa, heapExclude);
       }
-    });
+    }, parallelism);
   }
 
   public ExtendedHeapModel makeHeapModel(PointerAnalysis<InstanceKey> pa) {
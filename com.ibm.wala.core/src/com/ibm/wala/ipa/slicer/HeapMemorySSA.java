@@ -0,0 +1,520 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.ipa.slicer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Stack;
+
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.callgraph.CallGraph;
+import com.ibm.wala.ipa.callgraph.propagation.InstanceKey;
+import com.ibm.wala.ipa.callgraph.propagation.PointerAnalysis;
+import com.ibm.wala.ipa.callgraph.propagation.PointerKey;
+import com.ibm.wala.ipa.callgraph.propagation.StaticFieldKey;
+import com.ibm.wala.ipa.modref.ExtendedHeapModel;
+import com.ibm.wala.ipa.modref.ModRef;
+import com.ibm.wala.ssa.IR;
+import com.ibm.wala.ssa.SSAAbstractInvokeInstruction;
+import com.ibm.wala.ssa.SSAInstruction;
+import com.ibm.wala.ssa.analysis.ExplodedControlFlowGraph;
+import com.ibm.wala.ssa.analysis.IExplodedBasicBlock;
+import com.ibm.wala.util.collections.HashMapFactory;
+import com.ibm.wala.util.collections.HashSetFactory;
+import com.ibm.wala.util.collections.ObjectArrayMapping;
+import com.ibm.wala.util.graph.Graph;
+import com.ibm.wala.util.graph.dominators.DominanceFrontiers;
+import com.ibm.wala.util.graph.impl.SlowSparseNumberedGraph;
+import com.ibm.wala.util.graph.traverse.DFS;
+import com.ibm.wala.util.intset.BitVectorIntSet;
+import com.ibm.wala.util.intset.IntIterator;
+import com.ibm.wala.util.intset.MutableIntSet;
+import com.ibm.wala.util.intset.MutableSparseIntSet;
+import com.ibm.wala.util.intset.OrdinalSet;
+import com.ibm.wala.util.intset.OrdinalSetMapping;
+
+/**
+ * Heap data dependences within a {@link CGNode}, computed by putting the heap locations it reads and writes into SSA form.
+ *
+ * Each statement which may write a location defines a new version of it, and memory phis merge versions of a location only at the
+ * iterated dominance frontier of its writes. A statement which reads a location depends on the writes which reach the version it
+ * reads, through phis and through weak updates, which keep the writes of the version they update. As in {@link HeapReachingDefs},
+ * only writes to static fields are strong updates, writes do not happen on exceptional edges from instructions other than calls,
+ * and a call writes a location through its {@link HeapStatement.HeapReturnCaller} statement; the dependences found are the same.
+ *
+ * {@link HeapReachingDefs} solves reaching definitions over bit vectors of all heap statements, once for each location. Here the
+ * versions of all locations are built in a single walk of the dominator tree, and the work for a location grows with the number of
+ * its reads, writes and phis, rather than with the size of the method times the number of heap statements.
+ */
+public class HeapMemorySSA {
+
+  private final CGNode node;
+
+  private final ExplodedControlFlowGraph cfg;
+
+  /**
+   * the cfg, with an edge from the entry to each block the entry does not reach, so dead code still has dependences, as it does in
+   * {@link HeapReachingDefs}. The writes in the entry do not happen on these edges.
+   */
+  private final Graph<IExplodedBasicBlock> graph;
+
+  /**
+   * blocks not reachable from the entry in the cfg
+   */
+  private final Set<IExplodedBasicBlock> unreachable = HashSetFactory.make();
+
+  /**
+   * the statements which may read or write locations; versions refer to writes by their index
+   */
+  private final OrdinalSetMapping<Statement> domain;
+
+  /**
+   * the locations read or written by statements in the domain
+   */
+  private final Map<PointerKey, Location> locations = HashMapFactory.make();
+
+  /**
+   * the writes, reads and phis in each block, indexed by block number; null for a block without any
+   */
+  private final Block[] blocks;
+
+  /**
+   * Put the heap locations read and written by statements of a node into SSA form.
+   *
+   * @param node the node we are computing heap dependences for
+   * @param ir IR for the node
+   * @param pa governing pointer analysis
+   * @param mod the set of heap locations which may be written (transitively) by each node. These are logically return values in the
+   *          SDG.
+   * @param statements the statements whose def-use are considered interesting
+   * @param exclusions heap locations that should be excluded from data dependence tracking; may be null
+   * @throws IllegalArgumentException if pa is null
+   * @throws IllegalArgumentException if statements is null
+   */
+  public HeapMemorySSA(CGNode node, IR ir, PointerAnalysis<InstanceKey> pa, Map<CGNode, OrdinalSet<PointerKey>> mod,
+      Collection<Statement> statements, HeapExclusions exclusions, CallGraph cg, ModRef modRef, ExtendedHeapModel heapModel) {
+    if (statements == null) {
+      throw new IllegalArgumentException("statements is null");
+    }
+    if (pa == null) {
+      throw new IllegalArgumentException("pa is null");
+    }
+    this.node = node;
+    this.cfg = ExplodedControlFlowGraph.make(ir);
+    this.domain = new ObjectArrayMapping<Statement>(statements.toArray(new Statement[statements.size()]));
+    this.blocks = new Block[cfg.getMaxNumber() + 1];
+
+    for (Statement s : domain) {
+      addReadsAndWrites(s, pa, mod, exclusions, cg, modRef, heapModel);
+    }
+
+    Set<IExplodedBasicBlock> reachable = DFS.getReachableNodes(cfg, Collections.singleton(cfg.entry()));
+    if (reachable.size() == cfg.getNumberOfNodes()) {
+      this.graph = cfg;
+    } else {
+      SlowSparseNumberedGraph<IExplodedBasicBlock> g = SlowSparseNumberedGraph.duplicate(cfg);
+      for (IExplodedBasicBlock bb : cfg) {
+        if (!reachable.contains(bb)) {
+          unreachable.add(bb);
+          g.addEdge(cfg.entry(), bb);
+        }
+      }
+      this.graph = g;
+    }
+
+    DominanceFrontiers<IExplodedBasicBlock> df = new DominanceFrontiers<IExplodedBasicBlock>(graph, cfg.entry());
+    for (Location l : locations.values()) {
+      if (!l.uses.isEmpty() && !l.defBlocks.isEmpty()) {
+        placePhis(l, df);
+      }
+    }
+    rename(df.dominatorTree());
+  }
+
+  /**
+   * For each statement which reads the location p, compute the set of statements that may def the value it reads.
+   */
+  public Map<Statement, OrdinalSet<Statement>> getReachingDefs(PointerKey p) {
+    Location l = locations.get(p);
+    if (l == null) {
+      return Collections.emptyMap();
+    }
+    Map<Statement, OrdinalSet<Statement>> result = HashMapFactory.make();
+    for (Map.Entry<Statement, Version> e : l.uses.entrySet()) {
+      result.put(e.getKey(), new OrdinalSet<Statement>(reachingDefs(e.getValue()), domain));
+    }
+    return result;
+  }
+
+  /**
+   * @return the indices of the statements which wrote version v, directly or through phis and weak updates
+   */
+  private static MutableIntSet reachingDefs(Version v) {
+    MutableIntSet result = MutableSparseIntSet.makeEmpty();
+    if (v == null) {
+      return result;
+    }
+    Set<Version> visited = HashSetFactory.make();
+    Stack<Version> work = new Stack<Version>();
+    visited.add(v);
+    work.push(v);
+    while (!work.isEmpty()) {
+      Version x = work.pop();
+      if (x instanceof Phi) {
+        for (Version o : ((Phi) x).operands) {
+          if (o != null && visited.add(o)) {
+            work.push(o);
+          }
+        }
+      } else {
+        result.add(x.def);
+        if (x.prev != null && visited.add(x.prev)) {
+          work.push(x.prev);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Record the locations which statement s reads and writes, and where.
+   */
+  private void addReadsAndWrites(Statement s, PointerAnalysis<InstanceKey> pa, Map<CGNode, OrdinalSet<PointerKey>> mod,
+      HeapExclusions exclusions, CallGraph cg, ModRef modRef, ExtendedHeapModel heapModel) {
+    switch (s.getKind()) {
+    case NORMAL: {
+      NormalStatement n = (NormalStatement) s;
+      SSAInstruction instruction = n.getInstruction();
+      IExplodedBasicBlock bb = cfg.getBlockForInstruction(n.getInstructionIndex());
+      for (PointerKey p : modRef.getRef(node, heapModel, pa, instruction, exclusions)) {
+        addUse(bb, findOrCreateLocation(p), s);
+      }
+      // the callees of a call, rather than the call, write heap locations; the caller sees this through HEAP_RET_CALLER statements
+      if (!(instruction instanceof SSAAbstractInvokeInstruction)) {
+        for (PointerKey p : modRef.getMod(node, heapModel, pa, instruction, exclusions)) {
+          addDef(bb, findOrCreateLocation(p), s, p instanceof StaticFieldKey);
+        }
+      }
+      break;
+    }
+    case HEAP_PARAM_CALLEE: {
+      HeapStatement h = (HeapStatement) s;
+      addDef(cfg.entry(), findOrCreateLocation(h.getLocation()), s, false);
+      break;
+    }
+    case HEAP_PARAM_CALLER: {
+      HeapStatement.HeapParamCaller h = (HeapStatement.HeapParamCaller) s;
+      addUse(cfg.getBlockForInstruction(h.getCallIndex()), findOrCreateLocation(h.getLocation()), s);
+      break;
+    }
+    case HEAP_RET_CALLER: {
+      HeapStatement.HeapReturnCaller h = (HeapStatement.HeapReturnCaller) s;
+      IExplodedBasicBlock bb = cfg.getBlockForInstruction(h.getCallIndex());
+      Location l = findOrCreateLocation(h.getLocation());
+      if (HeapReachingDefs.allCalleesMod(cg, h, mod)) {
+        // force flow into and out of the callees
+        l.uses.put(s, null);
+      } else {
+        // the defs that flow to the call may flow to this return, since the callees may have no relevant effect.
+        addUse(bb, l, s);
+      }
+      addDef(bb, l, s, false);
+      break;
+    }
+    case HEAP_RET_CALLEE: {
+      HeapStatement h = (HeapStatement) s;
+      addUse(cfg.exit(), findOrCreateLocation(h.getLocation()), s);
+      break;
+    }
+    default:
+      // doesn't touch the heap.
+      break;
+    }
+  }
+
+  private Location findOrCreateLocation(PointerKey p) {
+    Location result = locations.get(p);
+    if (result == null) {
+      result = new Location(locations.size());
+      locations.put(p, result);
+    }
+    return result;
+  }
+
+  private Block findOrCreateBlock(IExplodedBasicBlock bb) {
+    Block result = blocks[bb.getNumber()];
+    if (result == null) {
+      result = new Block();
+      blocks[bb.getNumber()] = result;
+    }
+    return result;
+  }
+
+  private void addUse(IExplodedBasicBlock bb, Location l, Statement s) {
+    l.uses.put(s, null);
+    findOrCreateBlock(bb).uses.add(new Use(l, s));
+  }
+
+  private void addDef(IExplodedBasicBlock bb, Location l, Statement s, boolean strong) {
+    l.defBlocks.add(bb.getNumber());
+    findOrCreateBlock(bb).defs.add(new Def(l, domain.getMappedIndex(s), strong));
+  }
+
+  /**
+   * Do the writes in src happen on the edge from src to dst? They do not on exceptional edges from instructions other than calls,
+   * nor on the edges from the entry to dead code.
+   */
+  private boolean writesOnEdge(IExplodedBasicBlock src, IExplodedBasicBlock dst) {
+    if (src.isEntryBlock()) {
+      return !unreachable.contains(dst);
+    }
+    SSAInstruction s = src.getInstruction();
+    return s == null || s instanceof SSAAbstractInvokeInstruction || cfg.getNormalSuccessors(src).contains(dst);
+  }
+
+  /**
+   * Place phis for l at the iterated dominance frontier of its writes. A block reached by an edge on which a write does not happen
+   * sees two versions of l, so it is treated as a write as well.
+   */
+  private void placePhis(Location l, DominanceFrontiers<IExplodedBasicBlock> df) {
+    BitVectorIntSet hasPhi = new BitVectorIntSet();
+    BitVectorIntSet everOnWork = new BitVectorIntSet();
+    Stack<IExplodedBasicBlock> work = new Stack<IExplodedBasicBlock>();
+    for (IntIterator it = l.defBlocks.intIterator(); it.hasNext();) {
+      IExplodedBasicBlock X = cfg.getNode(it.next());
+      if (everOnWork.add(X.getNumber())) {
+        work.push(X);
+      }
+      for (Iterator<? extends IExplodedBasicBlock> ys = graph.getSuccNodes(X); ys.hasNext();) {
+        IExplodedBasicBlock Y = ys.next();
+        if (!writesOnEdge(X, Y)) {
+          if (hasPhi.add(Y.getNumber())) {
+            findOrCreateBlock(Y).phis.add(new Phi(l));
+          }
+          if (everOnWork.add(Y.getNumber())) {
+            work.push(Y);
+          }
+        }
+      }
+    }
+    while (!work.isEmpty()) {
+      IExplodedBasicBlock X = work.pop();
+      for (Iterator<IExplodedBasicBlock> ys = df.getDominanceFrontier(X); ys.hasNext();) {
+        IExplodedBasicBlock Y = ys.next();
+        if (hasPhi.add(Y.getNumber())) {
+          findOrCreateBlock(Y).phis.add(new Phi(l));
+        }
+        if (everOnWork.add(Y.getNumber())) {
+          work.push(Y);
+        }
+      }
+    }
+  }
+
+  /**
+   * Walk the dominator tree from the entry, recording the version of each location which each read sees, and the operands of
+   * phis. The walk is iterative, to avoid overflowing the stack on big methods.
+   */
+  private void rename(Graph<IExplodedBasicBlock> dominatorTree) {
+    Version[] current = new Version[locations.size()];
+    Stack<Frame> stack = new Stack<Frame>();
+    stack.push(new Frame(dominatorTree.getSuccNodes(cfg.entry()), enter(cfg.entry(), current)));
+    while (!stack.isEmpty()) {
+      Frame f = stack.peek();
+      if (f.children.hasNext()) {
+        IExplodedBasicBlock next = f.children.next();
+        stack.push(new Frame(dominatorTree.getSuccNodes(next), enter(next, current)));
+      } else {
+        // restore the versions current before the block, latest change first
+        for (int i = f.undo.size() - 1; i >= 0; i--) {
+          Undo u = f.undo.get(i);
+          current[u.location.number] = u.before;
+        }
+        stack.pop();
+      }
+    }
+  }
+
+  /**
+   * Process the phis, reads and writes of block X, and fill in the operands of the phis in its successors.
+   *
+   * @return the changes made to the current versions in X, with the versions they replaced
+   */
+  private List<Undo> enter(IExplodedBasicBlock X, Version[] current) {
+    Block b = blocks[X.getNumber()];
+    List<Undo> undo = new ArrayList<Undo>(0);
+    // for each location written in X, the version read by X
+    Map<Location, Version> in = Collections.emptyMap();
+    if (b != null) {
+      for (Phi phi : b.phis) {
+        undo.add(new Undo(phi.location, current[phi.location.number]));
+        current[phi.location.number] = phi;
+      }
+      for (Use u : b.uses) {
+        u.location.uses.put(u.statement, current[u.location.number]);
+      }
+      if (!b.defs.isEmpty()) {
+        in = HashMapFactory.make(b.defs.size());
+      }
+      for (Def d : b.defs) {
+        Version before = current[d.location.number];
+        if (!in.containsKey(d.location)) {
+          in.put(d.location, before);
+        }
+        undo.add(new Undo(d.location, before));
+        current[d.location.number] = new Version(d.def, d.strong ? null : before);
+      }
+    }
+    for (Iterator<? extends IExplodedBasicBlock> ys = graph.getSuccNodes(X); ys.hasNext();) {
+      IExplodedBasicBlock Y = ys.next();
+      Block succ = blocks[Y.getNumber()];
+      if (succ == null || succ.phis.isEmpty()) {
+        continue;
+      }
+      boolean writes = writesOnEdge(X, Y);
+      for (Phi phi : succ.phis) {
+        if (!writes && in.containsKey(phi.location)) {
+          phi.operands.add(in.get(phi.location));
+        } else {
+          phi.operands.add(current[phi.location.number]);
+        }
+      }
+    }
+    return undo;
+  }
+
+  /**
+   * A heap location, with the versions read by each statement which reads it
+   */
+  private static class Location {
+    final int number;
+
+    /**
+     * numbers of the blocks which write this location
+     */
+    final MutableIntSet defBlocks = new BitVectorIntSet();
+
+    /**
+     * the version each statement which reads this location sees; null if no write reaches it
+     */
+    final Map<Statement, Version> uses = HashMapFactory.make();
+
+    Location(int number) {
+      this.number = number;
+    }
+  }
+
+  /**
+   * A version of a location: the value written by one statement, or merged by a phi
+   */
+  private static class Version {
+    /**
+     * index in the domain of the statement which writes this version; -1 for a phi
+     */
+    final int def;
+
+    /**
+     * for a weak update, the version it updates, whose writes also reach this one
+     */
+    final Version prev;
+
+    Version(int def, Version prev) {
+      this.def = def;
+      this.prev = prev;
+    }
+  }
+
+  private static class Phi extends Version {
+    final Location location;
+
+    /**
+     * the version flowing in from each predecessor of the block; null where no write reaches
+     */
+    final List<Version> operands = new ArrayList<Version>(2);
+
+    Phi(Location location) {
+      super(-1, null);
+      this.location = location;
+    }
+  }
+
+  /**
+   * A write of a location in a block
+   */
+  private static class Def {
+    final Location location;
+
+    /**
+     * index in the domain of the statement which writes
+     */
+    final int def;
+
+    /**
+     * does the write kill the writes before it?
+     */
+    final boolean strong;
+
+    Def(Location location, int def, boolean strong) {
+      this.location = location;
+      this.def = def;
+      this.strong = strong;
+    }
+  }
+
+  /**
+   * A change to the current version of a location during {@link HeapMemorySSA#rename(Graph)}, with the version to restore
+   */
+  private static class Undo {
+    final Location location;
+
+    final Version before;
+
+    Undo(Location location, Version before) {
+      this.location = location;
+      this.before = before;
+    }
+  }
+
+  private static class Use {
+    final Location location;
+
+    final Statement statement;
+
+    Use(Location location, Statement statement) {
+      this.location = location;
+      this.statement = statement;
+    }
+  }
+
+  private static class Block {
+    final List<Phi> phis = new ArrayList<Phi>(0);
+
+    final List<Use> uses = new ArrayList<Use>(0);
+
+    final List<Def> defs = new ArrayList<Def>(1);
+  }
+
+  private static class Frame {
+    final Iterator<IExplodedBasicBlock> children;
+
+    final List<Undo> undo;
+
+    Frame(Iterator<IExplodedBasicBlock> children, List<Undo> undo) {
+      this.children = children;
+      this.undo = undo;
+    }
+  }
+}
@@ -124,7 +124,26 @@ public class PDG implements NumberedGraph<Statement> {
 
   private final boolean ignoreAllocHeapDefs;
 
-  private boolean isPopulated = false;
+  /**
+   * Compute heap data dependences with {@link HeapMemorySSA}, for all locations at once, rather than with {@link HeapReachingDefs}
+   * for each location?
+   */
+  private final boolean sparseHeapDependences;
+
+  /**
+   * the heap locations of this node in SSA form, made when heap data dependences are first needed if {@link #sparseHeapDependences}
+   */
+  private HeapMemorySSA heapSSA;
+
+  /**
+   * Have the nodes and scalar edges of this PDG been created? Set only once they have, so a thread that sees it set need not lock.
+   */
+  private volatile boolean isPopulated = false;
+
+  /**
+   * Is the thread holding the lock on this PDG creating its nodes and scalar edges?
+   */
+  private boolean isPopulating = false;
 
   /**
    * @param mod the set of heap locations which may be written (transitively) by this node. These are logically return values in the
@@ -147,6 +166,19 @@ public class PDG implements NumberedGraph<Statement> {
   public PDG(final CGNode node, PointerAnalysis<InstanceKey> pa, Map<CGNode, OrdinalSet<PointerKey>> mod,
       Map<CGNode, OrdinalSet<PointerKey>> ref, DataDependenceOptions dOptions, ControlDependenceOptions cOptions,
       HeapExclusions exclusions, CallGraph cg, ModRef modRef, boolean ignoreAllocHeapDefs) {
+    this(node, pa, mod, ref, dOptions, cOptions, exclusions, cg, modRef, ignoreAllocHeapDefs, false);
+  }
+
+  /**
+   * @param mod the set of heap locations which may be written (transitively) by this node. These are logically return values in the
+   *          SDG.
+   * @param ref the set of heap locations which may be read (transitively) by this node. These are logically parameters in the SDG.
+   * @param sparseHeapDependences compute heap data dependences with {@link HeapMemorySSA} rather than {@link HeapReachingDefs}?
+   * @throws IllegalArgumentException if node is null
+   */
+  public PDG(final CGNode node, PointerAnalysis<InstanceKey> pa, Map<CGNode, OrdinalSet<PointerKey>> mod,
+      Map<CGNode, OrdinalSet<PointerKey>> ref, DataDependenceOptions dOptions, ControlDependenceOptions cOptions,
+      HeapExclusions exclusions, CallGraph cg, ModRef modRef, boolean ignoreAllocHeapDefs, boolean sparseHeapDependences) {
 
     super();
     if (node == null) {
@@ -163,23 +195,32 @@ public class PDG implements NumberedGraph<Statement> {
     this.modRef = modRef;
     this.ref = ref;
     this.ignoreAllocHeapDefs = ignoreAllocHeapDefs;
+    this.sparseHeapDependences = sparseHeapDependences;
   }
 
   /**
    * WARNING: Since we're using a {@link HashMap} of {@link SSAInstruction}s, and equals() of {@link SSAInstruction} assumes a
    * canonical representative for each instruction, we <bf>must</bf> ensure that we use the same IR object throughout
    * initialization!!
+   * 
+   * Different PDGs may be populated concurrently; threads populating the same PDG wait for the first one to finish.
    */
-  private void populate() {
+  void populate() {
     if (!isPopulated) {
-      // ensure that we keep the single, canonical IR live throughout initialization, while the instructionIndices map
-      // is live.
-      IR ir = node.getIR();
-      isPopulated = true;
-
-      Map<SSAInstruction, Integer> instructionIndices = computeInstructionIndices(ir);
-      createNodes(ref, cOptions, ir);
-      createScalarEdges(cOptions, ir, instructionIndices);
+      synchronized (this) {
+        if (!isPopulated && !isPopulating) {
+          // ensure that we keep the single, canonical IR live throughout initialization, while the instructionIndices map
+          // is live.
+          IR ir = node.getIR();
+          isPopulating = true;
+
+          Map<SSAInstruction, Integer> instructionIndices = computeInstructionIndices(ir);
+          createNodes(ref, cOptions, ir);
+          createScalarEdges(cOptions, ir, instructionIndices);
+          isPopulated = true;
+          isPopulating = false;
+        }
+      }
     }
   }
 
@@ -678,6 +719,14 @@ public class PDG implements NumberedGraph<Statement> {
       System.err.println("Location " + pk);
     }
 
+    if (sparseHeapDependences) {
+      if (heapSSA == null) {
+        heapSSA = new HeapMemorySSA(node, ir, pa, mod, Iterator2Collection.toSet(iterator()), exclusions, cg, modRef, heapModel);
+      }
+      addHeapDataDependenceEdges(heapSSA.getReachingDefs(pk));
+      return;
+    }
+
     // in reaching defs calculation, exclude heap statements that are
     // irrelevant.
     Predicate f = new Predicate() {
@@ -694,7 +743,13 @@ public class PDG implements NumberedGraph<Statement> {
 
     Map<Statement, OrdinalSet<Statement>> heapReachingDefs = new HeapReachingDefs(modRef, heapModel).computeReachingDefs(node, ir, pa, mod,
         relevantStatements, new HeapExclusions(SetComplement.complement(new SingletonSet(t))), cg);
+    addHeapDataDependenceEdges(heapReachingDefs);
+  }
 
+  /**
+   * Add an edge to each statement from each statement that may def the heap value it reads.
+   */
+  private void addHeapDataDependenceEdges(Map<Statement, OrdinalSet<Statement>> heapReachingDefs) {
     for (Statement st : heapReachingDefs.keySet()) {
       switch (st.getKind()) {
       case NORMAL:
@@ -808,7 +863,7 @@ public class PDG implements NumberedGraph<Statement> {
     return ssaInstruction2Statement(node, s, instructionIndices, ir);
   }
 
-  public static synchronized Statement ssaInstruction2Statement(CGNode node, SSAInstruction s,
+  public static Statement ssaInstruction2Statement(CGNode node, SSAInstruction s,
       Map<SSAInstruction, Integer> instructionIndices, IR ir) {
     if (node == null) {
       throw new IllegalArgumentException("null node");
@@ -1109,6 +1164,20 @@ public class PDG implements NumberedGraph<Statement> {
     return delegate.getPredNodes(N);
   }
 
+  /**
+   * Create the heap data dependence edges of this PDG for all locations at once, rather than as traversals reach the statements
+   * that read and write them. Afterwards, traversals no longer modify this PDG, so several threads may traverse it concurrently.
+   */
+  void computeAllHeapDependencies() {
+    populate();
+    if (!dOptions.isIgnoreHeap()) {
+      for (Statement st : Iterator2Collection.toList(iterator())) {
+        computeIncomingHeapDependencies(st);
+        computeOutgoingHeapDependencies(st);
+      }
+    }
+  }
+
   private void computeIncomingHeapDependencies(Statement N) {
     switch (N.getKind()) {
     case NORMAL:
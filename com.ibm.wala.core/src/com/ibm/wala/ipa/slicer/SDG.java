@@ -11,13 +11,17 @@
 package com.ibm.wala.ipa.slicer;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.ibm.wala.classLoader.CallSiteReference;
 import com.ibm.wala.ipa.callgraph.CGNode;
 import com.ibm.wala.ipa.callgraph.CallGraph;
+import com.ibm.wala.ipa.callgraph.CallGraphTransitiveClosure;
 import com.ibm.wala.ipa.callgraph.propagation.InstanceKey;
 import com.ibm.wala.ipa.callgraph.propagation.PointerAnalysis;
 import com.ibm.wala.ipa.callgraph.propagation.PointerKey;
@@ -32,11 +36,11 @@ import com.ibm.wala.types.MethodReference;
 import com.ibm.wala.types.TypeReference;
 import com.ibm.wala.util.collections.CompoundIterator;
 import com.ibm.wala.util.collections.EmptyIterator;
-import com.ibm.wala.util.collections.HashMapFactory;
 import com.ibm.wala.util.collections.HashSetFactory;
 import com.ibm.wala.util.collections.Iterator2Collection;
 import com.ibm.wala.util.collections.IteratorUtil;
 import com.ibm.wala.util.debug.Assertions;
+import com.ibm.wala.util.functions.Function;
 import com.ibm.wala.util.graph.AbstractNumberedGraph;
 import com.ibm.wala.util.graph.NumberedEdgeManager;
 import com.ibm.wala.util.graph.NumberedNodeManager;
@@ -83,7 +87,7 @@ public class SDG extends AbstractNumberedGraph<Statement> implements ISDG {
   /**
    * keeps track of PDG for each call graph node
    */
-  private final Map<CGNode, PDG> pdgMap = HashMapFactory.make();
+  private final ConcurrentMap<CGNode, PDG> pdgMap = new ConcurrentHashMap<CGNode, PDG>();
 
   /**
    * governs data dependence edges in the graph
@@ -122,6 +126,16 @@ public class SDG extends AbstractNumberedGraph<Statement> implements ISDG {
    */
   private boolean eagerComputed = false;
 
+  /**
+   * How many threads may build PDGs concurrently in {@link #computeAllPDGs()}? 1 means sequential construction.
+   */
+  private int parallelism = 1;
+
+  /**
+   * Do PDGs compute heap data dependences with {@link HeapMemorySSA} rather than {@link HeapReachingDefs}?
+   */
+  private boolean sparseHeapDependences = false;
+
   public SDG(final CallGraph cg, PointerAnalysis<InstanceKey> pa, DataDependenceOptions dOptions, ControlDependenceOptions cOptions) {
     this(cg, pa, ModRef.make(), dOptions, cOptions, null);
   }
@@ -170,8 +184,9 @@ public class SDG extends AbstractNumberedGraph<Statement> implements ISDG {
     if (!eagerComputed) {
       eagerComputed = true;
       computeAllPDGs();
-      for (PDG pdg : pdgMap.values()) {
-        addPDGStatementNodes(pdg.getCallGraphNode());
+      // add statements in call graph order, not in the hash order of pdgMap, so that statement numbers are reproducible
+      for (CGNode n : cg) {
+        addPDGStatementNodes(n);
       }
     }
   }
@@ -187,13 +202,75 @@ public class SDG extends AbstractNumberedGraph<Statement> implements ISDG {
   }
 
   /**
-   * force computation of all PDGs in the SDG
+   * @return the number of threads that may build PDGs concurrently
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * With n > 1, {@link #computeAllPDGs()}, and so eager construction of this SDG, builds the PDGs of the call graph nodes on a pool
+   * of n threads. The pointer analysis and the IRs of the nodes must then be safe to query concurrently, as they are for the
+   * builders of {@link com.ibm.wala.ipa.callgraph.impl.Util}.
+   * 
+   * @param n the number of threads that may build PDGs concurrently; 1 means sequential construction
    */
-  private void computeAllPDGs() {
-    for (Iterator<? extends CGNode> it = cg.iterator(); it.hasNext();) {
-      CGNode n = it.next();
-      getPDG(n);
+  public void setParallelism(int n) {
+    if (n < 1) {
+      throw new IllegalArgumentException("illegal parallelism " + n);
     }
+    parallelism = n;
+  }
+
+  /**
+   * @return true iff PDGs compute heap data dependences with {@link HeapMemorySSA}
+   */
+  public boolean isSparseHeapDependences() {
+    return sparseHeapDependences;
+  }
+
+  /**
+   * Compute heap data dependences by putting the heap locations of each node into SSA form with {@link HeapMemorySSA}, once for all
+   * locations, rather than by solving reaching definitions with {@link HeapReachingDefs} for each location. The dependences are the
+   * same, but this is much cheaper for big methods with many heap accesses. This affects only PDGs made afterwards, so set it before
+   * traversing this SDG.
+   */
+  public void setSparseHeapDependences(boolean sparseHeapDependences) {
+    this.sparseHeapDependences = sparseHeapDependences;
+  }
+
+  /**
+   * force computation of all PDGs in the SDG, including their nodes and scalar edges. PDGs are otherwise computed lazily, as
+   * traversals reach their nodes; computing them up front lets a big slice be computed with {@link #getParallelism()} threads
+   * building PDGs. Heap dependences are still computed lazily.
+   */
+  public void computeAllPDGs() {
+    computeAllPDGs(false);
+  }
+
+  /**
+   * Compute this entire SDG, including all heap dependences, with {@link #getParallelism()} threads building PDGs. Afterwards,
+   * traversals no longer modify this SDG, so several threads may traverse it concurrently, e.g. to compute slices in a
+   * {@link SliceSession}.
+   */
+  public void computeAllDependences() {
+    computeAllPDGs(true);
+    eagerConstruction();
+  }
+
+  private void computeAllPDGs(final boolean heapDependences) {
+    CallGraphTransitiveClosure.collectNodeResults(cg, new Function<CGNode, Collection<PDG>>() {
+      @Override
+      public Collection<PDG> apply(CGNode n) {
+        PDG pdg = getPDG(n);
+        if (heapDependences) {
+          pdg.computeAllHeapDependencies();
+        } else {
+          pdg.populate();
+        }
+        return Collections.singleton(pdg);
+      }
+    }, parallelism);
   }
 
   /**
@@ -788,12 +865,19 @@ public class SDG extends AbstractNumberedGraph<Statement> implements ISDG {
     return nodeMgr;
   }
 
+  /**
+   * Safe to call concurrently: each node gets one PDG, whichever thread asks for it first.
+   */
   @Override
   public PDG getPDG(CGNode node) {
     PDG result = pdgMap.get(node);
     if (result == null) {
-      result = new PDG(node, pa, mod, ref, dOptions, cOptions, heapExclude, cg, modRef);
-      pdgMap.put(node, result);
+      // a PDG does no work until it is populated, so it is cheap to throw one away if another thread wins the race
+      PDG pdg = new PDG(node, pa, mod, ref, dOptions, cOptions, heapExclude, cg, modRef, false, sparseHeapDependences);
+      result = pdgMap.putIfAbsent(node, pdg);
+      if (result == null) {
+        result = pdg;
+      }
       // Let's not eagerly add nodes, shall we?
       // for (Iterator<? extends Statement> it = result.iterator(); it.hasNext();) {
       // nodeMgr.addNode(it.next());
@@ -0,0 +1,443 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.ipa.slicer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.ibm.wala.dataflow.IFDS.ISupergraph;
+import com.ibm.wala.dataflow.IFDS.LocalSummaryEdges;
+import com.ibm.wala.dataflow.IFDS.PartiallyBalancedTabulationSolver;
+import com.ibm.wala.dataflow.IFDS.PathEdge;
+import com.ibm.wala.ipa.slicer.Slicer.SliceProblem;
+import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.CancelRuntimeException;
+import com.ibm.wala.util.collections.HashMapFactory;
+import com.ibm.wala.util.collections.HashSetFactory;
+import com.ibm.wala.util.collections.MapUtil;
+import com.ibm.wala.util.intset.IntIterator;
+import com.ibm.wala.util.intset.IntSet;
+
+/**
+ * Computes many slices in the same direction over one {@link SDG}, sharing work between them.
+ *
+ * Each slice is tabulated as by {@link Slicer}, but the supergraph is made only once, and the slices of statements are cached.
+ * Moreover, once a slice has been tabulated, the path edges from each callee entry it reached are kept, provided they do not
+ * depend on the statement sliced from. Later slices that reach the same callee entry take the statements reached from it, and
+ * the summary edges to its exits, from the session instead of tabulating the callee again. A callee entry is taken only if no
+ * entry it reaches through calls is the entry of a seed of the later slice, since {@link Slicer} lets the path edges of a seed
+ * flow into the callee entry of its procedure; so each slice is the one {@link Slicer} computes.
+ *
+ * With a parallelism greater than 1, {@link #slice(Collection)} computes the slices of a batch of statements on a pool of
+ * threads. The SDG must then be computed in full first, so traversals do not modify it; the session does this with
+ * {@link SDG#computeAllDependences()} when it is made. With heap data dependences, this costs more than a few slices would, so
+ * it pays off only for big batches.
+ */
+public class SliceSession {
+
+  private final SDG sdg;
+
+  private final boolean backward;
+
+  private final int parallelism;
+
+  /**
+   * shared by the tabulation problems of all slices
+   */
+  private final ISupergraph<Statement, PDG> supergraph;
+
+  /**
+   * the slice of each statement computed so far
+   */
+  private final ConcurrentMap<Statement, Collection<Statement>> slices = new ConcurrentHashMap<Statement, Collection<Statement>>();
+
+  /**
+   * what is reached from each callee entry whose path edges have been kept
+   */
+  private final ConcurrentMap<Statement, EntrySummary> entrySummaries = new ConcurrentHashMap<Statement, EntrySummary>();
+
+  /**
+   * Make a session which computes slices one at a time.
+   *
+   * @param backward compute backward slices? otherwise forward slices
+   */
+  public SliceSession(SDG sdg, boolean backward) {
+    this(sdg, backward, 1);
+  }
+
+  /**
+   * @param backward compute backward slices? otherwise forward slices
+   * @param parallelism the number of threads that may compute slices concurrently; if greater than 1, the whole SDG is computed
+   *          now
+   */
+  public SliceSession(SDG sdg, boolean backward, int parallelism) {
+    if (sdg == null) {
+      throw new IllegalArgumentException("sdg cannot be null");
+    }
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("illegal parallelism " + parallelism);
+    }
+    this.sdg = sdg;
+    this.backward = backward;
+    this.parallelism = parallelism;
+    this.supergraph = SliceProblem.makeSupergraph(sdg, backward);
+    if (parallelism > 1) {
+      sdg.computeAllDependences();
+    }
+  }
+
+  public SDG getSDG() {
+    return sdg;
+  }
+
+  public boolean isBackward() {
+    return backward;
+  }
+
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * @return the slice of s, which is computed unless it was already
+   */
+  public Collection<Statement> slice(Statement s) throws CancelException {
+    if (s == null) {
+      throw new IllegalArgumentException("s cannot be null");
+    }
+    Collection<Statement> result = slices.get(s);
+    if (result == null) {
+      result = computeSlice(s);
+      Collection<Statement> old = slices.putIfAbsent(s, result);
+      if (old != null) {
+        result = old;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Compute the slices of a batch of statements, on a pool of {@link #getParallelism()} threads.
+   *
+   * @return the slice of each statement in ss
+   */
+  public Map<Statement, Collection<Statement>> slice(Collection<Statement> ss) throws CancelException {
+    if (ss == null) {
+      throw new IllegalArgumentException("ss cannot be null");
+    }
+    List<Statement> todo = new ArrayList<Statement>();
+    for (Statement s : ss) {
+      if (!slices.containsKey(s)) {
+        todo.add(s);
+      }
+    }
+    if (parallelism > 1 && todo.size() > 1) {
+      ForkJoinPool pool = new ForkJoinPool(parallelism);
+      try {
+        pool.invoke(new SliceTask(todo, 0, todo.size()));
+      } catch (CancelRuntimeException e) {
+        // the pool may have wrapped the exception thrown by the task again
+        Throwable cause = e.getCause();
+        while (cause instanceof CancelRuntimeException) {
+          cause = cause.getCause();
+        }
+        if (cause instanceof CancelException) {
+          throw (CancelException) cause;
+        }
+        throw e;
+      } finally {
+        pool.shutdown();
+      }
+    }
+    Map<Statement, Collection<Statement>> result = HashMapFactory.make();
+    for (Statement s : ss) {
+      result.put(s, slice(s));
+    }
+    return result;
+  }
+
+  /**
+   * @return the number of callee entries whose path edges are kept for later slices
+   */
+  public int getNumberOfEntrySummaries() {
+    return entrySummaries.size();
+  }
+
+  /**
+   * Forget the slices computed so far, and the path edges kept from them. Do not call this while slices are being computed.
+   */
+  public void clear() {
+    slices.clear();
+    entrySummaries.clear();
+  }
+
+  private Collection<Statement> computeSlice(Statement s) throws CancelException {
+    SessionSolver solver = new SessionSolver(new SliceProblem(Collections.singleton(s), supergraph, backward), true);
+    Collection<Statement> result = solver.solve().getSupergraphNodesReached();
+    if (solver.seedInImported) {
+      // a seed was added after the entries reaching it had been taken from the session: tabulate again without them
+      solver = new SessionSolver(new SliceProblem(Collections.singleton(s), supergraph, backward), false);
+      result = solver.solve().getSupergraphNodesReached();
+    }
+
+    // add what is reached from the callee entries taken from the session
+    Set<Statement> visited = HashSetFactory.make();
+    List<Statement> worklist = new ArrayList<Statement>(solver.imported);
+    visited.addAll(worklist);
+    while (!worklist.isEmpty()) {
+      Statement entry = worklist.remove(worklist.size() - 1);
+      EntrySummary summary = entrySummaries.get(entry);
+      PDG proc = supergraph.getProcOf(entry);
+      for (IntIterator it = summary.reached.intIterator(); it.hasNext();) {
+        result.add(supergraph.getLocalBlock(proc, it.next()));
+      }
+      for (Statement callee : summary.callees) {
+        if (visited.add(callee)) {
+          worklist.add(callee);
+        }
+      }
+    }
+
+    keepEntrySummaries(solver);
+    return Collections.unmodifiableCollection(result);
+  }
+
+  /**
+   * Keep the path edges from each callee entry the solver reached, unless they depend on the statement sliced from: this is the case
+   * for the entries of seeds, and for the callee entries which reach those through calls.
+   */
+  private void keepEntrySummaries(SessionSolver solver) {
+    Set<Statement> entries = solver.getPathEdgeEntries();
+    Map<Statement, EntrySummary> candidates = HashMapFactory.make();
+    Map<Statement, Set<Statement>> callers = HashMapFactory.make();
+    List<Statement> dependent = new ArrayList<Statement>();
+    for (Statement entry : entries) {
+      if (solver.seedEntries.contains(entry)) {
+        dependent.add(entry);
+        continue;
+      }
+      PDG proc = supergraph.getProcOf(entry);
+      IntSet reached = solver.getLocalPathEdges(entry).getReachedNodeNumbers();
+      List<Statement> exits = new ArrayList<Statement>();
+      Set<Statement> callees = HashSetFactory.make();
+      boolean unknownCallee = false;
+      for (IntIterator it = reached.intIterator(); it.hasNext();) {
+        Statement n = supergraph.getLocalBlock(proc, it.next());
+        if (supergraph.isCall(n)) {
+          for (Iterator<? extends Statement> it2 = supergraph.getCalledNodes(n); it2.hasNext();) {
+            Statement callee = it2.next();
+            callees.add(callee);
+            if (entries.contains(callee)) {
+              MapUtil.findOrCreateSet(callers, callee).add(entry);
+            } else if (!entrySummaries.containsKey(callee)) {
+              unknownCallee = true;
+            }
+          }
+        } else if (supergraph.isExit(n)) {
+          exits.add(n);
+        }
+      }
+      if (unknownCallee) {
+        dependent.add(entry);
+      } else {
+        candidates.put(entry, new EntrySummary(reached, exits.toArray(new Statement[exits.size()]), callees
+            .toArray(new Statement[callees.size()])));
+      }
+    }
+    // an entry is dependent if it reaches a dependent entry through calls
+    while (!dependent.isEmpty()) {
+      Statement entry = dependent.remove(dependent.size() - 1);
+      Set<Statement> s = callers.remove(entry);
+      if (s != null) {
+        for (Statement caller : s) {
+          if (candidates.remove(caller) != null) {
+            dependent.add(caller);
+          }
+        }
+      }
+    }
+    for (Map.Entry<Statement, EntrySummary> e : candidates.entrySet()) {
+      entrySummaries.putIfAbsent(e.getKey(), e.getValue());
+    }
+  }
+
+  /**
+   * What is reached from a callee entry, with the single fact of slicing
+   */
+  private static class EntrySummary {
+    /**
+     * local numbers of the statements reached in the procedure of the entry
+     */
+    private final IntSet reached;
+
+    /**
+     * the exits of the procedure reached
+     */
+    private final Statement[] exits;
+
+    /**
+     * the callee entries reached through calls from the statements reached
+     */
+    private final Statement[] callees;
+
+    EntrySummary(IntSet reached, Statement[] exits, Statement[] callees) {
+      this.reached = reached;
+      this.exits = exits;
+      this.callees = callees;
+    }
+  }
+
+  /**
+   * Tabulates one slice, taking the callee entries kept by the session instead of tabulating them again.
+   */
+  private class SessionSolver extends PartiallyBalancedTabulationSolver<Statement, PDG, Object> {
+
+    /**
+     * the entries of the seeds added so far
+     */
+    private final Set<Statement> seedEntries = HashSetFactory.make();
+
+    /**
+     * take callee entries from the session?
+     */
+    private final boolean importing;
+
+    /**
+     * the callee entries taken from the session
+     */
+    private final Set<Statement> imported = HashSetFactory.make();
+
+    /**
+     * the callee entries taken from the session, and those they reach through calls
+     */
+    private final Set<Statement> importedClosure = HashSetFactory.make();
+
+    /**
+     * was a seed added at an entry in {@link #importedClosure}? then the slice must be tabulated again
+     */
+    private boolean seedInImported = false;
+
+    SessionSolver(SliceProblem p, boolean importing) {
+      super(p, null);
+      this.importing = importing;
+    }
+
+    @Override
+    public void addSeed(PathEdge<Statement> seed) {
+      seedEntries.add(seed.getEntry());
+      if (importedClosure.contains(seed.getEntry())) {
+        seedInImported = true;
+      }
+      super.addSeed(seed);
+    }
+
+    /**
+     * If no entry reached through calls from s_p is the entry of a seed, and all of them are kept by the session, add them to
+     * {@link #importedClosure}.
+     *
+     * @return true iff so
+     */
+    private boolean addClosure(Statement s_p) {
+      Set<Statement> closure = HashSetFactory.make();
+      List<Statement> worklist = new ArrayList<Statement>();
+      closure.add(s_p);
+      worklist.add(s_p);
+      while (!worklist.isEmpty()) {
+        Statement entry = worklist.remove(worklist.size() - 1);
+        EntrySummary summary = entrySummaries.get(entry);
+        // another thread may not have kept the summary of a callee yet
+        if (seedEntries.contains(entry) || summary == null) {
+          return false;
+        }
+        for (Statement callee : summary.callees) {
+          // the entries already in the closure reach no seed entry, or seedInImported is set
+          if (!importedClosure.contains(callee) && closure.add(callee)) {
+            worklist.add(callee);
+          }
+        }
+      }
+      importedClosure.addAll(closure);
+      return true;
+    }
+
+    /**
+     * Instead of tabulating from a callee entry kept by the session, record summary edges to the exits it reaches.
+     */
+    @Override
+    protected boolean propagate(Statement s_p, int i, Statement n, int j) {
+      if (importing && i == 0 && j == 0 && s_p.equals(n) && !seedEntries.contains(s_p) && getLocalPathEdges(s_p) == null) {
+        if (imported.contains(s_p)) {
+          return false;
+        }
+        EntrySummary summary = entrySummaries.get(s_p);
+        if (summary != null && addClosure(s_p)) {
+          imported.add(s_p);
+          LocalSummaryEdges summaries = findOrCreateLocalSummaryEdges(supergraph.getProcOf(s_p));
+          int s_p_num = supergraph.getLocalBlockNumber(s_p);
+          for (Statement exit : summary.exits) {
+            summaries.insertSummaryEdge(s_p_num, supergraph.getLocalBlockNumber(exit), 0, 0);
+          }
+          return false;
+        }
+      }
+      return super.propagate(s_p, i, n, j);
+    }
+
+    /*
+     * overridden to make it accessible to the session
+     */
+    @Override
+    protected Set<Statement> getPathEdgeEntries() {
+      return super.getPathEdgeEntries();
+    }
+  }
+
+  /**
+   * Computes the slices of a range of statements, splitting it in halves until the ranges are single statements.
+   */
+  @SuppressWarnings("serial")
+  private class SliceTask extends RecursiveAction {
+    private final List<Statement> ss;
+
+    private final int from;
+
+    private final int to;
+
+    SliceTask(List<Statement> ss, int from, int to) {
+      this.ss = ss;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from == 1) {
+        try {
+          slice(ss.get(from));
+        } catch (CancelException e) {
+          throw new CancelRuntimeException(e);
+        }
+      } else {
+        int mid = (from + to) >>> 1;
+        invokeAll(new SliceTask(ss, from, mid), new SliceTask(ss, mid, to));
+      }
+    }
+  }
+}
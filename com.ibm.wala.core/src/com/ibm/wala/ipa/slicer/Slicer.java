@@ -246,13 +246,27 @@ public class Slicer {
     private final boolean backward;
 
     public SliceProblem(Collection<Statement> roots, ISDG sdg, boolean backward) {
+      this(roots, makeSupergraph(sdg, backward), backward);
+    }
+
+    /**
+     * @param supergraph as made by {@link #makeSupergraph(ISDG, boolean)}, e.g. shared by the problems of several slices
+     */
+    SliceProblem(Collection<Statement> roots, ISupergraph<Statement, PDG> supergraph, boolean backward) {
       this.roots = roots;
       this.backward = backward;
-      SDGSupergraph forwards = new SDGSupergraph(sdg, backward);
-      this.supergraph = backward ? BackwardsSupergraph.make(forwards) : forwards;
+      this.supergraph = supergraph;
       f = new SliceFunctions();
     }
 
+    /**
+     * @return the supergraph in which to tabulate slices of sdg
+     */
+    static ISupergraph<Statement, PDG> makeSupergraph(ISDG sdg, boolean backward) {
+      SDGSupergraph forwards = new SDGSupergraph(sdg, backward);
+      return backward ? BackwardsSupergraph.make(forwards) : forwards;
+    }
+
     /*
      * @see com.ibm.wala.dataflow.IFDS.TabulationProblem#getDomain()
      */
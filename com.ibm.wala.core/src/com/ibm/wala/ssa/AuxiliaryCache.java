@@ -10,121 +10,355 @@
  *******************************************************************************/
 package com.ibm.wala.ssa;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Map;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.ibm.wala.classLoader.IMethod;
 import com.ibm.wala.ipa.callgraph.Context;
-import com.ibm.wala.util.collections.HashMapFactory;
-import com.ibm.wala.util.collections.HashSetFactory;
-import com.ibm.wala.util.collections.MapUtil;
 import com.ibm.wala.util.collections.Pair;
-import com.ibm.wala.util.ref.CacheReference;
 
 /**
  * A cache for auxiliary information based on an SSA representation
- * 
+ *
  * A mapping from (IMethod,Context) -> SSAOptions -> SoftReference -> something
+ *
+ * The cache may be used from several threads. Lookups do not lock; creation of a missing item locks one of a fixed number of
+ * stripes selected by the key, so an item is computed at most once while items for unrelated keys are computed concurrently.
  * 
- * This doesn't work very well ... GCs don't do such a great job with SoftReferences ... revamp it.
+ * Retention follows an {@link SSACachePolicy}. Under {@link SSACachePolicy#SOFT_REFERENCES}, entries whose referents have been
+ * collected are purged incrementally, a few at a time, as the cache is used. Under a bounded policy, items are held strongly and an
+ * {@link Evictor}, guarded by its own lock, decides what to drop.
  */
 class AuxiliaryCache {
 
   /**
-   * A mapping from IMethod -> SSAOptions -> SoftReference -> IR
+   * number of locks used to guard creation of items; a power of 2
    */
-  private HashMap<Pair<IMethod, Context>, Map<SSAOptions, Object>> dictionary = HashMapFactory.make();
+  private final static int N_STRIPES = 64;
 
   /**
-   * Help out the garbage collector: clear this cache when the number of items is > RESET_THRESHOLD
+   * maximum number of collected entries purged by one cache operation
    */
-  final private static int RESET_THRESHOLD = 2000;
+  private final static int MAX_PURGE = 64;
 
   /**
-   * number of items cached here.
+   * Something that can create an item missing from the cache.
    */
-  private int nItems = 0;
+  interface Creator {
+    /**
+     * @return the new item, or null if there is none
+     */
+    Object create();
+  }
 
   /**
-   * The existence of this is unfortunate.
+   * How a cached item is held
    */
-  public synchronized void wipe() {
-    dictionary = HashMapFactory.make();
-    nItems = 0;
+  private interface Slot {
+    /**
+     * @return the item, or null if it has been collected
+     */
+    Object get();
   }
 
   /**
-   * clear out things from which no IR is reachable
+   * A soft reference to a cached item, which remembers where it lives in the cache so it can be purged once collected.
    */
-  private void reset() {
-    Map<Pair<IMethod, Context>, Map<SSAOptions, Object>> oldDictionary = dictionary;
-    dictionary = HashMapFactory.make();
-    nItems = 0;
+  private final static class SoftSlot extends SoftReference<Object> implements Slot {
+    private final Key key;
 
-    for (Iterator<Map.Entry<Pair<IMethod, Context>, Map<SSAOptions, Object>>> it = oldDictionary.entrySet().iterator(); it
-        .hasNext();) {
-      Map.Entry<Pair<IMethod, Context>, Map<SSAOptions, Object>> e = it.next();
-      Map<SSAOptions, Object> m = e.getValue();
-      HashSet<Object> toRemove = HashSetFactory.make();
-      for (Iterator it2 = m.entrySet().iterator(); it2.hasNext();) {
-        Map.Entry e2 = (Map.Entry) it2.next();
-        Object key = e2.getKey();
-        Object val = e2.getValue();
-        if (CacheReference.get(val) == null) {
-          toRemove.add(key);
-        }
+    SoftSlot(Key key, Object referent, ReferenceQueue<Object> queue) {
+      super(referent, queue);
+      this.key = key;
+    }
+  }
+
+  /**
+   * A strong reference to a cached item, for bounded caches
+   */
+  private final static class StrongSlot implements Slot {
+    private final Object item;
+
+    StrongSlot(Object item) {
+      this.item = item;
+    }
+
+    @Override
+    public Object get() {
+      return item;
+    }
+  }
+
+  /**
+   * A <(method, context), options> key, as seen by the {@link Evictor}
+   */
+  private final static class Key {
+    private final Pair<IMethod, Context> p;
+
+    private final SSAOptions options;
+
+    Key(Pair<IMethod, Context> p, SSAOptions options) {
+      this.p = p;
+      this.options = options;
+    }
+
+    @Override
+    public int hashCode() {
+      return p.hashCode() * 31 + (options == null ? 0 : options.hashCode());
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return p.equals(other.p) && (options == null ? other.options == null : options.equals(other.options));
+    }
+  }
+
+  /**
+   * A mapping from (IMethod, Context) -> SSAOptions -> Slot -> IR
+   */
+  private final ConcurrentMap<Pair<IMethod, Context>, ConcurrentMap<SSAOptions, Slot>> dictionary = new ConcurrentHashMap<Pair<IMethod, Context>, ConcurrentMap<SSAOptions, Slot>>();
+
+  private final SSACachePolicy policy;
+
+  /**
+   * eviction bookkeeping for bounded caches, null otherwise; all access synchronizes on it
+   */
+  private final Evictor<Key> evictor;
+
+  /**
+   * entries whose referents have been collected are enqueued here
+   */
+  private final ReferenceQueue<Object> collected = new ReferenceQueue<Object>();
+
+  private final Object[] locks = new Object[N_STRIPES];
+
+  private final AtomicLong hits = new AtomicLong();
+
+  private final AtomicLong misses = new AtomicLong();
+
+  private final AtomicLong evictions = new AtomicLong();
+
+  AuxiliaryCache(SSACachePolicy policy) {
+    if (policy == null) {
+      throw new IllegalArgumentException("null policy");
+    }
+    this.policy = policy;
+    this.evictor = policy.isBounded() ? policy.<Key> makeEvictor() : null;
+    for (int i = 0; i < N_STRIPES; i++) {
+      locks[i] = new Object();
+    }
+  }
+
+  AuxiliaryCache() {
+    this(SSACachePolicy.SOFT_REFERENCES);
+  }
+
+  public SSACachePolicy getPolicy() {
+    return policy;
+  }
+
+  /**
+   * The existence of this is unfortunate.
+   */
+  public void wipe() {
+    if (evictor != null) {
+      synchronized (evictor) {
+        evictions.addAndGet(size());
+        dictionary.clear();
+        evictor.clear();
       }
-      for (Iterator<Object> it2 = toRemove.iterator(); it2.hasNext();) {
-        m.remove(it2.next());
+    } else {
+      evictions.addAndGet(size());
+      dictionary.clear();
+      // entries dropped here need no purging
+      while (collected.poll() != null)
+        ;
+    }
+  }
+
+  /**
+   * purge a bounded number of entries whose referents have been collected
+   */
+  private void purge() {
+    if (evictor != null) {
+      return;
+    }
+    for (int i = 0; i < MAX_PURGE; i++) {
+      Reference<?> r = collected.poll();
+      if (r == null) {
+        return;
       }
-      if (m.size() > 0) {
-        dictionary.put(e.getKey(), m);
+      SoftSlot slot = (SoftSlot) r;
+      ConcurrentMap<SSAOptions, Slot> methodMap = dictionary.get(slot.key.p);
+      if (methodMap != null && methodMap.remove(slot.key.options, slot)) {
+        evictions.incrementAndGet();
+        if (methodMap.isEmpty()) {
+          dictionary.remove(slot.key.p, methodMap);
+        }
       }
     }
   }
 
+  private Object lookup(Pair<IMethod, Context> p, SSAOptions options) {
+    ConcurrentMap<SSAOptions, Slot> methodMap = dictionary.get(p);
+    if (methodMap == null) {
+      return null;
+    }
+    Slot slot = methodMap.get(options);
+    Object result = slot == null ? null : slot.get();
+    if (result != null && evictor != null) {
+      synchronized (evictor) {
+        evictor.touch(new Key(p, options));
+      }
+    }
+    return result;
+  }
+
+  private Object lockFor(Pair<IMethod, Context> p, SSAOptions options) {
+    int h = p.hashCode() * 31 + (options == null ? 0 : options.hashCode());
+    h ^= (h >>> 16);
+    return locks[h & (N_STRIPES - 1)];
+  }
+
   /**
    * @param m a method
    * @param options options governing ssa construction
    * @return the object cached for m, or null if none found
    */
-  public synchronized Object find(IMethod m, Context c, SSAOptions options) {
-    // methodMap: SSAOptions -> SoftReference
-    Pair<IMethod, Context> p = Pair.make(m, c);
-    Map methodMap = MapUtil.findOrCreateMap(dictionary, p);
-    Object ref = methodMap.get(options);
-    if (ref == null || CacheReference.get(ref) == null) {
-      return null;
+  public Object find(IMethod m, Context c, SSAOptions options) {
+    purge();
+    Object result = lookup(Pair.make(m, c), options);
+    if (result == null) {
+      misses.incrementAndGet();
     } else {
-      return CacheReference.get(ref);
+      hits.incrementAndGet();
+    }
+    return result;
+  }
+
+  /**
+   * Find the object cached for an <m,c,options> triple, creating and caching it if needed. Concurrent callers asking for the same
+   * triple wait for a single creation.
+   *
+   * @param m a method
+   * @param options options governing ssa construction
+   * @return the object cached for m, or null if none exists and the creator produced none
+   */
+  public Object findOrCreate(IMethod m, Context c, SSAOptions options, Creator creator) {
+    purge();
+    Pair<IMethod, Context> p = Pair.make(m, c);
+    Object result = lookup(p, options);
+    if (result != null) {
+      hits.incrementAndGet();
+      return result;
+    }
+    synchronized (lockFor(p, options)) {
+      result = lookup(p, options);
+      if (result != null) {
+        hits.incrementAndGet();
+        return result;
+      }
+      misses.incrementAndGet();
+      result = creator.create();
+      if (result != null) {
+        put(p, options, result);
+      }
+      return result;
     }
   }
 
   /**
    * cache new auxiliary information for an <m,options> pair
-   * 
+   *
    * @param m a method
    * @param options options governing ssa construction
    */
-  public synchronized void cache(IMethod m, Context c, SSAOptions options, Object aux) {
-    nItems++;
+  public void cache(IMethod m, Context c, SSAOptions options, Object aux) {
+    purge();
+    put(Pair.make(m, c), options, aux);
+  }
 
-    if (nItems > RESET_THRESHOLD) {
-      reset();
+  private void put(Pair<IMethod, Context> p, SSAOptions options, Object aux) {
+    if (evictor == null) {
+      findOrCreateMethodMap(p).put(options, new SoftSlot(new Key(p, options), aux, collected));
+    } else {
+      long weight = policy.weigh(aux);
+      synchronized (evictor) {
+        findOrCreateMethodMap(p).put(options, new StrongSlot(aux));
+        List<Key> victims = evictor.admit(new Key(p, options), weight);
+        for (Key victim : victims) {
+          ConcurrentMap<SSAOptions, Slot> methodMap = dictionary.get(victim.p);
+          if (methodMap != null && methodMap.remove(victim.options) != null) {
+            evictions.incrementAndGet();
+            if (methodMap.isEmpty()) {
+              dictionary.remove(victim.p, methodMap);
+            }
+          }
+        }
+      }
     }
-    Pair<IMethod, Context> p = Pair.make(m, c);
-    // methodMap: SSAOptions -> SoftReference
-    Map<SSAOptions, Object> methodMap = MapUtil.findOrCreateMap(dictionary, p);
-    Object ref = CacheReference.make(aux);
-    methodMap.put(options, ref);
+  }
+
+  private ConcurrentMap<SSAOptions, Slot> findOrCreateMethodMap(Pair<IMethod, Context> p) {
+    ConcurrentMap<SSAOptions, Slot> methodMap = dictionary.get(p);
+    if (methodMap == null) {
+      methodMap = new ConcurrentHashMap<SSAOptions, Slot>(2);
+      ConcurrentMap<SSAOptions, Slot> old = dictionary.putIfAbsent(p, methodMap);
+      if (old != null) {
+        methodMap = old;
+      }
+    }
+    return methodMap;
   }
 
   /**
    * invalidate all cached information about a method
    */
   public void invalidate(IMethod method, Context c) {
-    dictionary.remove(Pair.make(method, c));
+    Pair<IMethod, Context> p = Pair.make(method, c);
+    if (evictor == null) {
+      dictionary.remove(p);
+    } else {
+      synchronized (evictor) {
+        ConcurrentMap<SSAOptions, Slot> methodMap = dictionary.remove(p);
+        if (methodMap != null) {
+          for (SSAOptions options : methodMap.keySet()) {
+            evictor.remove(new Key(p, options));
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the number of entries currently held, including any whose referents have been collected but not yet purged
+   */
+  public int size() {
+    int result = 0;
+    for (ConcurrentMap<SSAOptions, Slot> methodMap : dictionary.values()) {
+      result += methodMap.size();
+    }
+    return result;
+  }
+
+  public CacheStatistics getStatistics() {
+    long weight;
+    if (evictor == null) {
+      weight = -1;
+    } else {
+      synchronized (evictor) {
+        weight = evictor.getWeight();
+      }
+    }
+    return new CacheStatistics(hits.get(), misses.get(), evictions.get(), size(), weight);
   }
 }
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.ssa;
+
+/**
+ * A snapshot of the counters kept by one of the caches in an {@link SSACache}.
+ */
+public final class CacheStatistics {
+
+  private final long hits;
+
+  private final long misses;
+
+  private final long evictions;
+
+  private final int size;
+
+  private final long weight;
+
+  public CacheStatistics(long hits, long misses, long evictions, int size, long weight) {
+    this.hits = hits;
+    this.misses = misses;
+    this.evictions = evictions;
+    this.size = size;
+    this.weight = weight;
+  }
+
+  /**
+   * @return number of lookups answered from the cache
+   */
+  public long getHits() {
+    return hits;
+  }
+
+  /**
+   * @return number of lookups that found nothing cached
+   */
+  public long getMisses() {
+    return misses;
+  }
+
+  /**
+   * @return number of entries dropped from the cache, whether collected or wiped
+   */
+  public long getEvictions() {
+    return evictions;
+  }
+
+  /**
+   * @return number of entries held when the snapshot was taken
+   */
+  public int getSize() {
+    return size;
+  }
+
+  /**
+   * @return total weight of the entries held against the bound of an {@link SSACachePolicy}, or -1 if the cache is unbounded
+   */
+  public long getWeight() {
+    return weight;
+  }
+
+  @Override
+  public String toString() {
+    return "hits: " + hits + " misses: " + misses + " evictions: " + evictions + " size: " + size
+        + (weight < 0 ? "" : " weight: " + weight);
+  }
+}
@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.ssa;
+
+import java.util.List;
+
+/**
+ * Bookkeeping for a cache bounded by total weight: decides which keys to drop when the cache is full.
+ * 
+ * Implementations are not thread-safe; the cache must serialize calls.
+ */
+interface Evictor<K> {
+
+  /**
+   * record that key has been cached with the given weight
+   * 
+   * @return keys that must now be dropped from the cache to respect the bound; may include key itself
+   */
+  List<K> admit(K key, long weight);
+
+  /**
+   * record a cache hit on key; ignored if key is not resident
+   */
+  void touch(K key);
+
+  /**
+   * forget a key that has been dropped from the cache for other reasons
+   */
+  void remove(K key);
+
+  /**
+   * forget all keys
+   */
+  void clear();
+
+  /**
+   * @return the total weight of resident keys
+   */
+  long getWeight();
+}
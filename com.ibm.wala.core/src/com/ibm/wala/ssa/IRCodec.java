@@ -0,0 +1,932 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.ssa;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.ibm.wala.cfg.ShrikeCFG;
+import com.ibm.wala.classLoader.CallSiteReference;
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.classLoader.NewSiteReference;
+import com.ibm.wala.classLoader.ShrikeCTMethod;
+import com.ibm.wala.shrikeBT.IBinaryOpInstruction;
+import com.ibm.wala.shrikeBT.IComparisonInstruction;
+import com.ibm.wala.shrikeBT.IConditionalBranchInstruction;
+import com.ibm.wala.shrikeBT.IInvokeInstruction;
+import com.ibm.wala.shrikeBT.IShiftInstruction;
+import com.ibm.wala.shrikeBT.IUnaryOpInstruction;
+import com.ibm.wala.shrikeCT.InvalidClassFileException;
+import com.ibm.wala.types.ClassLoaderReference;
+import com.ibm.wala.types.FieldReference;
+import com.ibm.wala.types.MethodReference;
+import com.ibm.wala.types.Selector;
+import com.ibm.wala.types.TypeReference;
+import com.ibm.wala.util.collections.HashMapFactory;
+import com.ibm.wala.util.intset.IntPair;
+import com.ibm.wala.util.strings.Atom;
+
+/**
+ * The binary encoding of Shrike IRs used by {@link PersistentIRFactory}.
+ *
+ * A record is a string pool followed by the body. Integers are written as zig-zag varints, and every string (type names,
+ * selectors, field names, string constants) as an index into the pool, so a record is typically a few bytes per instruction.
+ */
+final class IRCodec {
+
+  private final static Charset UTF8 = Charset.forName("UTF-8");
+
+  /*
+   * instruction tags
+   */
+  private final static int GOTO = 1, ARRAY_LOAD = 2, ARRAY_STORE = 3, BINARY = 4, UNARY = 5, CONVERSION = 6, COMPARISON = 7,
+      CONDITIONAL_BRANCH = 8, SWITCH = 9, RETURN = 10, GET = 11, PUT = 12, INVOKE = 13, NEW = 14, ARRAY_LENGTH = 15, THROW = 16,
+      MONITOR = 17, CHECK_CAST = 18, INSTANCEOF = 19, PHI = 20, GET_CAUGHT_EXCEPTION = 21, LOAD_METADATA = 22;
+
+  /*
+   * constant tags
+   */
+  private final static int NULL = 0, BOOLEAN = 1, INT = 2, LONG = 3, FLOAT = 4, DOUBLE = 5, STRING = 6;
+
+  private IRCodec() {
+  }
+
+  static byte[] utf8(String s) {
+    return s.getBytes(UTF8);
+  }
+
+  static String string(byte[] b) {
+    return new String(b, UTF8);
+  }
+
+  /**
+   * @return the encoding of ir, or null if ir cannot be persisted
+   */
+  static byte[] encode(IR ir) {
+    IMethod method = ir.getMethod();
+    SSACFG cfg = ir.getControlFlowGraph();
+    if (!(method instanceof ShrikeCTMethod) || !((Object) cfg.delegate instanceof ShrikeCFG)) {
+      return null;
+    }
+    SSAIndirectionData<SSAIndirectionData.Name> indirections = ir.getIndirectionData();
+    if (indirections != null && !indirections.getNames().isEmpty()) {
+      return null;
+    }
+    IR.SSA2LocalMap localMap = ir.getLocalMap();
+    if (localMap != null && !(localMap instanceof SSABuilder.SSA2LocalMap)) {
+      return null;
+    }
+    Encoder e = new Encoder(method.getDeclaringClass().getClassLoader().getReference());
+
+    SSAInstruction[] instructions = ir.getInstructions();
+    e.writeInt(instructions.length);
+
+    SymbolTable symbolTable = ir.getSymbolTable();
+    e.writeInt(symbolTable.getMaxValueNumber());
+    int nConstants = 0;
+    for (int vn = 1; vn <= symbolTable.getMaxValueNumber(); vn++) {
+      if (symbolTable.isConstant(vn)) {
+        nConstants++;
+      }
+    }
+    e.writeInt(nConstants);
+    for (int vn = 1; vn <= symbolTable.getMaxValueNumber(); vn++) {
+      if (symbolTable.isConstant(vn)) {
+        e.writeInt(vn);
+        e.writeConstant(symbolTable.getConstantValue(vn));
+      }
+    }
+
+    int nInstructions = 0;
+    for (SSAInstruction s : instructions) {
+      if (s != null) {
+        nInstructions++;
+      }
+    }
+    e.writeInt(nInstructions);
+    for (int i = 0; i < instructions.length; i++) {
+      if (instructions[i] != null) {
+        e.writeInt(i);
+        e.writeInstruction(instructions[i]);
+      }
+    }
+
+    e.writeInt(cfg.getNumberOfNodes());
+    for (int b = 0; b < cfg.getNumberOfNodes(); b++) {
+      SSACFG.BasicBlock bb = cfg.getNode(b);
+      List<SSAPhiInstruction> phis = new ArrayList<SSAPhiInstruction>();
+      for (Iterator<SSAPhiInstruction> it = bb.iteratePhis(); it.hasNext();) {
+        phis.add(it.next());
+      }
+      e.writeInt(phis.size());
+      for (SSAPhiInstruction phi : phis) {
+        e.writeInstruction(phi);
+      }
+      if (bb.iteratePis().hasNext()) {
+        return null;
+      }
+      SSAGetCaughtExceptionInstruction c = bb instanceof SSACFG.ExceptionHandlerBasicBlock ? ((SSACFG.ExceptionHandlerBasicBlock) bb)
+          .getCatchInstruction() : null;
+      e.writeInt(c == null ? 0 : 1);
+      if (c != null) {
+        e.writeInstruction(c);
+      }
+    }
+
+    if (localMap == null) {
+      e.writeInt(0);
+    } else {
+      e.writeInt(1);
+      IntPair[] stores = ((SSABuilder.SSA2LocalMap) localMap).getLocalStoreMap();
+      int nStores = 0;
+      for (IntPair p : stores) {
+        if (p != null) {
+          nStores++;
+        }
+      }
+      e.writeInt(stores.length);
+      e.writeInt(nStores);
+      for (int pc = 0; pc < stores.length; pc++) {
+        if (stores[pc] != null) {
+          e.writeInt(pc);
+          e.writeInt(stores[pc].getX());
+          e.writeInt(stores[pc].getY());
+        }
+      }
+      int[][] states = ((SSABuilder.SSA2LocalMap) localMap).getBlock2LocalState();
+      e.writeInt(states.length);
+      for (int[] locals : states) {
+        e.writeIntArray(locals);
+      }
+    }
+    return e.unsupported ? null : e.toByteArray();
+  }
+
+  /**
+   * @return the IR encoded in record, or null if record does not fit the method as it is now
+   */
+  static IR decode(final ShrikeCTMethod method, SSAOptions options, ByteBuffer record) {
+    try {
+      Decoder d = new Decoder(method, record);
+      final int nInstructions = d.readInt();
+      if (nInstructions != method.getInstructions().length) {
+        return null;
+      }
+      final ShrikeCFG shrikeCFG = ShrikeCFG.make(method);
+
+      SymbolTable symbolTable = new SymbolTable(method.getNumberOfParameters());
+      int maxValueNumber = d.readInt();
+      if (maxValueNumber > 0) {
+        symbolTable.ensureSymbol(maxValueNumber);
+      }
+      for (int n = d.readInt(); n > 0; n--) {
+        int vn = d.readInt();
+        symbolTable.setConstant(vn, d.readConstant());
+      }
+
+      SSAInstruction[] instructions = new SSAInstruction[nInstructions];
+      for (int n = d.readInt(); n > 0; n--) {
+        int i = d.readInt();
+        instructions[i] = d.readInstruction();
+      }
+
+      SSACFG cfg = new SSACFG(method, shrikeCFG, instructions);
+      if (d.readInt() != cfg.getNumberOfNodes()) {
+        return null;
+      }
+      for (int b = 0; b < cfg.getNumberOfNodes(); b++) {
+        SSACFG.BasicBlock bb = cfg.getNode(b);
+        int nPhis = d.readInt();
+        for (int local = 0; local < nPhis; local++) {
+          bb.addPhiForLocal(local, (SSAPhiInstruction) d.readInstruction());
+        }
+        if (d.readInt() != 0) {
+          SSAInstruction c = d.readInstruction();
+          if (!(bb instanceof SSACFG.ExceptionHandlerBasicBlock)) {
+            return null;
+          }
+          ((SSACFG.ExceptionHandlerBasicBlock) bb).setCatchInstruction((SSAGetCaughtExceptionInstruction) c);
+        }
+      }
+
+      final SSABuilder.SSA2LocalMap localMap;
+      if (d.readInt() == 0) {
+        localMap = null;
+      } else {
+        IntPair[] stores = new IntPair[d.readInt()];
+        for (int n = d.readInt(); n > 0; n--) {
+          int pc = d.readInt();
+          int x = d.readInt();
+          stores[pc] = new IntPair(x, d.readInt());
+        }
+        int[][] states = new int[d.readInt()][];
+        for (int b = 0; b < states.length; b++) {
+          states[b] = d.readIntArray();
+        }
+        localMap = new SSABuilder.SSA2LocalMap(shrikeCFG, stores, states);
+      }
+
+      final ShrikeIndirectionData indirectionData = new ShrikeIndirectionData(nInstructions);
+      return new IR(method, instructions, symbolTable, cfg, options) {
+        {
+          setupLocationMap();
+        }
+
+        @Override
+        protected String instructionPosition(int instructionIndex) {
+          try {
+            int lineNumber = method.getLineNumber(method.getBytecodeIndex(instructionIndex));
+            return lineNumber == -1 ? "" : "(line " + lineNumber + ")";
+          } catch (InvalidClassFileException e) {
+            return "";
+          }
+        }
+
+        @Override
+        protected SSA2LocalMap getLocalMap() {
+          return localMap;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        protected ShrikeIndirectionData getIndirectionData() {
+          return indirectionData;
+        }
+      };
+    } catch (InvalidClassFileException e) {
+      return null;
+    } catch (BufferUnderflowException e) {
+      return null;
+    } catch (IndexOutOfBoundsException e) {
+      return null;
+    } catch (ClassCastException e) {
+      return null;
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Writes a record, collecting strings into the pool as it goes.
+   */
+  private final static class Encoder implements IVisitorWithAddresses {
+
+    private final ClassLoaderReference loader;
+
+    private final Map<String, Integer> pool = HashMapFactory.make();
+
+    private final List<String> strings = new ArrayList<String>();
+
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+    /**
+     * set when something is met that this encoding cannot represent
+     */
+    boolean unsupported = false;
+
+    Encoder(ClassLoaderReference loader) {
+      this.loader = loader;
+    }
+
+    byte[] toByteArray() {
+      ByteArrayOutputStream result = new ByteArrayOutputStream(body.size() + 16 * strings.size());
+      writeInt(result, strings.size());
+      for (String s : strings) {
+        byte[] b = utf8(s);
+        writeInt(result, b.length);
+        result.write(b, 0, b.length);
+      }
+      byte[] b = body.toByteArray();
+      result.write(b, 0, b.length);
+      return result.toByteArray();
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int i) {
+      writeLong(out, i);
+    }
+
+    private static void writeLong(ByteArrayOutputStream out, long l) {
+      long v = (l << 1) ^ (l >> 63);
+      while ((v & ~0x7fL) != 0) {
+        out.write((int) ((v & 0x7f) | 0x80));
+        v >>>= 7;
+      }
+      out.write((int) v);
+    }
+
+    void writeInt(int i) {
+      writeLong(body, i);
+    }
+
+    void writeLong(long l) {
+      writeLong(body, l);
+    }
+
+    void writeBoolean(boolean b) {
+      body.write(b ? 1 : 0);
+    }
+
+    void writeIntArray(int[] a) {
+      if (a == null) {
+        writeInt(-1);
+      } else {
+        writeInt(a.length);
+        for (int x : a) {
+          writeInt(x);
+        }
+      }
+    }
+
+    void writeUses(SSAInstruction s) {
+      writeInt(s.getNumberOfUses());
+      for (int i = 0; i < s.getNumberOfUses(); i++) {
+        writeInt(s.getUse(i));
+      }
+    }
+
+    void writeString(String s) {
+      Integer index = pool.get(s);
+      if (index == null) {
+        index = strings.size();
+        pool.put(s, index);
+        strings.add(s);
+      }
+      writeInt(index);
+    }
+
+    void writeType(TypeReference t) {
+      if (t == null) {
+        writeInt(-1);
+        return;
+      }
+      // loaders are named relative to the method's loader, so that they can be found again
+      int depth = 0;
+      for (ClassLoaderReference l = loader; l != null && !l.equals(t.getClassLoader()); l = l.getParent()) {
+        depth++;
+      }
+      if (!isAncestor(t.getClassLoader())) {
+        unsupported = true;
+      }
+      writeInt(depth);
+      writeString(t.getName().toString());
+    }
+
+    private boolean isAncestor(ClassLoaderReference l) {
+      for (ClassLoaderReference x = loader; x != null; x = x.getParent()) {
+        if (x.equals(l)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    void writeField(FieldReference f) {
+      writeType(f.getDeclaringClass());
+      writeString(f.getName().toString());
+      writeType(f.getFieldType());
+    }
+
+    void writeMethod(MethodReference m) {
+      writeType(m.getDeclaringClass());
+      writeString(m.getSelector().toString());
+    }
+
+    void writeConstant(Object o) {
+      if (o == null) {
+        writeInt(NULL);
+      } else if (o instanceof Boolean) {
+        writeInt(BOOLEAN);
+        writeBoolean((Boolean) o);
+      } else if (o instanceof Integer) {
+        writeInt(INT);
+        writeInt((Integer) o);
+      } else if (o instanceof Long) {
+        writeInt(LONG);
+        writeLong((Long) o);
+      } else if (o instanceof Float) {
+        writeInt(FLOAT);
+        writeInt(Float.floatToRawIntBits((Float) o));
+      } else if (o instanceof Double) {
+        writeInt(DOUBLE);
+        writeLong(Double.doubleToRawLongBits((Double) o));
+      } else if (o instanceof String) {
+        writeInt(STRING);
+        writeString((String) o);
+      } else {
+        unsupported = true;
+      }
+    }
+
+    void writeInstruction(SSAInstruction s) {
+      s.visit(this);
+    }
+
+    private void header(int tag, SSAInstruction s) {
+      writeInt(tag);
+      writeInt(s.iindex);
+    }
+
+    @Override
+    public void visitGoto(SSAGotoInstruction instruction) {
+      header(GOTO, instruction);
+      writeInt(instruction.getTarget());
+    }
+
+    @Override
+    public void visitArrayLoad(SSAArrayLoadInstruction instruction) {
+      header(ARRAY_LOAD, instruction);
+      writeInt(instruction.getDef());
+      writeInt(instruction.getArrayRef());
+      writeInt(instruction.getIndex());
+      writeType(instruction.getElementType());
+    }
+
+    @Override
+    public void visitArrayStore(SSAArrayStoreInstruction instruction) {
+      header(ARRAY_STORE, instruction);
+      writeInt(instruction.getArrayRef());
+      writeInt(instruction.getIndex());
+      writeInt(instruction.getValue());
+      writeType(instruction.getElementType());
+    }
+
+    @Override
+    public void visitBinaryOp(SSABinaryOpInstruction instruction) {
+      header(BINARY, instruction);
+      IBinaryOpInstruction.IOperator op = instruction.getOperator();
+      if (op instanceof IBinaryOpInstruction.Operator) {
+        writeInt(0);
+        writeInt(((IBinaryOpInstruction.Operator) op).ordinal());
+      } else if (op instanceof IShiftInstruction.Operator) {
+        writeInt(1);
+        writeInt(((IShiftInstruction.Operator) op).ordinal());
+      } else {
+        unsupported = true;
+      }
+      writeInt(instruction.getDef());
+      writeInt(instruction.getUse(0));
+      writeInt(instruction.getUse(1));
+      writeBoolean(instruction.mayBeIntegerOp());
+    }
+
+    @Override
+    public void visitUnaryOp(SSAUnaryOpInstruction instruction) {
+      header(UNARY, instruction);
+      if (instruction.getOpcode() instanceof IUnaryOpInstruction.Operator) {
+        writeInt(((IUnaryOpInstruction.Operator) instruction.getOpcode()).ordinal());
+      } else {
+        unsupported = true;
+      }
+      writeInt(instruction.getDef());
+      writeInt(instruction.getUse(0));
+    }
+
+    @Override
+    public void visitConversion(SSAConversionInstruction instruction) {
+      header(CONVERSION, instruction);
+      writeInt(instruction.getDef());
+      writeInt(instruction.getUse(0));
+      writeType(instruction.getFromType());
+      writeType(instruction.getToType());
+    }
+
+    @Override
+    public void visitComparison(SSAComparisonInstruction instruction) {
+      header(COMPARISON, instruction);
+      writeInt(instruction.getOperator().ordinal());
+      writeInt(instruction.getDef());
+      writeInt(instruction.getUse(0));
+      writeInt(instruction.getUse(1));
+    }
+
+    @Override
+    public void visitConditionalBranch(SSAConditionalBranchInstruction instruction) {
+      header(CONDITIONAL_BRANCH, instruction);
+      if (instruction.getOperator() instanceof IConditionalBranchInstruction.Operator) {
+        writeInt(((IConditionalBranchInstruction.Operator) instruction.getOperator()).ordinal());
+      } else {
+        unsupported = true;
+      }
+      writeType(instruction.getType());
+      writeInt(instruction.getUse(0));
+      writeInt(instruction.getUse(1));
+      writeInt(instruction.getTarget());
+    }
+
+    @Override
+    public void visitSwitch(SSASwitchInstruction instruction) {
+      header(SWITCH, instruction);
+      writeInt(instruction.getUse(0));
+      writeInt(instruction.getDefault());
+      writeIntArray(instruction.getCasesAndLabels());
+    }
+
+    @Override
+    public void visitReturn(SSAReturnInstruction instruction) {
+      header(RETURN, instruction);
+      writeBoolean(instruction.returnsVoid());
+      if (!instruction.returnsVoid()) {
+        writeInt(instruction.getResult());
+        writeBoolean(instruction.returnsPrimitiveType());
+      }
+    }
+
+    @Override
+    public void visitGet(SSAGetInstruction instruction) {
+      header(GET, instruction);
+      writeInt(instruction.getDef());
+      writeBoolean(instruction.isStatic());
+      if (!instruction.isStatic()) {
+        writeInt(instruction.getRef());
+      }
+      writeField(instruction.getDeclaredField());
+    }
+
+    @Override
+    public void visitPut(SSAPutInstruction instruction) {
+      header(PUT, instruction);
+      writeBoolean(instruction.isStatic());
+      if (!instruction.isStatic()) {
+        writeInt(instruction.getRef());
+      }
+      writeInt(instruction.getVal());
+      writeField(instruction.getDeclaredField());
+    }
+
+    @Override
+    public void visitInvoke(SSAInvokeInstruction instruction) {
+      header(INVOKE, instruction);
+      if (instruction instanceof SSAInvokeDynamicInstruction || !(instruction.getInvocationCode() instanceof IInvokeInstruction.Dispatch)) {
+        unsupported = true;
+        return;
+      }
+      writeInt(instruction.getNumberOfReturnValues());
+      if (instruction.getNumberOfReturnValues() > 0) {
+        writeInt(instruction.getReturnValue(0));
+      }
+      writeUses(instruction);
+      writeInt(instruction.getException());
+      CallSiteReference site = instruction.getCallSite();
+      writeInt(site.getProgramCounter());
+      writeMethod(site.getDeclaredTarget());
+      writeInt(((IInvokeInstruction.Dispatch) site.getInvocationCode()).ordinal());
+    }
+
+    @Override
+    public void visitNew(SSANewInstruction instruction) {
+      header(NEW, instruction);
+      writeInt(instruction.getDef());
+      writeInt(instruction.getNewSite().getProgramCounter());
+      writeType(instruction.getNewSite().getDeclaredType());
+      writeUses(instruction);
+    }
+
+    @Override
+    public void visitArrayLength(SSAArrayLengthInstruction instruction) {
+      header(ARRAY_LENGTH, instruction);
+      writeInt(instruction.getDef());
+      writeInt(instruction.getArrayRef());
+    }
+
+    @Override
+    public void visitThrow(SSAThrowInstruction instruction) {
+      header(THROW, instruction);
+      writeInt(instruction.getException());
+    }
+
+    @Override
+    public void visitMonitor(SSAMonitorInstruction instruction) {
+      header(MONITOR, instruction);
+      writeInt(instruction.getRef());
+      writeBoolean(instruction.isMonitorEnter());
+    }
+
+    @Override
+    public void visitCheckCast(SSACheckCastInstruction instruction) {
+      header(CHECK_CAST, instruction);
+      writeInt(instruction.getResult());
+      writeInt(instruction.getVal());
+      TypeReference[] types = instruction.getDeclaredResultTypes();
+      writeInt(types.length);
+      for (TypeReference t : types) {
+        writeType(t);
+      }
+      writeBoolean(instruction.isPEI());
+    }
+
+    @Override
+    public void visitInstanceof(SSAInstanceofInstruction instruction) {
+      header(INSTANCEOF, instruction);
+      writeInt(instruction.getDef());
+      writeInt(instruction.getRef());
+      writeType(instruction.getCheckedType());
+    }
+
+    @Override
+    public void visitPhi(SSAPhiInstruction instruction) {
+      header(PHI, instruction);
+      writeInt(instruction.getDef());
+      writeUses(instruction);
+    }
+
+    @Override
+    public void visitPi(SSAPiInstruction instruction) {
+      unsupported = true;
+    }
+
+    @Override
+    public void visitGetCaughtException(SSAGetCaughtExceptionInstruction instruction) {
+      header(GET_CAUGHT_EXCEPTION, instruction);
+      writeInt(instruction.getBasicBlockNumber());
+      writeInt(instruction.getException());
+    }
+
+    @Override
+    public void visitLoadMetadata(SSALoadMetadataInstruction instruction) {
+      header(LOAD_METADATA, instruction);
+      if (!(instruction.getToken() instanceof TypeReference)) {
+        unsupported = true;
+        return;
+      }
+      writeInt(instruction.getDef());
+      writeType(instruction.getType());
+      writeType((TypeReference) instruction.getToken());
+    }
+
+    @Override
+    public void visitAddressOf(SSAAddressOfInstruction instruction) {
+      unsupported = true;
+    }
+
+    @Override
+    public void visitLoadIndirect(SSALoadIndirectInstruction instruction) {
+      unsupported = true;
+    }
+
+    @Override
+    public void visitStoreIndirect(SSAStoreIndirectInstruction instruction) {
+      unsupported = true;
+    }
+  }
+
+  /**
+   * Reads a record, making instructions with the factory of the method's loader.
+   */
+  private final static class Decoder {
+
+    private final ByteBuffer in;
+
+    private final ClassLoaderReference loader;
+
+    private final SSAInstructionFactory insts;
+
+    private final String[] strings;
+
+    Decoder(IMethod method, ByteBuffer in) {
+      this.in = in;
+      this.loader = method.getDeclaringClass().getClassLoader().getReference();
+      this.insts = method.getDeclaringClass().getClassLoader().getInstructionFactory();
+      this.strings = new String[readInt()];
+      for (int i = 0; i < strings.length; i++) {
+        byte[] b = new byte[readInt()];
+        in.get(b);
+        strings[i] = string(b);
+      }
+    }
+
+    long readLong() {
+      long v = 0;
+      for (int shift = 0;; shift += 7) {
+        byte b = in.get();
+        v |= (long) (b & 0x7f) << shift;
+        if ((b & 0x80) == 0) {
+          break;
+        }
+      }
+      return (v >>> 1) ^ -(v & 1);
+    }
+
+    int readInt() {
+      return (int) readLong();
+    }
+
+    boolean readBoolean() {
+      return in.get() != 0;
+    }
+
+    int[] readIntArray() {
+      int n = readInt();
+      if (n < 0) {
+        return null;
+      }
+      int[] result = new int[n];
+      for (int i = 0; i < n; i++) {
+        result[i] = readInt();
+      }
+      return result;
+    }
+
+    String readString() {
+      return strings[readInt()];
+    }
+
+    TypeReference readType() {
+      int depth = readInt();
+      if (depth < 0) {
+        return null;
+      }
+      ClassLoaderReference l = loader;
+      for (int i = 0; i < depth; i++) {
+        l = l.getParent();
+      }
+      return TypeReference.findOrCreate(l, readString());
+    }
+
+    FieldReference readField() {
+      TypeReference declaringClass = readType();
+      Atom name = Atom.findOrCreateUnicodeAtom(readString());
+      return FieldReference.findOrCreate(declaringClass, name, readType());
+    }
+
+    MethodReference readMethod() {
+      TypeReference declaringClass = readType();
+      return MethodReference.findOrCreate(declaringClass, Selector.make(readString()));
+    }
+
+    Object readConstant() {
+      switch (readInt()) {
+      case NULL:
+        return null;
+      case BOOLEAN:
+        return Boolean.valueOf(readBoolean());
+      case INT:
+        return Integer.valueOf(readInt());
+      case LONG:
+        return Long.valueOf(readLong());
+      case FLOAT:
+        return Float.valueOf(Float.intBitsToFloat(readInt()));
+      case DOUBLE:
+        return Double.valueOf(Double.longBitsToDouble(readLong()));
+      case STRING:
+        return readString();
+      default:
+        throw new IllegalArgumentException("bad constant tag");
+      }
+    }
+
+    SSAInstruction readInstruction() {
+      int tag = readInt();
+      int iindex = readInt();
+      switch (tag) {
+      case GOTO:
+        return insts.GotoInstruction(iindex, readInt());
+      case ARRAY_LOAD: {
+        int result = readInt();
+        int arrayRef = readInt();
+        int index = readInt();
+        return insts.ArrayLoadInstruction(iindex, result, arrayRef, index, readType());
+      }
+      case ARRAY_STORE: {
+        int arrayRef = readInt();
+        int index = readInt();
+        int value = readInt();
+        return insts.ArrayStoreInstruction(iindex, arrayRef, index, value, readType());
+      }
+      case BINARY: {
+        IBinaryOpInstruction.IOperator op = readInt() == 0 ? IBinaryOpInstruction.Operator.values()[readInt()]
+            : IShiftInstruction.Operator.values()[readInt()];
+        int result = readInt();
+        int val1 = readInt();
+        int val2 = readInt();
+        return insts.BinaryOpInstruction(iindex, op, false, false, result, val1, val2, readBoolean());
+      }
+      case UNARY: {
+        IUnaryOpInstruction.Operator op = IUnaryOpInstruction.Operator.values()[readInt()];
+        int result = readInt();
+        return insts.UnaryOpInstruction(iindex, op, result, readInt());
+      }
+      case CONVERSION: {
+        int result = readInt();
+        int val = readInt();
+        TypeReference fromType = readType();
+        return insts.ConversionInstruction(iindex, result, val, fromType, readType(), false);
+      }
+      case COMPARISON: {
+        IComparisonInstruction.Operator op = IComparisonInstruction.Operator.values()[readInt()];
+        int result = readInt();
+        int val1 = readInt();
+        return insts.ComparisonInstruction(iindex, op, result, val1, readInt());
+      }
+      case CONDITIONAL_BRANCH: {
+        IConditionalBranchInstruction.Operator op = IConditionalBranchInstruction.Operator.values()[readInt()];
+        TypeReference type = readType();
+        int val1 = readInt();
+        int val2 = readInt();
+        return insts.ConditionalBranchInstruction(iindex, op, type, val1, val2, readInt());
+      }
+      case SWITCH: {
+        int val = readInt();
+        int defaultLabel = readInt();
+        return insts.SwitchInstruction(iindex, val, defaultLabel, readIntArray());
+      }
+      case RETURN:
+        if (readBoolean()) {
+          return insts.ReturnInstruction(iindex);
+        } else {
+          int result = readInt();
+          return insts.ReturnInstruction(iindex, result, readBoolean());
+        }
+      case GET: {
+        int result = readInt();
+        if (readBoolean()) {
+          return insts.GetInstruction(iindex, result, readField());
+        } else {
+          int ref = readInt();
+          return insts.GetInstruction(iindex, result, ref, readField());
+        }
+      }
+      case PUT:
+        if (readBoolean()) {
+          int value = readInt();
+          return insts.PutInstruction(iindex, value, readField());
+        } else {
+          int ref = readInt();
+          int value = readInt();
+          return insts.PutInstruction(iindex, ref, value, readField());
+        }
+      case INVOKE: {
+        boolean hasResult = readInt() > 0;
+        int result = hasResult ? readInt() : -1;
+        int[] params = readIntArray();
+        int exception = readInt();
+        int pc = readInt();
+        MethodReference target = readMethod();
+        CallSiteReference site = CallSiteReference.make(pc, target, IInvokeInstruction.Dispatch.values()[readInt()]);
+        return hasResult ? insts.InvokeInstruction(iindex, result, params, exception, site, null) : insts.InvokeInstruction(iindex,
+            params, exception, site, null);
+      }
+      case NEW: {
+        int result = readInt();
+        int pc = readInt();
+        NewSiteReference site = NewSiteReference.make(pc, readType());
+        int[] params = readIntArray();
+        return site.getDeclaredType().isArrayType() ? insts.NewInstruction(iindex, result, site, params) : insts.NewInstruction(
+            iindex, result, site);
+      }
+      case ARRAY_LENGTH: {
+        int result = readInt();
+        return insts.ArrayLengthInstruction(iindex, result, readInt());
+      }
+      case THROW:
+        return insts.ThrowInstruction(iindex, readInt());
+      case MONITOR: {
+        int ref = readInt();
+        return insts.MonitorInstruction(iindex, ref, readBoolean());
+      }
+      case CHECK_CAST: {
+        int result = readInt();
+        int val = readInt();
+        TypeReference[] types = new TypeReference[readInt()];
+        for (int i = 0; i < types.length; i++) {
+          types[i] = readType();
+        }
+        return insts.CheckCastInstruction(iindex, result, val, types, readBoolean());
+      }
+      case INSTANCEOF: {
+        int result = readInt();
+        int ref = readInt();
+        return insts.InstanceofInstruction(iindex, result, ref, readType());
+      }
+      case PHI: {
+        int result = readInt();
+        return insts.PhiInstruction(iindex, result, readIntArray());
+      }
+      case GET_CAUGHT_EXCEPTION: {
+        int bbNumber = readInt();
+        return insts.GetCaughtExceptionInstruction(iindex, bbNumber, readInt());
+      }
+      case LOAD_METADATA: {
+        int result = readInt();
+        TypeReference type = readType();
+        return insts.LoadMetadataInstruction(iindex, result, type, readType());
+      }
+      default:
+        throw new IllegalArgumentException("bad instruction tag " + tag);
+      }
+    }
+  }
+}
@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.ssa;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evicts the least recently used keys first.
+ */
+class LRUEvictor<K> implements Evictor<K> {
+
+  private final long maximum;
+
+  /**
+   * key -> weight, in access order
+   */
+  private final LinkedHashMap<K, Long> resident = new LinkedHashMap<K, Long>(16, 0.75f, true);
+
+  private long weight = 0;
+
+  LRUEvictor(long maximum) {
+    if (maximum <= 0) {
+      throw new IllegalArgumentException("illegal maximum " + maximum);
+    }
+    this.maximum = maximum;
+  }
+
+  @Override
+  public List<K> admit(K key, long w) {
+    Long old = resident.put(key, w);
+    if (old != null) {
+      weight -= old;
+    }
+    weight += w;
+    if (weight <= maximum) {
+      return Collections.emptyList();
+    }
+    List<K> victims = new ArrayList<K>(1);
+    for (Iterator<Map.Entry<K, Long>> it = resident.entrySet().iterator(); weight > maximum && it.hasNext();) {
+      Map.Entry<K, Long> e = it.next();
+      victims.add(e.getKey());
+      weight -= e.getValue();
+      it.remove();
+    }
+    return victims;
+  }
+
+  @Override
+  public void touch(K key) {
+    resident.get(key);
+  }
+
+  @Override
+  public void remove(K key) {
+    Long w = resident.remove(key);
+    if (w != null) {
+      weight -= w;
+    }
+  }
+
+  @Override
+  public void clear() {
+    resident.clear();
+    weight = 0;
+  }
+
+  @Override
+  public long getWeight() {
+    return weight;
+  }
+}
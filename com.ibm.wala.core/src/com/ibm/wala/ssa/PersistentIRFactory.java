@@ -0,0 +1,301 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.ssa;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ibm.wala.classLoader.IClass;
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.classLoader.ShrikeCTMethod;
+import com.ibm.wala.classLoader.ShrikeClass;
+import com.ibm.wala.ipa.callgraph.Context;
+import com.ibm.wala.util.WalaRuntimeException;
+import com.ibm.wala.util.collections.HashMapFactory;
+
+/**
+ * An {@link IRFactory} that saves the IRs it builds for bytecode methods to disk, and reads them back instead of rebuilding them
+ * in later runs.
+ *
+ * IRs are stored in a directory, one file per class file, named by the defining class loader and a SHA-1 hash of the class file
+ * bytes; a changed class file thus simply misses. Each file is an append-only log of records, one per method selector, and is
+ * memory-mapped when read. A record holds the result of SSA construction: the instructions, the phis and catch instructions of each
+ * basic block, the constants of the {@link SymbolTable}, and the local variable map. The CFG itself is not stored; it is rebuilt
+ * from the bytecode, which is cheap compared to SSA construction.
+ *
+ * Only IRs built with default {@link SSAOptions}, that is without pi nodes or default values, are stored, and only for methods
+ * whose IR does not depend on the {@link Context}. Other methods, and methods using invokedynamic, are always delegated. The
+ * directory must not be shared by concurrent processes.
+ */
+public class PersistentIRFactory implements IRFactory<IMethod> {
+
+  /**
+   * identifies the file format; bump when the encoding changes
+   */
+  private final static int MAGIC = 0x57495231;
+
+  private final static String SUFFIX = ".wir";
+
+  private final IRFactory<IMethod> delegate;
+
+  private final File directory;
+
+  /**
+   * class -> store holding its IRs
+   */
+  private final ConcurrentHashMap<IClass, Store> stores = new ConcurrentHashMap<IClass, Store>();
+
+  private final AtomicLong hits = new AtomicLong();
+
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * @param delegate builds the IRs that are not found on disk
+   * @param directory where IRs are stored; created if necessary
+   */
+  public PersistentIRFactory(IRFactory<IMethod> delegate, File directory) {
+    if (delegate == null) {
+      throw new IllegalArgumentException("null delegate");
+    }
+    if (directory == null) {
+      throw new IllegalArgumentException("null directory");
+    }
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IllegalArgumentException("cannot create directory " + directory);
+    }
+    this.delegate = delegate;
+    this.directory = directory;
+  }
+
+  @Override
+  public boolean contextIsIrrelevant(IMethod method) {
+    return delegate.contextIsIrrelevant(method);
+  }
+
+  @Override
+  public IR makeIR(IMethod method, Context c, SSAOptions options) {
+    if (method == null) {
+      throw new IllegalArgumentException("method cannot be null");
+    }
+    if (!isPersistable(method, options)) {
+      return delegate.makeIR(method, c, options);
+    }
+    Store store = findOrCreateStore((ShrikeClass) method.getDeclaringClass());
+    String selector = method.getSelector().toString();
+    ByteBuffer record = store.read(selector);
+    if (record != null) {
+      IR ir = IRCodec.decode((ShrikeCTMethod) method, options, record);
+      if (ir != null) {
+        hits.incrementAndGet();
+        return ir;
+      }
+    }
+    misses.incrementAndGet();
+    IR ir = delegate.makeIR(method, c, options);
+    byte[] bytes = IRCodec.encode(ir);
+    if (bytes != null) {
+      store.write(selector, bytes);
+    }
+    return ir;
+  }
+
+  private boolean isPersistable(IMethod method, SSAOptions options) {
+    return method instanceof ShrikeCTMethod && method.getDeclaringClass() instanceof ShrikeClass && options.getPiNodePolicy() == null
+        && options.getDefaultValues() == null && delegate.contextIsIrrelevant(method);
+  }
+
+  /**
+   * @return number of IRs read from disk
+   */
+  public long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * @return number of persistable IRs that had to be built
+   */
+  public long getMisses() {
+    return misses.get();
+  }
+
+  private Store findOrCreateStore(ShrikeClass klass) {
+    Store result = stores.get(klass);
+    if (result == null) {
+      String name = klass.getClassLoader().getReference().getName() + "-" + hash(klass) + SUFFIX;
+      result = new Store(new File(directory, name));
+      Store old = stores.putIfAbsent(klass, result);
+      if (old != null) {
+        result = old;
+      }
+    }
+    return result;
+  }
+
+  private static String hash(ShrikeClass klass) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-1").digest(klass.getReader().getBytes());
+      StringBuilder result = new StringBuilder(2 * digest.length);
+      for (byte b : digest) {
+        result.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+      }
+      return result.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new WalaRuntimeException("no SHA-1", e);
+    }
+  }
+
+  /**
+   * The records for the methods of one class file.
+   *
+   * The file holds MAGIC followed by records of the form: selector length, selector bytes (UTF-8), record length, record bytes.
+   * A truncated last record, say from an interrupted run, is ignored.
+   */
+  private final static class Store {
+
+    private final File file;
+
+    /**
+     * selector -> offset of record in file; null until the file has been read
+     */
+    private Map<String, int[]> index;
+
+    private MappedByteBuffer mapped;
+
+    /**
+     * length of the valid prefix of the file
+     */
+    private long length;
+
+    Store(File file) {
+      this.file = file;
+    }
+
+    /**
+     * @return the record for selector, or null if none
+     */
+    synchronized ByteBuffer read(String selector) {
+      try {
+        if (index == null) {
+          load();
+        }
+        int[] entry = index.get(selector);
+        if (entry == null) {
+          return null;
+        }
+        if (mapped == null || mapped.capacity() < entry[0] + entry[1]) {
+          map();
+        }
+        ByteBuffer result = mapped.duplicate();
+        result.limit(entry[0] + entry[1]).position(entry[0]);
+        return result.slice();
+      } catch (IOException e) {
+        throw new WalaRuntimeException("cannot read " + file, e);
+      }
+    }
+
+    synchronized void write(String selector, byte[] record) {
+      try {
+        if (index == null) {
+          load();
+        }
+        if (index.containsKey(selector)) {
+          // an unreadable (say, stale) record; the first one wins, which is harmless since readers fall back to building
+          return;
+        }
+        byte[] name = IRCodec.utf8(selector);
+        ByteBuffer header = ByteBuffer.allocate((length == 0 ? 4 : 0) + 8 + name.length);
+        if (length == 0) {
+          header.putInt(MAGIC);
+        }
+        header.putInt(name.length).put(name).putInt(record.length);
+        FileOutputStream out = new FileOutputStream(file, true);
+        try {
+          if (out.getChannel().size() != length) {
+            // drop a truncated tail
+            out.getChannel().truncate(length);
+          }
+          out.write(header.array());
+          out.write(record);
+        } finally {
+          out.close();
+        }
+        length += header.capacity();
+        index.put(selector, new int[] { (int) length, record.length });
+        length += record.length;
+      } catch (IOException e) {
+        throw new WalaRuntimeException("cannot write " + file, e);
+      }
+    }
+
+    private void map() throws IOException {
+      RandomAccessFile f = new RandomAccessFile(file, "r");
+      try {
+        mapped = f.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+      } finally {
+        f.close();
+      }
+    }
+
+    private void load() throws IOException {
+      index = HashMapFactory.make();
+      length = 0;
+      if (!file.exists()) {
+        return;
+      }
+      RandomAccessFile f = new RandomAccessFile(file, "r");
+      try {
+        mapped = f.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, f.length());
+      } finally {
+        f.close();
+      }
+      ByteBuffer b = mapped.duplicate();
+      try {
+        if (b.getInt() != MAGIC) {
+          // another format; start over
+          mapped = null;
+          return;
+        }
+        length = b.position();
+        while (b.hasRemaining()) {
+          byte[] name = new byte[b.getInt()];
+          b.get(name);
+          int size = b.getInt();
+          if (size < 0 || size > b.remaining()) {
+            break;
+          }
+          index.put(IRCodec.string(name), new int[] { b.position(), size });
+          b.position(b.position() + size);
+          length = b.position();
+        }
+      } catch (BufferUnderflowException e) {
+        // truncated; keep what was complete
+      } catch (IllegalArgumentException e) {
+        // garbage length; keep what was complete
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "persistent IRs in " + directory + " for " + delegate;
+  }
+}
@@ -925,7 +925,7 @@ public class SSABuilder extends AbstractIntStackMachine {
    * A logical mapping from <pc, valueNumber> -> local number Note: make sure this class remains static: this persists as part of
    * the IR!!
    */
-  private static class SSA2LocalMap implements com.ibm.wala.ssa.IR.SSA2LocalMap {
+  static class SSA2LocalMap implements com.ibm.wala.ssa.IR.SSA2LocalMap {
 
     private final ShrikeCFG shrikeCFG;
 
@@ -950,6 +950,23 @@ public class SSABuilder extends AbstractIntStackMachine {
       block2LocalState = new int[nBlocks][];
     }
 
+    /**
+     * rebuild a finished map, as saved by {@link PersistentIRFactory}
+     */
+    SSA2LocalMap(ShrikeCFG shrikeCfg, IntPair[] localStoreMap, int[][] block2LocalState) {
+      this.shrikeCFG = shrikeCfg;
+      this.localStoreMap = localStoreMap;
+      this.block2LocalState = block2LocalState;
+    }
+
+    IntPair[] getLocalStoreMap() {
+      return localStoreMap;
+    }
+
+    int[][] getBlock2LocalState() {
+      return block2LocalState;
+    }
+
     /**
      * Record the beginning of a new range, starting at the given program counter, in which a particular value number corresponds to
      * a particular local number
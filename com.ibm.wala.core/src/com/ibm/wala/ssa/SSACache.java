@@ -18,6 +18,8 @@ import com.ibm.wala.ipa.callgraph.impl.Everywhere;
  * A mapping from IMethod -> SSAOptions -> SoftReference -> Something
  * 
  * This doesn't work very well ... GCs don't do such a great job with SoftReferences ... revamp it.
+ * 
+ * The cache is safe for use by several threads; each IR or {@link DefUse} is built at most once while it remains cached.
  */
 public class SSACache {
 
@@ -34,18 +36,32 @@ public class SSACache {
   /**
    * A cache of SSA IRs
    */
-  final private AuxiliaryCache irCache = new AuxiliaryCache();
+  final private AuxiliaryCache irCache;
 
   /**
    * A cache of DefUse information
    */
-  final private AuxiliaryCache duCache = new AuxiliaryCache();
+  final private AuxiliaryCache duCache;
 
   /**
    * @param factory a factory for creating IRs
+   * @param policy governs how many IRs and {@link DefUse}s are retained
    */
-  public SSACache(IRFactory<IMethod> factory) {
+  public SSACache(IRFactory<IMethod> factory, SSACachePolicy policy) {
     this.factory = factory;
+    this.irCache = new AuxiliaryCache(policy);
+    this.duCache = new AuxiliaryCache(policy);
+  }
+
+  /**
+   * @param factory a factory for creating IRs
+   */
+  public SSACache(IRFactory<IMethod> factory) {
+    this(factory, SSACachePolicy.SOFT_REFERENCES);
+  }
+
+  public SSACachePolicy getPolicy() {
+    return irCache.getPolicy();
   }
 
   /**
@@ -54,7 +70,7 @@ public class SSACache {
    * @return an IR for m, built according to the specified options. null if m is abstract or native.
    * @throws IllegalArgumentException if m is null
    */
-  public synchronized IR findOrCreateIR(final IMethod m, Context c, final SSAOptions options) {
+  public IR findOrCreateIR(final IMethod m, Context c, final SSAOptions options) {
 
     if (m == null) {
       throw new IllegalArgumentException("m is null");
@@ -71,12 +87,13 @@ public class SSACache {
       return factory.makeIR(m, c, options);
     }
 
-    IR ir = (IR) irCache.find(m, c, options);
-    if (ir == null) {
-      ir = factory.makeIR(m, c, options);
-      irCache.cache(m, c, options, ir);
-    }
-    return ir;
+    final Context context = c;
+    return (IR) irCache.findOrCreate(m, c, options, new AuxiliaryCache.Creator() {
+      @Override
+      public Object create() {
+        return factory.makeIR(m, context, options);
+      }
+    });
   }
 
   /**
@@ -85,7 +102,7 @@ public class SSACache {
    * @return DefUse information for m, built according to the specified options. null if unavailable
    * @throws IllegalArgumentException if m is null
    */
-  public synchronized DefUse findOrCreateDU(IMethod m, Context c, SSAOptions options) {
+  public DefUse findOrCreateDU(final IMethod m, Context c, final SSAOptions options) {
     if (m == null) {
       throw new IllegalArgumentException("m is null");
     }
@@ -96,29 +113,30 @@ public class SSACache {
       c = Everywhere.EVERYWHERE;
     }
 
-    DefUse du = (DefUse) duCache.find(m, c, options);
-    if (du == null) {
-      IR ir = findOrCreateIR(m, c, options);
-      du = new DefUse(ir);
-      duCache.cache(m, c, options, du);
-    }
-    return du;
+    final Context context = c;
+    return (DefUse) duCache.findOrCreate(m, c, options, new AuxiliaryCache.Creator() {
+      @Override
+      public Object create() {
+        IR ir = findOrCreateIR(m, context, options);
+        return new DefUse(ir);
+      }
+    });
   }
 
   /**
    * @return {@link DefUse} information for m, built according to the specified options. null if unavailable
    * @throws IllegalArgumentException if ir is null
    */
-  public synchronized DefUse findOrCreateDU(IR ir, Context C) {
+  public DefUse findOrCreateDU(final IR ir, Context C) {
     if (ir == null) {
       throw new IllegalArgumentException("ir is null");
     }
-    DefUse du = (DefUse) duCache.find(ir.getMethod(), C, ir.getOptions());
-    if (du == null) {
-      du = new DefUse(ir);
-      duCache.cache(ir.getMethod(), C, ir.getOptions(), du);
-    }
-    return du;
+    return (DefUse) duCache.findOrCreate(ir.getMethod(), C, ir.getOptions(), new AuxiliaryCache.Creator() {
+      @Override
+      public Object create() {
+        return new DefUse(ir);
+      }
+    });
   }
 
   /**
@@ -150,4 +168,18 @@ public class SSACache {
     invalidateIR(method, c);
     invalidateDU(method, c);
   }
+
+  /**
+   * @return hit, miss and eviction counts for the cache of IRs
+   */
+  public CacheStatistics getIRStatistics() {
+    return irCache.getStatistics();
+  }
+
+  /**
+   * @return hit, miss and eviction counts for the cache of {@link DefUse}s
+   */
+  public CacheStatistics getDUStatistics() {
+    return duCache.getStatistics();
+  }
 }
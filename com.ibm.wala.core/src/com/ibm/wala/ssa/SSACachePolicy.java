@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.ssa;
+
+/**
+ * Governs how many IRs and {@link DefUse}s an {@link SSACache} retains.
+ *
+ * The default, {@link #SOFT_REFERENCES}, holds everything through soft references and leaves retention to the garbage collector.
+ * A bounded policy holds entries strongly, up to a maximum number of entries or a maximum estimated number of bytes, and evicts by
+ * either LRU or W-TinyLFU order once the bound is reached. The bound applies separately to the IR cache and to the {@link DefUse}
+ * cache.
+ */
+public final class SSACachePolicy {
+
+  public static enum Eviction {
+    /**
+     * evict the least recently used entry
+     */
+    LRU,
+    /**
+     * admit a new entry only if it is used more often than the entry it would displace, tracking frequencies with a small sketch
+     */
+    W_TINY_LFU
+  }
+
+  /**
+   * estimated bytes per {@link SSAInstruction}
+   */
+  private final static long INSTRUCTION_BYTES = 48;
+
+  /**
+   * estimated bytes per value number, in the {@link SymbolTable} or in {@link DefUse}
+   */
+  private final static long VALUE_BYTES = 24;
+
+  /**
+   * estimated bytes per basic block of the {@link SSACFG}
+   */
+  private final static long BLOCK_BYTES = 96;
+
+  /**
+   * estimated fixed overhead of an IR or {@link DefUse}
+   */
+  private final static long BASE_BYTES = 256;
+
+  /**
+   * guess at the average estimated size of an entry, used to size W-TinyLFU bookkeeping for byte-bounded caches
+   */
+  private final static long TYPICAL_ENTRY_BYTES = 8 * 1024;
+
+  /**
+   * entries are softly reachable and never evicted by the cache itself
+   */
+  public final static SSACachePolicy SOFT_REFERENCES = new SSACachePolicy(null, false, 0);
+
+  private final Eviction eviction;
+
+  private final boolean byBytes;
+
+  private final long maximum;
+
+  private SSACachePolicy(Eviction eviction, boolean byBytes, long maximum) {
+    this.eviction = eviction;
+    this.byBytes = byBytes;
+    this.maximum = maximum;
+  }
+
+  /**
+   * @return a policy keeping at most maxEntries entries in each cache
+   */
+  public static SSACachePolicy maxEntries(Eviction eviction, long maxEntries) {
+    if (eviction == null) {
+      throw new IllegalArgumentException("null eviction");
+    }
+    if (maxEntries <= 0) {
+      throw new IllegalArgumentException("illegal maxEntries " + maxEntries);
+    }
+    return new SSACachePolicy(eviction, false, maxEntries);
+  }
+
+  /**
+   * @return a policy keeping entries of at most maxBytes estimated bytes in each cache
+   */
+  public static SSACachePolicy maxBytes(Eviction eviction, long maxBytes) {
+    if (eviction == null) {
+      throw new IllegalArgumentException("null eviction");
+    }
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("illegal maxBytes " + maxBytes);
+    }
+    return new SSACachePolicy(eviction, true, maxBytes);
+  }
+
+  /**
+   * @return true iff the cache evicts entries itself, rather than relying on soft references
+   */
+  public boolean isBounded() {
+    return eviction != null;
+  }
+
+  /**
+   * @return the eviction order, or null for {@link #SOFT_REFERENCES}
+   */
+  public Eviction getEviction() {
+    return eviction;
+  }
+
+  /**
+   * @return true iff the bound is in estimated bytes rather than entries
+   */
+  public boolean isBoundedByBytes() {
+    return byBytes;
+  }
+
+  public long getMaximum() {
+    return maximum;
+  }
+
+  /**
+   * @return fresh eviction bookkeeping for one cache governed by this policy
+   */
+  <K> Evictor<K> makeEvictor() {
+    assert isBounded();
+    switch (eviction) {
+    case LRU:
+      return new LRUEvictor<K>(maximum);
+    case W_TINY_LFU:
+      return new TinyLFUEvictor<K>(maximum, byBytes ? maximum / TYPICAL_ENTRY_BYTES : maximum);
+    default:
+      throw new IllegalStateException("unexpected eviction " + eviction);
+    }
+  }
+
+  /**
+   * @return the weight of an item against this policy's bound
+   */
+  long weigh(Object item) {
+    return byBytes ? estimateSize(item) : 1;
+  }
+
+  /**
+   * @return a rough estimate of the bytes retained by a cached IR or {@link DefUse}
+   */
+  public static long estimateSize(Object item) {
+    if (item instanceof IR) {
+      IR ir = (IR) item;
+      return BASE_BYTES + INSTRUCTION_BYTES * ir.getInstructions().length + VALUE_BYTES
+          * ir.getSymbolTable().getMaxValueNumber() + BLOCK_BYTES * ir.getControlFlowGraph().getNumberOfNodes();
+    } else if (item instanceof DefUse) {
+      DefUse du = (DefUse) item;
+      return BASE_BYTES + 8 * du.allInstructions.size() + VALUE_BYTES * du.getMaxValueNumber();
+    } else {
+      return BASE_BYTES;
+    }
+  }
+
+  @Override
+  public String toString() {
+    if (!isBounded()) {
+      return "soft references";
+    }
+    return eviction + " bounded by " + maximum + (byBytes ? " bytes" : " entries");
+  }
+}
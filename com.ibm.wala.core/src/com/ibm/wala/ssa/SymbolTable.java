@@ -90,6 +90,16 @@ public class SymbolTable implements Cloneable {
 
   }
 
+  /**
+   * record that value number vn holds constant o, as when the table is rebuilt by {@link PersistentIRFactory}
+   */
+  void setConstant(int vn, Object o) {
+    ensureSymbol(vn);
+    ConstantValue v = new ConstantValue(o);
+    values[vn] = v;
+    constants.put(v, Integer.valueOf(vn));
+  }
+
   public void setConstantValue(int vn, ConstantValue val) {
     try {
       assert vn < nextFreeValueNumber;
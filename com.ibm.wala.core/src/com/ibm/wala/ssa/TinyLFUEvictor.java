@@ -0,0 +1,261 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.ssa;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A W-TinyLFU eviction policy.
+ *
+ * New keys enter a small LRU window. Keys leaving the window compete for a place in the main region, a segmented LRU with a
+ * probationary and a protected segment: when the main region is full, the newcomer is kept only if it has been used more often
+ * than the probationary key that would be evicted instead. Use frequencies, including those of keys no longer cached, are
+ * estimated by a count-min sketch that is periodically halved, so that old popularity fades.
+ *
+ * This keeps the IRs of frequently revisited methods through scans over many methods each used once, which a plain LRU does not.
+ */
+class TinyLFUEvictor<K> implements Evictor<K> {
+
+  /**
+   * percentage of the capacity given to the admission window
+   */
+  private final static int WINDOW_PERCENT = 1;
+
+  /**
+   * percentage of the main region given to the protected segment
+   */
+  private final static int PROTECTED_PERCENT = 80;
+
+  private final long maximum;
+
+  private final long windowMaximum;
+
+  private final long protectedMaximum;
+
+  /**
+   * key -> weight, each in LRU order, eldest first
+   */
+  private final LinkedHashMap<K, Long> window = new LinkedHashMap<K, Long>();
+
+  private final LinkedHashMap<K, Long> probation = new LinkedHashMap<K, Long>();
+
+  private final LinkedHashMap<K, Long> protectedSegment = new LinkedHashMap<K, Long>();
+
+  private long windowWeight = 0;
+
+  private long probationWeight = 0;
+
+  private long protectedWeight = 0;
+
+  private final FrequencySketch sketch;
+
+  /**
+   * @param maximum total weight allowed
+   * @param expectedEntries a guess at the number of entries the cache will hold, used to size the frequency sketch
+   */
+  TinyLFUEvictor(long maximum, long expectedEntries) {
+    if (maximum <= 0) {
+      throw new IllegalArgumentException("illegal maximum " + maximum);
+    }
+    this.maximum = maximum;
+    this.windowMaximum = Math.max(1, maximum * WINDOW_PERCENT / 100);
+    this.protectedMaximum = (maximum - windowMaximum) * PROTECTED_PERCENT / 100;
+    this.sketch = new FrequencySketch(expectedEntries);
+  }
+
+  @Override
+  public List<K> admit(K key, long weight) {
+    remove(key);
+    sketch.increment(key);
+    List<K> victims = new ArrayList<K>(1);
+    if (weight > maximum) {
+      victims.add(key);
+      return victims;
+    }
+    window.put(key, weight);
+    windowWeight += weight;
+
+    // keys overflowing the window compete for a place in the main region
+    for (Iterator<Map.Entry<K, Long>> it = window.entrySet().iterator(); windowWeight > windowMaximum && it.hasNext();) {
+      Map.Entry<K, Long> e = it.next();
+      it.remove();
+      windowWeight -= e.getValue();
+      admitToMain(e.getKey(), e.getValue(), victims);
+    }
+    return victims;
+  }
+
+  /**
+   * place candidate in probation, evicting probationary keys used less often than the candidate to make room, or reject it
+   */
+  private void admitToMain(K candidate, long weight, List<K> victims) {
+    long mainMaximum = maximum - windowMaximum;
+    while (probationWeight + protectedWeight + weight > mainMaximum) {
+      if (probation.isEmpty()) {
+        if (protectedSegment.isEmpty()) {
+          victims.add(candidate);
+          return;
+        }
+        demoteEldestProtected();
+      }
+      Map.Entry<K, Long> eldest = probation.entrySet().iterator().next();
+      if (sketch.frequency(candidate) > sketch.frequency(eldest.getKey())) {
+        probation.remove(eldest.getKey());
+        probationWeight -= eldest.getValue();
+        victims.add(eldest.getKey());
+      } else {
+        victims.add(candidate);
+        return;
+      }
+    }
+    probation.put(candidate, weight);
+    probationWeight += weight;
+  }
+
+  private void demoteEldestProtected() {
+    Iterator<Map.Entry<K, Long>> it = protectedSegment.entrySet().iterator();
+    Map.Entry<K, Long> e = it.next();
+    it.remove();
+    protectedWeight -= e.getValue();
+    probation.put(e.getKey(), e.getValue());
+    probationWeight += e.getValue();
+  }
+
+  @Override
+  public void touch(K key) {
+    sketch.increment(key);
+    Long w = window.remove(key);
+    if (w != null) {
+      window.put(key, w);
+      return;
+    }
+    w = protectedSegment.remove(key);
+    if (w != null) {
+      protectedSegment.put(key, w);
+      return;
+    }
+    w = probation.remove(key);
+    if (w != null) {
+      probationWeight -= w;
+      protectedSegment.put(key, w);
+      protectedWeight += w;
+      while (protectedWeight > protectedMaximum && protectedSegment.size() > 1) {
+        demoteEldestProtected();
+      }
+    }
+  }
+
+  @Override
+  public void remove(K key) {
+    Long w = window.remove(key);
+    if (w != null) {
+      windowWeight -= w;
+      return;
+    }
+    w = probation.remove(key);
+    if (w != null) {
+      probationWeight -= w;
+      return;
+    }
+    w = protectedSegment.remove(key);
+    if (w != null) {
+      protectedWeight -= w;
+    }
+  }
+
+  @Override
+  public void clear() {
+    window.clear();
+    probation.clear();
+    protectedSegment.clear();
+    windowWeight = probationWeight = protectedWeight = 0;
+  }
+
+  @Override
+  public long getWeight() {
+    return windowWeight + probationWeight + protectedWeight;
+  }
+
+  /**
+   * A count-min sketch of 4-bit counters, four per key, halved after a number of increments proportional to its size.
+   */
+  final static class FrequencySketch {
+
+    private final static int MAX_COUNT = 15;
+
+    private final static int[] SEEDS = { 0x97cb3127, 0xa9bd5a9d, 0xc2b2ae35, 0x27d4eb2f };
+
+    /**
+     * counters, 16 to a long
+     */
+    private final long[] table;
+
+    private final int mask;
+
+    private final int sampleSize;
+
+    private int additions = 0;
+
+    FrequencySketch(long expectedEntries) {
+      int n = (int) Math.min(1 << 24, Math.max(64, expectedEntries));
+      int counters = Integer.highestOneBit(n - 1) << 1;
+      table = new long[Math.max(1, counters / 16)];
+      mask = counters - 1;
+      sampleSize = 10 * counters;
+    }
+
+    private int index(Object key, int i) {
+      int h = key.hashCode() * SEEDS[i];
+      h ^= (h >>> 17);
+      h *= 0x85ebca6b;
+      h ^= (h >>> 13);
+      return h & mask;
+    }
+
+    private int get(int counter) {
+      return (int) ((table[counter >>> 4] >>> ((counter & 15) << 2)) & 0xf);
+    }
+
+    int frequency(Object key) {
+      int result = MAX_COUNT;
+      for (int i = 0; i < SEEDS.length; i++) {
+        result = Math.min(result, get(index(key, i)));
+      }
+      return result;
+    }
+
+    void increment(Object key) {
+      boolean added = false;
+      for (int i = 0; i < SEEDS.length; i++) {
+        int counter = index(key, i);
+        if (get(counter) < MAX_COUNT) {
+          table[counter >>> 4] += 1L << ((counter & 15) << 2);
+          added = true;
+        }
+      }
+      if (added && ++additions >= sampleSize) {
+        halve();
+      }
+    }
+
+    private void halve() {
+      for (int i = 0; i < table.length; i++) {
+        // halve each 4-bit counter: shift right and clear the bit shifted in from the neighbor
+        table[i] = (table[i] >>> 1) & 0x7777777777777777L;
+      }
+      additions /= 2;
+    }
+  }
+}
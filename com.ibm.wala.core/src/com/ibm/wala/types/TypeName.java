@@ -58,6 +58,11 @@ public final class TypeName implements Serializable {
    */
   private final TypeNameKey key;
 
+  /**
+   * cached, since type names are the keys of many maps, and computing the hash code chases several pointers
+   */
+  private final int hashCode;
+
   public static TypeName findOrCreate(ImmutableByteArray name, int start, int length) throws IllegalArgumentException {
     Atom className = Atom.findOrCreate(StringStuff.parseForClass(name, start, length));
     ImmutableByteArray p = StringStuff.parseForPackage(name, start, length);
@@ -109,6 +114,7 @@ public final class TypeName implements Serializable {
    */
   private TypeName(TypeNameKey key) {
     this.key = key;
+    this.hashCode = key.hashCode();
   }
 
   @Override
@@ -118,7 +124,7 @@ public final class TypeName implements Serializable {
 
   @Override
   public int hashCode() {
-    return key.hashCode();
+    return hashCode;
   }
 
   @Override
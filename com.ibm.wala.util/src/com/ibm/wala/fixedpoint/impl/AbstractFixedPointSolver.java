@@ -10,13 +10,22 @@
  *******************************************************************************/
 package com.ibm.wala.fixedpoint.impl;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import com.ibm.wala.fixpoint.AbstractOperator;
 import com.ibm.wala.fixpoint.AbstractStatement;
 import com.ibm.wala.fixpoint.FixedPointConstants;
 import com.ibm.wala.fixpoint.IFixedPointSolver;
+import com.ibm.wala.fixpoint.IFixedPointSolverListener;
 import com.ibm.wala.fixpoint.IFixedPointStatement;
 import com.ibm.wala.fixpoint.IVariable;
 import com.ibm.wala.fixpoint.UnaryOperator;
@@ -24,7 +33,9 @@ import com.ibm.wala.fixpoint.UnaryStatement;
 import com.ibm.wala.util.CancelException;
 import com.ibm.wala.util.MonitorUtil;
 import com.ibm.wala.util.MonitorUtil.IProgressMonitor;
+import com.ibm.wala.util.collections.Factory;
 import com.ibm.wala.util.debug.VerboseAction;
+import com.ibm.wala.util.intset.BitVector;
 
 /**
  * Represents a set of {@link IFixedPointStatement}s to be solved by a {@link IFixedPointSolver}
@@ -50,6 +61,21 @@ public abstract class AbstractFixedPointSolver<T extends IVariable<?>> implement
 
   static public final int DEFAULT_PERIODIC_MAINTENANCE_INTERVAL = 100000;
 
+  /**
+   * In parallel mode, the maximum number of statements evaluated concurrently in one wave
+   */
+  static final int MAX_WAVE_SIZE = 8192;
+
+  /**
+   * In parallel mode, a wave with fewer statements than this is evaluated on the calling thread
+   */
+  static final int MIN_PARALLEL_WAVE_SIZE = 64;
+
+  /**
+   * In parallel mode, the number of statements evaluated by one task before it stops splitting its range
+   */
+  static final int PARALLEL_CHUNK_SIZE = 32;
+
   /**
    * A tuning parameter; how may new IStatementDefinitionss must be added before doing a new topological sort? TODO: Tune this
    * empirically.
@@ -91,16 +117,51 @@ public abstract class AbstractFixedPointSolver<T extends IVariable<?>> implement
    */
   private int nCreated = 0;
 
+  /**
+   * creates the worklist for the iterative solver
+   */
+  private Factory<IFixedPointWorklist> worklistFactory = WorklistStrategy.TOPOLOGICAL;
+
   /**
    * worklist for the iterative solver
    */
-  protected Worklist workList = new Worklist();
+  protected IFixedPointWorklist workList = makeWorklist();
+
+  /**
+   * How many statements have been evaluated? Unlike {@link #nEvaluated}, counted whether or not we are verbose.
+   */
+  private long evaluations = 0;
+
+  /**
+   * How many evaluations were of a statement that had been evaluated before?
+   */
+  private long reEvaluations = 0;
+
+  /**
+   * graph node ids of the statements evaluated so far
+   */
+  private final BitVector evaluated = new BitVector();
+
+  /**
+   * the largest number of statements in the worklist at any time
+   */
+  private int maxWorkListSize = 0;
 
   /**
    * A boolean which is initially true, but set to false after the first call to solve();
    */
   private boolean firstSolve = true;
 
+  /**
+   * How many threads may evaluate independent statements concurrently? 1 means sequential evaluation.
+   */
+  private int parallelism = 1;
+
+  /**
+   * the listeners notified of the work of this solver, or null if there are none, so that the solver need not time evaluations
+   */
+  private IFixedPointSolverListener[] listeners = null;
+
   protected abstract T[] makeStmtRHS(int size);
   
   /**
@@ -137,6 +198,10 @@ public abstract class AbstractFixedPointSolver<T extends IVariable<?>> implement
       initForFirstSolve();
     }
 
+    if (parallelism > 1) {
+      return solveInParallel(monitor);
+    }
+
     while (!workList.isEmpty()) {
       MonitorUtil.throwExceptionIfCanceled(monitor);
       orderStatements();
@@ -147,7 +212,7 @@ public abstract class AbstractFixedPointSolver<T extends IVariable<?>> implement
       if (DEBUG) {
         System.err.println(("Before evaluation " + s));
       }
-      byte code = s.evaluate();
+      byte code = evaluate(s);
       if (verbose) {
         nEvaluated++;
         if (nEvaluated % getVerboseInterval() == 0) {
@@ -172,6 +237,342 @@ public abstract class AbstractFixedPointSolver<T extends IVariable<?>> implement
     return globalChange;
   }
 
+  /**
+   * Solve the system, evaluating waves of mutually independent statements concurrently.
+   * <p>
+   * A wave is built from the head of the work list: it holds statements for which {@link #isParallelizable(AbstractStatement)}
+   * holds, and no statement in a wave reads or writes a variable written by another statement of the same wave. So each variable
+   * has at most one writer during a wave, and nobody reads it while it is written. All bookkeeping (work list updates, statement
+   * removal, verbose counters) happens on the calling thread after the wave completes, in work list order. Since the operators are
+   * monotone, the fixed point reached is the same as that of the sequential solver.
+   * 
+   * @return true iff the evaluation of some equation caused a change in the value of some variable.
+   */
+  @SuppressWarnings("unchecked")
+  private boolean solveInParallel(IProgressMonitor monitor) throws CancelException {
+    boolean globalChange = false;
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      List<AbstractStatement> wave = new ArrayList<AbstractStatement>();
+      List<AbstractStatement> deferred = new ArrayList<AbstractStatement>();
+      Set<IVariable> defs = Collections.newSetFromMap(new IdentityHashMap<IVariable, Boolean>());
+      Set<IVariable> uses = Collections.newSetFromMap(new IdentityHashMap<IVariable, Boolean>());
+      while (!workList.isEmpty()) {
+        MonitorUtil.throwExceptionIfCanceled(monitor);
+        orderStatements();
+
+        AbstractStatement s = workList.takeStatement();
+        if (!isParallelizable(s)) {
+          byte code = evaluate(s);
+          globalChange |= afterEvaluation(s, code);
+          continue;
+        }
+
+        // collect a wave of independent statements, deferring those that conflict
+        wave.clear();
+        deferred.clear();
+        defs.clear();
+        uses.clear();
+        addToWave(s, wave, defs, uses);
+        while (!workList.isEmpty() && wave.size() < MAX_WAVE_SIZE && deferred.size() < MAX_WAVE_SIZE) {
+          AbstractStatement t = workList.takeStatement();
+          if (isParallelizable(t) && isIndependent(t, defs, uses)) {
+            addToWave(t, wave, defs, uses);
+          } else {
+            deferred.add(t);
+          }
+        }
+        for (AbstractStatement t : deferred) {
+          workList.insertStatement(t);
+        }
+
+        byte[] codes = new byte[wave.size()];
+        if (wave.size() < MIN_PARALLEL_WAVE_SIZE) {
+          for (int i = 0; i < codes.length; i++) {
+            codes[i] = wave.get(i).evaluate();
+          }
+        } else {
+          pool.invoke(new EvaluateWave(wave, codes, 0, codes.length));
+        }
+        for (int i = 0; i < codes.length; i++) {
+          evaluated(wave.get(i), codes[i], -1);
+          globalChange |= afterEvaluation(wave.get(i), codes[i]);
+        }
+      }
+    } finally {
+      pool.shutdown();
+    }
+    return globalChange;
+  }
+
+  /**
+   * Bookkeeping after a statement has been evaluated and counted.
+   * 
+   * @return true iff the evaluation changed the value of some variable
+   */
+  @SuppressWarnings("unchecked")
+  private boolean afterEvaluation(AbstractStatement s, byte code) {
+    if (verbose) {
+      nEvaluated++;
+      if (nEvaluated % getVerboseInterval() == 0) {
+        performVerboseAction();
+      }
+      if (nEvaluated % getPeriodicMaintainInterval() == 0) {
+        periodicMaintenance();
+      }
+    }
+    if (isChanged(code)) {
+      updateWorkList(s);
+    }
+    if (isFixed(code)) {
+      removeStatement(s);
+    }
+    return isChanged(code);
+  }
+
+  private static void addToWave(AbstractStatement s, List<AbstractStatement> wave, Set<IVariable> defs, Set<IVariable> uses) {
+    wave.add(s);
+    if (s.getLHS() != null) {
+      defs.add(s.getLHS());
+    }
+    if (s instanceof UnaryStatement) {
+      IVariable v = ((UnaryStatement) s).getRightHandSide();
+      if (v != null) {
+        uses.add(v);
+      }
+    } else {
+      for (IVariable v : s.getRHS()) {
+        if (v != null) {
+          uses.add(v);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return true iff s neither writes a variable read or written by the current wave, nor reads a variable the wave writes
+   */
+  private static boolean isIndependent(AbstractStatement s, Set<IVariable> defs, Set<IVariable> uses) {
+    IVariable lhs = s.getLHS();
+    if (lhs != null && (defs.contains(lhs) || uses.contains(lhs))) {
+      return false;
+    }
+    if (s instanceof UnaryStatement) {
+      IVariable v = ((UnaryStatement) s).getRightHandSide();
+      return v == null || !defs.contains(v);
+    }
+    for (IVariable v : s.getRHS()) {
+      if (v != null && defs.contains(v)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Evaluates a slice of a wave, splitting it in halves until the slices are small.
+   */
+  @SuppressWarnings("serial")
+  private static class EvaluateWave extends RecursiveAction {
+    private final List<AbstractStatement> wave;
+
+    private final byte[] codes;
+
+    private final int from;
+
+    private final int to;
+
+    EvaluateWave(List<AbstractStatement> wave, byte[] codes, int from, int to) {
+      this.wave = wave;
+      this.codes = codes;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= PARALLEL_CHUNK_SIZE) {
+        for (int i = from; i < to; i++) {
+          codes[i] = wave.get(i).evaluate();
+        }
+      } else {
+        int mid = (from + to) >>> 1;
+        invokeAll(new EvaluateWave(wave, codes, from, mid), new EvaluateWave(wave, codes, mid, to));
+      }
+    }
+  }
+
+  /**
+   * In parallel mode, may statement s be evaluated concurrently with other statements, provided none of them touches the variable s
+   * writes and none of them writes a variable s reads? This holds only if evaluating s has no effect beyond writing its own
+   * left-hand side, e.g. it adds no new statements and updates no shared tables. Subclasses should override as desired; by
+   * default, every statement is evaluated on the calling thread.
+   */
+  protected boolean isParallelizable(AbstractStatement s) {
+    return false;
+  }
+
+  /**
+   * Evaluate statement s, count the evaluation and tell the listeners, timing it if there are any.
+   * 
+   * @return the result of the evaluation
+   */
+  private byte evaluate(AbstractStatement s) {
+    if (listeners == null) {
+      byte code = s.evaluate();
+      countEvaluation(s);
+      return code;
+    }
+    long start = System.nanoTime();
+    byte code = s.evaluate();
+    evaluated(s, code, System.nanoTime() - start);
+    return code;
+  }
+
+  /**
+   * Count an evaluation of statement s, and tell the listeners.
+   * 
+   * @param nanos the time the evaluation took, or -1 if unknown
+   */
+  private void evaluated(AbstractStatement s, byte code, long nanos) {
+    countEvaluation(s);
+    if (listeners != null) {
+      int size = workList.size();
+      for (IFixedPointSolverListener l : listeners) {
+        l.statementEvaluated(s, code, nanos, size);
+      }
+    }
+    int interval = getCheckpointInterval();
+    if (interval > 0 && evaluations % interval == 0) {
+      checkpoint();
+    }
+  }
+
+  /**
+   * Update the solver counters after statement s has been evaluated.
+   */
+  private void countEvaluation(AbstractStatement s) {
+    evaluations++;
+    int id = s.getGraphNodeId();
+    if (id >= 0) {
+      if (evaluated.get(id)) {
+        reEvaluations++;
+      } else {
+        evaluated.set(id);
+      }
+    }
+  }
+
+  /**
+   * @return a new, empty worklist. By default, made by the factory set with {@link #setWorklistFactory(Factory)}; subclasses may
+   *         override as desired, but note this is first called during construction.
+   */
+  protected IFixedPointWorklist makeWorklist() {
+    return worklistFactory.make();
+  }
+
+  /**
+   * Choose the order in which the solver evaluates pending statements, e.g. one of the {@link WorklistStrategy}s. Statements already
+   * pending move to a new worklist made by the factory.
+   * 
+   * @throws IllegalArgumentException if factory is null
+   */
+  public void setWorklistFactory(Factory<IFixedPointWorklist> factory) {
+    if (factory == null) {
+      throw new IllegalArgumentException("factory is null");
+    }
+    worklistFactory = factory;
+    IFixedPointWorklist old = workList;
+    workList = makeWorklist();
+    while (!old.isEmpty()) {
+      workList.insertStatement(old.takeStatement());
+    }
+  }
+
+  public Factory<IFixedPointWorklist> getWorklistFactory() {
+    return worklistFactory;
+  }
+
+  /**
+   * @return the number of statement evaluations so far, including those of statements evaluated eagerly when added
+   */
+  public long getEvaluationCount() {
+    return evaluations;
+  }
+
+  /**
+   * @return the number of evaluations of a statement that had been evaluated before
+   */
+  public long getReEvaluationCount() {
+    return reEvaluations;
+  }
+
+  /**
+   * @return the largest number of statements that were pending in the worklist at any time
+   */
+  public int getMaxWorkListSize() {
+    return maxWorkListSize;
+  }
+
+  /**
+   * @return the number of statements added to the system so far, including any removed since
+   */
+  public int getNumberOfStatementsCreated() {
+    return nCreated;
+  }
+
+  /**
+   * Notify l of the statements added to the system and evaluated from now on. Evaluations are timed while there is a listener.
+   * 
+   * @throws IllegalArgumentException if l is null
+   */
+  public void addListener(IFixedPointSolverListener l) {
+    if (l == null) {
+      throw new IllegalArgumentException("l is null");
+    }
+    if (listeners == null) {
+      listeners = new IFixedPointSolverListener[] { l };
+    } else {
+      IFixedPointSolverListener[] old = listeners;
+      listeners = new IFixedPointSolverListener[old.length + 1];
+      System.arraycopy(old, 0, listeners, 0, old.length);
+      listeners[old.length] = l;
+    }
+  }
+
+  /**
+   * Stop notifying l, if it was added with {@link #addListener(IFixedPointSolverListener)}.
+   */
+  public void removeListener(IFixedPointSolverListener l) {
+    if (listeners == null) {
+      return;
+    }
+    List<IFixedPointSolverListener> rest = new ArrayList<IFixedPointSolverListener>();
+    for (IFixedPointSolverListener x : listeners) {
+      if (x != l) {
+        rest.add(x);
+      }
+    }
+    listeners = rest.isEmpty() ? null : rest.toArray(new IFixedPointSolverListener[rest.size()]);
+  }
+
+  /**
+   * @return the number of threads that may evaluate independent statements concurrently
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * @param n the number of threads that may evaluate independent statements concurrently; 1 means sequential evaluation
+   */
+  public void setParallelism(int n) {
+    if (n < 1) {
+      throw new IllegalArgumentException("illegal parallelism " + n);
+    }
+    parallelism = n;
+  }
+
   @Override
   public void performVerboseAction() {
     System.err.println("Evaluated " + nEvaluated);
@@ -232,6 +633,9 @@ public abstract class AbstractFixedPointSolver<T extends IVariable<?>> implement
    */
   public void addToWorkList(AbstractStatement s) {
     workList.insertStatement(s);
+    if (workList.size() > maxWorkListSize) {
+      maxWorkListSize = workList.size();
+    }
   }
 
   /**
@@ -286,8 +690,13 @@ public abstract class AbstractFixedPointSolver<T extends IVariable<?>> implement
 
   @SuppressWarnings("unchecked")
   private void incorporateNewStatement(boolean toWorkList, boolean eager, AbstractStatement s) {
+    if (listeners != null) {
+      for (IFixedPointSolverListener l : listeners) {
+        l.statementAdded(s);
+      }
+    }
     if (eager) {
-      byte code = s.evaluate();
+      byte code = evaluate(s);
       if (verbose) {
         nEvaluated++;
         if (nEvaluated % getVerboseInterval() == 0) {
@@ -510,7 +919,9 @@ public abstract class AbstractFixedPointSolver<T extends IVariable<?>> implement
       AbstractStatement eq = workList.takeStatement();
       temp.add(eq);
     }
-    workList = new Worklist();
+    workList = makeWorklist();
+
+    simplifySystem(temp);
 
     // compute new ordering
     getFixedPointSystem().reorder();
@@ -522,6 +933,17 @@ public abstract class AbstractFixedPointSolver<T extends IVariable<?>> implement
     }
   }
 
+  /**
+   * Called each time the statements are reordered, while the work list is drained. Subclasses may simplify the system here, e.g.
+   * by merging variables. Statements in pending that are no longer part of the system must be removed from it, and statements that
+   * need to be evaluated again must be added to it; pending is put back on the work list after reordering. The default does
+   * nothing.
+   * 
+   * @param pending the statements that were on the work list
+   */
+  protected void simplifySystem(Collection<AbstractStatement> pending) {
+  }
+
   public static boolean isChanged(byte code) {
     return (code & CHANGED_MASK) != 0;
   }
@@ -581,6 +1003,22 @@ public abstract class AbstractFixedPointSolver<T extends IVariable<?>> implement
   protected void periodicMaintenance() {
   }
 
+  /**
+   * Called every {@link #getCheckpointInterval()} evaluations, whether or not we are verbose, on the solving thread and while no
+   * statement is being evaluated. Subclasses should override as desired.
+   */
+  protected void checkpoint() {
+  }
+
+  /**
+   * subclasses should override as desired.
+   * 
+   * @return the number of evaluations between calls to {@link #checkpoint()}, or 0 for none
+   */
+  protected int getCheckpointInterval() {
+    return 0;
+  }
+
   /**
    * subclasses should override as desired.
    */
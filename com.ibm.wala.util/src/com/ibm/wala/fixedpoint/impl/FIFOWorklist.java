@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.fixedpoint.impl;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.NoSuchElementException;
+
+import com.ibm.wala.fixpoint.AbstractStatement;
+import com.ibm.wala.util.collections.HashSetFactory;
+
+/**
+ * A worklist that evaluates statements in the order they were inserted.
+ */
+@SuppressWarnings("rawtypes")
+public class FIFOWorklist implements IFixedPointWorklist {
+
+  private final ArrayDeque<AbstractStatement> queue = new ArrayDeque<AbstractStatement>();
+
+  private final HashSet<AbstractStatement> contents = HashSetFactory.make();
+
+  @Override
+  public AbstractStatement takeStatement() throws NoSuchElementException {
+    AbstractStatement result = queue.removeFirst();
+    contents.remove(result);
+    return result;
+  }
+
+  @Override
+  public void insertStatement(AbstractStatement s) {
+    if (contents.add(s)) {
+      queue.addLast(s);
+    }
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return queue.isEmpty();
+  }
+
+  @Override
+  public int size() {
+    return queue.size();
+  }
+}
@@ -0,0 +1,47 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.fixedpoint.impl;
+
+import java.util.NoSuchElementException;
+
+import com.ibm.wala.fixpoint.AbstractStatement;
+
+/**
+ * A worklist for the fixed-point solver. The worklist decides the order in which pending statements are evaluated; it never
+ * holds the same statement twice.
+ * 
+ * @see AbstractFixedPointSolver#setWorklistFactory(com.ibm.wala.util.collections.Factory)
+ * @see WorklistStrategy
+ */
+@SuppressWarnings("rawtypes")
+public interface IFixedPointWorklist {
+
+  /**
+   * @return the next statement to evaluate, which is removed from the worklist
+   * @throws NoSuchElementException if the worklist is empty
+   */
+  AbstractStatement takeStatement() throws NoSuchElementException;
+
+  /**
+   * Add a statement to the worklist, unless it is already there.
+   */
+  void insertStatement(AbstractStatement s);
+
+  /**
+   * @return true iff the worklist is empty
+   */
+  boolean isEmpty();
+
+  /**
+   * @return the number of statements in the worklist
+   */
+  int size();
+}
@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.fixedpoint.impl;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.NoSuchElementException;
+
+import com.ibm.wala.fixpoint.AbstractStatement;
+import com.ibm.wala.util.collections.HashMapFactory;
+import com.ibm.wala.util.collections.HashSetFactory;
+import com.ibm.wala.util.collections.Heap;
+
+/**
+ * A worklist that evaluates first the statement whose last evaluation lies furthest back. Statements never taken from this
+ * worklist come first, in topological order. This spreads evaluations evenly over the statements, so no part of the system
+ * starves while another keeps firing.
+ */
+@SuppressWarnings("rawtypes")
+public class LeastRecentlyFiredWorklist implements IFixedPointWorklist {
+
+  /**
+   * statement -> value of {@link #clock} when it was last taken
+   */
+  private final HashMap<AbstractStatement, Long> lastFired = HashMapFactory.make();
+
+  private final HashSet<AbstractStatement> contents = HashSetFactory.make();
+
+  private long clock = 0;
+
+  /**
+   * heap entry; the key does not change while the statement is in the heap
+   */
+  private static final class Entry {
+    final AbstractStatement s;
+
+    final long key;
+
+    Entry(AbstractStatement s, long key) {
+      this.s = s;
+      this.key = key;
+    }
+  }
+
+  private final Heap<Entry> heap = new Heap<Entry>(100) {
+    @Override
+    protected boolean compareElements(Entry e1, Entry e2) {
+      return e1.key < e2.key || (e1.key == e2.key && e1.s.getOrderNumber() < e2.s.getOrderNumber());
+    }
+  };
+
+  @Override
+  public AbstractStatement takeStatement() throws NoSuchElementException {
+    AbstractStatement result = heap.take().s;
+    contents.remove(result);
+    lastFired.put(result, ++clock);
+    return result;
+  }
+
+  @Override
+  public void insertStatement(AbstractStatement s) {
+    if (contents.add(s)) {
+      Long last = lastFired.get(s);
+      heap.insert(new Entry(s, last == null ? 0 : last.longValue()));
+    }
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return heap.isEmpty();
+  }
+
+  @Override
+  public int size() {
+    return heap.size();
+  }
+}
@@ -0,0 +1,346 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.fixedpoint.impl;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import com.ibm.wala.fixpoint.AbstractStatement;
+import com.ibm.wala.fixpoint.IFixedPointSolverListener;
+import com.ibm.wala.fixpoint.IVariable;
+import com.ibm.wala.fixpoint.UnaryStatement;
+import com.ibm.wala.util.collections.HashMapFactory;
+import com.ibm.wala.util.collections.Pair;
+
+/**
+ * Collects metrics on the work of an {@link AbstractFixedPointSolver}: evaluations, changes and time per operator class, the
+ * statements evaluated most often, the variables that changed most often, and samples of the size of the work list over time.
+ * Attach it with {@link AbstractFixedPointSolver#addListener(IFixedPointSolverListener)}; the metrics can be read back or dumped
+ * as JSON with {@link #writeJSON(Writer, int)}.
+ *
+ * Note that this keeps every statement evaluated and every variable changed alive.
+ */
+public class SolverMetrics implements IFixedPointSolverListener {
+
+  /**
+   * by default, the size of the work list is sampled once every this many evaluations
+   */
+  public static final int DEFAULT_SAMPLE_INTERVAL = 1000;
+
+  /**
+   * Metrics for the statements of one operator class
+   */
+  public static final class OperatorMetrics {
+    private final Class<?> operatorClass;
+
+    private long evaluations;
+
+    private long changes;
+
+    private long nanos;
+
+    private OperatorMetrics(Class<?> operatorClass) {
+      this.operatorClass = operatorClass;
+    }
+
+    public Class<?> getOperatorClass() {
+      return operatorClass;
+    }
+
+    /**
+     * @return the number of evaluations of statements with this class of operator
+     */
+    public long getEvaluations() {
+      return evaluations;
+    }
+
+    /**
+     * @return the number of those evaluations which changed the left-hand side
+     */
+    public long getChanges() {
+      return changes;
+    }
+
+    /**
+     * @return the cumulative time of those evaluations which were timed, in nanoseconds
+     */
+    public long getNanos() {
+      return nanos;
+    }
+  }
+
+  private final int sampleInterval;
+
+  private final Map<Class<?>, OperatorMetrics> operators = HashMapFactory.make();
+
+  private final Map<AbstractStatement<?, ?>, int[]> statementEvaluations = HashMapFactory.make();
+
+  private final Map<IVariable<?>, int[]> variableChanges = HashMapFactory.make();
+
+  private long evaluations = 0;
+
+  private long statementsAdded = 0;
+
+  /**
+   * pairs of the number of evaluations so far and the size of the work list at that point
+   */
+  private final List<long[]> workListSamples = new ArrayList<long[]>();
+
+  private int maxWorkListSize = 0;
+
+  public SolverMetrics() {
+    this(DEFAULT_SAMPLE_INTERVAL);
+  }
+
+  /**
+   * @param sampleInterval the size of the work list is sampled once every this many evaluations
+   */
+  public SolverMetrics(int sampleInterval) {
+    if (sampleInterval < 1) {
+      throw new IllegalArgumentException("illegal sample interval " + sampleInterval);
+    }
+    this.sampleInterval = sampleInterval;
+  }
+
+  @Override
+  public void statementAdded(AbstractStatement<?, ?> s) {
+    statementsAdded++;
+  }
+
+  @Override
+  public void statementEvaluated(AbstractStatement<?, ?> s, byte code, long nanos, int workListSize) {
+    boolean changed = AbstractFixedPointSolver.isChanged(code);
+    Class<?> c = s.getOperator().getClass();
+    OperatorMetrics m = operators.get(c);
+    if (m == null) {
+      m = new OperatorMetrics(c);
+      operators.put(c, m);
+    }
+    m.evaluations++;
+    if (changed) {
+      m.changes++;
+    }
+    if (nanos > 0) {
+      m.nanos += nanos;
+    }
+
+    increment(statementEvaluations, s);
+    if (changed && s.getLHS() != null) {
+      increment(variableChanges, s.getLHS());
+    }
+
+    if (workListSize > maxWorkListSize) {
+      maxWorkListSize = workListSize;
+    }
+    if (evaluations++ % sampleInterval == 0) {
+      workListSamples.add(new long[] { evaluations, workListSize });
+    }
+  }
+
+  protected static <K> void increment(Map<K, int[]> counts, K key) {
+    int[] count = counts.get(key);
+    if (count == null) {
+      counts.put(key, new int[] { 1 });
+    } else {
+      count[0]++;
+    }
+  }
+
+  public long getEvaluations() {
+    return evaluations;
+  }
+
+  public long getStatementsAdded() {
+    return statementsAdded;
+  }
+
+  public int getMaxWorkListSize() {
+    return maxWorkListSize;
+  }
+
+  /**
+   * @return the metrics of each operator class, the most time-consuming first
+   */
+  public List<OperatorMetrics> getOperatorMetrics() {
+    List<OperatorMetrics> result = new ArrayList<OperatorMetrics>(operators.values());
+    Collections.sort(result, new Comparator<OperatorMetrics>() {
+      @Override
+      public int compare(OperatorMetrics o1, OperatorMetrics o2) {
+        if (o1.nanos != o2.nanos) {
+          return o1.nanos > o2.nanos ? -1 : 1;
+        }
+        return o1.evaluations > o2.evaluations ? -1 : o1.evaluations == o2.evaluations ? 0 : 1;
+      }
+    });
+    return result;
+  }
+
+  /**
+   * @return up to n statements with their number of evaluations, the most evaluated first
+   */
+  public List<Pair<AbstractStatement<?, ?>, Integer>> getHottestStatements(int n) {
+    return top(statementEvaluations, n);
+  }
+
+  /**
+   * @return up to n variables with the number of evaluations that changed them, the most changed first
+   */
+  public List<Pair<IVariable<?>, Integer>> getHottestVariables(int n) {
+    return top(variableChanges, n);
+  }
+
+  /**
+   * @return up to n keys with their counts, the highest count first
+   */
+  protected static <K> List<Pair<K, Integer>> top(Map<K, int[]> counts, int n) {
+    List<Map.Entry<K, int[]>> entries = new ArrayList<Map.Entry<K, int[]>>(counts.entrySet());
+    Collections.sort(entries, new Comparator<Map.Entry<K, int[]>>() {
+      @Override
+      public int compare(Map.Entry<K, int[]> o1, Map.Entry<K, int[]> o2) {
+        return o2.getValue()[0] - o1.getValue()[0];
+      }
+    });
+    List<Pair<K, Integer>> result = new ArrayList<Pair<K, Integer>>();
+    for (int i = 0; i < n && i < entries.size(); i++) {
+      result.add(Pair.make(entries.get(i).getKey(), entries.get(i).getValue()[0]));
+    }
+    return result;
+  }
+
+  /**
+   * @return the samples of the size of the work list, as pairs of the number of evaluations so far and the size
+   */
+  public List<long[]> getWorkListSamples() {
+    return Collections.unmodifiableList(workListSamples);
+  }
+
+  /**
+   * Write the metrics as a JSON object.
+   *
+   * @param n the number of hottest statements and variables to write
+   */
+  public void writeJSON(Writer out, int n) throws IOException {
+    if (out == null) {
+      throw new IllegalArgumentException("out is null");
+    }
+    out.write("{\n");
+    writeJSONFields(out, n);
+    out.write("\n}\n");
+    out.flush();
+  }
+
+  /**
+   * Write the fields of the JSON object, separated by commas. Subclasses that add fields should call this first, then write a comma
+   * before each of theirs.
+   */
+  protected void writeJSONFields(Writer out, int n) throws IOException {
+    out.write("  \"evaluations\": " + evaluations + ",\n");
+    out.write("  \"statementsAdded\": " + statementsAdded + ",\n");
+    out.write("  \"maxWorkListSize\": " + maxWorkListSize + ",\n");
+
+    out.write("  \"operators\": [");
+    String sep = "\n";
+    for (OperatorMetrics m : getOperatorMetrics()) {
+      out.write(sep + "    {\"operator\": " + quote(m.operatorClass.getName()) + ", \"evaluations\": " + m.evaluations
+          + ", \"changes\": " + m.changes + ", \"nanos\": " + m.nanos + "}");
+      sep = ",\n";
+    }
+    out.write("\n  ],\n");
+
+    out.write("  \"hottestStatements\": [");
+    sep = "\n";
+    for (Pair<AbstractStatement<?, ?>, Integer> p : getHottestStatements(n)) {
+      out.write(sep + "    {\"statement\": " + quote(describe(p.fst)) + ", \"evaluations\": " + p.snd + "}");
+      sep = ",\n";
+    }
+    out.write("\n  ],\n");
+
+    out.write("  \"hottestVariables\": [");
+    sep = "\n";
+    for (Pair<IVariable<?>, Integer> p : getHottestVariables(n)) {
+      out.write(sep + "    {\"variable\": " + quote(describe(p.fst)) + ", \"changes\": " + p.snd + "}");
+      sep = ",\n";
+    }
+    out.write("\n  ],\n");
+
+    out.write("  \"workList\": [");
+    sep = "\n";
+    for (long[] sample : workListSamples) {
+      out.write(sep + "    [" + sample[0] + ", " + sample[1] + "]");
+      sep = ",\n";
+    }
+    out.write("\n  ]");
+  }
+
+  /**
+   * @return a description of statement s, in terms of {@link #describe(IVariable)}
+   */
+  protected String describe(AbstractStatement<?, ?> s) {
+    StringBuffer result = new StringBuffer();
+    result.append(s.getLHS() == null ? "null" : describe(s.getLHS()));
+    result.append(" ").append(s.getOperator());
+    if (s instanceof UnaryStatement) {
+      IVariable<?> v = ((UnaryStatement<?>) s).getRightHandSide();
+      result.append(" ").append(v == null ? "null" : describe(v));
+    } else {
+      for (IVariable<?> v : s.getRHS()) {
+        result.append(" ").append(v == null ? "null" : describe(v));
+      }
+    }
+    return result.toString();
+  }
+
+  /**
+   * @return a description of variable v; subclasses should override this when the value of a variable is too big to print
+   */
+  protected String describe(IVariable<?> v) {
+    return v.toString();
+  }
+
+  /**
+   * @return s as a JSON string literal
+   */
+  protected static String quote(String s) {
+    StringBuffer result = new StringBuffer("\"");
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      switch (c) {
+      case '"':
+        result.append("\\\"");
+        break;
+      case '\\':
+        result.append("\\\\");
+        break;
+      case '\n':
+        result.append("\\n");
+        break;
+      case '\r':
+        result.append("\\r");
+        break;
+      case '\t':
+        result.append("\\t");
+        break;
+      default:
+        if (c < 0x20) {
+          result.append(String.format("\\u%04x", (int) c));
+        } else {
+          result.append(c);
+        }
+      }
+    }
+    return result.append('"').toString();
+  }
+}
@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.fixedpoint.impl;
+
+import java.util.HashSet;
+import java.util.NoSuchElementException;
+
+import com.ibm.wala.fixpoint.AbstractStatement;
+import com.ibm.wala.util.collections.HashSetFactory;
+import com.ibm.wala.util.collections.Heap;
+
+/**
+ * A worklist that evaluates statements in sweeps over the topological order.
+ * 
+ * Each sweep takes statements in increasing order number. A statement inserted during a sweep joins the current sweep if it comes
+ * later in the order than the statement last taken, and waits for the next sweep otherwise. So a strongly connected component is
+ * iterated as a whole, once per sweep, rather than the solver returning to its head every time one of its back edges fires, as
+ * {@link Worklist} does.
+ */
+@SuppressWarnings("rawtypes")
+public class WaveWorklist implements IFixedPointWorklist {
+
+  private static class OrderedHeap extends Heap<AbstractStatement> {
+    OrderedHeap() {
+      super(100);
+    }
+
+    @Override
+    protected boolean compareElements(AbstractStatement eq1, AbstractStatement eq2) {
+      return eq1.getOrderNumber() < eq2.getOrderNumber();
+    }
+  }
+
+  private final HashSet<AbstractStatement> contents = HashSetFactory.make();
+
+  private OrderedHeap current = new OrderedHeap();
+
+  private OrderedHeap next = new OrderedHeap();
+
+  /**
+   * order number of the statement last taken in the current sweep
+   */
+  private int position = Integer.MIN_VALUE;
+
+  @Override
+  public AbstractStatement takeStatement() throws NoSuchElementException {
+    if (current.isEmpty()) {
+      OrderedHeap t = current;
+      current = next;
+      next = t;
+      position = Integer.MIN_VALUE;
+    }
+    AbstractStatement result = current.take();
+    position = result.getOrderNumber();
+    contents.remove(result);
+    return result;
+  }
+
+  @Override
+  public void insertStatement(AbstractStatement s) {
+    if (contents.add(s)) {
+      if (s.getOrderNumber() > position) {
+        current.insert(s);
+      } else {
+        next.insert(s);
+      }
+    }
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return current.isEmpty() && next.isEmpty();
+  }
+
+  @Override
+  public int size() {
+    return current.size() + next.size();
+  }
+}
@@ -18,10 +18,10 @@ import com.ibm.wala.util.collections.HashSetFactory;
 import com.ibm.wala.util.collections.Heap;
 
 /**
- * Worklist for fixed-point solver implementation
+ * Worklist for fixed-point solver implementation, which always yields the pending statement earliest in topological order
  */
 @SuppressWarnings("rawtypes")
-public class Worklist extends Heap<AbstractStatement> {
+public class Worklist extends Heap<AbstractStatement> implements IFixedPointWorklist {
 
   private final HashSet<AbstractStatement> contents = HashSetFactory.make();
 
@@ -34,12 +34,14 @@ public class Worklist extends Heap<AbstractStatement> {
     return (eq1.getOrderNumber() < eq2.getOrderNumber());
   }
 
+  @Override
   public AbstractStatement takeStatement() throws NoSuchElementException {
     AbstractStatement result = super.take();
     contents.remove(result);
     return result;
   }
   
+  @Override
   public void insertStatement(AbstractStatement eq) {
     if (!contents.contains(eq)) {
       contents.add(eq);
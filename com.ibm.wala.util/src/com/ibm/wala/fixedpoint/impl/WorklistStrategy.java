@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.fixedpoint.impl;
+
+import com.ibm.wala.util.collections.Factory;
+
+/**
+ * The built-in worklist orders for the fixed-point solver.
+ * 
+ * @see AbstractFixedPointSolver#setWorklistFactory(Factory)
+ */
+public enum WorklistStrategy implements Factory<IFixedPointWorklist> {
+
+  /**
+   * always evaluate the pending statement earliest in topological order; the default
+   */
+  TOPOLOGICAL {
+    @Override
+    public IFixedPointWorklist make() {
+      return new Worklist();
+    }
+  },
+
+  /**
+   * evaluate statements in the order they were added
+   */
+  FIFO {
+    @Override
+    public IFixedPointWorklist make() {
+      return new FIFOWorklist();
+    }
+  },
+
+  /**
+   * evaluate the most recently added statement first
+   */
+  LIFO {
+    @Override
+    public IFixedPointWorklist make() {
+      return new LIFOWorklist();
+    }
+  },
+
+  /**
+   * evaluate statements in repeated sweeps over the topological order
+   */
+  WAVE {
+    @Override
+    public IFixedPointWorklist make() {
+      return new WaveWorklist();
+    }
+  },
+
+  /**
+   * evaluate first the statement whose last evaluation lies furthest back
+   */
+  LEAST_RECENTLY_FIRED {
+    @Override
+    public IFixedPointWorklist make() {
+      return new LeastRecentlyFiredWorklist();
+    }
+  };
+}
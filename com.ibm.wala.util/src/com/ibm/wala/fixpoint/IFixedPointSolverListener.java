@@ -0,0 +1,34 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.fixpoint;
+
+/**
+ * Notified by an iterative solver of the work it does, e.g. to collect metrics. Callbacks happen on the thread that runs the
+ * solver, so implementations need not be thread-safe, but they are on the solver's hot path and should be cheap.
+ */
+public interface IFixedPointSolverListener {
+
+  /**
+   * Statement s has been added to the system.
+   */
+  void statementAdded(AbstractStatement<?, ?> s);
+
+  /**
+   * Statement s has been evaluated.
+   *
+   * @param code the result of the evaluation, as in {@link FixedPointConstants}
+   * @param nanos the time the evaluation took, in nanoseconds, or -1 if it was not timed alone, e.g. because it was part of a
+   *          wave evaluated in parallel
+   * @param workListSize the number of statements pending in the work list after the evaluation, before those that use the value of
+   *          s are added to it
+   */
+  void statementEvaluated(AbstractStatement<?, ?> s, byte code, long nanos, int workListSize);
+}
@@ -10,6 +10,7 @@
  *******************************************************************************/
 package com.ibm.wala.fixpoint;
 
+import com.ibm.wala.util.intset.IntIterator;
 import com.ibm.wala.util.intset.IntSet;
 import com.ibm.wala.util.intset.IntSetUtil;
 import com.ibm.wala.util.intset.MutableIntSet;
@@ -24,6 +25,42 @@ public abstract class IntSetVariable<T extends IntSetVariable> extends AbstractV
 
   MutableIntSet V;
 
+  /**
+   * is V shared with other variables? If so, it must not be modified; the variable makes a private copy before its first change.
+   */
+  private boolean shared;
+
+  /**
+   * Make this variable use v, which must have the same value as this variable, as its value. v may be shared with other variables,
+   * and is never modified through this one; a later change to this variable operates on a private copy.
+   * 
+   * @throws IllegalArgumentException if the value of v differs from that of this variable
+   */
+  public void shareValue(MutableIntSet v) {
+    if (v == null || V == null || !V.sameValue(v)) {
+      throw new IllegalArgumentException("value differs: " + v);
+    }
+    V = v;
+    shared = true;
+  }
+
+  /**
+   * @return true iff the value of this variable may be shared with other variables
+   */
+  public boolean isValueShared() {
+    return shared;
+  }
+
+  /**
+   * Before V is modified, replace it by a private copy if it is shared.
+   */
+  private void unshare() {
+    if (shared) {
+      V = IntSetUtil.getDefaultIntSetFactory().makeCopy(V);
+      shared = false;
+    }
+  }
+
   @Override
   public void copyState(T other) {
     if (V == null) {
@@ -35,6 +72,10 @@ public abstract class IntSetVariable<T extends IntSetVariable> extends AbstractV
       }
     } else {
       if (other.V != null) {
+        if (shared && V.sameValue(other.V)) {
+          return;
+        }
+        unshare();
         V.copySet(other.V);
       }
     }
@@ -50,6 +91,12 @@ public abstract class IntSetVariable<T extends IntSetVariable> extends AbstractV
       V = IntSetUtil.getDefaultIntSetFactory().makeCopy(B);
       return (B.size() > 0);
     } else {
+      if (shared) {
+        if (B.isSubset(V)) {
+          return false;
+        }
+        unshare();
+      }
       boolean result = V.addAll(B);
       return result;
     }
@@ -102,6 +149,11 @@ public abstract class IntSetVariable<T extends IntSetVariable> extends AbstractV
   public void add(int b) {
     if (V == null) {
       V = IntSetUtil.getDefaultIntSetFactory().make();
+    } else if (shared) {
+      if (V.contains(b)) {
+        return;
+      }
+      unshare();
     }
     V.add(b);
   }
@@ -131,6 +183,12 @@ public abstract class IntSetVariable<T extends IntSetVariable> extends AbstractV
    */
   public void remove(int i) {
     if (V != null) {
+      if (shared) {
+        if (!V.contains(i)) {
+          return;
+        }
+        unshare();
+      }
       V.remove(i);
     }
   }
@@ -172,12 +230,32 @@ public abstract class IntSetVariable<T extends IntSetVariable> extends AbstractV
       }
       return (V != null);
     } else {
+      if (shared) {
+        if (!hasNewElementInIntersection(other, filter)) {
+          return false;
+        }
+        unshare();
+      }
       boolean result = V.addAllInIntersection(other, filter);
       return result;
     }
   }
 
+  /**
+   * @return true iff some element of other which is in filter is not in V
+   */
+  private boolean hasNewElementInIntersection(IntSet other, IntSet filter) {
+    for (IntIterator it = other.intIterator(); it.hasNext();) {
+      int x = it.next();
+      if (filter.contains(x) && !V.contains(x)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   public void removeAll() {
     V = null;
+    shared = false;
   }
 }
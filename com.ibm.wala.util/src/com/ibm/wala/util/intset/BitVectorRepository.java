@@ -10,15 +10,22 @@
  *******************************************************************************/
 package com.ibm.wala.util.intset;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.Map;
-
-import com.ibm.wala.util.collections.HashMapFactory;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A repository for shared bit vectors as described by Heintze
+ *
+ * Entries are indexed by the pair (size, minimum element). A shared subset of a value that misses at most k of its bits must
+ * have as its minimum one of the k+1 smallest elements of the value, so a query probes only a handful of small buckets rather
+ * than every entry of a given size. The repository is safe for concurrent use and does not block readers; two threads racing
+ * to create the same representative may both succeed, which costs some sharing but not correctness.
  */
 public class BitVectorRepository {
 
@@ -26,13 +33,30 @@ public class BitVectorRepository {
 
   private final static int STATS_WINDOW = 100;
 
-  private static int queries = 0;
+  private static final AtomicInteger queries = new AtomicInteger();
 
-  private static int hits = 0;
+  private static final AtomicInteger hits = new AtomicInteger();
 
   private final static int SUBSET_DELTA = 5;
 
-  final private static Map<Integer, LinkedList<WeakReference<BitVectorIntSet>>> buckets = HashMapFactory.make();
+  /**
+   * a weak reference to a repository entry which remembers the bucket it lives in
+   */
+  private static final class Entry extends WeakReference<BitVectorIntSet> {
+    private final Long key;
+
+    Entry(BitVectorIntSet referent, Long key, ReferenceQueue<BitVectorIntSet> queue) {
+      super(referent, queue);
+      this.key = key;
+    }
+  }
+
+  final private static ConcurrentMap<Long, Set<Entry>> buckets = new ConcurrentHashMap<Long, Set<Entry>>();
+
+  /**
+   * entries whose referents have been collected, to be purged from {@link #buckets}
+   */
+  final private static ReferenceQueue<BitVectorIntSet> stale = new ReferenceQueue<BitVectorIntSet>();
 
   /**
    * @param value
@@ -41,56 +65,94 @@ public class BitVectorRepository {
    *         as value, except it may exclude up to SUBSET_DELTA bits.
    * @throws IllegalArgumentException  if value is null
    */
-  public static synchronized BitVectorIntSet findOrCreateSharedSubset(BitVectorIntSet value) {
+  public static BitVectorIntSet findOrCreateSharedSubset(BitVectorIntSet value) {
     if (value == null) {
       throw new IllegalArgumentException("value is null");
     }
     if (STATS) {
-      queries++;
-      if (queries % STATS_WINDOW == 0) {
+      if (queries.incrementAndGet() % STATS_WINDOW == 0) {
         reportStats();
       }
     }
+    expungeStaleEntries();
     int size = value.size();
-    for (int i = size; i > size - SUBSET_DELTA; i--) {
-      LinkedList<WeakReference<BitVectorIntSet>> m = buckets.get(Integer.valueOf(i));
-      if (m != null) {
-        Iterator<WeakReference<BitVectorIntSet>> it = m.iterator();
-        while (it.hasNext()) {
-          WeakReference<BitVectorIntSet> wr = it.next();
-          BitVectorIntSet bv = wr.get();
-          if (bv != null) {
-            if (bv.isSubset(value)) {
-              // FOUND ONE!
-              if (STATS) {
-                hits++;
-              }
-              return bv;            
-            }
-          } else {
-            // remove the weak reference to avoid leaks
-            it.remove();
+    for (int i = size; i > size - SUBSET_DELTA && i >= 0; i--) {
+      // a representative of size i misses size - i bits of value, so its minimum is one of the
+      // size - i + 1 smallest elements of value
+      int e = value.nextSetBit(0);
+      for (int skipped = 0; skipped <= size - i; skipped++) {
+        BitVectorIntSet bv = findSubset(key(i, e), value);
+        if (bv != null) {
+          // FOUND ONE!
+          if (STATS) {
+            hits.incrementAndGet();
           }
+          return bv;
+        }
+        if (e < 0) {
+          break;
         }
+        e = value.nextSetBit(e + 1);
       }
     }
     // didn't find one. create one.
-    LinkedList<WeakReference<BitVectorIntSet>> m = buckets.get(size);
+    BitVectorIntSet bv = new BitVectorIntSet(value);
+    Long key = key(size, value.nextSetBit(0));
+    Set<Entry> m = buckets.get(key);
     if (m == null) {
-      m = new LinkedList<WeakReference<BitVectorIntSet>>();
-      buckets.put(size, m);
+      Set<Entry> fresh = Collections.newSetFromMap(new ConcurrentHashMap<Entry, Boolean>());
+      m = buckets.putIfAbsent(key, fresh);
+      if (m == null) {
+        m = fresh;
+      }
     }
-    BitVectorIntSet bv = new BitVectorIntSet(value);
-    m.add(new WeakReference<BitVectorIntSet>(bv));
+    m.add(new Entry(bv, key, stale));
     return bv;
   }
 
+  private static Long key(int size, int min) {
+    return Long.valueOf(((long) size << 32) | (min & 0xffffffffL));
+  }
+
+  /**
+   * @return some live entry in the bucket for key which is a subset of value, or null if none
+   */
+  private static BitVectorIntSet findSubset(Long key, BitVectorIntSet value) {
+    Set<Entry> m = buckets.get(key);
+    if (m != null) {
+      for (Entry wr : m) {
+        BitVectorIntSet bv = wr.get();
+        if (bv != null && bv.isSubset(value)) {
+          return bv;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * remove entries whose bit vectors have been garbage collected, dropping buckets that become empty
+   */
+  private static void expungeStaleEntries() {
+    for (Reference<? extends BitVectorIntSet> r = stale.poll(); r != null; r = stale.poll()) {
+      Entry wr = (Entry) r;
+      Set<Entry> m = buckets.get(wr.key);
+      if (m != null) {
+        m.remove(wr);
+        if (m.isEmpty()) {
+          // a concurrent insertion into m may be lost here; that only costs sharing
+          buckets.remove(wr.key, m);
+        }
+      }
+    }
+  }
+
   /**
-   * 
+   *
    */
   private static void reportStats() {
-    double percent = 100.0 * hits / queries;
-    System.err.println(("BitVectorRepository: queries " + queries + " hits " + percent));
+    double percent = 100.0 * hits.get() / queries.get();
+    System.err.println(("BitVectorRepository: queries " + queries.get() + " hits " + percent));
     System.err.println(("                     entries " + countEntries()));
   }
 
@@ -98,11 +160,11 @@ public class BitVectorRepository {
    */
   private static int countEntries() {
     int result = 0;
-    for (LinkedList<WeakReference<BitVectorIntSet>> l : buckets.values()) {
+    for (Set<Entry> l : buckets.values()) {
       // don't worry about cleared WeakReferences; count will be rough
       result += l.size();
     }
     return result;
   }
 
-}
\ No newline at end of file
+}
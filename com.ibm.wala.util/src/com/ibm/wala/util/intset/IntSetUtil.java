@@ -86,6 +86,8 @@ public class IntSetUtil {
       return new MutableSharedBitVectorIntSet((MutableSharedBitVectorIntSet) set);
     } else if (set instanceof SemiSparseMutableIntSet) {
       return new SemiSparseMutableIntSet((SemiSparseMutableIntSet) set);
+    } else if (set instanceof RoaringMutableIntSet) {
+      return new RoaringMutableIntSet((RoaringMutableIntSet) set);
     } else if (set instanceof DebuggingMutableIntSet) {
       MutableIntSet pCopy = makeMutableCopy(((DebuggingMutableIntSet) set).primaryImpl);
       MutableIntSet sCopy = makeMutableCopy(((DebuggingMutableIntSet) set).secondaryImpl);
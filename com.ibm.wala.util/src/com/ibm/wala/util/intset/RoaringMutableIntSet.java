@@ -0,0 +1,1250 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.util.intset;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A {@link MutableIntSet} in the manner of Roaring bitmaps. The integers are split into chunks of 2^16 by their high bits, and the
+ * low bits in each chunk are kept in a container suited to them: a sorted array when there are few, a bitmap when there are many,
+ * or a list of runs when they are mostly consecutive.
+ *
+ * This suits numberings which are sparse overall but clustered, like those of instance keys: a chunk costs space in proportion to
+ * what it holds, and operations on two sets work chunk by chunk, skipping chunks which only one of them has.
+ */
+public class RoaringMutableIntSet implements MutableIntSet {
+
+  /**
+   * a chunk with at most this many integers may be kept in a sorted array
+   */
+  private static final int ARRAY_MAX = 4096;
+
+  private static final int BITMAP_WORDS = (1 << 16) / 64;
+
+  /**
+   * single-element key arrays, shared by the sets with one chunk, since most sets are small. Key arrays are never modified. The
+   * table is filled here, rather than on demand, so that sets used from several threads see fully built entries.
+   */
+  private static final char[][] SINGLE_KEYS = new char[256][];
+
+  static {
+    for (int i = 0; i < SINGLE_KEYS.length; i++) {
+      SINGLE_KEYS[i] = new char[] { (char) i };
+    }
+  }
+
+  /**
+   * the high 16 bits of the integers in each chunk, sorted, or null if the set is empty
+   */
+  private char[] keys;
+
+  /**
+   * the low 16 bits of the integers in each chunk: the {@link Container} itself if there is one chunk, or a Container[] parallel to
+   * keys
+   */
+  private Object containers;
+
+  public RoaringMutableIntSet() {
+  }
+
+  public RoaringMutableIntSet(RoaringMutableIntSet set) throws IllegalArgumentException {
+    if (set == null) {
+      throw new IllegalArgumentException("set == null");
+    }
+    copySet(set);
+  }
+
+  private static char[] singleKey(int key) {
+    if (key >= SINGLE_KEYS.length) {
+      return new char[] { (char) key };
+    }
+    return SINGLE_KEYS[key];
+  }
+
+  private int chunks() {
+    return keys == null ? 0 : keys.length;
+  }
+
+  private Container container(int i) {
+    return containers instanceof Container ? (Container) containers : ((Container[]) containers)[i];
+  }
+
+  private void setContainer(int i, Container c) {
+    if (containers instanceof Container) {
+      containers = c;
+    } else {
+      ((Container[]) containers)[i] = c;
+    }
+  }
+
+  /**
+   * Replace the chunks with the first n of the given ones.
+   */
+  private void setChunks(char[] newKeys, Container[] newContainers, int n) {
+    if (n == 0) {
+      clear();
+    } else if (n == 1) {
+      keys = singleKey(newKeys[0]);
+      containers = newContainers[0];
+    } else {
+      keys = newKeys.length == n ? newKeys : Arrays.copyOf(newKeys, n);
+      containers = newContainers.length == n ? newContainers : Arrays.copyOf(newContainers, n);
+    }
+  }
+
+  /**
+   * @return the index of the chunk with the given key, or -(insertion point + 1) if there is none
+   */
+  private int find(int key) {
+    if (keys == null) {
+      return -1;
+    } else if (keys.length == 1) {
+      return keys[0] == key ? 0 : keys[0] < key ? -2 : -1;
+    } else {
+      return Arrays.binarySearch(keys, (char) key);
+    }
+  }
+
+  private void insertChunk(int index, int key, Container c) {
+    int n = chunks();
+    char[] newKeys = new char[n + 1];
+    Container[] newContainers = new Container[n + 1];
+    for (int i = 0, j = 0; j <= n; j++) {
+      if (j == index) {
+        newKeys[j] = (char) key;
+        newContainers[j] = c;
+      } else {
+        newKeys[j] = keys[i];
+        newContainers[j] = container(i++);
+      }
+    }
+    setChunks(newKeys, newContainers, n + 1);
+  }
+
+  private void removeChunk(int index) {
+    int n = chunks();
+    char[] newKeys = new char[n - 1];
+    Container[] newContainers = new Container[n - 1];
+    for (int i = 0, j = 0; i < n; i++) {
+      if (i != index) {
+        newKeys[j] = keys[i];
+        newContainers[j++] = container(i);
+      }
+    }
+    setChunks(newKeys, newContainers, n - 1);
+  }
+
+  @Override
+  public boolean contains(int i) {
+    if (i < 0) {
+      return false;
+    }
+    int index = find(i >>> 16);
+    return index >= 0 && container(index).contains(i & 0xFFFF);
+  }
+
+  @Override
+  public boolean add(int i) {
+    if (i < 0) {
+      throw new IllegalArgumentException("invalid i: " + i);
+    }
+    int index = find(i >>> 16);
+    if (index < 0) {
+      ArrayContainer c = new ArrayContainer(1);
+      c.add(i & 0xFFFF);
+      insertChunk(-index - 1, i >>> 16, c);
+      return true;
+    } else {
+      Container c = container(index);
+      int before = c.cardinality();
+      c = c.add(i & 0xFFFF);
+      setContainer(index, c);
+      return c.cardinality() != before;
+    }
+  }
+
+  @Override
+  public boolean remove(int i) {
+    if (i < 0) {
+      return false;
+    }
+    int index = find(i >>> 16);
+    if (index < 0) {
+      return false;
+    }
+    Container c = container(index);
+    int before = c.cardinality();
+    c = c.remove(i & 0xFFFF);
+    if (c.cardinality() == 0) {
+      removeChunk(index);
+    } else {
+      setContainer(index, c);
+    }
+    return c.cardinality() != before;
+  }
+
+  @Override
+  public void clear() {
+    keys = null;
+    containers = null;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return keys == null;
+  }
+
+  @Override
+  public int size() {
+    int result = 0;
+    for (int i = 0; i < chunks(); i++) {
+      result += container(i).cardinality();
+    }
+    return result;
+  }
+
+  @Override
+  public int max() {
+    int last = chunks() - 1;
+    return last < 0 ? -1 : (keys[last] << 16) | container(last).last();
+  }
+
+  @Override
+  public void copySet(IntSet set) {
+    if (set instanceof RoaringMutableIntSet) {
+      RoaringMutableIntSet that = (RoaringMutableIntSet) set;
+      if (that == this) {
+        return;
+      }
+      // key arrays are never modified, so they may be shared
+      keys = that.keys;
+      if (that.containers instanceof Container) {
+        containers = ((Container) that.containers).copy();
+      } else if (that.containers != null) {
+        Container[] c = ((Container[]) that.containers).clone();
+        for (int i = 0; i < c.length; i++) {
+          c[i] = c[i].copy();
+        }
+        containers = c;
+      } else {
+        containers = null;
+      }
+    } else {
+      clear();
+      addAll(set);
+    }
+  }
+
+  @Override
+  public boolean addAll(IntSet set) {
+    if (set == null) {
+      throw new IllegalArgumentException("null set");
+    }
+    if (set instanceof RoaringMutableIntSet) {
+      return addAll((RoaringMutableIntSet) set);
+    } else {
+      boolean changed = false;
+      for (IntIterator it = set.intIterator(); it.hasNext();) {
+        changed |= add(it.next());
+      }
+      return changed;
+    }
+  }
+
+  private boolean addAll(RoaringMutableIntSet that) {
+    int m = that.chunks();
+    if (that == this || m == 0) {
+      return false;
+    }
+    int n = chunks();
+    if (n == 1 && m == 1 && keys[0] == that.keys[0]) {
+      // the common case
+      Container c = (Container) containers;
+      int before = c.cardinality();
+      containers = c = best(c.or((Container) that.containers));
+      return c.cardinality() != before;
+    }
+    boolean changed = false;
+    char[] newKeys = new char[n + m];
+    Container[] newContainers = new Container[n + m];
+    int k = 0;
+    int i = 0;
+    int j = 0;
+    while (i < n || j < m) {
+      if (j == m || (i < n && keys[i] < that.keys[j])) {
+        newKeys[k] = keys[i];
+        newContainers[k++] = container(i++);
+      } else if (i == n || that.keys[j] < keys[i]) {
+        newKeys[k] = that.keys[j];
+        newContainers[k++] = that.container(j++).copy();
+        changed = true;
+      } else {
+        Container c = container(i++);
+        int before = c.cardinality();
+        c = best(c.or(that.container(j++)));
+        changed |= c.cardinality() != before;
+        newKeys[k] = keys[i - 1];
+        newContainers[k++] = c;
+      }
+    }
+    setChunks(newKeys, newContainers, k);
+    return changed;
+  }
+
+  @Override
+  public void intersectWith(IntSet set) {
+    if (set == null) {
+      throw new IllegalArgumentException("null set");
+    }
+    RoaringMutableIntSet result = intersection(set);
+    keys = result.keys;
+    containers = result.containers;
+  }
+
+  @Override
+  public boolean addAllInIntersection(IntSet other, IntSet filter) {
+    if (other == null) {
+      throw new IllegalArgumentException("null other");
+    }
+    if (filter == null) {
+      throw new IllegalArgumentException("null filter");
+    }
+    if (other instanceof RoaringMutableIntSet) {
+      return addAll(((RoaringMutableIntSet) other).intersection(filter));
+    } else {
+      boolean changed = false;
+      for (IntIterator it = other.intIterator(); it.hasNext();) {
+        int x = it.next();
+        if (filter.contains(x)) {
+          changed |= add(x);
+        }
+      }
+      return changed;
+    }
+  }
+
+  @Override
+  public RoaringMutableIntSet intersection(IntSet that) {
+    if (that == null) {
+      throw new IllegalArgumentException("null that");
+    }
+    RoaringMutableIntSet result = new RoaringMutableIntSet();
+    if (that instanceof RoaringMutableIntSet) {
+      RoaringMutableIntSet r = (RoaringMutableIntSet) that;
+      int n = chunks();
+      int m = r.chunks();
+      char[] newKeys = new char[Math.min(n, m)];
+      Container[] newContainers = new Container[newKeys.length];
+      int k = 0;
+      for (int i = 0, j = 0; i < n && j < m;) {
+        if (keys[i] < r.keys[j]) {
+          i++;
+        } else if (keys[i] > r.keys[j]) {
+          j++;
+        } else {
+          Container c = container(i).and(r.container(j));
+          if (c.cardinality() > 0) {
+            newKeys[k] = keys[i];
+            newContainers[k++] = c;
+          }
+          i++;
+          j++;
+        }
+      }
+      result.setChunks(newKeys, newContainers, k);
+    } else {
+      for (IntIterator it = intIterator(); it.hasNext();) {
+        int x = it.next();
+        if (that.contains(x)) {
+          result.add(x);
+        }
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public IntSet union(IntSet that) {
+    RoaringMutableIntSet result = new RoaringMutableIntSet(this);
+    result.addAll(that);
+    return result;
+  }
+
+  @Override
+  public boolean containsAny(IntSet set) {
+    if (set == null) {
+      throw new IllegalArgumentException("null set");
+    }
+    if (set instanceof RoaringMutableIntSet) {
+      RoaringMutableIntSet r = (RoaringMutableIntSet) set;
+      int n = chunks();
+      int m = r.chunks();
+      for (int i = 0, j = 0; i < n && j < m;) {
+        if (keys[i] < r.keys[j]) {
+          i++;
+        } else if (keys[i] > r.keys[j]) {
+          j++;
+        } else if (container(i++).intersects(r.container(j++))) {
+          return true;
+        }
+      }
+      return false;
+    } else {
+      for (IntIterator it = set.intIterator(); it.hasNext();) {
+        if (contains(it.next())) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  @Override
+  public boolean isSubset(IntSet that) {
+    if (that == null) {
+      throw new IllegalArgumentException("null that");
+    }
+    if (that instanceof RoaringMutableIntSet) {
+      RoaringMutableIntSet r = (RoaringMutableIntSet) that;
+      int m = r.chunks();
+      int j = 0;
+      for (int i = 0; i < chunks(); i++) {
+        while (j < m && r.keys[j] < keys[i]) {
+          j++;
+        }
+        if (j == m || r.keys[j] != keys[i] || !container(i).isSubsetOf(r.container(j))) {
+          return false;
+        }
+      }
+      return true;
+    } else {
+      for (IntIterator it = intIterator(); it.hasNext();) {
+        if (!that.contains(it.next())) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  @Override
+  public boolean sameValue(IntSet that) {
+    if (that == null) {
+      throw new IllegalArgumentException("null that");
+    }
+    if (that instanceof RoaringMutableIntSet) {
+      RoaringMutableIntSet r = (RoaringMutableIntSet) that;
+      if (chunks() != r.chunks()) {
+        return false;
+      }
+      for (int i = 0; i < chunks(); i++) {
+        Container c = container(i);
+        Container d = r.container(i);
+        if (keys[i] != r.keys[i] || c.cardinality() != d.cardinality() || !c.isSubsetOf(d)) {
+          return false;
+        }
+      }
+      return true;
+    } else {
+      return size() == that.size() && isSubset(that);
+    }
+  }
+
+  @Override
+  public IntIterator intIterator() {
+    return new IntIterator() {
+      private int chunk = 0;
+
+      /**
+       * the low bits of the next element in the current chunk, or -1 if there is none
+       */
+      private int next = chunks() == 0 ? -1 : container(0).next(0);
+
+      @Override
+      public boolean hasNext() {
+        return next >= 0;
+      }
+
+      @Override
+      public int next() {
+        if (next < 0) {
+          throw new NoSuchElementException();
+        }
+        int result = (keys[chunk] << 16) | next;
+        next = next == 0xFFFF ? -1 : container(chunk).next(next + 1);
+        if (next < 0 && ++chunk < chunks()) {
+          next = container(chunk).next(0);
+        }
+        return result;
+      }
+    };
+  }
+
+  @Override
+  public void foreach(IntSetAction action) {
+    if (action == null) {
+      throw new IllegalArgumentException("null action");
+    }
+    for (int i = 0; i < chunks(); i++) {
+      container(i).foreach(keys[i] << 16, action);
+    }
+  }
+
+  @Override
+  public void foreachExcluding(final IntSet X, final IntSetAction action) {
+    if (action == null) {
+      throw new IllegalArgumentException("null action");
+    }
+    foreach(new IntSetAction() {
+      @Override
+      public void act(int x) {
+        if (!X.contains(x)) {
+          action.act(x);
+        }
+      }
+    });
+  }
+
+  @Override
+  public String toString() {
+    final StringBuffer sb = new StringBuffer("{ ");
+    foreach(new IntSetAction() {
+      @Override
+      public void act(int x) {
+        sb.append(x);
+        sb.append(" ");
+      }
+    });
+    sb.append("}");
+    return sb.toString();
+  }
+
+  /**
+   * Convert the containers to whichever representation takes the least space; this is done after unions, but a set built by
+   * adding one element at a time may benefit from calling it when done.
+   */
+  public void optimize() {
+    for (int i = 0; i < chunks(); i++) {
+      setContainer(i, best(container(i)));
+    }
+  }
+
+  /**
+   * @return how many chunks are represented by arrays, bitmaps and runs respectively, for tuning
+   */
+  public int[] getContainerCounts() {
+    int[] result = new int[3];
+    for (int i = 0; i < chunks(); i++) {
+      Container c = container(i);
+      result[c instanceof ArrayContainer ? 0 : c instanceof BitmapContainer ? 1 : 2]++;
+    }
+    return result;
+  }
+
+  /**
+   * @return c, or an equivalent container taking less space
+   */
+  private static Container best(Container c) {
+    int card = c.cardinality();
+    int arrayBytes = card <= ARRAY_MAX ? 2 * card : Integer.MAX_VALUE;
+    int bitmapBytes = 8 * BITMAP_WORDS;
+    int runBytes = 4 * c.runCount();
+    if (runBytes < arrayBytes && runBytes < bitmapBytes) {
+      return c instanceof RunContainer ? c : RunContainer.make(c);
+    } else if (arrayBytes <= bitmapBytes) {
+      return c instanceof ArrayContainer ? c : ArrayContainer.make(c);
+    } else {
+      return c instanceof BitmapContainer ? c : BitmapContainer.make(c);
+    }
+  }
+
+  /**
+   * The low 16 bits of the integers in one chunk. Operations which may change the representation return the container to use from
+   * then on, which may be this one.
+   */
+  private static abstract class Container {
+
+    abstract int cardinality();
+
+    abstract boolean contains(int x);
+
+    abstract Container add(int x);
+
+    abstract Container remove(int x);
+
+    /**
+     * @return the union of this and other; this may be modified, but other is not
+     */
+    abstract Container or(Container other);
+
+    /**
+     * @return the intersection of this and other, which are not modified
+     */
+    abstract Container and(Container other);
+
+    abstract boolean intersects(Container other);
+
+    /**
+     * set the bits of the elements in a bitmap
+     */
+    abstract void orInto(long[] words);
+
+    /**
+     * @return the least element >= x, or -1 if there is none
+     */
+    abstract int next(int x);
+
+    abstract int last();
+
+    /**
+     * apply the action to high | x for each element x
+     */
+    abstract void foreach(int high, IntSetAction action);
+
+    abstract Container copy();
+
+    /**
+     * @return the number of maximal runs of consecutive elements
+     */
+    abstract int runCount();
+
+    boolean isSubsetOf(Container other) {
+      if (cardinality() > other.cardinality()) {
+        return false;
+      }
+      for (int x = next(0); x >= 0; x = x == 0xFFFF ? -1 : next(x + 1)) {
+        if (!other.contains(x)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  private static final class ArrayContainer extends Container {
+    private char[] values;
+
+    private int card = 0;
+
+    ArrayContainer(int capacity) {
+      values = new char[capacity];
+    }
+
+    static ArrayContainer make(Container c) {
+      final ArrayContainer result = new ArrayContainer(c.cardinality());
+      c.foreach(0, new IntSetAction() {
+        @Override
+        public void act(int x) {
+          result.values[result.card++] = (char) x;
+        }
+      });
+      return result;
+    }
+
+    @Override
+    int cardinality() {
+      return card;
+    }
+
+    @Override
+    boolean contains(int x) {
+      return Arrays.binarySearch(values, 0, card, (char) x) >= 0;
+    }
+
+    @Override
+    Container add(int x) {
+      int index = Arrays.binarySearch(values, 0, card, (char) x);
+      if (index >= 0) {
+        return this;
+      }
+      if (card == ARRAY_MAX) {
+        return BitmapContainer.make(this).add(x);
+      }
+      index = -index - 1;
+      if (card == values.length) {
+        values = Arrays.copyOf(values, Math.min(ARRAY_MAX, Math.max(4, 2 * card)));
+      }
+      System.arraycopy(values, index, values, index + 1, card - index);
+      values[index] = (char) x;
+      card++;
+      return this;
+    }
+
+    @Override
+    Container remove(int x) {
+      int index = Arrays.binarySearch(values, 0, card, (char) x);
+      if (index >= 0) {
+        System.arraycopy(values, index + 1, values, index, card - index - 1);
+        card--;
+      }
+      return this;
+    }
+
+    @Override
+    Container or(Container other) {
+      if (other instanceof ArrayContainer) {
+        ArrayContainer a = (ArrayContainer) other;
+        if (card + a.card > ARRAY_MAX) {
+          BitmapContainer result = BitmapContainer.make(this);
+          return result.or(a);
+        }
+        char[] merged = new char[card + a.card];
+        int n = 0;
+        int i = 0;
+        int j = 0;
+        while (i < card && j < a.card) {
+          char x = values[i];
+          char y = a.values[j];
+          if (x < y) {
+            merged[n++] = x;
+            i++;
+          } else if (x > y) {
+            merged[n++] = y;
+            j++;
+          } else {
+            merged[n++] = x;
+            i++;
+            j++;
+          }
+        }
+        while (i < card) {
+          merged[n++] = values[i++];
+        }
+        while (j < a.card) {
+          merged[n++] = a.values[j++];
+        }
+        values = merged;
+        card = n;
+        return this;
+      } else {
+        return other.copy().or(this);
+      }
+    }
+
+    @Override
+    Container and(Container other) {
+      ArrayContainer result = new ArrayContainer(Math.min(card, other.cardinality()));
+      for (int i = 0; i < card; i++) {
+        if (other.contains(values[i])) {
+          result.values[result.card++] = values[i];
+        }
+      }
+      return result;
+    }
+
+    @Override
+    boolean intersects(Container other) {
+      for (int i = 0; i < card; i++) {
+        if (other.contains(values[i])) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    void orInto(long[] words) {
+      for (int i = 0; i < card; i++) {
+        words[values[i] >>> 6] |= 1L << values[i];
+      }
+    }
+
+    @Override
+    int next(int x) {
+      int index = Arrays.binarySearch(values, 0, card, (char) x);
+      if (index >= 0) {
+        return x;
+      }
+      index = -index - 1;
+      return index < card ? values[index] : -1;
+    }
+
+    @Override
+    int last() {
+      return values[card - 1];
+    }
+
+    @Override
+    void foreach(int high, IntSetAction action) {
+      for (int i = 0; i < card; i++) {
+        action.act(high | values[i]);
+      }
+    }
+
+    @Override
+    Container copy() {
+      ArrayContainer result = new ArrayContainer(0);
+      result.values = Arrays.copyOf(values, card);
+      result.card = card;
+      return result;
+    }
+
+    @Override
+    int runCount() {
+      int result = 0;
+      for (int i = 0; i < card; i++) {
+        if (i == 0 || values[i] != values[i - 1] + 1) {
+          result++;
+        }
+      }
+      return result;
+    }
+  }
+
+  private static final class BitmapContainer extends Container {
+    private final long[] words = new long[BITMAP_WORDS];
+
+    private int card = 0;
+
+    static BitmapContainer make(Container c) {
+      BitmapContainer result = new BitmapContainer();
+      c.orInto(result.words);
+      result.card = c.cardinality();
+      return result;
+    }
+
+    private void recount() {
+      card = 0;
+      for (long w : words) {
+        card += Long.bitCount(w);
+      }
+    }
+
+    /**
+     * @return true iff any of the elements from start to end, inclusive, is in the set
+     */
+    private boolean intersectsRange(int start, int end) {
+      int first = start >>> 6;
+      int lastWord = end >>> 6;
+      long firstMask = -1L << start;
+      long lastMask = -1L >>> (63 - (end & 63));
+      if (first == lastWord) {
+        return (words[first] & firstMask & lastMask) != 0;
+      }
+      if ((words[first] & firstMask) != 0 || (words[lastWord] & lastMask) != 0) {
+        return true;
+      }
+      for (int i = first + 1; i < lastWord; i++) {
+        if (words[i] != 0) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    int cardinality() {
+      return card;
+    }
+
+    @Override
+    boolean contains(int x) {
+      return (words[x >>> 6] & (1L << x)) != 0;
+    }
+
+    @Override
+    Container add(int x) {
+      long w = words[x >>> 6];
+      long b = 1L << x;
+      if ((w & b) == 0) {
+        words[x >>> 6] = w | b;
+        card++;
+      }
+      return this;
+    }
+
+    @Override
+    Container remove(int x) {
+      long w = words[x >>> 6];
+      long b = 1L << x;
+      if ((w & b) != 0) {
+        words[x >>> 6] = w & ~b;
+        card--;
+        if (card <= ARRAY_MAX) {
+          return ArrayContainer.make(this);
+        }
+      }
+      return this;
+    }
+
+    @Override
+    Container or(Container other) {
+      other.orInto(words);
+      recount();
+      return this;
+    }
+
+    @Override
+    Container and(Container other) {
+      if (other instanceof BitmapContainer) {
+        BitmapContainer result = new BitmapContainer();
+        long[] w = ((BitmapContainer) other).words;
+        for (int i = 0; i < BITMAP_WORDS; i++) {
+          result.words[i] = words[i] & w[i];
+        }
+        result.recount();
+        return result.card <= ARRAY_MAX ? ArrayContainer.make(result) : result;
+      } else if (other instanceof ArrayContainer) {
+        return other.and(this);
+      } else {
+        return and(make(other));
+      }
+    }
+
+    @Override
+    boolean intersects(Container other) {
+      if (other instanceof BitmapContainer) {
+        long[] w = ((BitmapContainer) other).words;
+        for (int i = 0; i < BITMAP_WORDS; i++) {
+          if ((words[i] & w[i]) != 0) {
+            return true;
+          }
+        }
+        return false;
+      } else {
+        return other.intersects(this);
+      }
+    }
+
+    @Override
+    boolean isSubsetOf(Container other) {
+      if (other instanceof BitmapContainer) {
+        long[] w = ((BitmapContainer) other).words;
+        for (int i = 0; i < BITMAP_WORDS; i++) {
+          if ((words[i] & ~w[i]) != 0) {
+            return false;
+          }
+        }
+        return true;
+      } else {
+        return super.isSubsetOf(other);
+      }
+    }
+
+    @Override
+    void orInto(long[] w) {
+      for (int i = 0; i < BITMAP_WORDS; i++) {
+        w[i] |= words[i];
+      }
+    }
+
+    @Override
+    int next(int x) {
+      int i = x >>> 6;
+      long w = words[i] & (-1L << x);
+      while (w == 0) {
+        if (++i == BITMAP_WORDS) {
+          return -1;
+        }
+        w = words[i];
+      }
+      return (i << 6) + Long.numberOfTrailingZeros(w);
+    }
+
+    @Override
+    int last() {
+      for (int i = BITMAP_WORDS - 1;; i--) {
+        if (words[i] != 0) {
+          return (i << 6) + 63 - Long.numberOfLeadingZeros(words[i]);
+        }
+      }
+    }
+
+    @Override
+    void foreach(int high, IntSetAction action) {
+      for (int i = 0; i < BITMAP_WORDS; i++) {
+        for (long w = words[i]; w != 0; w &= w - 1) {
+          action.act(high | (i << 6) | Long.numberOfTrailingZeros(w));
+        }
+      }
+    }
+
+    @Override
+    Container copy() {
+      BitmapContainer result = new BitmapContainer();
+      System.arraycopy(words, 0, result.words, 0, BITMAP_WORDS);
+      result.card = card;
+      return result;
+    }
+
+    @Override
+    int runCount() {
+      int result = 0;
+      long previous = 0;
+      for (long w : words) {
+        // the bits that start a run: set, with the bit below clear
+        result += Long.bitCount(w & ~((w << 1) | (previous >>> 63)));
+        previous = w;
+      }
+      return result;
+    }
+  }
+
+  private static final class RunContainer extends Container {
+    /**
+     * runs[2 * i] is the first element of run i, and runs[2 * i + 1] its length - 1
+     */
+    private char[] runs;
+
+    private int nruns = 0;
+
+    private int card = 0;
+
+    RunContainer(int capacity) {
+      runs = new char[2 * Math.max(1, capacity)];
+    }
+
+    static RunContainer make(Container c) {
+      final RunContainer result = new RunContainer(c.runCount());
+      c.foreach(0, new IntSetAction() {
+        @Override
+        public void act(int x) {
+          result.append(x, x);
+        }
+      });
+      return result;
+    }
+
+    private int start(int i) {
+      return runs[2 * i];
+    }
+
+    private int end(int i) {
+      return runs[2 * i] + runs[2 * i + 1];
+    }
+
+    /**
+     * add the elements from start to end, inclusive, which must not be less than any element already in the set
+     */
+    private void append(int start, int end) {
+      if (nruns > 0 && start <= end(nruns - 1) + 1) {
+        int last = end(nruns - 1);
+        if (end > last) {
+          runs[2 * nruns - 1] = (char) (end - start(nruns - 1));
+          card += end - last;
+        }
+      } else {
+        if (2 * nruns == runs.length) {
+          runs = Arrays.copyOf(runs, 4 * nruns);
+        }
+        runs[2 * nruns] = (char) start;
+        runs[2 * nruns + 1] = (char) (end - start);
+        nruns++;
+        card += end - start + 1;
+      }
+    }
+
+    /**
+     * @return the index of the last run starting at or before x, or -1 if there is none
+     */
+    private int find(int x) {
+      int low = 0;
+      int high = nruns - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        if (start(mid) <= x) {
+          low = mid + 1;
+        } else {
+          high = mid - 1;
+        }
+      }
+      return high;
+    }
+
+    /**
+     * @return this as an array or a bitmap
+     */
+    private Container toPlain() {
+      return card <= ARRAY_MAX ? ArrayContainer.make(this) : BitmapContainer.make(this);
+    }
+
+    @Override
+    int cardinality() {
+      return card;
+    }
+
+    @Override
+    boolean contains(int x) {
+      int i = find(x);
+      return i >= 0 && x <= end(i);
+    }
+
+    @Override
+    Container add(int x) {
+      int i = find(x);
+      if (i >= 0 && x <= end(i)) {
+        return this;
+      }
+      boolean extendsLeft = i >= 0 && end(i) + 1 == x;
+      boolean extendsRight = i + 1 < nruns && start(i + 1) == x + 1;
+      if (extendsLeft && extendsRight) {
+        runs[2 * i + 1] = (char) (end(i + 1) - start(i));
+        System.arraycopy(runs, 2 * (i + 2), runs, 2 * (i + 1), 2 * (nruns - i - 2));
+        nruns--;
+      } else if (extendsLeft) {
+        runs[2 * i + 1]++;
+      } else if (extendsRight) {
+        runs[2 * (i + 1)]--;
+        runs[2 * (i + 1) + 1]++;
+      } else {
+        if (2 * nruns == runs.length) {
+          runs = Arrays.copyOf(runs, 4 * nruns);
+        }
+        System.arraycopy(runs, 2 * (i + 1), runs, 2 * (i + 2), 2 * (nruns - i - 1));
+        runs[2 * (i + 1)] = (char) x;
+        runs[2 * (i + 1) + 1] = 0;
+        nruns++;
+      }
+      card++;
+      return 4 * nruns > Math.min(2 * card, 8 * BITMAP_WORDS) ? best(this) : this;
+    }
+
+    @Override
+    Container remove(int x) {
+      return contains(x) ? toPlain().remove(x) : this;
+    }
+
+    @Override
+    Container or(Container other) {
+      if (other instanceof BitmapContainer) {
+        return other.copy().or(this);
+      }
+      // merge the runs of both, taking the elements of an array as runs of length 1
+      RunContainer result = new RunContainer(nruns + other.runCount());
+      RunContainer r = other instanceof RunContainer ? (RunContainer) other : null;
+      ArrayContainer a = r == null ? (ArrayContainer) other : null;
+      int m = r == null ? a.card : r.nruns;
+      int i = 0;
+      int j = 0;
+      while (i < nruns || j < m) {
+        int otherStart = j < m ? (r == null ? a.values[j] : r.start(j)) : Integer.MAX_VALUE;
+        if (i < nruns && start(i) <= otherStart) {
+          result.append(start(i), end(i));
+          i++;
+        } else {
+          result.append(otherStart, r == null ? otherStart : r.end(j));
+          j++;
+        }
+      }
+      return result;
+    }
+
+    @Override
+    Container and(Container other) {
+      if (other instanceof RunContainer) {
+        RunContainer r = (RunContainer) other;
+        RunContainer result = new RunContainer(nruns + r.nruns);
+        for (int i = 0, j = 0; i < nruns && j < r.nruns;) {
+          int start = Math.max(start(i), r.start(j));
+          int end = Math.min(end(i), r.end(j));
+          if (start <= end) {
+            result.append(start, end);
+          }
+          if (end(i) < r.end(j)) {
+            i++;
+          } else {
+            j++;
+          }
+        }
+        return best(result);
+      } else {
+        return other.and(this);
+      }
+    }
+
+    @Override
+    boolean intersects(Container other) {
+      if (other instanceof RunContainer) {
+        RunContainer r = (RunContainer) other;
+        for (int i = 0, j = 0; i < nruns && j < r.nruns;) {
+          if (Math.max(start(i), r.start(j)) <= Math.min(end(i), r.end(j))) {
+            return true;
+          }
+          if (end(i) < r.end(j)) {
+            i++;
+          } else {
+            j++;
+          }
+        }
+        return false;
+      } else if (other instanceof BitmapContainer) {
+        BitmapContainer b = (BitmapContainer) other;
+        for (int i = 0; i < nruns; i++) {
+          if (b.intersectsRange(start(i), end(i))) {
+            return true;
+          }
+        }
+        return false;
+      } else {
+        return other.intersects(this);
+      }
+    }
+
+    @Override
+    void orInto(long[] words) {
+      for (int i = 0; i < nruns; i++) {
+        int start = start(i);
+        int end = end(i);
+        int first = start >>> 6;
+        int lastWord = end >>> 6;
+        long firstMask = -1L << start;
+        long lastMask = -1L >>> (63 - (end & 63));
+        if (first == lastWord) {
+          words[first] |= firstMask & lastMask;
+        } else {
+          words[first] |= firstMask;
+          for (int w = first + 1; w < lastWord; w++) {
+            words[w] = -1L;
+          }
+          words[lastWord] |= lastMask;
+        }
+      }
+    }
+
+    @Override
+    int next(int x) {
+      int i = find(x);
+      if (i >= 0 && x <= end(i)) {
+        return x;
+      }
+      return i + 1 < nruns ? start(i + 1) : -1;
+    }
+
+    @Override
+    int last() {
+      return end(nruns - 1);
+    }
+
+    @Override
+    void foreach(int high, IntSetAction action) {
+      for (int i = 0; i < nruns; i++) {
+        for (int x = start(i), end = end(i); x <= end; x++) {
+          action.act(high | x);
+        }
+      }
+    }
+
+    @Override
+    Container copy() {
+      RunContainer result = new RunContainer(0);
+      result.runs = Arrays.copyOf(runs, Math.max(2, 2 * nruns));
+      result.nruns = nruns;
+      result.card = card;
+      return result;
+    }
+
+    @Override
+    int runCount() {
+      return nruns;
+    }
+  }
+}
@@ -0,0 +1,55 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.util.intset;
+
+/**
+ * Makes {@link RoaringMutableIntSet}s. To use them throughout, run with
+ * <code>-Dcom.ibm.wala.mutableIntSetFactory=com.ibm.wala.util.intset.RoaringMutableIntSetFactory</code>, or call
+ * {@link IntSetUtil#setDefaultIntSetFactory(MutableIntSetFactory)}.
+ */
+public class RoaringMutableIntSetFactory implements MutableIntSetFactory<RoaringMutableIntSet> {
+
+  /**
+   * @throws IllegalArgumentException if set is null
+   */
+  @Override
+  public RoaringMutableIntSet make(int[] set) {
+    if (set == null) {
+      throw new IllegalArgumentException("set is null");
+    }
+    RoaringMutableIntSet result = new RoaringMutableIntSet();
+    for (int i = 0; i < set.length; i++) {
+      result.add(set[i]);
+    }
+    result.optimize();
+    return result;
+  }
+
+  @Override
+  public RoaringMutableIntSet parse(String string) throws NumberFormatException {
+    return make(SparseIntSet.parseIntArray(string));
+  }
+
+  @Override
+  public RoaringMutableIntSet makeCopy(IntSet x) {
+    if (x == null) {
+      throw new IllegalArgumentException("x is null");
+    }
+    RoaringMutableIntSet result = new RoaringMutableIntSet();
+    result.copySet(x);
+    return result;
+  }
+
+  @Override
+  public RoaringMutableIntSet make() {
+    return new RoaringMutableIntSet();
+  }
+}
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright (c) 2002 - 2006 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package com.ibm.wala.util.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A read-only memory mapping of a whole file, which may be longer than the 2GB a single {@link MappedByteBuffer} can hold. The file
+ * is mapped in segments of equal size, a power of 2; it is read as big-endian ints, addressed by their index, and as bytes,
+ * addressed by their offset. Reads do not change any state, so a mapped file may be read from several threads.
+ */
+public final class MappedFile {
+
+  /**
+   * the default segment size, 1GB
+   */
+  public final static int DEFAULT_SEGMENT_SIZE = 1 << 30;
+
+  private final MappedByteBuffer[] segments;
+
+  private final long length;
+
+  private final int shift;
+
+  private final int mask;
+
+  private MappedFile(MappedByteBuffer[] segments, long length, int segmentSize) {
+    this.segments = segments;
+    this.length = length;
+    this.shift = Integer.numberOfTrailingZeros(segmentSize);
+    this.mask = segmentSize - 1;
+  }
+
+  /**
+   * Map file in segments of {@link #DEFAULT_SEGMENT_SIZE}.
+   */
+  public static MappedFile map(File file) throws IOException {
+    return map(file, DEFAULT_SEGMENT_SIZE);
+  }
+
+  /**
+   * Map file in segments of the given size.
+   *
+   * @param segmentSize a power of 2, at least 4, so that no int spans two segments
+   */
+  public static MappedFile map(File file, int segmentSize) throws IOException {
+    if (file == null) {
+      throw new IllegalArgumentException("null file");
+    }
+    if (segmentSize < 4 || Integer.bitCount(segmentSize) != 1) {
+      throw new IllegalArgumentException("illegal segment size " + segmentSize);
+    }
+    RandomAccessFile f = new RandomAccessFile(file, "r");
+    try {
+      long length = f.length();
+      long n = (length + segmentSize - 1) / segmentSize;
+      if (n > Integer.MAX_VALUE) {
+        throw new IOException("too many segments for " + file);
+      }
+      MappedByteBuffer[] segments = new MappedByteBuffer[(int) n];
+      FileChannel channel = f.getChannel();
+      for (int i = 0; i < segments.length; i++) {
+        long offset = (long) i * segmentSize;
+        // the mappings stay valid after the file is closed
+        segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(segmentSize, length - offset));
+      }
+      return new MappedFile(segments, length, segmentSize);
+    } finally {
+      f.close();
+    }
+  }
+
+  /**
+   * @return the length of the file in bytes
+   */
+  public long length() {
+    return length;
+  }
+
+  /**
+   * @return the number of whole ints in the file
+   */
+  public long intCount() {
+    return length >>> 2;
+  }
+
+  /**
+   * @return the int at the given index, that is at byte offset 4 * index
+   */
+  public int getInt(long index) {
+    if (index < 0 || index >= intCount()) {
+      throw new IndexOutOfBoundsException("int " + index + " of " + intCount());
+    }
+    long offset = index << 2;
+    return segments[(int) (offset >>> shift)].getInt((int) (offset & mask));
+  }
+
+  /**
+   * @return the long at the given int index, stored as two ints, high first
+   */
+  public long getLong(long index) {
+    return ((long) getInt(index) << 32) | (getInt(index + 1) & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Read length bytes starting at the given byte offset.
+   */
+  public byte[] getBytes(long offset, int length) {
+    if (offset < 0 || length < 0 || offset + length > this.length) {
+      throw new IndexOutOfBoundsException("bytes " + offset + " to " + (offset + length) + " of " + this.length);
+    }
+    byte[] result = new byte[length];
+    int done = 0;
+    while (done < length) {
+      long o = offset + done;
+      // a duplicate, since relative reads move the position of a buffer
+      ByteBuffer segment = segments[(int) (o >>> shift)].duplicate();
+      segment.position((int) (o & mask));
+      int n = Math.min(length - done, segment.remaining());
+      segment.get(result, done, n);
+      done += n;
+    }
+    return result;
+  }
+}